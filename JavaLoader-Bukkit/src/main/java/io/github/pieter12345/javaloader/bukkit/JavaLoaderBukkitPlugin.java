@@ -38,12 +38,14 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import io.github.pieter12345.javaloader.bukkit.dependency.BukkitProjectDependencyParser;
 import io.github.pieter12345.javaloader.core.CommandExecutor;
+import io.github.pieter12345.javaloader.core.HotSwapAgent;
 import io.github.pieter12345.javaloader.core.JavaLoaderProject;
 import io.github.pieter12345.javaloader.core.JavaProject;
 import io.github.pieter12345.javaloader.core.ProjectManager;
 import io.github.pieter12345.javaloader.core.ProjectStateListener;
 import io.github.pieter12345.javaloader.core.CommandExecutor.CommandSender;
 import io.github.pieter12345.javaloader.core.CommandExecutor.MessageType;
+import io.github.pieter12345.javaloader.core.CommandExecutor.TaskScheduler;
 import io.github.pieter12345.javaloader.core.ProjectManager.LoadAllResult;
 import io.github.pieter12345.javaloader.core.exceptions.LoadException;
 import io.github.pieter12345.javaloader.core.exceptions.UnloadException;
@@ -131,6 +133,11 @@ public class JavaLoaderBukkitPlugin extends JavaPlugin {
 		this.projectManager = new ProjectManager(
 				this.projectsDir, new BukkitProjectDependencyParser(), Server.class.getClassLoader());
 		
+		// Enable hot swapping of method body changes if the server has been started with JavaLoader as java agent.
+		if(HotSwapAgent.isRedefineClassesSupported()) {
+			this.projectManager.setHotSwapEnabled(true);
+		}
+		
 		// Initialize injected and synced commands set.
 		this.injectedCommandsMap = new HashMap<String, Set<Command>>();
 		this.syncedCommandsMap = new HashMap<String, Set<Command>>();
@@ -307,10 +314,26 @@ public class JavaLoaderBukkitPlugin extends JavaPlugin {
 			}
 		};
 		
-		// Initialize the command executor.
+		// Initialize the command executor. Projects are compiled asynchronously and swapped on the main thread.
 		this.commandExecutor = new CommandExecutor(this.projectManager, this.projectStateListener, null, "/javaloader",
 				this.getDescription().getAuthors(), this.getDescription().getVersion(),
-				(String str) -> colorize(str), COMPILER_FEEDBACK_LIMIT);
+				(String str) -> colorize(str), COMPILER_FEEDBACK_LIMIT, new TaskScheduler() {
+			@Override
+			public void runAsync(Runnable task) {
+				Bukkit.getScheduler().runTaskAsynchronously(JavaLoaderBukkitPlugin.this, task);
+			}
+			@Override
+			public void runSync(Runnable task) {
+				Bukkit.getScheduler().runTask(JavaLoaderBukkitPlugin.this, () -> {
+					task.run();
+					
+					// Sync injected commands with clients if necessary.
+					if(JavaLoaderBukkitPlugin.this.isEnabled()) {
+						JavaLoaderBukkitPlugin.this.syncCommandsIfRequired();
+					}
+				});
+			}
+		});
 		
 		// Loop over all project directories and add them as a JavaProject.
 		this.projectManager.addProjectsFromProjectDirectory(this.projectStateListener);
@@ -391,6 +414,16 @@ public class JavaLoaderBukkitPlugin extends JavaPlugin {
 		}, args);
 		
 		// Sync injected commands with clients if necessary.
+		this.syncCommandsIfRequired();
+		
+		return true;
+	}
+	
+	/**
+	 * Synchronizes the commands known by Bukkit and the commands known by clients if the injected commands of a
+	 * project have changed since the last synchronization.
+	 */
+	private void syncCommandsIfRequired() {
 		for(String project : this.commandSyncCheckRequired) {
 			Set<Command> injectedCommands = this.injectedCommandsMap.get(project);
 			Set<Command> syncedCommands = this.syncedCommandsMap.get(project);
@@ -399,8 +432,6 @@ public class JavaLoaderBukkitPlugin extends JavaPlugin {
 				break;
 			}
 		}
-		
-		return true;
 	}
 	
 	/**
@@ -469,7 +500,7 @@ public class JavaLoaderBukkitPlugin extends JavaPlugin {
 			// TAB-complete "/javaloader <arg>".
 			if(args.length == 1) {
 				List<String> ret = new ArrayList<String>();
-				for(String comp : new String[] {"help", "list", "load", "unload", "recompile"}) {
+				for(String comp : new String[] {"help", "list", "load", "unload", "recompile", "leaks"}) {
 					if(comp.startsWith(search)) {
 						ret.add(comp);
 					}
@@ -492,7 +523,7 @@ public class JavaLoaderBukkitPlugin extends JavaPlugin {
 			// TAB-complete "/javaloader help <arg>".
 			if(args.length == 2 && args[0].equalsIgnoreCase("help")) {
 				List<String> ret = new ArrayList<String>();
-				for(String comp : new String[] {"help", "list", "recompile", "load", "unload"}) {
+				for(String comp : new String[] {"help", "list", "recompile", "load", "unload", "leaks"}) {
 					if(comp.toLowerCase().startsWith(search)) {
 						ret.add(comp);
 					}
@@ -30,6 +30,7 @@ import org.bukkit.plugin.PluginLogger;
 import com.google.common.base.Charsets;
 
 import io.github.pieter12345.javaloader.core.JavaProject;
+import io.github.pieter12345.javaloader.core.JavaProjectClassLoader;
 
 /**
  * Represents a Java plugin for a JavaLoader project.
@@ -247,6 +248,15 @@ public class JavaLoaderBukkitProjectPlugin extends PluginBase {
 		}
 		
 		try {
+			
+			// Read project resources through the resource index of the project classloader.
+			if(getClassLoader() instanceof JavaProjectClassLoader) {
+				InputStream in = ((JavaProjectClassLoader) getClassLoader()).getProjectResourceAsStream(filename);
+				if(in != null) {
+					return in;
+				}
+			}
+			
 			URL url = getClassLoader().getResource(filename);
 			
 			if(url == null) {
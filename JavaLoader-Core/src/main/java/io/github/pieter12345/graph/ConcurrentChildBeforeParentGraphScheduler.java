@@ -0,0 +1,199 @@
+package io.github.pieter12345.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+/**
+ * Executes a task for every node in a graph, where the task of a node is only started after the tasks of all its
+ * children have completed successfully. Tasks of nodes that do not depend on eachother run concurrently on the given
+ * executor. All {@link NodeHandler} callbacks are invoked on the thread that calls {@link #run()}. A node can run
+ * multiple tasks one after another using {@link NodeHandler#createFollowUpTask(Object, Object)}.
+ * <br>
+ * When a node fails, the node and all its direct and indirect parents are removed, similar to
+ * {@link Graph.ChildBeforeParentGraphIterator#removeAncestors()}.
+ * If the graph contains a cycle, all nodes within the cycle and their ancestors are skipped without notice.
+ * @author P.J.S. Kools
+ * @param <T> The node value type.
+ * @param <R> The task result type.
+ */
+public class ConcurrentChildBeforeParentGraphScheduler<T, R> {
+	
+	private final Graph<T> graph;
+	private final Executor executor;
+	private final NodeHandler<T, R> handler;
+	
+	/**
+	 * Creates a new ConcurrentChildBeforeParentGraphScheduler.
+	 * @param graph - The graph to schedule the nodes of. The graph should not be modified while running.
+	 * @param executor - The executor to run the node tasks on.
+	 * @param handler - The handler that creates the node tasks and handles their results.
+	 */
+	public ConcurrentChildBeforeParentGraphScheduler(Graph<T> graph, Executor executor, NodeHandler<T, R> handler) {
+		this.graph = graph;
+		this.executor = executor;
+		this.handler = handler;
+	}
+	
+	/**
+	 * Runs the tasks of all nodes and returns when all started tasks have completed.
+	 */
+	public void run() {
+		
+		// Count the unfinished children of every node and queue the nodes without children.
+		Map<T, Integer> pendingChildCounts = new HashMap<T, Integer>();
+		Queue<T> readyNodes = new ArrayDeque<T>();
+		for(T node : this.graph.getNodes()) {
+			int childCount = this.graph.getChildren(node).size();
+			pendingChildCounts.put(node, childCount);
+			if(childCount == 0) {
+				readyNodes.add(node);
+			}
+		}
+		
+		// Start the tasks of ready nodes and handle completed tasks until no more tasks can be started.
+		CompletionService<R> completionService = new ExecutorCompletionService<R>(this.executor);
+		Map<Future<R>, T> runningTasks = new HashMap<Future<R>, T>();
+		Set<T> removedNodes = new HashSet<T>();
+		boolean interrupted = false;
+		while(!readyNodes.isEmpty() || !runningTasks.isEmpty()) {
+			
+			// Start the tasks of all ready nodes.
+			T readyNode;
+			while((readyNode = readyNodes.poll()) != null) {
+				Callable<R> task = this.handler.createTask(readyNode);
+				if(task == null) {
+					this.removeAncestors(readyNode, removedNodes);
+				} else {
+					runningTasks.put(completionService.submit(task), readyNode);
+				}
+			}
+			if(runningTasks.isEmpty()) {
+				break;
+			}
+			
+			// Wait for a task to complete.
+			Future<R> future;
+			while(true) {
+				try {
+					future = completionService.take();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			T node = runningTasks.remove(future);
+			
+			// Handle the task result.
+			R result = null;
+			Throwable thrown = null;
+			try {
+				result = future.get();
+			} catch (ExecutionException e) {
+				thrown = e.getCause();
+			} catch (InterruptedException e) {
+				throw new Error("Never happens, the task has already completed.", e);
+			}
+			if(this.handler.handleResult(node, result, thrown)) {
+				
+				// Start the follow-up task of the node if it has one. The node completes when that task completes.
+				Callable<R> followUpTask = this.handler.createFollowUpTask(node, result);
+				if(followUpTask != null) {
+					runningTasks.put(completionService.submit(followUpTask), node);
+					continue;
+				}
+				
+				// Queue the parents that have no unfinished children left.
+				for(T parent : this.graph.getParents(node)) {
+					int pendingChildCount = pendingChildCounts.get(parent) - 1;
+					pendingChildCounts.put(parent, pendingChildCount);
+					if(pendingChildCount == 0 && !removedNodes.contains(parent)) {
+						readyNodes.add(parent);
+					}
+				}
+			} else {
+				this.removeAncestors(node, removedNodes);
+			}
+		}
+		
+		// Restore the interrupted status if it was cleared while waiting.
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void removeAncestors(T node, Set<T> removedNodes) {
+		
+		// Get the node and its ancestors that have not been removed yet, in breadth-first iteration order.
+		List<T> removed = new ArrayList<T>();
+		Queue<T> queue = new ArrayDeque<T>();
+		queue.add(node);
+		removedNodes.add(node);
+		while(!queue.isEmpty()) {
+			T removedNode = queue.poll();
+			removed.add(removedNode);
+			for(T parent : this.graph.getParents(removedNode)) {
+				if(removedNodes.add(parent)) {
+					queue.add(parent);
+				}
+			}
+		}
+		
+		// Notify the handler.
+		this.handler.handleAncestorsRemoved(removed);
+	}
+	
+	/**
+	 * Creates the tasks for nodes and handles their results.
+	 * @author P.J.S. Kools
+	 * @param <T> The node value type.
+	 * @param <R> The task result type.
+	 */
+	public static interface NodeHandler<T, R> {
+		
+		/**
+		 * Creates the task for the given node. This is called when all children of the node have completed.
+		 * @param node - The node.
+		 * @return The task to run, or {@code null} to fail the node without running a task.
+		 */
+		Callable<R> createTask(T node);
+		
+		/**
+		 * Handles the result of the task of the given node.
+		 * @param node - The node.
+		 * @param result - The result of the task, or {@code null} if the task has thrown.
+		 * @param thrown - The {@link Throwable} thrown by the task, or {@code null} if the task completed normally.
+		 * @return True if the node succeeded, false if the node failed and its ancestors should be removed.
+		 */
+		boolean handleResult(T node, R result, Throwable thrown);
+		
+		/**
+		 * Creates a follow-up task for the given node. This is called after a task of the node has been handled
+		 * successfully, and allows a node to run multiple tasks with work on the calling thread in between.
+		 * The result of the follow-up task is passed to {@link #handleResult(Object, Object, Throwable)} as well.
+		 * @param node - The node.
+		 * @param result - The result of the previous task of the node.
+		 * @return The follow-up task to run, or {@code null} if the node has completed.
+		 */
+		default Callable<R> createFollowUpTask(T node, R result) {
+			return null;
+		}
+		
+		/**
+		 * Handles the removal of a failed node and its ancestors.
+		 * @param removed - The removed nodes in breadth-first iteration order, starting with the failed node.
+		 */
+		void handleAncestorsRemoved(List<T> removed);
+	}
+}
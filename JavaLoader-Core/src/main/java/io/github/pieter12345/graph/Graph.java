@@ -124,6 +124,42 @@ public class Graph<T> implements Iterable<T> {
 		return false;
 	}
 	
+	/**
+	 * Gets the values of the direct children of the node with the given value.
+	 * @param nodeVal - The node value.
+	 * @return The child node values.
+	 * @throws IllegalArgumentException If the node is not part of this graph.
+	 */
+	public Set<T> getChildren(T nodeVal) {
+		Node<T> node = this.nodeMap.get(nodeVal);
+		if(node == null) {
+			throw new IllegalArgumentException("Node has to be part of the graph.");
+		}
+		Set<T> children = new HashSet<T>();
+		for(Node<T> child : node.getChildren()) {
+			children.add(child.get());
+		}
+		return children;
+	}
+	
+	/**
+	 * Gets the values of the direct parents of the node with the given value.
+	 * @param nodeVal - The node value.
+	 * @return The parent node values.
+	 * @throws IllegalArgumentException If the node is not part of this graph.
+	 */
+	public Set<T> getParents(T nodeVal) {
+		Node<T> node = this.nodeMap.get(nodeVal);
+		if(node == null) {
+			throw new IllegalArgumentException("Node has to be part of the graph.");
+		}
+		Set<T> parents = new HashSet<T>();
+		for(Node<T> parent : node.getParents()) {
+			parents.add(parent.get());
+		}
+		return parents;
+	}
+	
 	/**
 	 * Returns whether a directed edge from the given node to the given node exists.
 	 * @param from - The from node value.
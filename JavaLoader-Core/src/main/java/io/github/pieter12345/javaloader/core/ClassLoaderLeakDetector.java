@@ -0,0 +1,249 @@
+package io.github.pieter12345.javaloader.core;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ClassLoaderLeakDetector class.
+ * Tracks closed project classloaders until they are garbage collected. Classloaders that are still reachable after
+ * a configurable amount of old generation garbage collection cycles are reported as leaks, together with the live
+ * threads that are likely to keep them reachable.
+ * @author P.J.S. Kools
+ */
+public class ClassLoaderLeakDetector {
+	
+	// Variables & Constants.
+	private final ReferenceQueue<ClassLoader> referenceQueue = new ReferenceQueue<ClassLoader>();
+	private final Set<TrackedClassLoader> trackedClassLoaders = new HashSet<TrackedClassLoader>();
+	private long collectedClassLoaders = 0;
+	private int gcCycleThreshold;
+	
+	/**
+	 * Creates a new ClassLoaderLeakDetector that reports classloaders that survive 3 garbage collection cycles.
+	 */
+	public ClassLoaderLeakDetector() {
+		this(3);
+	}
+	
+	/**
+	 * Creates a new ClassLoaderLeakDetector.
+	 * @param gcCycleThreshold - The amount of garbage collection cycles that a tracked classloader has to survive
+	 * before it is reported as a leak.
+	 * @throws IllegalArgumentException If the threshold is negative.
+	 */
+	public ClassLoaderLeakDetector(int gcCycleThreshold) throws IllegalArgumentException {
+		this.setGcCycleThreshold(gcCycleThreshold);
+	}
+	
+	/**
+	 * Sets the amount of garbage collection cycles that a tracked classloader has to survive before it is reported
+	 * as a leak.
+	 * @param gcCycleThreshold - The threshold.
+	 * @throws IllegalArgumentException If the threshold is negative.
+	 */
+	public synchronized void setGcCycleThreshold(int gcCycleThreshold) throws IllegalArgumentException {
+		if(gcCycleThreshold < 0) {
+			throw new IllegalArgumentException("The GC cycle threshold cannot be negative.");
+		}
+		this.gcCycleThreshold = gcCycleThreshold;
+	}
+	
+	/**
+	 * Gets the amount of garbage collection cycles that a tracked classloader has to survive before it is reported
+	 * as a leak.
+	 * @return The threshold.
+	 */
+	public synchronized int getGcCycleThreshold() {
+		return this.gcCycleThreshold;
+	}
+	
+	/**
+	 * Starts tracking the given classloader. This should be called once the classloader has been closed and all
+	 * references to it have been dropped by JavaLoader.
+	 * @param projectName - The name of the project that the classloader belongs to.
+	 * @param generation - The generation of the project that the classloader was created for.
+	 * @param classLoader - The classloader.
+	 */
+	public synchronized void track(String projectName, int generation, ClassLoader classLoader) {
+		this.pollCollected();
+		this.trackedClassLoaders.add(new TrackedClassLoader(
+				classLoader, this.referenceQueue, projectName, generation, getGcCycleCount()));
+	}
+	
+	/**
+	 * Generates a report of the tracked classloaders. Classloaders that have been garbage collected since the last
+	 * call are no longer tracked after this call.
+	 * @return The report.
+	 */
+	public synchronized Report getReport() {
+		this.pollCollected();
+		long gcCycleCount = getGcCycleCount();
+		List<Leak> leaks = new ArrayList<Leak>();
+		Set<Thread> threads = null;
+		for(TrackedClassLoader tracked : this.trackedClassLoaders) {
+			long survivedGcCycles = gcCycleCount - tracked.gcCycleCount;
+			ClassLoader classLoader = tracked.classLoaderRef.get();
+			if(survivedGcCycles < this.gcCycleThreshold || classLoader == null) {
+				continue; // Not suspicious yet, or only awaiting the reference queue.
+			}
+			if(threads == null) {
+				threads = Thread.getAllStackTraces().keySet();
+			}
+			leaks.add(new Leak(tracked.projectName, tracked.generation,
+					survivedGcCycles, getThreadCulprits(classLoader, threads)));
+		}
+		leaks.sort((Leak l1, Leak l2) -> {
+			int comp = l1.projectName.compareTo(l2.projectName);
+			return (comp != 0 ? comp : Integer.compare(l1.generation, l2.generation));
+		});
+		return new Report(this.trackedClassLoaders.size(),
+				this.collectedClassLoaders, Collections.unmodifiableList(leaks), getMetaspaceUsage());
+	}
+	
+	/**
+	 * Stops tracking all classloaders.
+	 */
+	public synchronized void clear() {
+		for(TrackedClassLoader tracked : this.trackedClassLoaders) {
+			tracked.clear();
+		}
+		this.trackedClassLoaders.clear();
+	}
+	
+	private void pollCollected() {
+		Reference<? extends ClassLoader> ref;
+		while((ref = this.referenceQueue.poll()) != null) {
+			if(this.trackedClassLoaders.remove(ref)) {
+				this.collectedClassLoaders++;
+			}
+		}
+	}
+	
+	private static List<String> getThreadCulprits(ClassLoader classLoader, Set<Thread> threads) {
+		List<String> culprits = new ArrayList<String>();
+		for(Thread thread : threads) {
+			if(thread.getClass().getClassLoader() == classLoader) {
+				culprits.add("Thread \"" + thread.getName() + "\" is an instance of project class "
+						+ thread.getClass().getName() + ".");
+			} else if(thread.getContextClassLoader() == classLoader) {
+				culprits.add("Thread \"" + thread.getName() + "\" has the classloader as context classloader.");
+			}
+		}
+		return culprits;
+	}
+	
+	/**
+	 * Gets the amount of garbage collection cycles that collected the old generation. Young generation collections
+	 * are not counted, since they can happen many times per second and do not collect classloaders that have been
+	 * promoted to the old generation. For collectors that do not manage generations (such as ZGC and Shenandoah),
+	 * the lowest count of their collectors is used, since their pause collectors count multiple pauses per cycle.
+	 * @return The amount of old generation garbage collection cycles.
+	 */
+	private static long getGcCycleCount() {
+		long oldGenCount = 0;
+		boolean hasOldGenCollector = false;
+		long minCount = Long.MAX_VALUE;
+		for(GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			long beanCount = Math.max(gcBean.getCollectionCount(), 0);
+			minCount = Math.min(minCount, beanCount);
+			if(isOldGenCollector(gcBean)) {
+				hasOldGenCollector = true;
+				oldGenCount += beanCount;
+			}
+		}
+		return (hasOldGenCollector ? oldGenCount : (minCount == Long.MAX_VALUE ? 0 : minCount));
+	}
+	
+	private static boolean isOldGenCollector(GarbageCollectorMXBean gcBean) {
+		
+		// G1 young collections also manage the old generation pool (for mixed collections), but do not unload classes.
+		if(gcBean.getName().contains("Young")) {
+			return false;
+		}
+		for(String poolName : gcBean.getMemoryPoolNames()) {
+			if(poolName.contains("Old Gen") || poolName.contains("Tenured Gen")) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static long getMetaspaceUsage() {
+		for(MemoryPoolMXBean poolBean : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(poolBean.getName().equals("Metaspace")) {
+				return poolBean.getUsage().getUsed();
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Represents a leak detection report. The report contains the amount of tracked classloaders that have not been
+	 * garbage collected yet, the total amount of tracked classloaders that have been garbage collected, the detected
+	 * leaks and the amount of used metaspace memory in bytes (or -1 if unknown).
+	 * @author P.J.S. Kools
+	 */
+	public static class Report {
+		public final int trackedClassLoaders;
+		public final long collectedClassLoaders;
+		public final List<Leak> leaks;
+		public final long metaspaceUsage;
+		
+		public Report(int tracked, long collected, List<Leak> leaks, long metaspaceUsage) {
+			this.trackedClassLoaders = tracked;
+			this.collectedClassLoaders = collected;
+			this.leaks = leaks;
+			this.metaspaceUsage = metaspaceUsage;
+		}
+	}
+	
+	/**
+	 * Represents a classloader of the given project generation that has survived at least the threshold amount of
+	 * garbage collection cycles since it was closed. The culprits describe live threads that are likely to keep the
+	 * classloader reachable.
+	 * @author P.J.S. Kools
+	 */
+	public static class Leak {
+		public final String projectName;
+		public final int generation;
+		public final long survivedGcCycles;
+		public final List<String> culprits;
+		
+		public Leak(String projectName, int generation, long survivedGcCycles, List<String> culprits) {
+			this.projectName = projectName;
+			this.generation = generation;
+			this.survivedGcCycles = survivedGcCycles;
+			this.culprits = culprits;
+		}
+	}
+	
+	/**
+	 * A phantom reference to a closed classloader. The additional weak reference is cleared before the classloader
+	 * becomes phantom reachable, and allows inspecting classloaders that are still reachable.
+	 */
+	private static final class TrackedClassLoader extends PhantomReference<ClassLoader> {
+		private final WeakReference<ClassLoader> classLoaderRef;
+		private final String projectName;
+		private final int generation;
+		private final long gcCycleCount;
+		
+		private TrackedClassLoader(ClassLoader classLoader, ReferenceQueue<ClassLoader> referenceQueue,
+				String projectName, int generation, long gcCycleCount) {
+			super(classLoader, referenceQueue);
+			this.classLoaderRef = new WeakReference<ClassLoader>(classLoader);
+			this.projectName = projectName;
+			this.generation = generation;
+			this.gcCycleCount = gcCycleCount;
+		}
+	}
+}
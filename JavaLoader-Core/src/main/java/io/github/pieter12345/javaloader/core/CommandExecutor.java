@@ -2,11 +2,18 @@ package io.github.pieter12345.javaloader.core;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import io.github.pieter12345.javaloader.core.ClassLoaderLeakDetector.Leak;
+import io.github.pieter12345.javaloader.core.ClassLoaderLeakDetector.Report;
 import io.github.pieter12345.javaloader.core.JavaProject.UnloadMethod;
 import io.github.pieter12345.javaloader.core.ProjectManager.LoadAllResult;
+import io.github.pieter12345.javaloader.core.ProjectManager.PreparedRecompile;
+import io.github.pieter12345.javaloader.core.ProjectManager.PreparedRecompileAll;
 import io.github.pieter12345.javaloader.core.ProjectManager.RecompileAllResult;
 import io.github.pieter12345.javaloader.core.ProjectManager.RecompileFeedbackHandler;
 import io.github.pieter12345.javaloader.core.exceptions.CompileException;
@@ -33,8 +40,11 @@ public class CommandExecutor {
 	private final FeedbackColorizer colorizer;
 	private final int compilerFeedbackLimit;
 	
+	private final TaskScheduler taskScheduler;
+	private volatile boolean recompileInProgress = false;
+	
 	/**
-	 * Creates a new {@link CommandExecutor}.
+	 * Creates a new {@link CommandExecutor} that executes all commands synchronously.
 	 * @param projectManager - The project manager.
 	 * @param projectStateListener - The project state listener used for loading, unloading and compiling
 	 * JavaLoader projects.
@@ -48,6 +58,28 @@ public class CommandExecutor {
 	public CommandExecutor(ProjectManager projectManager, ProjectStateListener projectStateListener,
 			ExitCommandHandler exitCommandHandler, String commandPrefix, List<String> pluginAuthors, String version,
 			FeedbackColorizer colorizer, int compilerFeedbackLimit) {
+		this(projectManager, projectStateListener, exitCommandHandler, commandPrefix,
+				pluginAuthors, version, colorizer, compilerFeedbackLimit, null);
+	}
+	
+	/**
+	 * Creates a new {@link CommandExecutor}.
+	 * @param projectManager - The project manager.
+	 * @param projectStateListener - The project state listener used for loading, unloading and compiling
+	 * JavaLoader projects.
+	 * @param exitCommandHandler - The exit commamd handler or null if the exit command does not exist.
+	 * @param commandPrefix - The prefix used for commands. This will be used for giving command feedback.
+	 * @param pluginAuthors - The JavaLoader author(s).
+	 * @param version - The JavaLoader version.
+	 * @param colorizer - The colorizer, used to colorize command feedback.
+	 * @param compilerFeedbackLimit - The compile error feedback limit per compiled project.
+	 * @param taskScheduler - The task scheduler used to compile projects asynchronously in the recompile command,
+	 * or null to recompile synchronously. When non-null, the load, unload and recompile commands are rejected while
+	 * an asynchronous recompile is in progress.
+	 */
+	public CommandExecutor(ProjectManager projectManager, ProjectStateListener projectStateListener,
+			ExitCommandHandler exitCommandHandler, String commandPrefix, List<String> pluginAuthors, String version,
+			FeedbackColorizer colorizer, int compilerFeedbackLimit, TaskScheduler taskScheduler) {
 		this.projectManager = projectManager;
 		this.projectStateListener = projectStateListener;
 		this.exitCommandHandler = exitCommandHandler;
@@ -57,6 +89,7 @@ public class CommandExecutor {
 		this.version = version;
 		this.colorizer = colorizer;
 		this.compilerFeedbackLimit = compilerFeedbackLimit;
+		this.taskScheduler = taskScheduler;
 	}
 	
 	/**
@@ -94,6 +127,8 @@ public class CommandExecutor {
 							+ "\n&3    Unloads the given or all projects."
 							+ "\n&6  - " + this.commandPrefix + "load <project, *>"
 							+ "\n&3    Loads the given or all projects."
+							+ "\n&6  - " + this.commandPrefix + "leaks"
+							+ "\n&3    Displays unloaded projects that have not been garbage collected."
 							+ (this.exitCommandHandler == null ? ""
 									: "\n&6  - " + this.commandPrefix + "exit"
 									+ "\n&3    Exits JavaLoader.")).split("\n"));
@@ -127,6 +162,12 @@ public class CommandExecutor {
 									+ " given project or all projects when '*' is given."
 									+ " Projects that no longer exist will be removed."));
 							return;
+						case "leaks":
+							sender.sendMessage(MessageType.INFO, this.colorizer.colorize("&6" + this.commandPrefix
+									+ "leaks &8-&3 Displays the classloaders of unloaded projects that have"
+									+ " survived multiple garbage collection cycles, together with the threads that"
+									+ " are likely to keep them from being garbage collected."));
+							return;
 						case "exit":
 							if(this.exitCommandHandler != null) {
 							sender.sendMessage(MessageType.INFO, this.colorizer.colorize(
@@ -173,17 +214,54 @@ public class CommandExecutor {
 				return;
 			
 			case "recompile":
+				if(this.recompileInProgress) {
+					sender.sendMessage(MessageType.ERROR, "A recompile is in progress. Please try again later.");
+					return;
+				}
 				this.handleRecompileCommand(sender, cmdParts);
 				return;
 			
 			case "unload":
+				if(this.recompileInProgress) {
+					sender.sendMessage(MessageType.ERROR, "A recompile is in progress. Please try again later.");
+					return;
+				}
 				this.handleUnloadCommand(sender, cmdParts);
 				return;
 			
 			case "load":
+				if(this.recompileInProgress) {
+					sender.sendMessage(MessageType.ERROR, "A recompile is in progress. Please try again later.");
+					return;
+				}
 				this.handleLoadCommand(sender, cmdParts);
 				return;
 			
+			case "leaks":
+				
+				// "<prefix> leaks".
+				if(cmdParts.length == 1) {
+					Report report = this.projectManager.getLeakDetector().getReport();
+					List<String> messages = new ArrayList<String>();
+					messages.add("Unloaded classloaders (garbage collected/remaining): "
+							+ report.collectedClassLoaders + "/" + report.trackedClassLoaders + ".");
+					if(report.metaspaceUsage >= 0) {
+						messages.add("Metaspace usage: " + (report.metaspaceUsage / 1024) + " KiB.");
+					}
+					for(Leak leak : report.leaks) {
+						messages.add("Project \"" + leak.projectName + "\" (generation " + leak.generation
+								+ ") survived " + leak.survivedGcCycles + " garbage collection cycles.");
+						for(String culprit : leak.culprits) {
+							messages.add("    " + culprit);
+						}
+					}
+					sender.sendMessage(report.leaks.isEmpty() ? MessageType.INFO : MessageType.ERROR,
+							messages.toArray(new String[0]));
+				} else {
+					sender.sendMessage(MessageType.ERROR, "Too many arguments.");
+				}
+				return;
+			
 			case "exit":
 				if(this.exitCommandHandler != null) {
 					this.exitCommandHandler.onExitCommand();
@@ -214,24 +292,24 @@ public class CommandExecutor {
 				if(projectName.equals("*")) {
 					
 					// Recompile all projects.
-					final List<String> messages = new ArrayList<String>();
-					RecompileAllResult result = this.projectManager.recompileAllProjects(
-							new RecompileFeedbackHandler() {
+					final DeferredCommandSender feedbackSender = new DeferredCommandSender(sender);
+					final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+					final RecompileFeedbackHandler feedbackHandler = new RecompileFeedbackHandler() {
 						@Override
 						public void handleUnloadException(UnloadException e) {
-							sender.sendMessage(MessageType.ERROR, "An UnloadException occurred while unloading"
+							feedbackSender.sendMessage(MessageType.ERROR, "An UnloadException occurred while unloading"
 									+ " java project \"" + e.getProject().getName() + "\":"
 									+ (e.getCause() == null ? " " + e.getMessage() : "\n" + Utils.getStacktrace(e)));
 						}
 						@Override
 						public void handleLoadException(LoadException e) {
-							sender.sendMessage(MessageType.ERROR, "A LoadException occurred while loading"
+							feedbackSender.sendMessage(MessageType.ERROR, "A LoadException occurred while loading"
 									+ " java project \"" + e.getProject().getName() + "\":"
 									+ (e.getCause() == null ? " " + e.getMessage() : "\n" + Utils.getStacktrace(e)));
 						}
 						@Override
 						public void handleCompileException(CompileException e) {
-							sender.sendMessage(MessageType.ERROR, "A CompileException occurred while compiling"
+							feedbackSender.sendMessage(MessageType.ERROR, "A CompileException occurred while compiling"
 									+ " java project \"" + e.getProject().getName() + "\":"
 									+ (e.getCause() == null ? " " + e.getMessage() : "\n" + Utils.getStacktrace(e)));
 						}
@@ -239,43 +317,29 @@ public class CommandExecutor {
 						public void compilerFeedback(String feedback) {
 							messages.add(feedback);
 						}
-					}, this.projectStateListener);
-					
-					// Give compiler feedback.
-					if(!messages.isEmpty() && compilerFeedbackLimit > 0) {
-						String feedback = "";
+					};
+					this.runRecompile(() -> this.projectManager.prepareRecompileAllProjects(feedbackHandler),
+							(PreparedRecompileAll preparedRecompileAll) -> {
+						feedbackSender.flush();
+						RecompileAllResult result = this.projectManager.applyRecompileAllProjects(
+								preparedRecompileAll, feedbackHandler, this.projectStateListener);
 						
-						// Add at max all but one feedback string.
-						for(int i = 0; i < messages.size() - 1; i++) {
-							if(i >= compilerFeedbackLimit) {
-								feedback += (feedback.endsWith("\n") ? "" : "\n") + "... "
-										+ (messages.size() - i - 1) + " more";
-								break;
-							}
-							feedback += messages.get(i);
-						}
+						// Give compiler feedback.
+						this.sendCompilerFeedback(sender, messages);
 						
-						// Add the last feedback string. This is always "x errors".
-						feedback += (feedback.endsWith("\n") ? "" : "\n") + messages.get(messages.size() - 1);
-						
-						if(feedback.endsWith("\n")) {
-							feedback = feedback.substring(0, feedback.length() - 1);
-						}
-						feedback = feedback.replace("\t", "    ");
-						sender.sendMessage(MessageType.ERROR, "Compiler feedback:\n"
-								+ this.colorizer.colorize("&6") + feedback);
-					}
-					
-					// Give feedback.
-					sender.sendMessage(MessageType.INFO, new String[] {
-						"Recompile complete.",
-						"    Projects added: " + result.addedProjects.size(),
-						"    Projects removed: " + result.removedProjects.size(),
-						"    Projects compiled: " + result.compiledProjects.size(),
-						"    Projects unloaded: " + result.unloadedProjects.size(),
-						"    Projects loaded: " + result.loadedProjects.size(),
-						"    Projects with errors: " + result.errorProjects.size()
-					});
+						// Give feedback.
+						sender.sendMessage(MessageType.INFO, new String[] {
+							"Recompile complete.",
+							"    Projects added: " + result.addedProjects.size(),
+							"    Projects removed: " + result.removedProjects.size(),
+							"    Projects compiled: " + result.compiledProjects.size(),
+							"    Projects unloaded: " + result.unloadedProjects.size(),
+							"    Projects loaded: " + result.loadedProjects.size(),
+							"    Projects with errors: " + result.errorProjects.size()
+						});
+					}, (PreparedRecompileAll preparedRecompileAll) -> {
+						this.projectManager.discardRecompileAllProjects(preparedRecompileAll);
+					}, feedbackSender);
 				} else {
 					
 					// Get the project. Attempt to add it from the file system if it does not yet exist in the
@@ -317,61 +381,67 @@ public class CommandExecutor {
 					}
 					
 					// Recompile the project.
-					boolean success = false;
-					final List<String> messages = new ArrayList<String>();
-					try {
-						this.projectManager.recompile(project,
-								(String compilerFeedback) -> messages.add(compilerFeedback),
-								(UnloadException e) -> sender.sendMessage(MessageType.ERROR, (e.getCause() == null
+					final JavaProject recompiledProject = project;
+					final DeferredCommandSender feedbackSender = new DeferredCommandSender(sender);
+					final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+					this.runRecompile(() -> {
+						try {
+							return this.projectManager.prepareRecompile(recompiledProject,
+									(String compilerFeedback) -> messages.add(compilerFeedback));
+						} catch (CompileException e) {
+							feedbackSender.sendMessage(MessageType.ERROR, (e.getCause() == null
+									? "CompileException: " + e.getMessage() : "A CompileException occurred in java"
+									+ " project \"" + e.getProject().getName() + "\":\n" + Utils.getStacktrace(e)));
+						} catch (DepOrderViolationException e) {
+							feedbackSender.sendMessage(MessageType.ERROR, (e.getCause() == null
+									? "DepOrderViolationException: " + e.getMessage() : "A DepOrderViolationException"
+									+ " occurred in java project \"" + e.getProject().getName() + "\":\n"
+									+ Utils.getStacktrace(e)));
+						} catch (IllegalArgumentException e) {
+							throw new Error("Project is obtained from this manager, so this should be impossible.", e);
+						}
+						return null;
+					}, (PreparedRecompile preparedRecompile) -> {
+						feedbackSender.flush();
+						
+						// Apply the recompile if compilation succeeded.
+						boolean success = false;
+						if(preparedRecompile != null) {
+							try {
+								this.projectManager.applyRecompile(preparedRecompile, (UnloadException e) ->
+										sender.sendMessage(MessageType.ERROR, (e.getCause() == null
 										? "UnloadException: " + e.getMessage() : "An UnloadException occurred in java"
 										+ " project \"" + e.getProject().getName() + "\":\n"
 										+ Utils.getStacktrace(e))));
-						success = true;
-					} catch (CompileException e) {
-						sender.sendMessage(MessageType.ERROR, (e.getCause() == null
-								? "CompileException: " + e.getMessage() : "A CompileException occurred in java"
-								+ " project \"" + e.getProject().getName() + "\":\n" + Utils.getStacktrace(e)));
-					} catch (LoadException e) {
-						sender.sendMessage(MessageType.ERROR, (e.getCause() == null
-								? "LoadException: " + e.getMessage() : "A LoadException occurred in java"
-								+ " project \"" + e.getProject().getName() + "\":\n" + Utils.getStacktrace(e)));
-					} catch (DepOrderViolationException e) {
-						sender.sendMessage(MessageType.ERROR, (e.getCause() == null
-								? "DepOrderViolationException: " + e.getMessage() : "A DepOrderViolationException"
-								+ " occurred in java project \"" + e.getProject().getName() + "\":\n"
-								+ Utils.getStacktrace(e)));
-					} catch (IllegalArgumentException e) {
-						throw new Error("Project is obtained from this manager, so this should be impossible.", e);
-					}
-					
-					// Give compiler feedback.
-					if(!messages.isEmpty() && compilerFeedbackLimit > 0) {
-						String feedback = "";
-						
-						// Add at max all but one feedback string.
-						for(int i = 0; i < messages.size() - 1; i++) {
-							if(i >= compilerFeedbackLimit) {
-								feedback += (feedback.endsWith("\n") ? "" : "\n") + "... "
-										+ (messages.size() - i - 1) + " more";
-								break;
+								success = true;
+							} catch (CompileException e) {
+								sender.sendMessage(MessageType.ERROR, (e.getCause() == null
+										? "CompileException: " + e.getMessage() : "A CompileException occurred in java"
+										+ " project \"" + e.getProject().getName() + "\":\n" + Utils.getStacktrace(e)));
+							} catch (LoadException e) {
+								sender.sendMessage(MessageType.ERROR, (e.getCause() == null
+										? "LoadException: " + e.getMessage() : "A LoadException occurred in java"
+										+ " project \"" + e.getProject().getName() + "\":\n" + Utils.getStacktrace(e)));
+							} catch (DepOrderViolationException e) {
+								sender.sendMessage(MessageType.ERROR, (e.getCause() == null
+										? "DepOrderViolationException: " + e.getMessage()
+										: "A DepOrderViolationException occurred in java project \""
+										+ e.getProject().getName() + "\":\n" + Utils.getStacktrace(e)));
 							}
-							feedback += messages.get(i);
 						}
 						
-						// Add the last feedback string. This is always "x errors".
-						feedback += (feedback.endsWith("\n") ? "" : "\n") + messages.get(messages.size() - 1);
+						// Give compiler feedback.
+						this.sendCompilerFeedback(sender, messages);
 						
-						if(feedback.endsWith("\n")) {
-							feedback = feedback.substring(0, feedback.length() - 1);
+						// Send feedback.
+						sender.sendMessage(MessageType.INFO, "Recompile complete" + (!success ? " (with errors)"
+								: (preparedRecompile.isHotSwapped() ? " (hot swapped)"
+								: (preparedRecompile.isSwapped() ? " (swapped)" : ""))) + ".");
+					}, (PreparedRecompile preparedRecompile) -> {
+						if(preparedRecompile != null) {
+							this.projectManager.discardRecompile(preparedRecompile);
 						}
-						feedback = feedback.replace("\t", "    "); // Minecraft cannot display tab characters.
-						sender.sendMessage(MessageType.ERROR, "Compiler feedback:\n"
-								+ this.colorizer.colorize("&6") + feedback);
-					}
-					
-					// Send feedback.
-					sender.sendMessage(MessageType.INFO,
-							"Recompile complete" + (success ? "" : " (with errors)") + ".");
+					}, feedbackSender);
 				}
 				return;
 			}
@@ -382,6 +452,102 @@ public class CommandExecutor {
 		}
 	}
 	
+	/**
+	 * Runs a recompile that consists of a compile phase and a swap phase. Without a task scheduler, both phases run
+	 * on the current thread. Otherwise, the compile phase runs asynchronously and the swap phase is scheduled on the
+	 * main thread afterwards. If the swap phase cannot be scheduled, the compile phase result is discarded. If the
+	 * compile phase throws an exception, it is reported to the sender on the main thread instead of running the swap
+	 * phase.
+	 * @param compilePhase - The compile phase, returning the prepared recompile.
+	 * @param swapPhase - The swap phase, consuming the prepared recompile.
+	 * @param discardHandler - The handler that discards the prepared recompile when the swap phase cannot run.
+	 * @param feedbackSender - The sender that buffers feedback of the compile phase. This is flushed by the swap phase
+	 * or, if the swap phase does not run, by this method.
+	 * @param <T> - The prepared recompile type.
+	 */
+	private <T> void runRecompile(Supplier<T> compilePhase, Consumer<T> swapPhase,
+			Consumer<T> discardHandler, DeferredCommandSender feedbackSender) {
+		if(this.taskScheduler == null) {
+			swapPhase.accept(compilePhase.get());
+			return;
+		}
+		this.recompileInProgress = true;
+		try {
+			this.taskScheduler.runAsync(() -> {
+				T prepared;
+				try {
+					prepared = compilePhase.get();
+				} catch (RuntimeException | Error e) {
+					
+					// Report the exception after the buffered compile phase feedback.
+					feedbackSender.sendMessage(MessageType.ERROR, "An exception occurred while compiling:"
+							+ (e.getCause() == null ? " " + e.getMessage() : "\n" + Utils.getStacktrace(e)));
+					try {
+						this.taskScheduler.runSync(() -> {
+							this.recompileInProgress = false;
+							feedbackSender.flush();
+						});
+					} catch (RuntimeException e1) {
+						this.recompileInProgress = false;
+						feedbackSender.flush();
+					}
+					if(e instanceof Error) {
+						throw e;
+					}
+					return;
+				}
+				try {
+					this.taskScheduler.runSync(() -> {
+						try {
+							swapPhase.accept(prepared);
+						} finally {
+							this.recompileInProgress = false;
+						}
+					});
+				} catch (RuntimeException e) {
+					discardHandler.accept(prepared);
+					this.recompileInProgress = false;
+					feedbackSender.flush();
+					throw e;
+				}
+			});
+		} catch (RuntimeException e) {
+			this.recompileInProgress = false;
+			throw e;
+		}
+	}
+	
+	/**
+	 * Sends the given compiler feedback to the given sender, limited to the compiler feedback limit.
+	 * @param sender - The command sender.
+	 * @param messages - The compiler feedback messages. The last message is expected to be the "x errors" message.
+	 */
+	private void sendCompilerFeedback(CommandSender sender, List<String> messages) {
+		if(!messages.isEmpty() && this.compilerFeedbackLimit > 0) {
+			String feedback = "";
+			
+			// Add at max all but one feedback string.
+			for(int i = 0; i < messages.size() - 1; i++) {
+				if(i >= this.compilerFeedbackLimit) {
+					feedback += (feedback.endsWith("\n") ? "" : "\n") + "... "
+							+ (messages.size() - i - 1) + " more";
+					break;
+				}
+				feedback += messages.get(i);
+			}
+			
+			// Add the last feedback string. This is always "x errors".
+			feedback += (feedback.endsWith("\n") ? "" : "\n") + messages.get(messages.size() - 1);
+			
+			if(feedback.endsWith("\n")) {
+				feedback = feedback.substring(0, feedback.length() - 1);
+			}
+			feedback = feedback.replace("\t", "    "); // Minecraft cannot display tab characters.
+			sender.sendMessage(MessageType.ERROR, "Compiler feedback:\n"
+					+ this.colorizer.colorize("&6") + feedback);
+		}
+	}
+	
 	private void handleUnloadCommand(final CommandSender sender, String[] cmdParts) {
 		assert cmdParts.length > 0 && cmdParts[0].equalsIgnoreCase("unload");
 		switch(cmdParts.length) {
@@ -547,6 +713,73 @@ public class CommandExecutor {
 		void sendMessage(MessageType messageType, String... messages);
 	}
 	
+	/**
+	 * Used for running tasks asynchronously and on the main thread, where the main thread is the thread that loads
+	 * and unloads projects.
+	 * @author P.J.S. Kools
+	 */
+	public static interface TaskScheduler {
+		
+		/**
+		 * Runs the given task asynchronously.
+		 * @param task - The task to run.
+		 */
+		void runAsync(Runnable task);
+		
+		/**
+		 * Runs the given task on the main thread.
+		 * @param task - The task to run.
+		 * @throws RuntimeException When the task could not be scheduled.
+		 */
+		void runSync(Runnable task);
+	}
+	
+	/**
+	 * A {@link CommandSender} that buffers all messages until it is flushed, after which messages are passed to the
+	 * wrapped sender directly. This is used to only send feedback of asynchronous tasks from the main thread.
+	 * @author P.J.S. Kools
+	 */
+	private static final class DeferredCommandSender implements CommandSender {
+		private final CommandSender sender;
+		private List<Object[]> bufferedMessages = new ArrayList<Object[]>();
+		
+		private DeferredCommandSender(CommandSender sender) {
+			this.sender = sender;
+		}
+		
+		@Override
+		public void sendMessage(MessageType messageType, String message) {
+			this.sendMessage(messageType, new String[] {message});
+		}
+		
+		@Override
+		public void sendMessage(MessageType messageType, String... messages) {
+			synchronized(this) {
+				if(this.bufferedMessages != null) {
+					this.bufferedMessages.add(new Object[] {messageType, messages});
+					return;
+				}
+			}
+			this.sender.sendMessage(messageType, messages);
+		}
+		
+		/**
+		 * Sends all buffered messages to the wrapped sender and stops buffering.
+		 */
+		private void flush() {
+			List<Object[]> messages;
+			synchronized(this) {
+				messages = this.bufferedMessages;
+				this.bufferedMessages = null;
+			}
+			if(messages != null) {
+				for(Object[] message : messages) {
+					this.sender.sendMessage((MessageType) message[0], (String[]) message[1]);
+				}
+			}
+		}
+	}
+	
 	/**
 	 * Used for colorizing feedback messages.
 	 * @author P.J.S. Kools
@@ -0,0 +1,132 @@
+package io.github.pieter12345.javaloader.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * HotSwapAgent class.
+ * Java agent that provides the {@link Instrumentation} instance that is used to redefine the classes of loaded
+ * projects in place. The agent can be started using the "-javaagent:JavaLoader.jar" JVM argument, or be attached
+ * to the running JVM using {@link #attach()}. Self-attaching requires the "jdk.attach" module (or "tools.jar" on
+ * Java 8) and, on Java 9 and later, the "-Djdk.attach.allowAttachSelf=true" JVM argument.
+ * @author P.J.S. Kools
+ */
+public final class HotSwapAgent {
+	
+	// Variables & Constants.
+	private static volatile Instrumentation instrumentation = null;
+	
+	private HotSwapAgent() {
+	}
+	
+	/**
+	 * Entry point when the agent is started using the "-javaagent" JVM argument.
+	 * @param args - The agent arguments.
+	 * @param inst - The instrumentation instance.
+	 */
+	public static void premain(String args, Instrumentation inst) {
+		instrumentation = inst;
+	}
+	
+	/**
+	 * Entry point when the agent is attached to a running JVM.
+	 * @param args - The agent arguments.
+	 * @param inst - The instrumentation instance.
+	 */
+	public static void agentmain(String args, Instrumentation inst) {
+		instrumentation = inst;
+	}
+	
+	/**
+	 * Gets the instrumentation instance of the agent. When this class has been loaded by a different classloader
+	 * than the system classloader (for example, when JavaLoader runs as a plugin), the instance of the agent that
+	 * was started by the system classloader is returned.
+	 * @return The instrumentation instance, or {@code null} if the agent has not been started.
+	 */
+	public static Instrumentation getInstrumentation() {
+		Instrumentation inst = instrumentation;
+		if(inst == null && HotSwapAgent.class.getClassLoader() != ClassLoader.getSystemClassLoader()) {
+			try {
+				Class<?> systemAgentClass = ClassLoader.getSystemClassLoader().loadClass(HotSwapAgent.class.getName());
+				if(systemAgentClass != HotSwapAgent.class) {
+					inst = (Instrumentation) systemAgentClass.getMethod("getInstrumentation").invoke(null);
+					instrumentation = inst;
+				}
+			} catch (ReflectiveOperationException | ClassCastException e) {
+				return null;
+			}
+		}
+		return inst;
+	}
+	
+	/**
+	 * Attaches the agent to the running JVM if it has not been started yet.
+	 * The agent is attached from a temporary .jar file that contains this class, which is added to the system
+	 * classpath by the JVM.
+	 * @return True if the agent has been started, false if attaching is not supported or not allowed by the JVM.
+	 */
+	public static synchronized boolean attach() {
+		if(getInstrumentation() != null) {
+			return true;
+		}
+		File agentJar = null;
+		try {
+			
+			// Create the agent .jar file.
+			agentJar = File.createTempFile("javaloader-agent", ".jar");
+			Manifest manifest = new Manifest();
+			manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+			manifest.getMainAttributes().putValue("Agent-Class", HotSwapAgent.class.getName());
+			manifest.getMainAttributes().putValue("Can-Redefine-Classes", "true");
+			String classFilePath = HotSwapAgent.class.getName().replace('.', '/') + ".class";
+			try(JarOutputStream out = new JarOutputStream(Files.newOutputStream(agentJar.toPath()), manifest);
+					InputStream in = HotSwapAgent.class.getResourceAsStream("/" + classFilePath)) {
+				if(in == null) {
+					return false;
+				}
+				out.putNextEntry(new JarEntry(classFilePath));
+				byte[] buffer = new byte[4096];
+				int count;
+				while((count = in.read(buffer)) != -1) {
+					out.write(buffer, 0, count);
+				}
+				out.closeEntry();
+			}
+			
+			// Attach to the running JVM. Reflection is used since the attach API is not available on every JVM.
+			String jvmName = ManagementFactory.getRuntimeMXBean().getName(); // Format: "pid@hostname".
+			String pid = jvmName.substring(0, jvmName.indexOf('@'));
+			Class<?> vmClass = Class.forName("com.sun.tools.attach.VirtualMachine");
+			Object vm = vmClass.getMethod("attach", String.class).invoke(null, pid);
+			try {
+				vmClass.getMethod("loadAgent", String.class).invoke(vm, agentJar.getAbsolutePath());
+			} finally {
+				vmClass.getMethod("detach").invoke(vm);
+			}
+		} catch (IOException | ReflectiveOperationException | RuntimeException e) {
+			return false;
+		} finally {
+			if(agentJar != null) {
+				agentJar.deleteOnExit();
+			}
+		}
+		return getInstrumentation() != null;
+	}
+	
+	/**
+	 * Gets whether the agent has been started and the JVM supports redefining classes.
+	 * @return True if classes can be redefined, false otherwise.
+	 */
+	public static boolean isRedefineClassesSupported() {
+		Instrumentation inst = getInstrumentation();
+		return inst != null && inst.isRedefineClassesSupported();
+	}
+}
@@ -57,6 +57,29 @@ public abstract class JavaLoaderProject {
 		return this.project.isLoaded();
 	}
 	
+	/**
+	 * Registers the given implementation of the given service interface for this project. The implementation is
+	 * unregistered automatically when this project unloads. This is typically called from {@link #onLoad()}.
+	 * @param serviceInterface - The service interface, which has to be defined outside of this project.
+	 * @param implementation - The implementation.
+	 * @see ServiceRegistry#registerService(JavaProject, Class, Object)
+	 */
+	public final <T> void registerService(Class<T> serviceInterface, T implementation) {
+		this.project.getProjectManager().getServiceRegistry().registerService(
+				this.project, serviceInterface, implementation);
+	}
+	
+	/**
+	 * Gets a proxy for the given service interface that delegates to the implementation registered by the providing
+	 * project. The proxy remains usable when the providing project reloads.
+	 * @param serviceInterface - The service interface.
+	 * @return The proxy.
+	 * @see ServiceRegistry#getService(Class)
+	 */
+	public final <T> T getService(Class<T> serviceInterface) {
+		return this.project.getProjectManager().getServiceRegistry().getService(serviceInterface);
+	}
+	
 	/**
 	 * onLoad method.
 	 * This method is called when the project is loaded.
@@ -71,6 +94,18 @@ public abstract class JavaLoaderProject {
 	public void onUnload() {
 	}
 	
+	/**
+	 * onPreActivate method.
+	 * This method is called on the new instance of the project when the project is reloaded using a swap (see
+	 * {@link ProjectManager#setSwapReloadEnabled(boolean)}), while the previous instance is still loaded. It is
+	 * called before this instance has been initialized, so the given project has to be used instead of the methods
+	 * of this class. Throwing an exception aborts the swap, leaving the previous instance loaded.
+	 * @param project - The project that this instance will be loaded for.
+	 * @throws Exception If the project cannot be loaded.
+	 */
+	public void onPreActivate(JavaProject project) throws Exception {
+	}
+	
 	// Abstract methods.
 	
 	/**
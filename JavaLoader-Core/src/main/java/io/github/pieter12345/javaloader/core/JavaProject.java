@@ -4,20 +4,43 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.instrument.ClassDefinition;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.Stack;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
 import javax.tools.JavaCompiler.CompilationTask;
 import javax.tools.StandardJavaFileManager;
-import javax.tools.ToolProvider;
+import javax.tools.StandardLocation;
 
+import io.github.pieter12345.javaloader.core.ProjectManager.ClassPreloadMode;
+import io.github.pieter12345.javaloader.core.classfile.ClassFileInfo;
+import io.github.pieter12345.javaloader.core.compiler.BuildCache;
+import io.github.pieter12345.javaloader.core.compiler.BuildInfo;
+import io.github.pieter12345.javaloader.core.compiler.ClassPack;
+import io.github.pieter12345.javaloader.core.compiler.CompilerService;
+import io.github.pieter12345.javaloader.core.compiler.ForkedCompilerService;
+import io.github.pieter12345.javaloader.core.compiler.IncrementalCompileState;
+import io.github.pieter12345.javaloader.core.compiler.IncrementalCompileState.SourceEntry;
+import io.github.pieter12345.javaloader.core.compiler.MemoryClassFileManager;
+import io.github.pieter12345.javaloader.core.compiler.MemoryClassStore;
+import io.github.pieter12345.javaloader.core.compiler.OutputRecordingFileManager;
 import io.github.pieter12345.javaloader.core.dependency.Dependency;
 import io.github.pieter12345.javaloader.core.dependency.DependencyScope;
 import io.github.pieter12345.javaloader.core.dependency.FileDependency;
@@ -42,15 +65,22 @@ public class JavaProject {
 	private final String projectName;
 	private File binDir;
 	private File srcDir;
-	private JavaProjectClassLoader classLoader = null;
-	private JavaLoaderProject projectInstance = null;
-	private List<Dependency> dependencies = null;
-	private boolean isLoaded = false;
-	private boolean isDisabled;
-	private String version = null;
+	private volatile JavaProjectClassLoader classLoader = null;
+	private final List<LibraryClassLoader> libraryClassLoaders = new ArrayList<LibraryClassLoader>();
+	private volatile JavaLoaderProject projectInstance = null;
+	private volatile List<Dependency> dependencies = null;
+	private volatile boolean isLoaded = false;
+	private volatile boolean isDisabled;
+	private volatile String version = null;
 	private final ProjectManager manager;
 	private final ProjectDependencyParser dependencyParser;
 	private final ProjectStateListener stateListener;
+	private volatile MemoryClassStore classStore = null;
+	private Future<?> binDirWriteFuture = null;
+	private String abiFingerprint = null;
+	private int generation = 0;
+	private List<String> usedClassNames = null; // Project classes that were loaded by the previous generation.
+	private PreparedLoad preparedLoad = null;
 	
 	/**
 	 * Creates a new JavaProject with the given parameters and loads its compiled dependencies if available.
@@ -94,6 +124,29 @@ public class JavaProject {
 	 */
 	public void compile(Writer feedbackWriter) throws CompileException {
 		
+		// Finish writing the previously compiled classes, since the bin directory might be removed.
+		this.awaitBinDirWrite();
+		this.abiFingerprint = null;
+		
+		// Compile the project in its bin directory and apply the result.
+		this.applyCompileOutput(this.compile(
+				this.binDir, Collections.<JavaProject, CompileOutput>emptyMap(), feedbackWriter));
+	}
+	
+	/**
+	 * Compiles the JavaProject in the given bin directory, without changing the state of this project. Project
+	 * dependencies that have been compiled by the caller, but whose output has not yet been applied, are compiled
+	 * against using their compile output instead of their bin directory.
+	 * @param binDir - The bin directory to compile in.
+	 * @param dependencyOutputs - The compile outputs of dependency projects that have not yet been applied.
+	 * @param feedbackWriter - A Writer to write all compile errors/warnings from the java compiler to.
+	 *  If this is null, System.err will be used.
+	 * @return The compile output.
+	 * @throws CompileException If an Exception occurs while compiling the project.
+	 */
+	private CompileOutput compile(File binDir, Map<JavaProject, CompileOutput> dependencyOutputs,
+			Writer feedbackWriter) throws CompileException {
+		
 		// Disallow compiling if the project is disabled.
 		if(this.isDisabled) {
 			throw new CompileException(this, "Project is disabled.");
@@ -111,7 +164,8 @@ public class JavaProject {
 				// Handle project dependencies.
 				if(dependency instanceof ProjectDependency) {
 					ProjectDependency projectDependency = (ProjectDependency) dependency;
-					File file = projectDependency.getFile();
+					CompileOutput dependencyOutput = getCompileOutput(projectDependency, dependencyOutputs);
+					File file = (dependencyOutput != null ? dependencyOutput.binDir : projectDependency.getFile());
 					
 					// Validate that the project exists in the project manager.
 					if(file == null) {
@@ -148,7 +202,7 @@ public class JavaProject {
 			}
 			
 			// List all .java files in the source directory.
-			ArrayList<File> files = new ArrayList<File>();
+			List<File> files = new ArrayList<File>();
 			Stack<File> dirStack = new Stack<File>();
 			dirStack.push(this.srcDir);
 			while(!dirStack.isEmpty()) {
@@ -167,68 +221,145 @@ public class JavaProject {
 				throw new CompileException(this, "No sourcefiles found.");
 			}
 			
-			// Remove the bin directory.
-			if(this.binDir.exists() && !Utils.removeFile(this.binDir)) {
-				throw new CompileException(this, "Unable to remove bin directory at: " + this.binDir.getAbsolutePath());
+			// Get the compiler service. Projects without a project manager use a temporary one.
+			CompilerService compilerService = (this.manager == null ? null : this.manager.getCompilerService());
+			if(compilerService == null) {
+				compilerService = new CompilerService();
 			}
-			
-			// Create the new bin directory.
-			if(!this.binDir.mkdir()) {
-				throw new CompileException(this, "Unable to create bin directory at: " + this.binDir.getAbsolutePath());
+			JavaCompiler compiler = compilerService.getCompiler();
+			if(compiler == null) {
+				throw new CompileException(this, "No java compiler available. This plugin requires a JDK to run on.");
 			}
 			
-			// Get the name of the .jar file of this plugin
-			// (Using the JavaLoaderProject class because that one is required for all projects).
-			java.security.CodeSource codeSource = JavaLoaderProject.class.getProtectionDomain().getCodeSource();
-			if(codeSource == null || codeSource.getLocation().getFile().isEmpty()) {
+			// Get the platform classpath, containing the .jar file of this plugin.
+			List<File> platformClassPath = compilerService.getPlatformClassPath();
+			if(platformClassPath == null) {
 				throw new CompileException(this, "Unable to include this"
 						+ " plugins .jar file to the classpath because the CodeSource returned null.");
 			}
-			String pluginJarFilePath = new File(codeSource.getLocation().toURI()).getAbsolutePath();
 			
 			// Get the complete classpath (including the binDir and passed classpath entries such as jar file paths).
-			String classpath = System.getProperty("java.class.path") + File.pathSeparatorChar + pluginJarFilePath;
-			for(File dependencyFile : dependencyFiles) {
-				classpath = classpath + File.pathSeparatorChar + dependencyFile.getAbsolutePath();
-			}
+			List<File> classPath = new ArrayList<File>(platformClassPath);
+			classPath.addAll(dependencyFiles);
 			
 			// Create the compiler options array.
 			ArrayList<String> options = new ArrayList<String>();
-			options.add("-classpath");
-			options.add(classpath);
-			options.add("-d");
-			options.add(this.binDir.getAbsolutePath());
 			options.add("-Xlint:deprecation");
 			
-			// Compile the files.
-			JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-			if(compiler == null) {
-				throw new CompileException(this, "No java compiler available. This plugin requires a JDK to run on.");
+			// Reuse the previous output if the inputs and the ABI of all dependency projects are unchanged.
+			boolean abiAware = (this.manager != null && this.manager.isAbiAwareRecompilationEnabled());
+			String buildInputsHash = null;
+			if(abiAware) {
+				buildInputsHash = this.computeBuildInputsHash(
+						compiler, options, platformClassPath, dependencies, dependenciesFile);
+				String prevAbiFingerprint =
+						this.reusePreviousOutput(binDir, buildInputsHash, dependencies, dependencyOutputs);
+				if(prevAbiFingerprint != null) {
+					return new CompileOutput(binDir, dependencies, this.classStore, prevAbiFingerprint);
+				}
 			}
-			StandardJavaFileManager fileManager =
-					compiler.getStandardFileManager(null, Locale.US, StandardCharsets.UTF_8);
-			CompilationTask compileTask = compiler.getTask(feedbackWriter, fileManager,
-					null, options, null, fileManager.getJavaFileObjects(files.toArray(new File[0])));
-			compileTask.setProcessors(Collections.emptySet());
-			try {
-				fileManager.close();
-			} catch (IOException e) {
-				// Never happens.
-				throw new Error(e);
+			
+			// Restore the bin directory from the build cache if this project has been compiled with the same inputs.
+			BuildCache buildCache = (this.manager == null ? null : this.manager.getBuildCache());
+			String buildCacheKey = null;
+			if(buildCache != null) {
+				buildCacheKey = this.computeBuildCacheKey(buildCache,
+						compiler, options, platformClassPath, dependencies, dependencyOutputs, dependenciesFile);
+				if(buildCache.restore(buildCacheKey, binDir)) {
+					return new CompileOutput(binDir, dependencies, null, null);
+				}
+			}
+			
+			// Prepare the bin directory for an incremental compile if possible.
+			// This fills the bin directory with the previous output and returns the sources that have to be compiled.
+			boolean inMemory = (this.manager != null && this.manager.isInMemoryCompilationEnabled());
+			IncrementalCompileState incrementalState = null;
+			boolean fullCompile = true;
+			if(!inMemory && this.manager != null && this.manager.isIncrementalCompilationEnabled()) {
+				incrementalState = new IncrementalCompileState(
+						IncrementalCompileState.computeClasspathFingerprint(platformClassPath, dependencyFiles));
+				List<File> recompileFiles = this.prepareIncrementalCompile(binDir, incrementalState);
+				if(recompileFiles != null) {
+					files = recompileFiles;
+					classPath.add(binDir);
+					fullCompile = false;
+				}
+			}
+			
+			// Remove and recreate the bin directory if the project has to be compiled fully.
+			if(fullCompile) {
+				
+				// Remove the bin directory.
+				if(binDir.exists() && !Utils.removeFile(binDir)) {
+					throw new CompileException(this,
+							"Unable to remove bin directory at: " + binDir.getAbsolutePath());
+				}
+				
+				// Create the new bin directory.
+				if(!binDir.mkdir()) {
+					throw new CompileException(this,
+							"Unable to create bin directory at: " + binDir.getAbsolutePath());
+				}
+			}
+			
+			// Compile the files in a forked compile worker if available.
+			ForkedCompilerService forkedCompilerService =
+					(this.manager == null ? null : this.manager.getForkedCompilerService());
+			MemoryClassStore memoryClassStore = new MemoryClassStore();
+			Map<File, Set<String>> outputClassNames = new HashMap<File, Set<String>>();
+			boolean success = true;
+			if(forkedCompilerService != null) {
+				if(!files.isEmpty()) {
+					success = forkedCompilerService.compile(options, classPath, binDir, files, feedbackWriter,
+							(inMemory ? memoryClassStore : null), (inMemory ? getDependencyClassStores(dependencies,
+							dependencyOutputs) : Collections.<MemoryClassStore>emptyList()), outputClassNames);
+				}
+			} else {
+				success = this.compileInProcess(compilerService, options, classPath, binDir, files,
+						getDependencyClassStores(dependencies, dependencyOutputs), feedbackWriter,
+						(inMemory ? memoryClassStore : null), outputClassNames);
+			}
+			
+			// Update the fingerprint store with the compiled sources.
+			if(incrementalState != null) {
+				this.updateIncrementalState(binDir, incrementalState, files, outputClassNames, success);
 			}
-			boolean success = compileTask.call();
 			if(!success) {
 				throw new CompileException(this, "Javac compile unsuccessfull.");
 			}
 			
-			// Compilation succeeded, so store the dependencies and copy them into the bin directory.
-			this.dependencies = dependencies;
+			// Compilation succeeded, so copy the dependencies into the bin directory.
+			// Classes compiled in memory are written to the bin directory when the project is loaded.
+			MemoryClassStore classStore = (inMemory ? memoryClassStore : null);
 			if(dependenciesFile.exists()) {
 				Files.copy(dependenciesFile.toPath(),
-						new File(this.binDir.getAbsoluteFile(), "dependencies.txt").toPath(),
+						new File(binDir.getAbsoluteFile(), "dependencies.txt").toPath(),
 						StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
 			}
 			
+			// Store the inputs hash and the ABI fingerprints of this project and its dependency projects.
+			String abiFingerprint = null;
+			if(abiAware) {
+				abiFingerprint = BuildInfo.computeAbiFingerprint(binDir, classStore);
+				BuildInfo buildInfo = new BuildInfo(buildInputsHash, abiFingerprint);
+				buildInfo.getDependencyAbiFingerprints().putAll(
+						getDependencyAbiFingerprints(dependencies, dependencyOutputs));
+				buildInfo.write(binDir);
+			}
+			
+			// Pack the bin directory, or remove a pack that might have been copied from the previous output.
+			if(!inMemory && this.manager != null && this.manager.isPackedOutputEnabled()) {
+				ClassPack.write(binDir);
+			} else {
+				ClassPack.delete(binDir);
+			}
+			
+			// Store the compile output in the build cache.
+			if(buildCache != null) {
+				this.storeInBuildCache(buildCache, buildCacheKey, binDir, classStore);
+			}
+			return new CompileOutput(binDir, dependencies, classStore, abiFingerprint);
+			
 		} catch (Exception e) {
 			if(e instanceof CompileException) {
 				throw (CompileException) e;
@@ -245,6 +376,29 @@ public class JavaProject {
 	 */
 	public void compile(CompilerFeedbackHandler feedbackHandler) throws CompileException {
 		
+		// Finish writing the previously compiled classes, since the bin directory might be removed.
+		this.awaitBinDirWrite();
+		this.abiFingerprint = null;
+		
+		// Compile the project in its bin directory and apply the result.
+		this.applyCompileOutput(this.compile(
+				this.binDir, Collections.<JavaProject, CompileOutput>emptyMap(), feedbackHandler));
+	}
+	
+	/**
+	 * Compiles the JavaProject in the given bin directory, without changing the state of this project. The returned
+	 * output can be applied to this project using {@link #applyCompileOutput(CompileOutput)} once the given bin
+	 * directory has replaced the bin directory of this project.
+	 * @param binDir - The bin directory to compile in.
+	 * @param dependencyOutputs - The compile outputs of dependency projects that have not yet been applied.
+	 * These are compiled against instead of the bin directories and class stores of those projects.
+	 * @param feedbackHandler - A feedback handler to send all compile errors/warnings from the java compiler to.
+	 * @return The compile output.
+	 * @throws CompileException If an Exception occurs while compiling the project.
+	 */
+	CompileOutput compile(File binDir, Map<JavaProject, CompileOutput> dependencyOutputs,
+			CompilerFeedbackHandler feedbackHandler) throws CompileException {
+		
 		// Create a writer that divides compiler feedback into a list of warnings/errors.
 		final Writer writer = new Writer() {
 			private String buff = "";
@@ -280,8 +434,9 @@ public class JavaProject {
 		
 		// Perform the compile.
 		CompileException ex = null;
+		CompileOutput output = null;
 		try {
-			this.compile(writer);
+			output = this.compile(binDir, dependencyOutputs, writer);
 		} catch (CompileException e) {
 			ex = e;
 		}
@@ -297,6 +452,7 @@ public class JavaProject {
 		if(ex != null) {
 			throw ex;
 		}
+		return output;
 	}
 	
 	/**
@@ -306,7 +462,571 @@ public class JavaProject {
 	public static interface CompilerFeedbackHandler {
 		void compilerFeedback(String feedback);
 	}
-
+	
+	/**
+	 * Prepares the bin directory for an incremental compile. The fingerprint store of the last successful compile is
+	 * read from the "bin" directory and compared to the current sources and classpath. If an incremental compile is
+	 * possible, the previous output is copied into the bin directory (when compiling into a different directory), the
+	 * outputs of the sources that have to be recompiled are removed and the given state is filled with the entries
+	 * of the sources that are kept.
+	 * @param binDir - The bin directory to compile in.
+	 * @param state - The new state, containing the current classpath fingerprint.
+	 * @return The source files that have to be compiled, or {@code null} if the project has to be compiled fully.
+	 * @throws IOException If an I/O error occurs while reading the sources or copying the previous output.
+	 * @throws CompileException If the bin directory could not be created.
+	 */
+	private List<File> prepareIncrementalCompile(File binDir,
+			IncrementalCompileState state) throws IOException, CompileException {
+		
+		// Read the fingerprint store of the last successful compile.
+		File prevBinDir = new File(this.projectDir.getAbsoluteFile(), "bin");
+		IncrementalCompileState prevState = IncrementalCompileState.read(prevBinDir);
+		if(prevState == null || !prevState.getClasspathFingerprint().equals(state.getClasspathFingerprint())) {
+			return null;
+		}
+		
+		// Read and hash the current sources.
+		Map<String, File> sourceFiles = new HashMap<String, File>();
+		IncrementalCompileState.listFiles(this.srcDir, "", ".java", sourceFiles);
+		Map<String, String> sourceHashes = new HashMap<String, String>();
+		Map<String, String> sourceTexts = new HashMap<String, String>();
+		for(Entry<String, File> sourceFile : sourceFiles.entrySet()) {
+			byte[] bytes = Files.readAllBytes(sourceFile.getValue().toPath());
+			sourceHashes.put(sourceFile.getKey(), IncrementalCompileState.hash(bytes));
+			sourceTexts.put(sourceFile.getKey(), new String(bytes, StandardCharsets.UTF_8));
+		}
+		
+		// Determine which sources have to be recompiled.
+		Set<String> recompileSet = prevState.getRecompileSet(sourceHashes, sourceTexts);
+		
+		// Copy the previous output into the bin directory when compiling into a different directory.
+		if(!prevBinDir.equals(binDir.getAbsoluteFile())) {
+			if(binDir.exists() && !Utils.removeFile(binDir)) {
+				throw new CompileException(this, "Unable to remove bin directory at: " + binDir.getAbsolutePath());
+			}
+			if(!binDir.mkdir()) {
+				throw new CompileException(this, "Unable to create bin directory at: " + binDir.getAbsolutePath());
+			}
+			for(File file : prevBinDir.listFiles()) {
+				Utils.copyFile(file, binDir);
+			}
+		}
+		
+		// Remove the outputs of recompiled and removed sources and keep the state of the other sources.
+		// Recompiled sources are marked as not compiled until the compile succeeds.
+		for(Entry<String, SourceEntry> prevEntry : prevState.getSources().entrySet()) {
+			String sourcePath = prevEntry.getKey();
+			boolean recompile = recompileSet.contains(sourcePath);
+			if(recompile || !sourceHashes.containsKey(sourcePath)) {
+				for(String className : prevEntry.getValue().getClassNames()) {
+					new File(binDir, className.replace('.', '/') + ".class").delete();
+				}
+			}
+			if(sourceHashes.containsKey(sourcePath)) {
+				if(recompile) {
+					SourceEntry entry = new SourceEntry("");
+					entry.getClassNames().addAll(prevEntry.getValue().getClassNames());
+					state.getSources().put(sourcePath, entry);
+				} else {
+					state.getSources().put(sourcePath, prevEntry.getValue());
+				}
+			}
+		}
+		
+		// Remove the copied fingerprint store, so that a failing compile cannot leave a store that does not match
+		// the output.
+		new File(binDir, IncrementalCompileState.STATE_FILE_NAME).delete();
+		
+		// Return the sources that have to be recompiled.
+		List<File> files = new ArrayList<File>();
+		for(String sourcePath : recompileSet) {
+			files.add(sourceFiles.get(sourcePath));
+		}
+		return files;
+	}
+	
+	/**
+	 * Compiles the given files in this JVM, using a warm file manager from the given compiler service.
+	 * @param compilerService - The compiler service.
+	 * @param options - The compiler options.
+	 * @param classPath - The classpath.
+	 * @param binDir - The bin directory to compile in.
+	 * @param files - The source files to compile.
+	 * @param dependencyClassStores - The in-memory class stores of the project dependencies.
+	 * @param feedbackWriter - The writer to write compiler feedback to.
+	 * @param memoryClassStore - The store to put the compiled classes in, or {@code null} to write them to the bin
+	 * directory.
+	 * @param outputClassNames - The map to put the generated class names per source file in when the classes are
+	 * written to the bin directory.
+	 * @return True if the compile succeeded, false otherwise.
+	 * @throws IOException If an I/O error occurs while setting up the file manager.
+	 */
+	private boolean compileInProcess(CompilerService compilerService, List<String> options, List<File> classPath,
+			File binDir, List<File> files, List<MemoryClassStore> dependencyClassStores, Writer feedbackWriter,
+			MemoryClassStore memoryClassStore, Map<File, Set<String>> outputClassNames) throws IOException {
+		StandardJavaFileManager fileManager = compilerService.borrowFileManager(classPath);
+		OutputRecordingFileManager<StandardJavaFileManager> recordingFileManager =
+				new OutputRecordingFileManager<StandardJavaFileManager>(fileManager);
+		boolean success = true;
+		try {
+			fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+			fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(binDir));
+			JavaFileManager taskFileManager = recordingFileManager;
+			if(memoryClassStore != null) {
+				taskFileManager = new MemoryClassFileManager<StandardJavaFileManager>(
+						fileManager, memoryClassStore, dependencyClassStores);
+			}
+			if(!files.isEmpty()) {
+				CompilationTask compileTask = compilerService.getCompiler().getTask(feedbackWriter, taskFileManager,
+						null, options, null, fileManager.getJavaFileObjects(files.toArray(new File[0])));
+				compileTask.setProcessors(Collections.emptySet());
+				success = compileTask.call();
+			}
+		} finally {
+			compilerService.returnFileManager(fileManager);
+		}
+		for(File file : files) {
+			outputClassNames.put(file.getAbsoluteFile(), recordingFileManager.getOutputClassNames(file));
+		}
+		return success;
+	}
+	
+	/**
+	 * Updates the given fingerprint store with the result of a compile and writes it to the bin directory.
+	 * @param binDir - The bin directory that has been compiled in.
+	 * @param state - The state to update.
+	 * @param compiledFiles - The source files that have been compiled.
+	 * @param outputClassNames - The names of the generated classes per compiled source file.
+	 * @param success - Whether the compile was successful. Compiled sources are marked as not compiled on failure.
+	 * @throws IOException If an I/O error occurs while reading the compiled classes or writing the store.
+	 */
+	private void updateIncrementalState(File binDir, IncrementalCompileState state, List<File> compiledFiles,
+			Map<File, Set<String>> outputClassNames, boolean success) throws IOException {
+		
+		// Put the compiled sources in the state.
+		String srcDirPath = this.srcDir.getAbsoluteFile().toURI().getPath();
+		Map<String, SourceEntry> compiledEntries = new HashMap<String, SourceEntry>();
+		for(File file : compiledFiles) {
+			String sourcePath = file.getAbsoluteFile().toURI().getPath().substring(srcDirPath.length());
+			SourceEntry entry = new SourceEntry(success
+					? IncrementalCompileState.hash(Files.readAllBytes(file.toPath())) : "");
+			Set<String> classNames = outputClassNames.get(file.getAbsoluteFile());
+			if(classNames != null) {
+				entry.getClassNames().addAll(classNames);
+			}
+			SourceEntry prevEntry = state.getSources().get(sourcePath);
+			if(prevEntry != null && !success) {
+				entry.getClassNames().addAll(prevEntry.getClassNames());
+			}
+			state.getSources().put(sourcePath, entry);
+			compiledEntries.put(sourcePath, entry);
+		}
+		
+		// Store the project classes that are referenced, extended or implemented by the compiled classes.
+		if(success) {
+			Set<String> projectClassNames = new HashSet<String>();
+			for(SourceEntry entry : state.getSources().values()) {
+				projectClassNames.addAll(entry.getClassNames());
+			}
+			for(SourceEntry entry : compiledEntries.values()) {
+				for(String className : entry.getClassNames()) {
+					File classFile = new File(binDir, className.replace('.', '/') + ".class");
+					if(!classFile.isFile()) {
+						continue;
+					}
+					ClassFileInfo classInfo = ClassFileInfo.parse(classFile);
+					for(String refClassName : classInfo.getReferencedClassNames()) {
+						if(projectClassNames.contains(refClassName) && !entry.getClassNames().contains(refClassName)) {
+							entry.getReferencedClassNames().add(refClassName);
+						}
+					}
+					List<String> superClassNames = new ArrayList<String>(classInfo.getInterfaceNames());
+					superClassNames.add(classInfo.getSuperName());
+					for(String superClassName : superClassNames) {
+						if(projectClassNames.contains(superClassName)
+								&& !entry.getClassNames().contains(superClassName)) {
+							entry.getSuperClassNames().add(superClassName);
+						}
+					}
+				}
+			}
+		}
+		
+		// Write the state.
+		state.write(binDir);
+	}
+	
+	/**
+	 * Gets the compile output of the given project dependency from the given compile outputs.
+	 * @param dependency - The project dependency.
+	 * @param dependencyOutputs - The compile outputs of dependency projects that have not yet been applied.
+	 * @return The compile output, or {@code null} if the dependency project does not have one.
+	 */
+	private static CompileOutput getCompileOutput(
+			ProjectDependency dependency, Map<JavaProject, CompileOutput> dependencyOutputs) {
+		JavaProject project = dependency.getProject();
+		return (project == null ? null : dependencyOutputs.get(project));
+	}
+	
+	/**
+	 * Gets the in-memory class stores of the given project dependencies that have been compiled in memory.
+	 * @param dependencies - The dependencies.
+	 * @param dependencyOutputs - The compile outputs of dependency projects that have not yet been applied.
+	 * @return The class stores of the project dependencies that have one.
+	 */
+	private static List<MemoryClassStore> getDependencyClassStores(
+			List<Dependency> dependencies, Map<JavaProject, CompileOutput> dependencyOutputs) {
+		List<MemoryClassStore> classStores = new ArrayList<MemoryClassStore>();
+		for(Dependency dependency : dependencies) {
+			if(dependency instanceof ProjectDependency) {
+				JavaProject project = ((ProjectDependency) dependency).getProject();
+				CompileOutput output = getCompileOutput((ProjectDependency) dependency, dependencyOutputs);
+				MemoryClassStore classStore = (output != null ? output.classStore
+						: (project == null ? null : project.classStore));
+				if(classStore != null) {
+					classStores.add(classStore);
+				}
+			}
+		}
+		return classStores;
+	}
+	
+	/**
+	 * Computes the hash of the inputs of this project that are not covered by the ABI fingerprints of its dependency
+	 * projects. Classpath and dependency jar files are identified by their path, size and last modified time.
+	 * @param compiler - The compiler.
+	 * @param options - The compiler options.
+	 * @param platformClassPath - The platform classpath.
+	 * @param dependencies - The parsed dependencies.
+	 * @param dependenciesFile - The dependencies file.
+	 * @return The inputs hash.
+	 * @throws IOException If an I/O error occurs while reading one of the inputs.
+	 */
+	private String computeBuildInputsHash(JavaCompiler compiler, List<String> options,
+			List<File> platformClassPath, List<Dependency> dependencies, File dependenciesFile) throws IOException {
+		List<String> inputs = new ArrayList<String>();
+		inputs.add("java " + System.getProperty("java.version") + " " + compiler.getClass().getName());
+		inputs.add("options " + String.join(" ", options));
+		for(File file : platformClassPath) {
+			inputs.add("platformClassPath " + file.getAbsolutePath() + " " + file.length() + " " + file.lastModified());
+		}
+		inputs.add("dependenciesFile " + (dependenciesFile.isFile()
+				? IncrementalCompileState.hash(Files.readAllBytes(dependenciesFile.toPath())) : "missing"));
+		for(Dependency dependency : dependencies) {
+			if(dependency instanceof ProjectDependency) {
+				inputs.add("projectDependency " + ((ProjectDependency) dependency).getProjectName()
+						+ " " + dependency.getScope());
+			} else {
+				File file = ((FileDependency) dependency).getFile();
+				inputs.add("fileDependency " + file.getAbsolutePath() + " " + dependency.getScope()
+						+ " " + file.length() + " " + file.lastModified());
+			}
+		}
+		Map<String, File> sourceFiles = new TreeMap<String, File>();
+		IncrementalCompileState.listFiles(this.srcDir, "", ".java", sourceFiles);
+		for(Entry<String, File> sourceFile : sourceFiles.entrySet()) {
+			inputs.add("source " + sourceFile.getKey()
+					+ " " + IncrementalCompileState.hash(Files.readAllBytes(sourceFile.getValue().toPath())));
+		}
+		return IncrementalCompileState.hash(String.join("\n", inputs).getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Gets the ABI fingerprints of the given project dependencies.
+	 * @param dependencies - The dependencies.
+	 * @param dependencyOutputs - The compile outputs of dependency projects that have not yet been applied.
+	 * @return The ABI fingerprints of the project dependencies, mapped by dependency project name.
+	 * @throws IOException If an I/O error occurs while computing an ABI fingerprint.
+	 */
+	private static Map<String, String> getDependencyAbiFingerprints(List<Dependency> dependencies,
+			Map<JavaProject, CompileOutput> dependencyOutputs) throws IOException {
+		Map<String, String> abiFingerprints = new TreeMap<String, String>();
+		for(Dependency dependency : dependencies) {
+			if(dependency instanceof ProjectDependency) {
+				JavaProject project = ((ProjectDependency) dependency).getProject();
+				CompileOutput output = getCompileOutput((ProjectDependency) dependency, dependencyOutputs);
+				abiFingerprints.put(((ProjectDependency) dependency).getProjectName(), (output != null
+						? output.getAbiFingerprint() : (project == null ? "missing" : project.getAbiFingerprint())));
+			}
+		}
+		return abiFingerprints;
+	}
+	
+	/**
+	 * Reuses the output in the "bin" directory of this project if it has been compiled from the same inputs and
+	 * against dependency projects with the same ABI fingerprints. The output is copied into the given bin directory
+	 * if it is not the "bin" directory.
+	 * @param binDir - The bin directory to compile in.
+	 * @param buildInputsHash - The hash of the current inputs.
+	 * @param dependencies - The current dependencies.
+	 * @param dependencyOutputs - The compile outputs of dependency projects that have not yet been applied.
+	 * @return The ABI fingerprint of the reused output, or {@code null} if the project has to be compiled.
+	 * @throws IOException If an I/O error occurs while copying the previous output.
+	 */
+	private String reusePreviousOutput(File binDir, String buildInputsHash, List<Dependency> dependencies,
+			Map<JavaProject, CompileOutput> dependencyOutputs) throws IOException {
+		File previousBinDir = new File(this.projectDir.getAbsoluteFile(), "bin");
+		BuildInfo buildInfo = BuildInfo.read(previousBinDir);
+		if(buildInfo == null || !buildInfo.getInputsHash().equals(buildInputsHash) || !buildInfo
+				.getDependencyAbiFingerprints().equals(getDependencyAbiFingerprints(dependencies, dependencyOutputs))) {
+			return null;
+		}
+		
+		// Copy the previous output into the bin directory. Classes that have been compiled in memory and have not
+		// yet been written to the previous output remain in the class store.
+		if(!previousBinDir.equals(binDir)) {
+			if(binDir.exists() && !Utils.removeFile(binDir)) {
+				throw new IOException("Unable to remove bin directory at: " + binDir.getAbsolutePath());
+			}
+			if(!binDir.mkdir()) {
+				throw new IOException("Unable to create bin directory at: " + binDir.getAbsolutePath());
+			}
+			File[] files = previousBinDir.listFiles();
+			if(files != null) {
+				for(File file : files) {
+					Utils.copyFile(file, binDir);
+				}
+			}
+		}
+		return buildInfo.getAbiFingerprint();
+	}
+	
+	/**
+	 * Computes the build cache key of this project. The key covers the compiler, the compiler options, the
+	 * platform classpath, the parsed dependencies including the content of dependency jars and the classes of
+	 * dependency projects, the dependencies file and the source files.
+	 * @param buildCache - The build cache.
+	 * @param compiler - The compiler.
+	 * @param options - The compiler options.
+	 * @param platformClassPath - The platform classpath.
+	 * @param dependencies - The parsed dependencies.
+	 * @param dependencyOutputs - The compile outputs of dependency projects that have not yet been applied.
+	 * @param dependenciesFile - The dependencies file.
+	 * @return The build cache key.
+	 * @throws IOException If an I/O error occurs while reading one of the inputs.
+	 */
+	private String computeBuildCacheKey(BuildCache buildCache, JavaCompiler compiler, List<String> options,
+			List<File> platformClassPath, List<Dependency> dependencies,
+			Map<JavaProject, CompileOutput> dependencyOutputs, File dependenciesFile) throws IOException {
+		BuildCache.KeyBuilder keyBuilder = buildCache.newKeyBuilder()
+				.add("javaVendor", System.getProperty("java.vendor"))
+				.add("javaVersion", System.getProperty("java.version"))
+				.add("compiler", compiler.getClass().getName())
+				.add("options", String.join(" ", options));
+		for(File file : platformClassPath) {
+			keyBuilder.addFile("platformClassPath", file);
+		}
+		keyBuilder.addFile("dependenciesFile", dependenciesFile);
+		for(Dependency dependency : dependencies) {
+			if(dependency instanceof ProjectDependency) {
+				ProjectDependency projectDependency = (ProjectDependency) dependency;
+				JavaProject project = projectDependency.getProject();
+				CompileOutput output = getCompileOutput(projectDependency, dependencyOutputs);
+				keyBuilder.add("projectDependency",
+						projectDependency.getProjectName() + " " + projectDependency.getScope());
+				if(output != null) {
+					keyBuilder.addClasses("projectDependencyClasses", output.binDir, output.classStore);
+				} else {
+					keyBuilder.addClasses("projectDependencyClasses",
+							projectDependency.getFile(), (project == null ? null : project.classStore));
+				}
+			} else {
+				FileDependency fileDependency = (FileDependency) dependency;
+				keyBuilder.add("fileDependency",
+						fileDependency.getFile().getAbsolutePath() + " " + fileDependency.getScope());
+				keyBuilder.addFile("fileDependencyContent", fileDependency.getFile());
+			}
+		}
+		Map<String, File> sourceFiles = new HashMap<String, File>();
+		IncrementalCompileState.listFiles(this.srcDir, "", ".java", sourceFiles);
+		keyBuilder.addSources(sourceFiles);
+		return keyBuilder.build();
+	}
+	
+	/**
+	 * Stores the given compile output of this project in the build cache. Classes that have been compiled in memory
+	 * are stored in the background. Failing to store the output only affects future compiles, so failures are
+	 * ignored.
+	 * @param buildCache - The build cache.
+	 * @param buildCacheKey - The build cache key of the compile output.
+	 * @param binDir - The bin directory containing the compile output.
+	 * @param classStore - The classes that have been compiled in memory, or {@code null} if there are none.
+	 */
+	private void storeInBuildCache(BuildCache buildCache,
+			String buildCacheKey, File binDir, MemoryClassStore classStore) {
+		if(classStore == null) {
+			File[] binFiles = binDir.listFiles();
+			try {
+				buildCache.store(buildCacheKey, (binFiles == null
+						? Collections.<File>emptyList() : Arrays.asList(binFiles)), null);
+			} catch (IOException e) {
+				// Ignore.
+			}
+			return;
+		}
+		
+		// The bin directory of an in-memory compile only contains the dependencies file, which is also available in
+		// the project directory.
+		final File dependenciesFile = new File(this.projectDir.getAbsoluteFile(), "dependencies.txt");
+		this.manager.submitBinDirWrite(() -> {
+			buildCache.store(buildCacheKey, (dependenciesFile.exists()
+					? Collections.singletonList(dependenciesFile) : Collections.<File>emptyList()), classStore);
+			return null;
+		});
+	}
+	
+	/**
+	 * Writes the classes that have been compiled in memory to the bin directory in the background.
+	 * Does nothing if there are no such classes or if they are already being written.
+	 */
+	private void writeClassStoreAsync() {
+		final MemoryClassStore classStore = this.classStore;
+		final File binDir = this.binDir;
+		final boolean packed = this.manager.isPackedOutputEnabled();
+		if(classStore == null || this.binDirWriteFuture != null) {
+			return;
+		}
+		this.binDirWriteFuture = this.manager.submitBinDirWrite(() -> {
+			classStore.writeTo(binDir);
+			if(packed) {
+				ClassPack.write(binDir);
+			}
+			return null;
+		});
+	}
+	
+	/**
+	 * Gets the classes of the last successful compile that are kept in memory.
+	 * @return The class store, or {@code null} if all compiled classes are in the bin directory.
+	 */
+	MemoryClassStore getClassStore() {
+		return this.classStore;
+	}
+	
+	/**
+	 * Applies the given compile output to this project. This is called after the bin directory of the output has
+	 * replaced the bin directory of this project, or right before it does while the project cannot be used.
+	 * @param output - The compile output.
+	 */
+	void applyCompileOutput(CompileOutput output) {
+		this.awaitBinDirWrite();
+		this.dependencies = output.dependencies;
+		this.classStore = output.classStore;
+		this.abiFingerprint = output.abiFingerprint;
+	}
+	
+	/**
+	 * Restores the state that applying a compile output has changed. This is used when the new generation of a
+	 * swapped project could not be loaded and the previous generation is still loaded.
+	 * @param dependencies - The dependencies before the compile output was applied.
+	 * @param classStore - The class store before the compile output was applied.
+	 */
+	void restoreCompileState(List<Dependency> dependencies, MemoryClassStore classStore) {
+		this.dependencies = dependencies;
+		this.classStore = classStore;
+		this.abiFingerprint = null;
+	}
+	
+	/**
+	 * Creates the class definitions that redefine the loaded classes of this project with the classes in the given
+	 * bin directory and in-memory class store.
+	 * @param newBinDir - The bin directory containing the newly compiled classes.
+	 * @param newClassStore - The newly compiled classes that are kept in memory, or {@code null} if there are none.
+	 * @return The class definitions for the loaded classes that have changed, or {@code null} if the new classes
+	 * cannot replace the loaded classes in place because a class has been added or removed, its structure has
+	 * changed or a class file could not be read.
+	 * @throws IllegalStateException If the project is not loaded.
+	 * @see ClassFileInfo#hasSameStructure(ClassFileInfo)
+	 */
+	ClassDefinition[] getHotSwapClassDefinitions(
+			File newBinDir, MemoryClassStore newClassStore) throws IllegalStateException {
+		if(!this.isLoaded) {
+			throw new IllegalStateException("Cannot hot swap an unloaded project.");
+		}
+		JavaProjectClassLoader oldClassLoader = this.classLoader;
+		try(JavaProjectClassLoader newClassLoader =
+				new JavaProjectClassLoader(null, newBinDir, null, null, newClassStore)) {
+			Set<String> classNames = oldClassLoader.getProjectClassNames();
+			if(!classNames.equals(newClassLoader.getProjectClassNames())) {
+				return null;
+			}
+			List<ClassDefinition> classDefinitions = new ArrayList<ClassDefinition>();
+			for(String className : classNames) {
+				byte[] oldBytes = oldClassLoader.readProjectClassBytes(className);
+				byte[] newBytes = newClassLoader.readProjectClassBytes(className);
+				if(Arrays.equals(oldBytes, newBytes)) {
+					continue;
+				}
+				if(!ClassFileInfo.parse(oldBytes).hasSameStructure(ClassFileInfo.parse(newBytes))) {
+					return null;
+				}
+				
+				// Classes that have not been loaded yet will be defined from the new binaries when they are needed.
+				Class<?> clazz = oldClassLoader.getDefinedClass(className);
+				if(clazz != null) {
+					classDefinitions.add(new ClassDefinition(clazz, newBytes));
+				}
+			}
+			return classDefinitions.toArray(new ClassDefinition[classDefinitions.size()]);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Lets the classloader of this loaded project define classes from the current bin directory and in-memory class
+	 * store. This is called after the bin directory has been replaced while the project is loaded, which happens
+	 * when the loaded classes have been redefined in place or when the project has been swapped to a new generation
+	 * that was loaded from the new bin directory.
+	 */
+	void applyReplacedBinDir() {
+		this.classLoader.reloadBinDir(this.binDir, this.classStore);
+		this.writeClassStoreAsync();
+	}
+	
+	/**
+	 * Gets the ABI fingerprint of the compiled classes in the bin directory of this project. This fingerprint only
+	 * changes when the public or protected API of the project changes, so dependent projects only have to be
+	 * recompiled when it changes.
+	 * @return The ABI fingerprint.
+	 * @throws IOException If an I/O error occurs while reading the compiled classes.
+	 * @see BuildInfo#computeAbiFingerprint(File, MemoryClassStore)
+	 */
+	public String getAbiFingerprint() throws IOException {
+		String abiFingerprint = this.abiFingerprint;
+		if(abiFingerprint == null) {
+			BuildInfo buildInfo = BuildInfo.read(this.binDir);
+			abiFingerprint = (buildInfo != null ? buildInfo.getAbiFingerprint()
+					: BuildInfo.computeAbiFingerprint(this.binDir, this.classStore));
+			this.abiFingerprint = abiFingerprint;
+		}
+		return abiFingerprint;
+	}
+	
+	/**
+	 * Waits for the background write of in-memory compiled classes to the bin directory to finish, if there is one.
+	 * When the write has succeeded, the classes are no longer kept in memory and will be loaded from the bin
+	 * directory by the next load.
+	 * @return True if no write was pending or if the pending write succeeded, false if it failed or was interrupted.
+	 */
+	public boolean awaitBinDirWrite() {
+		Future<?> future = this.binDirWriteFuture;
+		if(future == null) {
+			return true;
+		}
+		this.binDirWriteFuture = null;
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			return false;
+		}
+		this.classStore = null;
+		return true;
+	}
+	
 	
 	/**
 	 * load method.
@@ -314,9 +1034,222 @@ public class JavaProject {
 	 * @throws LoadException If an Exception occurs while loading the project.
 	 */
 	public void load() throws LoadException {
-		if(this.isLoaded) {
-			return;
+		ReentrantLock lifecycleLock = this.manager.lockLifecycle();
+		try {
+			if(this.isLoaded) {
+				return;
+			}
+			try {
+				PreparedLoad preparedLoad = this.prepareProject(this.binDir);
+				this.setClassLoader(preparedLoad.classLoader);
+				this.initProject(preparedLoad.mainClass);
+				this.startProject();
+			} finally {
+				
+				// Release the shared library classloaders if the project failed to load.
+				if(!this.isLoaded) {
+					this.releaseLibraryClassLoaders();
+				}
+			}
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+	
+	/**
+	 * Prepares loading the project by defining its classloader and finding its main class. This is the first stage
+	 * of loading the project in stages, followed by {@link #initLoad()} and {@link #startLoad()}. This stage does not
+	 * run any project code and may run concurrently with the load stages of projects that this project does not
+	 * depend on.
+	 * @throws LoadException If an Exception occurs while preparing the project.
+	 */
+	void prepareLoad() throws LoadException {
+		boolean success = false;
+		try {
+			this.preparedLoad = this.prepareProject(this.binDir);
+			this.setClassLoader(this.preparedLoad.classLoader);
+			success = true;
+		} finally {
+			if(!success) {
+				this.releaseLibraryClassLoaders();
+			}
+		}
+	}
+	
+	/**
+	 * Gets whether the {@link JavaLoaderProject#onLoad()} method of the prepared main class may be called from a
+	 * different thread than the thread that loads the project. This is the case when the main class is annotated
+	 * with {@link ThreadSafeOnLoad}.
+	 * @return True if the project declares its onLoad method thread-safe, false otherwise.
+	 * @see #prepareLoad()
+	 */
+	boolean isThreadSafeOnLoad() {
+		return this.preparedLoad != null && this.preparedLoad.mainClass.isAnnotationPresent(ThreadSafeOnLoad.class);
+	}
+	
+	/**
+	 * Instantiates the prepared main class of the project and notifies the state listener. This is the second stage
+	 * of loading the project in stages and has to be called on the thread that loads the project.
+	 * @throws LoadException If an Exception occurs while initializing the project.
+	 * @see #prepareLoad()
+	 */
+	void initLoad() throws LoadException {
+		Class<?> mainClass = this.preparedLoad.mainClass;
+		this.preparedLoad = null;
+		boolean success = false;
+		try {
+			this.initProject(mainClass);
+			success = true;
+		} finally {
+			if(!success) {
+				this.releaseLibraryClassLoaders();
+			}
+		}
+	}
+	
+	/**
+	 * Starts the initialized project by calling its {@link JavaLoaderProject#onLoad()} method. This is the last stage
+	 * of loading the project in stages. It may be called from a different thread if {@link #isThreadSafeOnLoad()}
+	 * returned true.
+	 * @throws LoadException If an Exception occurs while starting the project.
+	 * @see #prepareLoad()
+	 */
+	void startLoad() throws LoadException {
+		try {
+			this.startProject();
+		} finally {
+			if(!this.isLoaded) {
+				this.releaseLibraryClassLoaders();
+			}
+		}
+	}
+	
+	/**
+	 * Reloads this loaded project by loading a new generation of the project from the given bin directory next to
+	 * the loaded generation, and swapping the generations afterwards. The new classloader is defined, the new main
+	 * class is instantiated and {@link JavaLoaderProject#onPreActivate(JavaProject)} is called while the loaded
+	 * generation is still active. Only then, the loaded generation is unloaded and the new generation is loaded.
+	 * If the new generation fails to load at that point, the previous generation is loaded again.
+	 * The new generation keeps loading classes from the given bin directory until
+	 * {@link #applyReplacedBinDir()} is called.
+	 * @param newBinDir - The bin directory containing the new binaries.
+	 * @param oldDependencies - The dependencies of the loaded generation, which are restored on a rollback.
+	 * @param exHandler - The exception handler for exceptions that occur while unloading a generation.
+	 * @throws LoadException If the new generation could not be loaded. The previous generation is then still loaded
+	 * if {@link #isLoaded()} returns true, or the project has been unloaded if rolling back failed as well.
+	 */
+	void swap(File newBinDir, List<Dependency> oldDependencies,
+			UnloadExceptionHandler exHandler) throws LoadException {
+		ReentrantLock lifecycleLock = this.manager.lockLifecycle();
+		try {
+			if(!this.isLoaded) {
+				throw new LoadException(this, "Project is not loaded.");
+			}
+			
+			// Define the new classloader and instantiate the new main class next to the loaded generation.
+			JavaProjectClassLoader oldClassLoader = this.classLoader;
+			int oldGeneration = this.generation;
+			JavaLoaderProject oldInstance = this.projectInstance;
+			String oldVersion = this.version;
+			List<LibraryClassLoader> oldLibraryClassLoaders =
+					new ArrayList<LibraryClassLoader>(this.libraryClassLoaders);
+			this.libraryClassLoaders.clear();
+			PreparedLoad preparedLoad = null;
+			JavaLoaderProject newInstance;
+			String newVersion;
+			try {
+				preparedLoad = this.prepareProject(newBinDir);
+				newInstance = this.instantiateProject(preparedLoad.mainClass);
+				newVersion = this.getProjectVersion(newInstance);
+				try {
+					newInstance.onPreActivate(this);
+				} catch (Throwable e) {
+					throw new LoadException(this, "A problem occurred in " + this.projectDir.getName() + "'s "
+							+ newInstance.getClass().getName() + ".onPreActivate(). Is the project up to date?"
+							+ " Stacktrace:\n" + Utils.getStacktrace(e));
+				}
+			} catch (LoadException e) {
+				if(preparedLoad != null) {
+					this.closeClassLoader(preparedLoad.classLoader, this.generation + 1, exHandler);
+				}
+				this.releaseLibraryClassLoaders();
+				this.libraryClassLoaders.addAll(oldLibraryClassLoaders);
+				throw new LoadException(this, "The new generation of the project could not be loaded."
+						+ " The previous generation is still loaded. " + e.getMessage(), e.getCause());
+			}
+			
+			// Unload the loaded generation and load the new generation.
+			this.deactivateProject(exHandler);
+			if(this.manager.getClassPreloadMode() == ClassPreloadMode.USED_CLASSES) {
+				this.usedClassNames = oldClassLoader.getDefinedProjectClassNames();
+			}
+			this.classLoader = preparedLoad.classLoader;
+			this.generation++;
+			this.projectInstance = newInstance;
+			this.version = newVersion;
+			boolean isListenerNotified = false;
+			try {
+				this.notifyStateListenerLoad();
+				isListenerNotified = true;
+				this.startProject();
+			} catch (LoadException e) {
+				
+				// Unload the new generation.
+				if(isListenerNotified) {
+					this.deactivateProject(exHandler);
+				}
+				this.closeClassLoader(this.classLoader, this.generation, exHandler);
+				this.releaseLibraryClassLoaders();
+				
+				// Load the previous generation again, using a new instance of its main class.
+				this.libraryClassLoaders.addAll(oldLibraryClassLoaders);
+				this.classLoader = oldClassLoader;
+				this.generation = oldGeneration;
+				this.projectInstance = null;
+				this.version = oldVersion;
+				this.dependencies = oldDependencies;
+				try {
+					this.projectInstance = this.instantiateProject(oldInstance.getClass());
+					this.notifyStateListenerLoad();
+					this.startProject();
+				} catch (LoadException rollbackException) {
+					
+					// Mark the project as unloaded.
+					this.closeClassLoader(oldClassLoader, oldGeneration, exHandler);
+					this.classLoader = null;
+					this.releaseLibraryClassLoaders();
+					this.manager.unindexLoadedProject(this);
+					this.isLoaded = false;
+					this.projectInstance = null;
+					this.version = null;
+					this.dependencies = null;
+					throw new LoadException(this, "The new generation of the project could not be loaded and"
+							+ " loading the previous generation again failed as well. The project has been unloaded. "
+							+ e.getMessage() + " Rollback: " + rollbackException.getMessage(), e.getCause());
+				}
+				throw new LoadException(this, "The new generation of the project could not be loaded."
+						+ " The previous generation has been loaded again. " + e.getMessage(), e.getCause());
+			}
+			
+			// Close the classloader of the previous generation.
+			this.closeClassLoader(oldClassLoader, oldGeneration, exHandler);
+			for(LibraryClassLoader libraryClassLoader : oldLibraryClassLoaders) {
+				this.manager.releaseLibraryClassLoader(libraryClassLoader);
+			}
+		} finally {
+			lifecycleLock.unlock();
 		}
+	}
+	
+	/**
+	 * Defines a new classloader for the project that loads the classes in the given bin directory, and finds the
+	 * main class of the project. This does not change the state of the project, other than acquiring the shared
+	 * library classloaders of its dependencies.
+	 * @param binDir - The bin directory to load the project from.
+	 * @return The prepared load.
+	 * @throws LoadException If the classloader could not be defined or if no unique main class could be found.
+	 */
+	private PreparedLoad prepareProject(File binDir) throws LoadException {
 		
 		// Disallow loading if the project is disabled.
 		if(this.isDisabled) {
@@ -324,7 +1257,7 @@ public class JavaProject {
 		}
 		
 		// Validate that at least the binary directory exists.
-		if(!this.binDir.exists()) {
+		if(!binDir.exists()) {
 			throw new LoadException(this, "Project has not been compiled.");
 		}
 		
@@ -338,7 +1271,9 @@ public class JavaProject {
 		// Get the INCLUDE dependency files for the classloader. Existence of files will be checked by the classloader,
 		// but we will validate that JavaProject dependencies that are marked as PROVIDED are loaded here.
 		List<File> dependencyFiles = new ArrayList<File>();
+		List<ClassLoader> libraryClassLoaders = new ArrayList<ClassLoader>();
 		List<ClassLoader> dependencyProjectClassLoaders = new ArrayList<ClassLoader>();
+		List<File> sharedLibraryFiles = new ArrayList<File>();
 		if(this.dependencies != null) {
 			for(Dependency dependency : this.dependencies) {
 				if(dependency instanceof ProjectDependency) {
@@ -361,10 +1296,16 @@ public class JavaProject {
 					
 				} else if(dependency instanceof FileDependency) {
 					
-					// Add file dependencies marked as INCLUDE.
+					// Add file dependencies marked as INCLUDE. Shared .jar libraries are added as classloader.
 					if(dependency.getScope() == DependencyScope.INCLUDE) {
 						FileDependency fileDependency = (FileDependency) dependency;
-						dependencyFiles.add(fileDependency.getFile());
+						File file = fileDependency.getFile();
+						if(this.manager != null && this.manager.isSharedLibrariesEnabled()
+								&& file.isFile() && file.getName().toLowerCase().endsWith(".jar")) {
+							sharedLibraryFiles.add(file);
+						} else {
+							dependencyFiles.add(file);
+						}
 					}
 					
 				} else {
@@ -375,55 +1316,111 @@ public class JavaProject {
 			}
 		}
 		
-		// Define the classloader.
+		// Share one library classloader for all shared .jar libraries, so that the libraries can reference each other.
+		if(!sharedLibraryFiles.isEmpty()) {
+			try {
+				LibraryClassLoader libraryClassLoader = this.manager.acquireLibraryClassLoader(sharedLibraryFiles);
+				this.libraryClassLoaders.add(libraryClassLoader);
+				libraryClassLoaders.add(libraryClassLoader);
+			} catch (IOException e) {
+				throw new LoadException(this, "Unable to read libraries: " + sharedLibraryFiles + ".");
+			}
+		}
+		
+		// Define the classloader. Classes compiled in memory are defined from memory and written to disk later.
+		// Shared library classloaders are consulted before dependency project classloaders, like dependency files.
+		MemoryClassStore classStore = this.classStore;
+		libraryClassLoaders.addAll(dependencyProjectClassLoaders);
+		JavaProjectClassLoader classLoader;
 		try {
-			this.classLoader = new JavaProjectClassLoader(
-					this.manager.getPlatformClassLoader(), this.binDir, dependencyFiles, dependencyProjectClassLoaders);
+			classLoader = new JavaProjectClassLoader(this.manager.getPlatformClassLoader(),
+					binDir, dependencyFiles, libraryClassLoaders, classStore);
+			classLoader.setResourceCacheEnabled(this.manager.isResourceCacheEnabled());
 		} catch (FileNotFoundException e) {
 			throw new LoadException(this, e.getMessage()); // Dependency file does not exist.
 		}
 		
-		// Load all .class files in the bin directory and get the "main" class.
+		// Find the main class, closing the classloader if it cannot be found.
+		boolean success = false;
+		try {
+			Class<?> mainClass = this.findMainClass(classLoader, classStore);
+			success = true;
+			return new PreparedLoad(classLoader, mainClass);
+		} finally {
+			if(!success) {
+				try {
+					classLoader.close();
+				} catch (IOException e) {
+					// Ignore. The classloader has not been used by the project.
+				}
+			}
+		}
+	}
+	
+	private Class<?> findMainClass(JavaProjectClassLoader classLoader,
+			MemoryClassStore classStore) throws LoadException {
+		
+		// Read the super class names of all classes in the class store or bin directory from their class headers.
+		Map<String, String> superNames = new HashMap<String, String>();
+		try {
+			if(classStore != null) {
+				for(String className : classStore.getClassNames()) {
+					ClassFileInfo classInfo = ClassFileInfo.parseHeader(classStore.getClassBytes(className));
+					superNames.put(classInfo.getName(), classInfo.getSuperName());
+				}
+			} else {
+				for(String className : classLoader.getBinDirClassNames()) {
+					ClassFileInfo classInfo = classLoader.readBinDirClassHeader(className);
+					superNames.put(classInfo.getName(), classInfo.getSuperName());
+				}
+			}
+		} catch (IOException e) {
+			throw new LoadException(this, "Unable to read class file header: " + e.getMessage());
+		}
+		
+		// Get the "main" class candidates. These are the classes of which the super class chain leaves the project
+		// through a class that extends from JavaLoaderProject. Only those external classes and the main class are
+		// loaded here, other classes are loaded lazily.
+		Map<String, Boolean> externalSuperClassCache = new HashMap<String, Boolean>();
+		List<String> mainClassNames = new ArrayList<String>();
+		for(String className : superNames.keySet()) {
+			String superName = superNames.get(className);
+			for(int depth = 0; superName != null && superNames.containsKey(superName); depth++) {
+				if(depth > superNames.size()) {
+					superName = null; // Circular class hierarchy, the class will fail to load anyways.
+					break;
+				}
+				superName = superNames.get(superName);
+			}
+			if(superName != null && externalSuperClassCache.computeIfAbsent(superName, (String name) -> {
+				try {
+					return JavaLoaderProject.class.isAssignableFrom(Class.forName(name, false, classLoader));
+				} catch (ClassNotFoundException | LinkageError e) {
+					return false;
+				}
+			})) {
+				mainClassNames.add(className);
+			}
+		}
+		
+		// Load the "main" class candidates.
 		ArrayList<Class<?>> mainClasses = new ArrayList<Class<?>>();
-		Stack<File> dirStack = new Stack<File>();
-		Stack<String> packageStack = new Stack<String>();
-		dirStack.push(this.binDir);
-		packageStack.push("");
-		while(!dirStack.isEmpty()) {
-			File[] localFiles = dirStack.pop().listFiles();
-			String packageStr = packageStack.pop();
-			if(localFiles != null) {
-				for(File localFile : localFiles) {
-					if(localFile.isDirectory()) {
-						dirStack.push(localFile);
-						packageStack.push(packageStr + localFile.getName() + ".");
-					} else if(localFile.getName().endsWith(".class")) {
-						String className =
-								packageStr + localFile.getName().substring(0, localFile.getName().length() - 6);
-						try {
-							Class<?> clazz = this.classLoader.loadClass(className);
-							if(JavaLoaderProject.class.isAssignableFrom(clazz)) {
-								mainClasses.add(clazz);
-							}
-//							Class<?>[] interfaces = clazz.getInterfaces();
-//							for(int i = 0; i < interfaces.length; i++) {
-//								if(interfaces[i].getName().equals(JavaLoaderProject.class.getName())) {
-//									mainClasses.add(clazz);
-//								}
-//							}
-						} catch (ClassNotFoundException e) {
-							throw new LoadException(this, "Unable to load class while it is certainly"
-									+ " in the bin directory (ClassNotFoundException): " + className);
-						} catch (NoClassDefFoundError e) {
-							throw new LoadException(this, "Unable to load class (NoClassDefFoundError,"
-									+ " class contains a reference to an undefined class): " + className);
-						} catch (UnsupportedClassVersionError e) {
-							throw new LoadException(this, "This project was compiled using a different (likely newer)"
-									+ " version of Java, and cannot be loaded by this version of Java. You can solve"
-									+ " this by recompiling the project.");
-						}
-					}
+		for(String className : mainClassNames) {
+			try {
+				Class<?> clazz = classLoader.loadClass(className);
+				if(JavaLoaderProject.class.isAssignableFrom(clazz)) {
+					mainClasses.add(clazz);
 				}
+			} catch (ClassNotFoundException e) {
+				throw new LoadException(this, "Unable to load class while it is certainly"
+						+ " in the bin directory (ClassNotFoundException): " + className);
+			} catch (NoClassDefFoundError e) {
+				throw new LoadException(this, "Unable to load class (NoClassDefFoundError,"
+						+ " class contains a reference to an undefined class): " + className);
+			} catch (UnsupportedClassVersionError e) {
+				throw new LoadException(this, "This project was compiled using a different (likely newer)"
+						+ " version of Java, and cannot be loaded by this version of Java. You can solve"
+						+ " this by recompiling the project.");
 			}
 		}
 		if(mainClasses.size() == 0) {
@@ -434,11 +1431,30 @@ public class JavaProject {
 			throw new LoadException(this, "Multiple main classes found"
 					+ " (only one class may extend from " + JavaLoaderProject.class.getName() + ").");
 		}
-		Class<?> mainClass = mainClasses.get(0);
+		return mainClasses.get(0);
+	}
+	
+	/**
+	 * Sets the classloader of the project to the given new classloader, starting a new generation of the project.
+	 * @param classLoader - The classloader.
+	 */
+	private void setClassLoader(JavaProjectClassLoader classLoader) {
+		this.classLoader = classLoader;
+		this.generation++;
+		this.writeClassStoreAsync();
+	}
+	
+	private void initProject(Class<?> mainClass) throws LoadException {
+		this.projectInstance = this.instantiateProject(mainClass);
+		this.version = this.getProjectVersion(this.projectInstance);
+		this.notifyStateListenerLoad();
+	}
+	
+	private JavaLoaderProject instantiateProject(Class<?> mainClass) throws LoadException {
 		
 		// Instantiate the main class.
 		try {
-			this.projectInstance = (JavaLoaderProject) mainClass.newInstance();
+			return (JavaLoaderProject) mainClass.newInstance();
 		} catch (InstantiationException e) {
 			throw new LoadException(this, "The main class (" + mainClass.getName() + ") could not be instantiated."
 					+ " This could be caused by the absence of a"
@@ -452,20 +1468,26 @@ public class JavaProject {
 					+ " removed a class after the last recompile,"
 					+ " executing a recompile will fix this since the project has been unloaded at this point.", e);
 		}
+	}
+	
+	private String getProjectVersion(JavaLoaderProject projectInstance) throws LoadException {
 		
 		// Get the project version (This has to happen before calling the onLoad(...) method on the stateListener).
 		try {
-			this.version = this.projectInstance.getVersion();
+			return projectInstance.getVersion();
 		} catch (LinkageError e) {
 			throw new LoadException(this, "A LinkageError occurred in " + this.projectDir.getName() + "'s "
-					+ this.projectInstance.getClass().getName() + ".getVersion(). Is the compiled project missing a"
+					+ projectInstance.getClass().getName() + ".getVersion(). Is the compiled project missing a"
 					+ " dependency or was a dependency updated without recompiling the project?"
 					+ " Stacktrace:\n" + Utils.getStacktrace(e));
 		}  catch (Throwable e) {
 			throw new LoadException(this, "A problem occurred in " + this.projectDir.getName() + "'s "
-					+ this.projectInstance.getClass().getName() + ".getVersion(). Is the project up to date?"
+					+ projectInstance.getClass().getName() + ".getVersion(). Is the project up to date?"
 					+ " Stacktrace:\n" + Utils.getStacktrace(e));
 		}
+	}
+	
+	private void notifyStateListenerLoad() throws LoadException {
 		
 		// Notify the listener if it's set.
 		if(this.stateListener != null) {
@@ -478,84 +1500,73 @@ public class JavaProject {
 						+ " This is likely a bug.", e);
 			}
 		}
+	}
+	
+	private void startProject() throws LoadException {
 		
 		// Start the project.
 		try {
 			this.projectInstance.onLoad();
 			this.isLoaded = true;
+			this.manager.indexLoadedProject(this);
 		} catch (LinkageError e) {
+			this.manager.getServiceRegistry().unregisterServices(this);
 			throw new LoadException(this, "A LinkageError occurred in " + this.projectDir.getName() + "'s "
 					+ this.projectInstance.getClass().getName() + ".onLoad(). Is the compiled project missing a"
 					+ " dependency or was a dependency updated without recompiling the project?"
 					+ " Stacktrace:\n" + Utils.getStacktrace(e));
 		} catch (Throwable e) {
+			this.manager.getServiceRegistry().unregisterServices(this);
 			throw new LoadException(this, "A problem occurred in " + this.projectDir.getName() + "'s "
 					+ this.projectInstance.getClass().getName() + ".onLoad(). Is the project up to date?"
 					+ " Stacktrace:\n" + Utils.getStacktrace(e));
 		}
+		
+		// Preload classes in the background, so that they do not have to be loaded when they are first used.
+		ClassPreloadMode classPreloadMode = this.manager.getClassPreloadMode();
+		if(classPreloadMode != ClassPreloadMode.DISABLED) {
+			this.preloadClasses(classPreloadMode);
+		}
 	}
 	
 	/**
-	 * Unloads the JavaProject. If UnloadExceptions occur during the process, but they do not prevent the project from
-	 * unloading, they are passed to the given exHandler.
-	 * When 'method' is {@link UnloadMethod#UNLOAD_DEPENDENTS}, exceptions from unloading the dependents will also be
-	 * passed to the given exHandler.
-	 * @param method - The unloading method to handle.
-	 * @param exHandler - The exception handler or null if you wish to ignore possible exceptions.
-	 * @return A list of unloaded projects, in an order such that dependents always have a lower index than their
-	 * dependencies (so this project is always the first element). This list can only contain more than one element if
-	 * the 'method' argument is {@link UnloadMethod#UNLOAD_DEPENDENTS}.
-	 * @throws UnloadException If an Exception occurs that prevents the project from unloading.
-	 * This only happens when 'method' is {@link UnloadMethod#EXCEPTION_ON_LOADED_DEPENDENTS} and one or more
-	 * dependents are enabled.
-	 * @throws NullPointerException If method is null.
+	 * Loads and links the classes of this project that are selected by the given mode on the class preload thread of
+	 * the project manager. Classes are not initialized. Preloading stops when the classloader is closed.
+	 * @param mode - The class preload mode.
 	 */
-	public List<JavaProject> unload(UnloadMethod method,
-			UnloadExceptionHandler exHandler) throws UnloadException, NullPointerException {
-		if(!this.isLoaded) {
-			return Collections.emptyList();
-		}
-		
-		// Handle null method.
-		if(method == null) {
-			throw new NullPointerException("method may not be null.");
+	private void preloadClasses(ClassPreloadMode mode) {
+		final JavaProjectClassLoader classLoader = this.classLoader;
+		final List<String> classNames;
+		if(mode == ClassPreloadMode.ALL_CLASSES) {
+			classNames = new ArrayList<String>(classLoader.getProjectClassNames());
+		} else if(this.usedClassNames != null) {
+			classNames = new ArrayList<String>(this.usedClassNames);
+			classNames.retainAll(classLoader.getProjectClassNames()); // Skip classes that no longer exist.
+		} else {
+			return;
 		}
-		
-		// Check if other loaded projects depend on this project.
-		List<JavaProject> unloadedProjects = new ArrayList<JavaProject>(1);
-		unloadedProjects.add(this); // We only return this on success.
-		if(method != UnloadMethod.IGNORE_DEPENDENTS) {
-			List<JavaProject> dependingProjects = new ArrayList<JavaProject>(0);
-			for(JavaProject project : this.manager.getProjects()) {
-				if(project.isLoaded() && project != this) {
-					for(Dependency dep : project.getDependencies()) {
-						if(dep instanceof ProjectDependency
-								&& ((ProjectDependency) dep).getProject() == this) {
-							dependingProjects.add(project);
-						}
-					}
+		this.manager.submitClassPreload(() -> {
+			for(String className : classNames) {
+				if(classLoader.isClosed()) {
+					return;
 				}
-			}
-			if(!dependingProjects.isEmpty()) {
-				if(method == UnloadMethod.UNLOAD_DEPENDENTS) {
-					
-					// Unload the projects recursively.
-					for(JavaProject project : dependingProjects) {
-						// Will never throw an UnloadException due to the method being 'UNLOAD_DEPENDENTS'.
-						unloadedProjects.addAll(project.unload(UnloadMethod.UNLOAD_DEPENDENTS, exHandler));
-					}
+				try {
 					
-				} else {
-					assert(method == UnloadMethod.EXCEPTION_ON_LOADED_DEPENDENTS);
-					
-					// Throw an exception about the dependents being enabled and therefore being unable to unload.
-					dependingProjects.sort((JavaProject p1, JavaProject p2) -> p1.getName().compareTo(p2.getName()));
-					throw new UnloadException(this, "Project cannot be unloaded while there are projects enabled that"
-							+ " depend on it. Depending project" + (dependingProjects.size() == 1 ? "" : "s") + ": "
-							+ Utils.glueIterable(dependingProjects, (JavaProject p) -> p.getName(), ", ") + ".");
+					// Getting the declared methods links (and therefore verifies) the class without initializing it.
+					Class.forName(className, false, classLoader).getDeclaredMethods();
+				} catch (ClassNotFoundException | LinkageError e) {
+					// Ignore. The same error will occur when the class is used.
 				}
 			}
-		}
+		});
+	}
+	
+	/**
+	 * Notifies the state listener that the project is being unloaded and calls the onUnload method of the project
+	 * instance. Exceptions are passed to the given exception handler.
+	 * @param exHandler - The exception handler.
+	 */
+	private void deactivateProject(UnloadExceptionHandler exHandler) {
 		
 		// Notify the listener if it's set.
 		if(this.stateListener != null) {
@@ -566,8 +1577,8 @@ public class JavaProject {
 			} catch (Exception e) {
 				// This should never happen.
 				exHandler.handleUnloadException(new UnloadException(this, "An unexpected Exception occurred in"
-						+ " StateListener's onUnload() method. This is a bug in the platform-dependent implementation"
-						+ " of project generation of JavaLoader.", e));
+						+ " StateListener's onUnload() method. This is a bug in the platform-dependent"
+						+ " implementation of project generation of JavaLoader.", e));
 			}
 		}
 		
@@ -579,8 +1590,8 @@ public class JavaProject {
 			} catch (LinkageError e) {
 				exHandler.handleUnloadException(new UnloadException(this,
 						"A LinkageError occurred in " + this.projectDir.getName() + "'s "
-						+ this.projectInstance.getClass().getName() + ".onUnload(). Is the compiled project missing a"
-						+ " dependency or was a dependency updated without recompiling the project?"
+						+ this.projectInstance.getClass().getName() + ".onUnload(). Is the compiled project"
+						+ " missing a dependency or was a dependency updated without recompiling the project?"
 						+ " Stacktrace:\n" + Utils.getStacktrace(e)));
 			}  catch (Throwable e) {
 				exHandler.handleUnloadException(new UnloadException(this,
@@ -590,22 +1601,191 @@ public class JavaProject {
 			}
 		}
 		
-		// Close the classloader.
+		// Unregister the services of the project, so that service proxies no longer use the unloaded classes.
+		this.manager.getServiceRegistry().unregisterServices(this);
+	}
+	
+	/**
+	 * Closes the given classloader of this project and tracks it until it has been garbage collected.
+	 * @param classLoader - The classloader.
+	 * @param generation - The generation of the project that used the classloader.
+	 * @param exHandler - The exception handler to pass an exception to when closing the classloader fails.
+	 */
+	private void closeClassLoader(JavaProjectClassLoader classLoader,
+			int generation, UnloadExceptionHandler exHandler) {
 		try {
-			this.classLoader.close();
+			classLoader.close();
 		} catch (IOException e) {
 			exHandler.handleUnloadException(new UnloadException(this, "An IOException occurred in JavaLoader while"
 					+ " closing the classloader for project: \"" + this.projectDir.getName() + "\".", e));
 		}
-		this.classLoader = null;
+		this.manager.getLeakDetector().track(this.projectName, generation, classLoader);
+	}
+	
+	private void releaseLibraryClassLoaders() {
+		for(LibraryClassLoader libraryClassLoader : this.libraryClassLoaders) {
+			this.manager.releaseLibraryClassLoader(libraryClassLoader);
+		}
+		this.libraryClassLoaders.clear();
+	}
+	
+	/**
+	 * Unloads the JavaProject. If UnloadExceptions occur during the process, but they do not prevent the project from
+	 * unloading, they are passed to the given exHandler.
+	 * When 'method' is {@link UnloadMethod#UNLOAD_DEPENDENTS}, exceptions from unloading the dependents will also be
+	 * passed to the given exHandler.
+	 * @param method - The unloading method to handle.
+	 * @param exHandler - The exception handler or null if you wish to ignore possible exceptions.
+	 * @return A list of unloaded projects, in an order such that dependents always have a lower index than their
+	 * dependencies (so this project is always the first element). This list can only contain more than one element if
+	 * the 'method' argument is {@link UnloadMethod#UNLOAD_DEPENDENTS}.
+	 * @throws UnloadException If an Exception occurs that prevents the project from unloading.
+	 * This only happens when 'method' is {@link UnloadMethod#EXCEPTION_ON_LOADED_DEPENDENTS} and one or more
+	 * dependents are enabled.
+	 * @throws NullPointerException If method is null.
+	 */
+	public List<JavaProject> unload(UnloadMethod method,
+			UnloadExceptionHandler exHandler) throws UnloadException, NullPointerException {
+		ReentrantLock lifecycleLock = this.manager.lockLifecycle();
+		try {
+			if(!this.isLoaded) {
+				return Collections.emptyList();
+			}
+			
+			// Handle null method.
+			if(method == null) {
+				throw new NullPointerException("method may not be null.");
+			}
+			
+			// Check if other loaded projects depend on this project.
+			List<JavaProject> unloadedProjects = new ArrayList<JavaProject>(1);
+			unloadedProjects.add(this); // We only return this on success.
+			if(method != UnloadMethod.IGNORE_DEPENDENTS) {
+				List<JavaProject> dependingProjects =
+						new ArrayList<JavaProject>(this.manager.getLoadedDependents(this));
+				if(!dependingProjects.isEmpty()) {
+					if(method == UnloadMethod.UNLOAD_DEPENDENTS) {
+						
+						// Unload the projects recursively.
+						for(JavaProject project : dependingProjects) {
+							// Will never throw an UnloadException due to the method being 'UNLOAD_DEPENDENTS'.
+							unloadedProjects.addAll(project.unload(UnloadMethod.UNLOAD_DEPENDENTS, exHandler));
+						}
+						
+					} else {
+						assert(method == UnloadMethod.EXCEPTION_ON_LOADED_DEPENDENTS);
+						
+						// Throw an exception about the dependents being enabled and therefore being unable to unload.
+						dependingProjects.sort(
+								(JavaProject p1, JavaProject p2) -> p1.getName().compareTo(p2.getName()));
+						throw new UnloadException(this, "Project cannot be unloaded while there are projects enabled"
+								+ " that depend on it. Depending project" + (dependingProjects.size() == 1 ? "" : "s")
+								+ ": "
+								+ Utils.glueIterable(dependingProjects, (JavaProject p) -> p.getName(), ", ") + ".");
+					}
+				}
+			}
+			
+			// Notify the listener and unload the project.
+			this.deactivateProject(exHandler);
+			
+			// Remember which classes have been used, so that they can be preloaded on the next load.
+			if(this.manager.getClassPreloadMode() == ClassPreloadMode.USED_CLASSES) {
+				this.usedClassNames = this.classLoader.getDefinedProjectClassNames();
+			}
+			
+			// Close the classloader.
+			this.closeClassLoader(this.classLoader, this.generation, exHandler);
+			this.classLoader = null;
+			this.releaseLibraryClassLoaders();
+			
+			// Mark the project as unloaded.
+			this.manager.unindexLoadedProject(this);
+			this.isLoaded = false;
+			this.version = null;
+			this.dependencies = null; // The user could swap binaries and load again, so reset them.
+			
+			// Return the unloaded projects.
+			return unloadedProjects;
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+	
+	/**
+	 * Represents a project of which the classloader has been defined and the main class has been found.
+	 * @author P.J.S. Kools
+	 */
+	private static final class PreparedLoad {
+		private final JavaProjectClassLoader classLoader;
+		private final Class<?> mainClass;
 		
-		// Mark the project as unloaded.
-		this.isLoaded = false;
-		this.version = null;
-		this.dependencies = null; // The user could swap binaries and load again, so reset them.
+		private PreparedLoad(JavaProjectClassLoader classLoader, Class<?> mainClass) {
+			this.classLoader = classLoader;
+			this.mainClass = mainClass;
+		}
+	}
+	
+	/**
+	 * Represents the output of a successful compile that has not necessarily been applied to the compiled project.
+	 * @author P.J.S. Kools
+	 * @see JavaProject#compile(File, Map, CompilerFeedbackHandler)
+	 */
+	static final class CompileOutput {
+		private final File binDir;
+		private final List<Dependency> dependencies;
+		private final MemoryClassStore classStore;
+		private volatile String abiFingerprint;
+		
+		private CompileOutput(File binDir,
+				List<Dependency> dependencies, MemoryClassStore classStore, String abiFingerprint) {
+			this.binDir = binDir;
+			this.dependencies = dependencies;
+			this.classStore = classStore;
+			this.abiFingerprint = abiFingerprint;
+		}
+		
+		/**
+		 * Gets the bin directory that has been compiled in.
+		 * @return The bin directory.
+		 */
+		File getBinDir() {
+			return this.binDir;
+		}
+		
+		/**
+		 * Gets the dependencies that have been compiled against.
+		 * @return The dependencies.
+		 */
+		List<Dependency> getDependencies() {
+			return Collections.unmodifiableList(this.dependencies);
+		}
 		
-		// Return the unloaded projects.
-		return unloadedProjects;
+		/**
+		 * Gets the compiled classes that are kept in memory.
+		 * @return The class store, or {@code null} if all compiled classes are in the bin directory.
+		 */
+		MemoryClassStore getClassStore() {
+			return this.classStore;
+		}
+		
+		/**
+		 * Gets the ABI fingerprint of the compiled classes. This may only be called while the bin directory has not
+		 * yet been moved.
+		 * @return The ABI fingerprint.
+		 * @throws IOException If an I/O error occurs while reading the compiled classes.
+		 * @see JavaProject#getAbiFingerprint()
+		 */
+		String getAbiFingerprint() throws IOException {
+			String abiFingerprint = this.abiFingerprint;
+			if(abiFingerprint == null) {
+				BuildInfo buildInfo = BuildInfo.read(this.binDir);
+				abiFingerprint = (buildInfo != null ? buildInfo.getAbiFingerprint()
+						: BuildInfo.computeAbiFingerprint(this.binDir, this.classStore));
+				this.abiFingerprint = abiFingerprint;
+			}
+			return abiFingerprint;
+		}
 	}
 	
 	/**
@@ -643,6 +1823,9 @@ public class JavaProject {
 		if(this.isLoaded()) {
 			throw new IllegalStateException("Cannot clean a loaded project.");
 		}
+		this.awaitBinDirWrite();
+		this.classStore = null;
+		this.abiFingerprint = null;
 		return Utils.removeFile(this.binDir);
 	}
 	
@@ -696,6 +1879,15 @@ public class JavaProject {
 		return this.projectName;
 	}
 	
+	/**
+	 * Gets the generation of this project. The generation is incremented every time a new classloader is created
+	 * for this project while loading it.
+	 * @return The generation, or 0 if this project has never been loaded.
+	 */
+	public int getGeneration() {
+		return this.generation;
+	}
+	
 	/**
 	 * getProjectDir method.
 	 * @return The project directory in the JavaProjects directory. This directory might not exist.
@@ -728,6 +1920,7 @@ public class JavaProject {
 	public void setBinDirName(String binDirName) {
 		this.binDir =
 				new File(this.projectDir.getAbsoluteFile(), binDirName.replaceAll("(\\.\\.|\\\\|\\/)", " "));
+		this.abiFingerprint = null;
 	}
 	
 	/**
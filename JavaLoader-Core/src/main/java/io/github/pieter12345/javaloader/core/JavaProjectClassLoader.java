@@ -1,31 +1,86 @@
 package io.github.pieter12345.javaloader.core;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import io.github.pieter12345.javaloader.core.classfile.ClassFileInfo;
+import io.github.pieter12345.javaloader.core.compiler.ClassPack;
+import io.github.pieter12345.javaloader.core.compiler.MemoryClassStore;
 import io.github.pieter12345.javaloader.core.utils.Utils;
 
 /**
  * JavaProjectClassLoader class.
  * This ClassLoader implementation allows one to load classes from a projects bin directory, then the ClassLoader used
  *  to load this class and last an optional list of bin directories and jar files.
+ * The contents of the bin directory are indexed once on creation, so class and resource lookups do not access the
+ *  file system unless the looked up entry exists in the bin directory.
+ * This ClassLoader is parallel capable. Loaded classes are cached in a concurrent map and classes are looked up and
+ *  defined while holding a per-class-name lock, so different classes can be loaded concurrently.
+ * Class names that could not be found are kept in a bounded cache, so repeated lookups of missing classes fail
+ *  without searching all class sources again. Lookups that failed due to an I/O error are not cached.
+ * If the bin directory contains a {@link ClassPack}, classes are defined from that pack instead of from the separate
+ *  class files.
  * @author P.J.S. Kools
  */
 public class JavaProjectClassLoader extends URLClassLoader {
 	
+	static {
+		ClassLoader.registerAsParallelCapable();
+	}
+	
 	// Variables & Constants.
-	private HashMap<String, Class<?>> classMap = new HashMap<String, Class<?>>();
-	private List<ClassLoader> dependencyClassLoaders;
-	private final File binDir;
+	private static final int NEGATIVE_LOOKUP_CACHE_SIZE = 1024;
+	private static final int RESOURCE_CACHE_MAX_ENTRY_SIZE = 64 * 1024;
+	private volatile Map<String, Class<?>> classMap = new ConcurrentHashMap<String, Class<?>>();
+	private volatile List<ClassLoader> dependencyClassLoaders; // Dependency classloaders that are not indexed.
+	private volatile Map<String, List<ClassLoader>> dependencyPackageIndex;
+	private final List<LibraryClassLoader> libraryClassLoaders; // Shared library classloaders, for resources.
+	private final Set<String> packageNames; // Packages of the bin dir, dependency files and dependency projects.
+	private volatile File binDir;
+	private volatile ClassPack binDirPack;
+	private volatile Map<String, File> binDirIndex;
+	private final boolean hasDependencyUrls;
 	private final ProtectionDomain protectionDomain;
+	private volatile MemoryClassStore classStore;
+	private final Map<String, Boolean> negativeLookupCache = Collections.synchronizedMap(
+			new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return this.size() > NEGATIVE_LOOKUP_CACHE_SIZE;
+		}
+	});
+	private final AtomicLong negativeLookupCacheHits = new AtomicLong();
+	private final AtomicLong negativeLookupCacheMisses = new AtomicLong();
+	private final Map<String, File> dependencyResourceIndex; // Resource path -> .jar dependency file.
+	private final Map<File, ZipFile> dependencyZipFiles = new HashMap<File, ZipFile>(); // Opened on first use.
+	private final Map<String, byte[]> resourceCache = new ConcurrentHashMap<String, byte[]>();
+	private volatile boolean resourceCacheEnabled = false;
 	
 	/**
 	 * Constructor.
@@ -35,8 +90,17 @@ public class JavaProjectClassLoader extends URLClassLoader {
 	 * @param binDir - The directory containing the package directories and .class files.
 	 */
 	public JavaProjectClassLoader(ClassLoader platformClassLoader, File binDir) {
-		super(new java.net.URL[] {Utils.fileToURL(binDir)}, platformClassLoader);
+		super(new java.net.URL[0], platformClassLoader);
 		this.binDir = binDir;
+		this.binDirPack = ClassPack.read(binDir);
+		this.binDirIndex = indexBinDir(binDir, this.binDirPack);
+		this.hasDependencyUrls = false;
+		this.classStore = null;
+		this.dependencyPackageIndex = Collections.emptyMap();
+		this.libraryClassLoaders = Collections.emptyList();
+		this.dependencyResourceIndex = Collections.emptyMap();
+		this.packageNames = new HashSet<String>();
+		addPackageNames(this.binDirIndex.keySet(), this.packageNames);
 		
 		// Initialize ProtectionDomain.
 		java.security.CodeSource codeSource =
@@ -72,18 +136,86 @@ public class JavaProjectClassLoader extends URLClassLoader {
 	 */
 	public JavaProjectClassLoader(ClassLoader platformClassLoader, File binDir, List<File> dependencies,
 			List<ClassLoader> dependencyClassLoaders) throws FileNotFoundException {
-		super(new java.net.URL[] {Utils.fileToURL(binDir)}, platformClassLoader);
+		this(platformClassLoader, binDir, dependencies, dependencyClassLoaders, null);
+	}
+	
+	/**
+	 * Constructor.
+	 * Creates a new JavaProjectClassLoader with the given bin directory, dependency files and in-memory class store.
+	 * @param platformClassLoader - The extra platform specific {@link ClassLoader} to use for resolving platform
+	 * specific class references, or {@code null} to use none.
+	 * @param binDir - The directory containing the package directories and .class files.
+	 * @param dependencies - A list of bin directories, .class files or .jar files.
+	 * @param dependencyClassLoaders - A list of classloaders from dependencies.
+	 * @param classStore - The store containing the classes of the project that have been compiled in memory, or
+	 * {@code null} to load all project classes from the bin directory.
+	 * @throws FileNotFoundException If a dependency file does not exist.
+	 */
+	public JavaProjectClassLoader(ClassLoader platformClassLoader, File binDir, List<File> dependencies,
+			List<ClassLoader> dependencyClassLoaders, MemoryClassStore classStore) throws FileNotFoundException {
+		super(new java.net.URL[0], platformClassLoader);
 		this.binDir = binDir;
-		this.dependencyClassLoaders = (dependencyClassLoaders == null
-				? null : new ArrayList<ClassLoader>(dependencyClassLoaders));
+		this.binDirPack = ClassPack.read(binDir);
+		this.binDirIndex = indexBinDir(binDir, this.binDirPack);
+		this.classStore = classStore;
+		
+		// Collect the names of the packages that this classloader can load classes from.
+		this.packageNames = new HashSet<String>();
+		addPackageNames(this.binDirIndex.keySet(), this.packageNames);
+		if(classStore != null) {
+			for(String className : classStore.getClassNames()) {
+				this.packageNames.add(getPackageName(className));
+			}
+		}
 		
-		// Add dependencies.
+		// Add dependencies. The entries of .jar files are indexed, so that resources can be read from them directly.
+		this.dependencyResourceIndex = new HashMap<String, File>();
 		if(dependencies != null) {
 			for(File dependency : dependencies) {
 				if(!dependency.exists()) {
 					throw new FileNotFoundException("Dependency file not found: " + dependency.getAbsolutePath());
 				}
 				this.addURL(Utils.fileToURL(dependency));
+				if(dependency.isDirectory()) {
+					addPackageNames(dependency, this.packageNames);
+				} else {
+					List<String> paths = listZipEntryNames(dependency);
+					addPackageNames(paths, this.packageNames);
+					indexResources(paths, dependency, this.dependencyResourceIndex);
+				}
+			}
+		}
+		this.hasDependencyUrls = (dependencies != null && !dependencies.isEmpty());
+		
+		// Index the packages of dependency project and shared library classloaders, so that class lookups can be
+		// delegated to the classloaders that own the package directly. Other classloaders are always tried.
+		this.dependencyPackageIndex = new HashMap<String, List<ClassLoader>>();
+		this.dependencyClassLoaders = new ArrayList<ClassLoader>();
+		this.libraryClassLoaders = new ArrayList<LibraryClassLoader>();
+		if(dependencyClassLoaders != null) {
+			for(ClassLoader classLoader : dependencyClassLoaders) {
+				Set<String> classLoaderPackageNames = null;
+				if(classLoader instanceof JavaProjectClassLoader) {
+					classLoaderPackageNames = ((JavaProjectClassLoader) classLoader).packageNames;
+				} else if(classLoader instanceof LibraryClassLoader) {
+					
+					// Shared libraries are included by this project, so their resources are project resources.
+					LibraryClassLoader libraryClassLoader = (LibraryClassLoader) classLoader;
+					classLoaderPackageNames = libraryClassLoader.getPackageNames();
+					this.libraryClassLoaders.add(libraryClassLoader);
+					for(File jarFile : libraryClassLoader.getJarFiles()) {
+						indexResources(listZipEntryNames(jarFile), jarFile, this.dependencyResourceIndex);
+					}
+				}
+				if(classLoaderPackageNames != null) {
+					for(String packageName : classLoaderPackageNames) {
+						this.dependencyPackageIndex.computeIfAbsent(packageName,
+								(String key) -> new ArrayList<ClassLoader>(1)).add(classLoader);
+					}
+					this.packageNames.addAll(classLoaderPackageNames);
+				} else {
+					this.dependencyClassLoaders.add(classLoader);
+				}
 			}
 		}
 		
@@ -98,7 +230,7 @@ public class JavaProjectClassLoader extends URLClassLoader {
 	/**
 	 * loadClass method.
 	 * Loads the class with given name. If a class exists in multiple places, it is loaded in this order:
-	 *  <br>1. The bin directory of the project.
+	 *  <br>1. The bin directory of the project (or the in-memory class store if the project was compiled in memory).
 	 *  <br>2. The passed projects dependencies (only INCLUDE dependencies).
 	 *  <br>3. The ClassLoaders of project dependencies (when depending on other JavaLoader projects).
 	 *  <br>4. The parent ClassLoader.
@@ -111,65 +243,137 @@ public class JavaProjectClassLoader extends URLClassLoader {
 	public Class<?> loadClass(String name) throws ClassNotFoundException {
 		
 		// Throw an Exception when the ClassLoader was already closed.
-		if(this.classMap == null) {
+		Map<String, Class<?>> classMap = this.classMap;
+		if(classMap == null) {
 			throw new ClassNotFoundException("This classloader has been closed.");
 		}
 		
 		// Return classes from the classMap if they have already been loaded.
-		if(this.classMap.containsKey(name)) {
-			return this.classMap.get(name);
+		Class<?> clazz = classMap.get(name);
+		if(clazz != null) {
+			return clazz;
 		}
 		
-		// Check if the classfile exists in the projects bin directory.
-		File classFile = new File(this.binDir, name.replace(".", "/") + ".class");
-		if(classFile.isFile()) {
-			try {
-				FileInputStream fis = new FileInputStream(classFile);
-				ByteArrayOutputStream byteArrayOutStream = new ByteArrayOutputStream();
-				int i;
-				byte[] buffer = new byte[(int) classFile.length()];
-				while((i = fis.read(buffer)) != -1) {
-					byteArrayOutStream.write(buffer, 0, i);
+		// Fail fast if the class was recently not found.
+		if(this.negativeLookupCache.containsKey(name)) {
+			this.negativeLookupCacheHits.incrementAndGet();
+			throw new ClassNotFoundException("Class not found: " + name);
+		}
+		
+		// Look up the class while holding the lock for its name, so that it is defined at most once.
+		synchronized(this.getClassLoadingLock(name)) {
+			clazz = classMap.get(name);
+			if(clazz == null) {
+				try {
+					clazz = this.lookupClass(name);
+				} catch (ClassNotFoundException e) {
+					
+					// Only cache real misses, so that classes that could not be read are looked up again.
+					this.negativeLookupCacheMisses.incrementAndGet();
+					if(!(e.getCause() instanceof IOException)) {
+						this.negativeLookupCache.put(name, Boolean.TRUE);
+					}
+					throw e;
 				}
-				fis.close();
-				byte[] bytes = byteArrayOutStream.toByteArray();
-				Class<?> definedClass = this.defineClass(name, bytes, 0, bytes.length, this.protectionDomain);
-				this.classMap.put(name, definedClass);
-				return definedClass;
+				classMap.put(name, clazz);
+			}
+			return clazz;
+		}
+	}
+	
+	/**
+	 * Looks up the class with the given name in the order described in {@link #loadClass(String)}, without using
+	 * the class cache.
+	 * @param name - The binary name of the class.
+	 * @return The resulting Class object.
+	 * @throws ClassNotFoundException If the class was not found. The cause is an {@link IOException} if the class
+	 * could not be read from one of the class sources.
+	 */
+	private Class<?> lookupClass(String name) throws ClassNotFoundException {
+		
+		// Delegate core Java classes to the parent classloader directly. These cannot be defined by any of the
+		// other sources, so there is no need to look them up there. When the parent is the bootstrap classloader,
+		// classes from platform modules such as java.sql are only visible through the ClassLoader that loaded this
+		// ClassLoader.
+		if(name.startsWith("java.")) {
+			try {
+				return super.loadClass(name);
+			} catch (ClassNotFoundException e) {
+				return JavaProjectClassLoader.class.getClassLoader().loadClass(name);
+			}
+		}
+		
+		// Define the class from the in-memory class store if it was compiled in memory.
+		MemoryClassStore classStore = this.classStore;
+		if(classStore != null) {
+			byte[] bytes = classStore.getClassBytes(name);
+			if(bytes != null) {
+				return this.defineClass(name, bytes, 0, bytes.length, this.protectionDomain);
+			}
+		}
+		
+		// Check if the classfile exists in the packed bin directory or in the projects bin directory.
+		String classFilePath = name.replace('.', '/') + ".class";
+		ClassPack binDirPack = this.binDirPack;
+		ByteBuffer packedClassFile = (binDirPack == null ? null : binDirPack.getEntry(classFilePath));
+		if(packedClassFile != null) {
+			return this.defineClass(name, packedClassFile, this.protectionDomain);
+		}
+		File classFile = this.binDirIndex.get(classFilePath);
+		if(classFile != null) {
+			try {
+				return this.defineClass(name, readClassFile(classFile), this.protectionDomain);
 			} catch (IOException e) {
 				throw new ClassNotFoundException(
-						"An IOException occured while reading existing class file: " + classFile.getAbsolutePath());
+						"An IOException occured while reading existing class file: " + classFile.getAbsolutePath(), e);
 			}
 		}
 		
 		// Attempt to load the class using the URLClassLoader URLs, bypassing a lookup in the parent classloader.
 		// This loads classes from dependency directories, .class files and .jar files.
-		try {
-			Class<?> definedClass = super.findClass(name);
-			this.classMap.put(name, definedClass);
-			return definedClass;
-		} catch (ClassNotFoundException e) {
-			// Ignore.
+		if(this.hasDependencyUrls) {
+			try {
+				return super.findClass(name);
+			} catch (ClassNotFoundException e) {
+				// Ignore.
+			}
 		}
 		
-		// Attempt to load the class using classloaders from dependencies.
-		if(this.dependencyClassLoaders != null) {
-			for(ClassLoader classLoader : this.dependencyClassLoaders) {
+		// Attempt to load the class using the classloaders from dependencies that own the package of the class.
+		// Remember I/O errors of dependency project classloaders, so that the miss is not cached.
+		IOException ioException = null;
+		Map<String, List<ClassLoader>> dependencyPackageIndex = this.dependencyPackageIndex;
+		List<ClassLoader> packageOwners =
+				(dependencyPackageIndex == null ? null : dependencyPackageIndex.get(getPackageName(name)));
+		if(packageOwners != null) {
+			for(ClassLoader classLoader : packageOwners) {
 				try {
-					Class<?> definedClass = classLoader.loadClass(name);
-					this.classMap.put(name, definedClass);
-					return definedClass;
+					return classLoader.loadClass(name);
 				} catch (ClassNotFoundException e) {
-					// Ignore.
+					if(e.getCause() instanceof IOException) {
+						ioException = (IOException) e.getCause();
+					}
+				}
+			}
+		}
+		
+		// Attempt to load the class using other classloaders from dependencies.
+		List<ClassLoader> dependencyClassLoaders = this.dependencyClassLoaders;
+		if(dependencyClassLoaders != null) {
+			for(ClassLoader classLoader : dependencyClassLoaders) {
+				try {
+					return classLoader.loadClass(name);
+				} catch (ClassNotFoundException e) {
+					if(e.getCause() instanceof IOException) {
+						ioException = (IOException) e.getCause();
+					}
 				}
 			}
 		}
 		
 		// Attempt to load the class using the parent classloader.
 		try {
-			Class<?> definedClass = super.loadClass(name);
-			this.classMap.put(name, definedClass);
-			return definedClass;
+			return super.loadClass(name);
 		} catch (ClassNotFoundException e) {
 			// Ignore.
 		}
@@ -178,15 +382,386 @@ public class JavaProjectClassLoader extends URLClassLoader {
 		// This is necessary to resolve JavaLoader classes for platforms on which JavaLoader is loaded using a child
 		// classloader of the platform specific parent classloader, or if that parent classloader has not been set.
 		try {
-			Class<?> definedClass = JavaProjectClassLoader.class.getClassLoader().loadClass(name);
-			this.classMap.put(name, definedClass);
-			return definedClass;
+			return JavaProjectClassLoader.class.getClassLoader().loadClass(name);
 		} catch (ClassNotFoundException e) {
 			// Ignore.
 		}
 		
 		// Throw a ClassNotFoundException since the class was not found.
-		throw new ClassNotFoundException("Class not found: " + name);
+		throw new ClassNotFoundException("Class not found: " + name, ioException);
+	}
+	
+	/**
+	 * Reads the given class file into a heap {@link ByteBuffer} through a {@link FileChannel}, copying the file
+	 * contents only once. The class file is not memory-mapped, since that would keep the file locked on some
+	 * platforms until the buffer is garbage collected, preventing the bin directory from being replaced.
+	 * @param classFile - The class file.
+	 * @return The buffer, positioned at 0 with its limit set to the file size.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static ByteBuffer readClassFile(File classFile) throws IOException {
+		try(FileChannel channel = FileChannel.open(classFile.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE) {
+				throw new IOException("Class file too large: " + classFile.getAbsolutePath());
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while(buffer.hasRemaining() && channel.read(buffer) != -1) {
+				// Keep reading until the buffer is full or the end of the file is reached.
+			}
+			buffer.flip();
+			return buffer;
+		}
+	}
+	
+	/**
+	 * Finds the resource with the given name in the bin directory index or, if it is not in the bin directory,
+	 * in the dependency directories, .class files and .jar files, including shared .jar libraries.
+	 * @param name - The resource name.
+	 * @return The resource URL, or {@code null} if the resource could not be found.
+	 */
+	@Override
+	public URL findResource(String name) {
+		File file = this.binDirIndex.get(name);
+		if(file != null) {
+			return Utils.fileToURL(file);
+		}
+		URL url = (this.hasDependencyUrls ? super.findResource(name) : null);
+		for(int i = 0; url == null && i < this.libraryClassLoaders.size(); i++) {
+			url = this.libraryClassLoaders.get(i).findResource(name);
+		}
+		return url;
+	}
+	
+	/**
+	 * Finds all resources with the given name in the bin directory index and in the dependency directories,
+	 * .class files and .jar files, including shared .jar libraries.
+	 * @param name - The resource name.
+	 * @return The resource URLs.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	@Override
+	public Enumeration<URL> findResources(String name) throws IOException {
+		List<URL> urls = new ArrayList<URL>();
+		File file = this.binDirIndex.get(name);
+		if(file != null) {
+			urls.add(Utils.fileToURL(file));
+		}
+		if(this.hasDependencyUrls) {
+			urls.addAll(Collections.list(super.findResources(name)));
+		}
+		for(LibraryClassLoader libraryClassLoader : this.libraryClassLoaders) {
+			urls.addAll(Collections.list(libraryClassLoader.findResources(name)));
+		}
+		return Collections.enumeration(urls);
+	}
+	
+	/**
+	 * Opens the resource with the given name from the bin directory or the .jar dependency files of this classloader,
+	 * including shared .jar libraries.
+	 * Unlike {@link #getResourceAsStream(String)}, this does not consult the parent and dependency project
+	 * classloaders, and reads the resource through the bin directory and .jar entry indices without creating and
+	 * opening a {@link URL}. Opened .jar files are kept open until this classloader is closed.
+	 * @param name - The '/'-separated resource name.
+	 * @return An input stream for the resource, or {@code null} if the resource could not be found.
+	 * @throws IOException If the resource exists, but could not be opened.
+	 * @see #setResourceCacheEnabled(boolean)
+	 */
+	public InputStream getProjectResourceAsStream(String name) throws IOException {
+		byte[] bytes = this.resourceCache.get(name);
+		if(bytes != null) {
+			return new ByteArrayInputStream(bytes);
+		}
+		
+		// Read the resource from the packed bin directory or from the bin directory.
+		ClassPack binDirPack = this.binDirPack;
+		ByteBuffer packedFile = (binDirPack == null ? null : binDirPack.getEntry(name));
+		if(packedFile != null) {
+			return new ByteArrayInputStream(
+					packedFile.array(), packedFile.arrayOffset() + packedFile.position(), packedFile.remaining());
+		}
+		File file = this.binDirIndex.get(name);
+		if(file != null) {
+			if(this.resourceCacheEnabled && file.length() <= RESOURCE_CACHE_MAX_ENTRY_SIZE) {
+				bytes = Files.readAllBytes(file.toPath());
+				this.resourceCache.put(name, bytes);
+				return new ByteArrayInputStream(bytes);
+			}
+			return Files.newInputStream(file.toPath());
+		}
+		
+		// Read the resource from the .jar dependency file that contains it.
+		File jarFile = this.dependencyResourceIndex.get(name);
+		if(jarFile == null) {
+			return null;
+		}
+		ZipFile zipFile;
+		synchronized(this.dependencyZipFiles) {
+			if(this.classMap == null) {
+				throw new IOException("Classloader has been closed.");
+			}
+			zipFile = this.dependencyZipFiles.get(jarFile);
+			if(zipFile == null) {
+				zipFile = new ZipFile(jarFile);
+				this.dependencyZipFiles.put(jarFile, zipFile);
+			}
+		}
+		ZipEntry entry = zipFile.getEntry(name);
+		if(entry == null) {
+			return null;
+		}
+		if(this.resourceCacheEnabled && entry.getSize() >= 0 && entry.getSize() <= RESOURCE_CACHE_MAX_ENTRY_SIZE) {
+			bytes = new byte[(int) entry.getSize()];
+			try(DataInputStream in = new DataInputStream(zipFile.getInputStream(entry))) {
+				in.readFully(bytes);
+			}
+			this.resourceCache.put(name, bytes);
+			return new ByteArrayInputStream(bytes);
+		}
+		return zipFile.getInputStream(entry);
+	}
+	
+	/**
+	 * Sets whether resources of at most 64 KiB that are read through {@link #getProjectResourceAsStream(String)} from
+	 * the bin directory or .jar dependency files should be kept in memory. Cached resources are returned without
+	 * accessing the file system, so changes to resource files are not visible until the project is reloaded.
+	 * @param enabled - True to enable the resource cache, false to disable and clear it.
+	 */
+	public void setResourceCacheEnabled(boolean enabled) {
+		this.resourceCacheEnabled = enabled;
+		if(!enabled) {
+			this.resourceCache.clear();
+		}
+	}
+	
+	static String getPackageName(String className) {
+		int ind = className.lastIndexOf('.');
+		return (ind == -1 ? "" : className.substring(0, ind));
+	}
+	
+	/**
+	 * Adds the package names of the given '/'-separated .class file paths to the given set.
+	 * @param paths - The paths. Paths not ending with ".class" are ignored.
+	 * @param packageNames - The set to add the package names to.
+	 */
+	private static void addPackageNames(Iterable<String> paths, Set<String> packageNames) {
+		for(String path : paths) {
+			if(path.endsWith(".class")) {
+				int ind = path.lastIndexOf('/');
+				packageNames.add(ind == -1 ? "" : path.substring(0, ind).replace('/', '.'));
+			}
+		}
+	}
+	
+	/**
+	 * Adds the package names of the .class files in the given dependency directory or .jar file to the given set.
+	 * Dependency files that cannot be read are ignored, since classes cannot be loaded from them either.
+	 * @param dependency - The dependency directory or .jar file.
+	 * @param packageNames - The set to add the package names to.
+	 */
+	static void addPackageNames(File dependency, Set<String> packageNames) {
+		if(dependency.isDirectory()) {
+			addPackageNames(indexBinDir(dependency, null).keySet(), packageNames);
+		} else {
+			addPackageNames(listZipEntryNames(dependency), packageNames);
+		}
+	}
+	
+	/**
+	 * Adds the given '/'-separated entry paths of the given .jar file to the given resource index, skipping
+	 * directories and paths that are already indexed.
+	 * @param paths - The entry paths.
+	 * @param jarFile - The .jar file.
+	 * @param resourceIndex - The resource index.
+	 */
+	private static void indexResources(List<String> paths, File jarFile, Map<String, File> resourceIndex) {
+		for(String path : paths) {
+			if(!path.endsWith("/")) {
+				resourceIndex.putIfAbsent(path, jarFile);
+			}
+		}
+	}
+	
+	/**
+	 * Lists the names of the entries in the given .jar file.
+	 * @param jarFile - The .jar file.
+	 * @return The entry names, or an empty list if the file could not be read as .jar file.
+	 */
+	private static List<String> listZipEntryNames(File jarFile) {
+		List<String> paths = new ArrayList<String>();
+		try(ZipFile zipFile = new ZipFile(jarFile)) {
+			for(Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements(); ) {
+				paths.add(entries.nextElement().getName());
+			}
+		} catch (IOException e) {
+			return Collections.emptyList();
+		}
+		return paths;
+	}
+	
+	/**
+	 * Gets the names of all classes in the bin directory of this classloader. Classes in the in-memory class store
+	 * are not included.
+	 * @return The binary class names.
+	 */
+	Set<String> getBinDirClassNames() {
+		Set<String> classNames = new HashSet<String>();
+		for(String path : this.binDirIndex.keySet()) {
+			if(path.endsWith(".class")) {
+				classNames.add(path.substring(0, path.length() - ".class".length()).replace('/', '.'));
+			}
+		}
+		return classNames;
+	}
+	
+	/**
+	 * Reads the header of the class file of the given class in the bin directory of this classloader, without
+	 * loading the class.
+	 * @param className - The binary class name.
+	 * @return The class file header.
+	 * @throws IOException If the class file does not exist or could not be read.
+	 * @see ClassFileInfo#parseHeader(File)
+	 */
+	ClassFileInfo readBinDirClassHeader(String className) throws IOException {
+		String classFilePath = className.replace('.', '/') + ".class";
+		ClassPack binDirPack = this.binDirPack;
+		ByteBuffer packedClassFile = (binDirPack == null ? null : binDirPack.getEntry(classFilePath));
+		if(packedClassFile != null) {
+			return ClassFileInfo.parseHeader(packedClassFile);
+		}
+		File classFile = this.binDirIndex.get(classFilePath);
+		if(classFile == null) {
+			throw new FileNotFoundException("Class file not found: " + classFilePath);
+		}
+		return ClassFileInfo.parseHeader(classFile);
+	}
+	
+	/**
+	 * Gets the names of all classes that this classloader defines, from both the in-memory class store and the bin
+	 * directory.
+	 * @return The binary class names.
+	 */
+	Set<String> getProjectClassNames() {
+		Set<String> classNames = this.getBinDirClassNames();
+		MemoryClassStore classStore = this.classStore;
+		if(classStore != null) {
+			classNames.addAll(classStore.getClassNames());
+		}
+		return classNames;
+	}
+	
+	/**
+	 * Reads the class file of the given class that this classloader defines, without loading the class.
+	 * @param className - The binary class name.
+	 * @return The class file bytes.
+	 * @throws IOException If the class file does not exist or could not be read.
+	 */
+	byte[] readProjectClassBytes(String className) throws IOException {
+		MemoryClassStore classStore = this.classStore;
+		byte[] bytes = (classStore == null ? null : classStore.getClassBytes(className));
+		if(bytes != null) {
+			return bytes;
+		}
+		String classFilePath = className.replace('.', '/') + ".class";
+		ClassPack binDirPack = this.binDirPack;
+		ByteBuffer packedClassFile = (binDirPack == null ? null : binDirPack.getEntry(classFilePath));
+		if(packedClassFile == null) {
+			File classFile = this.binDirIndex.get(classFilePath);
+			if(classFile == null) {
+				throw new FileNotFoundException("Class file not found: " + classFilePath);
+			}
+			packedClassFile = readClassFile(classFile);
+		}
+		bytes = new byte[packedClassFile.remaining()];
+		packedClassFile.get(bytes);
+		return bytes;
+	}
+	
+	/**
+	 * Gets the names of the classes from the in-memory class store and the bin directory that have been defined by
+	 * this classloader.
+	 * @return The binary class names.
+	 */
+	List<String> getDefinedProjectClassNames() {
+		List<String> classNames = new ArrayList<String>();
+		for(String className : this.getProjectClassNames()) {
+			if(this.findLoadedClass(className) != null) {
+				classNames.add(className);
+			}
+		}
+		return classNames;
+	}
+	
+	/**
+	 * Gets whether this classloader has been closed.
+	 * @return True if this classloader has been closed, false otherwise.
+	 */
+	boolean isClosed() {
+		return this.classMap == null;
+	}
+	
+	/**
+	 * Gets the class with the given name if it has been defined by this classloader.
+	 * @param name - The binary class name.
+	 * @return The class, or {@code null} if this classloader has not defined the class.
+	 */
+	Class<?> getDefinedClass(String name) {
+		return this.findLoadedClass(name);
+	}
+	
+	/**
+	 * Indexes the given bin directory and replaces the in-memory class store, so that classes that are loaded after
+	 * this call are defined from the replaced binaries. This is used after the defined classes have been redefined in
+	 * place or after the bin directory has been moved, and requires the replaced binaries to define the same classes.
+	 * @param binDir - The bin directory, which can differ from the bin directory that was used before.
+	 * @param classStore - The store containing the classes of the project that have been compiled in memory, or
+	 * {@code null} to load all project classes from the bin directory.
+	 */
+	void reloadBinDir(File binDir, MemoryClassStore classStore) {
+		ClassPack binDirPack = ClassPack.read(binDir);
+		this.binDirIndex = indexBinDir(binDir, binDirPack);
+		this.binDirPack = binDirPack;
+		this.binDir = binDir;
+		this.classStore = classStore;
+		this.negativeLookupCache.clear();
+		this.resourceCache.clear();
+	}
+	
+	/**
+	 * Creates an index of all files in the given bin directory. If the bin directory has been packed, the index is
+	 * created from the pack without accessing the bin directory.
+	 * @param binDir - The bin directory.
+	 * @param binDirPack - The pack of the bin directory, or {@code null} if it has not been packed.
+	 * @return A map containing the files by their '/'-separated path relative to the bin directory
+	 * (Example: "my/package/MyClass.class").
+	 */
+	private static Map<String, File> indexBinDir(File binDir, ClassPack binDirPack) {
+		Map<String, File> index = new HashMap<String, File>();
+		if(binDirPack != null) {
+			for(String path : binDirPack.getPaths()) {
+				index.put(path, new File(binDir, path));
+			}
+			return index;
+		}
+		Stack<File> dirStack = new Stack<File>();
+		Stack<String> pathStack = new Stack<String>();
+		dirStack.push(binDir);
+		pathStack.push("");
+		while(!dirStack.isEmpty()) {
+			File[] localFiles = dirStack.pop().listFiles();
+			String path = pathStack.pop();
+			if(localFiles != null) {
+				for(File localFile : localFiles) {
+					if(localFile.isDirectory()) {
+						dirStack.push(localFile);
+						pathStack.push(path + localFile.getName() + "/");
+					} else {
+						index.put(path + localFile.getName(), localFile);
+					}
+				}
+			}
+		}
+		return index;
 	}
 	
 	/**
@@ -198,23 +773,72 @@ public class JavaProjectClassLoader extends URLClassLoader {
 	 *  @throws RuntimeException If this method is called after the close() method is called.
 	 */
 	public boolean addCustomClass(Class<?> clazz) {
-		if(this.classMap == null) {
+		Map<String, Class<?>> classMap = this.classMap;
+		if(classMap == null) {
 			throw new RuntimeException("This classloader has been closed.");
 		}
-		if(!this.classMap.containsKey(clazz.getName())) {
-			this.classMap.put(clazz.getName(), clazz);
+		if(classMap.putIfAbsent(clazz.getName(), clazz) == null) {
+			this.negativeLookupCache.remove(clazz.getName());
 			return true;
 		}
 		return false;
 	}
 	
+	/**
+	 * Clears the cache of class names that could not be found. Classes that are looked up after this call will be
+	 * searched for again, which is necessary when a class becomes available in one of the parent or dependency
+	 * classloaders. The cache is also cleared when the binaries of this classloader are reloaded (see
+	 * {@link #reloadBinDir(File, MemoryClassStore)}). Classes that could not be found due to an I/O error are not
+	 * cached.
+	 */
+	public void clearNegativeLookupCache() {
+		this.negativeLookupCache.clear();
+	}
+	
+	/**
+	 * Gets the amount of class lookups that have been answered by the cache of class names that could not be found.
+	 * @return The amount of negative lookup cache hits.
+	 */
+	public long getNegativeLookupCacheHits() {
+		return this.negativeLookupCacheHits.get();
+	}
+	
+	/**
+	 * Gets the amount of class lookups that searched all class sources without finding the class, after which the
+	 * class name was added to the cache of class names that could not be found.
+	 * @return The amount of negative lookup cache misses.
+	 */
+	public long getNegativeLookupCacheMisses() {
+		return this.negativeLookupCacheMisses.get();
+	}
+	
 	@Override
 	public void close() throws IOException {
-		if(this.classMap != null) {
-			this.classMap.clear();
+		Map<String, Class<?>> classMap = this.classMap;
+		if(classMap != null) {
 			this.classMap = null;
+			classMap.clear();
 			this.dependencyClassLoaders = null;
+			this.dependencyPackageIndex = null;
+			this.negativeLookupCache.clear();
+			this.resourceCache.clear();
+		}
+		
+		// Close the .jar files that were opened to read resources.
+		IOException ex = null;
+		synchronized(this.dependencyZipFiles) {
+			for(ZipFile zipFile : this.dependencyZipFiles.values()) {
+				try {
+					zipFile.close();
+				} catch (IOException e) {
+					ex = e;
+				}
+			}
+			this.dependencyZipFiles.clear();
 		}
 		super.close();
+		if(ex != null) {
+			throw ex;
+		}
 	}
 }
@@ -0,0 +1,119 @@
+package io.github.pieter12345.javaloader.core;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * LibraryClassLoader class.
+ * This ClassLoader loads the classes of the .jar libraries that a project includes, so that projects that include
+ * the same set of libraries can share one set of defined library classes. All libraries of the set are loaded by the
+ * same ClassLoader, so that libraries can reference each other. Library classes are loaded from the .jar files
+ * before the parent ClassLoader is consulted, which matches how {@link JavaProjectClassLoader} prefers its INCLUDE
+ * dependencies.
+ * Instances are created and reference-counted by the {@link ProjectManager}.
+ * @author P.J.S. Kools
+ */
+public class LibraryClassLoader extends URLClassLoader {
+	
+	static {
+		ClassLoader.registerAsParallelCapable();
+	}
+	
+	// Variables & Constants.
+	private final List<File> jarFiles;
+	private final String hash;
+	private final Set<String> packageNames = new HashSet<String>();
+	private int referenceCount = 0; // Guarded by the project manager.
+	
+	/**
+	 * Creates a new LibraryClassLoader for the given .jar files.
+	 * @param parent - The parent {@link ClassLoader}, or {@code null} to use the bootstrap classloader.
+	 * @param jarFiles - The .jar files, in the order in which classes are looked up in them.
+	 * @param hash - The hash of the contents of the .jar files.
+	 */
+	LibraryClassLoader(ClassLoader parent, List<File> jarFiles, String hash) {
+		super(toUrls(jarFiles), parent);
+		this.jarFiles = Collections.unmodifiableList(new ArrayList<File>(jarFiles));
+		this.hash = hash;
+		for(File jarFile : jarFiles) {
+			JavaProjectClassLoader.addPackageNames(jarFile, this.packageNames);
+		}
+	}
+	
+	private static URL[] toUrls(List<File> files) {
+		URL[] urls = new URL[files.size()];
+		for(int i = 0; i < urls.length; i++) {
+			urls[i] = Utils.fileToURL(files.get(i));
+		}
+		return urls;
+	}
+	
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		synchronized(this.getClassLoadingLock(name)) {
+			Class<?> clazz = this.findLoadedClass(name);
+			if(clazz == null && this.packageNames.contains(JavaProjectClassLoader.getPackageName(name))) {
+				try {
+					clazz = this.findClass(name);
+				} catch (ClassNotFoundException e) {
+					// Ignore.
+				}
+			}
+			if(clazz == null) {
+				return super.loadClass(name, resolve);
+			}
+			if(resolve) {
+				this.resolveClass(clazz);
+			}
+			return clazz;
+		}
+	}
+	
+	/**
+	 * Gets the .jar files that this classloader loads classes from.
+	 * @return The .jar files.
+	 */
+	public List<File> getJarFiles() {
+		return this.jarFiles;
+	}
+	
+	/**
+	 * Gets the hash of the contents of the .jar files that this classloader loads classes from.
+	 * @return The hash.
+	 */
+	public String getHash() {
+		return this.hash;
+	}
+	
+	/**
+	 * Gets the names of the packages that contain classes in the .jar files.
+	 * @return The package names, using "" for the default package.
+	 */
+	Set<String> getPackageNames() {
+		return this.packageNames;
+	}
+	
+	/**
+	 * Gets the amount of loaded projects that use this classloader.
+	 * @return The reference count.
+	 */
+	int getReferenceCount() {
+		return this.referenceCount;
+	}
+	
+	/**
+	 * Sets the amount of loaded projects that use this classloader.
+	 * @param referenceCount - The reference count.
+	 */
+	void setReferenceCount(int referenceCount) {
+		this.referenceCount = referenceCount;
+	}
+}
@@ -2,20 +2,44 @@ package io.github.pieter12345.javaloader.core;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.instrument.ClassDefinition;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 
+import io.github.pieter12345.graph.ConcurrentChildBeforeParentGraphScheduler;
+import io.github.pieter12345.graph.ConcurrentChildBeforeParentGraphScheduler.NodeHandler;
 import io.github.pieter12345.graph.Graph;
 import io.github.pieter12345.graph.Graph.ChildBeforeParentGraphIterator;
 import io.github.pieter12345.graph.Graph.ParentBeforeChildGraphIterator;
+import io.github.pieter12345.javaloader.core.JavaProject.CompileOutput;
 import io.github.pieter12345.javaloader.core.JavaProject.CompilerFeedbackHandler;
 import io.github.pieter12345.javaloader.core.JavaProject.UnloadMethod;
+import io.github.pieter12345.javaloader.core.compiler.BuildCache;
+import io.github.pieter12345.javaloader.core.compiler.ClassPack;
+import io.github.pieter12345.javaloader.core.compiler.CompilerService;
+import io.github.pieter12345.javaloader.core.compiler.ForkedCompilerService;
+import io.github.pieter12345.javaloader.core.compiler.IncrementalCompileState;
+import io.github.pieter12345.javaloader.core.compiler.MemoryClassStore;
 import io.github.pieter12345.javaloader.core.dependency.Dependency;
 import io.github.pieter12345.javaloader.core.dependency.ProjectDependency;
 import io.github.pieter12345.javaloader.core.dependency.ProjectDependencyParser;
@@ -32,15 +56,43 @@ import io.github.pieter12345.javaloader.core.utils.Utils;
 
 /**
  * Manages JavaProject instances and provides 'bulk' operations such as load all, unload all and compile all projects.
+ * Project lookups never block and can be performed from any thread, while lifecycle transitions (loading, unloading,
+ * adding and removing projects) are performed by one thread at a time.
  * @author P.J.S. Kools
  */
 public class ProjectManager {
 	
 	// Variables & Constants.
-	private final HashMap<String, JavaProject> projects = new HashMap<String, JavaProject>();
+	private final Map<String, JavaProject> projects = new ConcurrentHashMap<String, JavaProject>();
+	private final ReentrantLock lifecycleLock = new ReentrantLock();
+	private final Set<Thread> loaderThreads = ConcurrentHashMap.newKeySet();
+	private final Map<String, Set<String>> loadedDependencyIndex = new HashMap<String, Set<String>>();
+	private final Map<String, Set<String>> loadedDependentIndex = new HashMap<String, Set<String>>();
 	private final File projectsDir;
 	private final ProjectDependencyParser dependencyParser;
 	private final ClassLoader platformClassLoader;
+	private boolean incrementalCompilationEnabled = false;
+	private boolean inMemoryCompilationEnabled = false;
+	private ExecutorService binDirWriteExecutor = null;
+	private CompilerService compilerService = new CompilerService();
+	private ForkedCompilerService forkedCompilerService = null;
+	private int forkedCompileWorkers = 0;
+	private List<String> forkedCompileJvmArguments = Collections.emptyList();
+	private int compileParallelism = 1;
+	private int loadParallelism = 1;
+	private BuildCache buildCache = null;
+	private boolean abiAwareRecompilationEnabled = false;
+	private boolean packedOutputEnabled = false;
+	private boolean sharedLibrariesEnabled = false;
+	private final Map<String, LibraryClassLoader> libraryClassLoaders = new HashMap<String, LibraryClassLoader>();
+	private final Map<String, String> libraryHashes = new HashMap<String, String>(); // File stamp -> hash.
+	private final ClassLoaderLeakDetector leakDetector = new ClassLoaderLeakDetector();
+	private final ServiceRegistry serviceRegistry = new ServiceRegistry();
+	private boolean hotSwapEnabled = false;
+	private boolean swapReloadEnabled = false;
+	private boolean resourceCacheEnabled = false;
+	private ClassPreloadMode classPreloadMode = ClassPreloadMode.DISABLED;
+	private ExecutorService classPreloadExecutor = null;
 	
 	/**
 	 * Creates a new {@link ProjectManager}.
@@ -73,6 +125,426 @@ public class ProjectManager {
 		return this.platformClassLoader;
 	}
 	
+	/**
+	 * Gets the compiler service that is shared by all projects managed by this project manager.
+	 * The service keeps warm file managers with cached indexes of the platform classpath between compiles.
+	 * @return The {@link CompilerService}.
+	 */
+	public CompilerService getCompilerService() {
+		return this.compilerService;
+	}
+	
+	/**
+	 * Sets whether projects managed by this project manager should be compiled in forked worker JVMs instead of in
+	 * this JVM. This keeps the memory used by the Java compiler off the heap of this JVM, at the cost of transferring
+	 * compile requests and in-memory compiled classes between the JVMs. Compiler feedback is passed to the
+	 * {@link CompilerFeedbackHandler} as usual. Running workers are stopped when the setting is changed.
+	 * @param maxWorkers - The maximum number of worker JVMs, or 0 to compile in this JVM.
+	 * @param jvmArguments - The arguments to pass to the worker JVMs (Example: "-Xmx512M").
+	 * @throws IllegalArgumentException If maxWorkers is negative.
+	 */
+	public synchronized void setForkedCompilation(int maxWorkers,
+			List<String> jvmArguments) throws IllegalArgumentException {
+		if(maxWorkers < 0) {
+			throw new IllegalArgumentException("Max workers cannot be negative, but was " + maxWorkers + ".");
+		}
+		if(this.forkedCompilerService != null) {
+			this.forkedCompilerService.close();
+			this.forkedCompilerService = null;
+		}
+		this.forkedCompileWorkers = maxWorkers;
+		this.forkedCompileJvmArguments = new ArrayList<String>(jvmArguments);
+	}
+	
+	/**
+	 * Gets the forked compiler service that is used to compile projects in worker JVMs. The service is created when
+	 * it is first needed.
+	 * @return The {@link ForkedCompilerService}, or {@code null} if projects are compiled in this JVM.
+	 * @see #setForkedCompilation(int, List)
+	 */
+	public synchronized ForkedCompilerService getForkedCompilerService() {
+		if(this.forkedCompilerService == null && this.forkedCompileWorkers > 0) {
+			this.forkedCompilerService =
+					new ForkedCompilerService(this.forkedCompileWorkers, this.forkedCompileJvmArguments);
+		}
+		return this.forkedCompilerService;
+	}
+	
+	/**
+	 * Sets the maximum number of projects that {@link #recompileAllProjects(RecompileFeedbackHandler,
+	 * ProjectStateListener)} compiles at the same time. Projects are compiled as soon as all their dependencies have
+	 * been compiled. A parallelism of 1 compiles all projects one after another on the calling thread.
+	 * @param parallelism - The maximum number of concurrent compiles.
+	 * @throws IllegalArgumentException If the parallelism is smaller than 1.
+	 */
+	public void setCompileParallelism(int parallelism) throws IllegalArgumentException {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException("Compile parallelism must be at least 1, but was " + parallelism + ".");
+		}
+		this.compileParallelism = parallelism;
+	}
+	
+	/**
+	 * Gets the maximum number of projects that are compiled at the same time during a recompile of all projects.
+	 * @return The compile parallelism.
+	 * @see #setCompileParallelism(int)
+	 */
+	public int getCompileParallelism() {
+		return this.compileParallelism;
+	}
+	
+	/**
+	 * Sets the maximum number of threads that {@link #loadAllProjects(LoadExceptionHandler)} uses to load projects.
+	 * When larger than 1, the classloaders of projects that do not depend on eachother are defined and their main
+	 * classes are found concurrently. The main classes are then instantiated and the {@link ProjectStateListener} is
+	 * notified on the calling thread. The {@link JavaLoaderProject#onLoad()} method is called on a loader thread for
+	 * projects of which the main class is annotated with {@link ThreadSafeOnLoad}, and on the calling thread for
+	 * other projects. A parallelism of 1 loads all projects one after another on the calling thread.
+	 * @param parallelism - The maximum number of concurrent project loads.
+	 * @throws IllegalArgumentException If the parallelism is smaller than 1.
+	 */
+	public void setLoadParallelism(int parallelism) throws IllegalArgumentException {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException("Load parallelism must be at least 1, but was " + parallelism + ".");
+		}
+		this.loadParallelism = parallelism;
+	}
+	
+	/**
+	 * Gets the maximum number of threads that are used to load projects during a load of all projects.
+	 * @return The load parallelism.
+	 * @see #setLoadParallelism(int)
+	 */
+	public int getLoadParallelism() {
+		return this.loadParallelism;
+	}
+	
+	/**
+	 * Sets whether projects managed by this project manager should be compiled incrementally. When enabled, only
+	 * changed source files and the source files that depend on them are recompiled, using the fingerprint store in
+	 * the previous bin directory of the project. Projects without a (valid) fingerprint store are compiled fully.
+	 * @param enabled - True to enable incremental compilation, false to always recompile all source files.
+	 */
+	public void setIncrementalCompilationEnabled(boolean enabled) {
+		this.incrementalCompilationEnabled = enabled;
+	}
+	
+	/**
+	 * Gets whether projects managed by this project manager are compiled incrementally.
+	 * @return True if incremental compilation is enabled, false otherwise.
+	 * @see #setIncrementalCompilationEnabled(boolean)
+	 */
+	public boolean isIncrementalCompilationEnabled() {
+		return this.incrementalCompilationEnabled;
+	}
+	
+	/**
+	 * Sets whether projects managed by this project manager should be compiled in memory. When enabled, compiled
+	 * classes are kept in memory and loaded projects define their classes directly from there. The class files are
+	 * written to the bin directory asynchronously when the project is loaded, so that they are available on the next
+	 * startup. In-memory compilation takes precedence over incremental compilation.
+	 * @param enabled - True to enable in-memory compilation, false to compile to the bin directory.
+	 */
+	public void setInMemoryCompilationEnabled(boolean enabled) {
+		this.inMemoryCompilationEnabled = enabled;
+	}
+	
+	/**
+	 * Gets whether projects managed by this project manager are compiled in memory.
+	 * @return True if in-memory compilation is enabled, false otherwise.
+	 * @see #setInMemoryCompilationEnabled(boolean)
+	 */
+	public boolean isInMemoryCompilationEnabled() {
+		return this.inMemoryCompilationEnabled;
+	}
+	
+	/**
+	 * Sets whether projects managed by this project manager should use the build cache. When enabled, the compile
+	 * output of every project is stored in a content-addressed cache in the "{@value BuildCache#CACHE_DIR_NAME}"
+	 * directory within the projects directory. Compiling a project with inputs that have been compiled before then
+	 * restores the output from the cache instead of running the compiler.
+	 * This has no effect when no projects directory is set.
+	 * @param enabled - True to enable the build cache, false to disable it.
+	 */
+	public void setBuildCacheEnabled(boolean enabled) {
+		if(!enabled || this.projectsDir == null) {
+			this.buildCache = null;
+		} else if(this.buildCache == null) {
+			this.buildCache = new BuildCache(new File(this.projectsDir.getAbsoluteFile(), BuildCache.CACHE_DIR_NAME));
+		}
+	}
+	
+	/**
+	 * Gets the build cache used by projects managed by this project manager.
+	 * @return The build cache, or {@code null} if the build cache is disabled.
+	 * @see #setBuildCacheEnabled(boolean)
+	 */
+	public BuildCache getBuildCache() {
+		return this.buildCache;
+	}
+	
+	/**
+	 * Sets whether projects managed by this project manager should track the ABI (public and protected signatures
+	 * and constants) of their compiled classes. When enabled, projects are not recompiled when their inputs and the
+	 * ABI of their dependency projects are unchanged, and a project can be recompiled while its dependents are
+	 * loaded. Those dependents are then only recompiled when the ABI of the project has changed, and reloaded
+	 * afterwards.
+	 * @param enabled - True to enable ABI-aware recompilation, false to disable it.
+	 * @see #recompile(JavaProject, CompilerFeedbackHandler, UnloadExceptionHandler)
+	 */
+	public void setAbiAwareRecompilationEnabled(boolean enabled) {
+		this.abiAwareRecompilationEnabled = enabled;
+	}
+	
+	/**
+	 * Gets whether projects managed by this project manager track the ABI of their compiled classes.
+	 * @return True if ABI-aware recompilation is enabled, false otherwise.
+	 * @see #setAbiAwareRecompilationEnabled(boolean)
+	 */
+	public boolean isAbiAwareRecompilationEnabled() {
+		return this.abiAwareRecompilationEnabled;
+	}
+	
+	/**
+	 * Sets whether projects managed by this project manager should pack their compiled classes. When enabled, a
+	 * compile also writes all files in the bin directory of the project into a single indexed
+	 * "{@value ClassPack#FILE_NAME}" file in that bin directory. Loading the project then reads that single file
+	 * instead of every class file. For projects that are compiled in memory, the pack is written together with the
+	 * class files when the project is loaded.
+	 * @param enabled - True to enable packed output, false to disable it.
+	 */
+	public void setPackedOutputEnabled(boolean enabled) {
+		this.packedOutputEnabled = enabled;
+	}
+	
+	/**
+	 * Gets whether projects managed by this project manager pack their compiled classes.
+	 * @return True if packed output is enabled, false otherwise.
+	 * @see #setPackedOutputEnabled(boolean)
+	 */
+	public boolean isPackedOutputEnabled() {
+		return this.packedOutputEnabled;
+	}
+	
+	/**
+	 * Sets whether projects managed by this project manager should share the classes of .jar dependencies with
+	 * scope INCLUDE. When enabled, all loaded projects that include the same set of .jar files (by contents) use a
+	 * single {@link LibraryClassLoader} for them, instead of each defining their own copy of the library classes.
+	 * Note that this also means that static state in those libraries is shared between projects, and that library
+	 * classes cannot see the classes of the projects that use them.
+	 * @param enabled - True to share library classloaders, false to define library classes per project.
+	 */
+	public void setSharedLibrariesEnabled(boolean enabled) {
+		this.sharedLibrariesEnabled = enabled;
+	}
+	
+	/**
+	 * Gets whether projects managed by this project manager share the classes of .jar dependencies with scope
+	 * INCLUDE.
+	 * @return True if shared libraries are enabled, false otherwise.
+	 * @see #setSharedLibrariesEnabled(boolean)
+	 */
+	public boolean isSharedLibrariesEnabled() {
+		return this.sharedLibrariesEnabled;
+	}
+	
+	/**
+	 * Sets whether recompiles of loaded projects of which only method bodies have changed should redefine the loaded
+	 * classes in place, instead of unloading and loading the project. This keeps the state of the project, but
+	 * changes to static initializers and field initializers do not take effect until the project is reloaded.
+	 * Redefining classes requires the {@link HotSwapAgent} to be started. Projects are reloaded as usual when the
+	 * agent has not been started or when the class structure has changed.
+	 * @param enabled - True to enable hot swapping, false to always reload recompiled projects.
+	 */
+	public void setHotSwapEnabled(boolean enabled) {
+		this.hotSwapEnabled = enabled;
+	}
+	
+	/**
+	 * Gets whether recompiles of loaded projects of which only method bodies have changed redefine the loaded
+	 * classes in place.
+	 * @return True if hot swapping is enabled, false otherwise.
+	 * @see #setHotSwapEnabled(boolean)
+	 */
+	public boolean isHotSwapEnabled() {
+		return this.hotSwapEnabled;
+	}
+	
+	/**
+	 * Sets whether recompiles of loaded projects without loaded dependents should load the new generation of the
+	 * project next to the loaded generation before swapping them, instead of unloading the project before loading it.
+	 * This keeps the commands and listeners of the project available while the new classes are loaded, the new main
+	 * class is instantiated and {@link JavaLoaderProject#onPreActivate(JavaProject)} runs. The project is only
+	 * unavailable while the previous instance is unloaded and the new instance is loaded. When the new instance
+	 * fails to load at that point, the previous instance is loaded again and the new binaries are discarded.
+	 * Hot swapping takes precedence over swap reloading.
+	 * @param enabled - True to enable swap reloading, false to unload projects before loading them.
+	 * @see #setHotSwapEnabled(boolean)
+	 */
+	public void setSwapReloadEnabled(boolean enabled) {
+		this.swapReloadEnabled = enabled;
+	}
+	
+	/**
+	 * Gets whether recompiles of loaded projects load the new generation of the project before unloading the loaded
+	 * generation.
+	 * @return True if swap reloading is enabled, false otherwise.
+	 * @see #setSwapReloadEnabled(boolean)
+	 */
+	public boolean isSwapReloadEnabled() {
+		return this.swapReloadEnabled;
+	}
+	
+	/**
+	 * Sets whether the classloaders of projects managed by this project manager should keep small resources in
+	 * memory after they have been read through {@link JavaProjectClassLoader#getProjectResourceAsStream(String)}.
+	 * This only affects projects that are loaded after this call.
+	 * @param enabled - True to enable resource caching, false to read resources from the file system every time.
+	 * @see JavaProjectClassLoader#setResourceCacheEnabled(boolean)
+	 */
+	public void setResourceCacheEnabled(boolean enabled) {
+		this.resourceCacheEnabled = enabled;
+	}
+	
+	/**
+	 * Gets whether the classloaders of projects managed by this project manager keep small resources in memory.
+	 * @return True if resource caching is enabled, false otherwise.
+	 * @see #setResourceCacheEnabled(boolean)
+	 */
+	public boolean isResourceCacheEnabled() {
+		return this.resourceCacheEnabled;
+	}
+	
+	/**
+	 * Sets which classes of projects managed by this project manager should be loaded and linked on a low priority
+	 * background thread after the project has been loaded, so that the first use of these classes does not have to
+	 * load and verify them. Classes are not initialized by this, so static initializers still run on first use.
+	 * @param mode - The class preload mode.
+	 */
+	public void setClassPreloadMode(ClassPreloadMode mode) {
+		this.classPreloadMode = mode;
+	}
+	
+	/**
+	 * Gets which classes of projects managed by this project manager are loaded and linked in the background after
+	 * the project has been loaded.
+	 * @return The class preload mode.
+	 * @see #setClassPreloadMode(ClassPreloadMode)
+	 */
+	public ClassPreloadMode getClassPreloadMode() {
+		return this.classPreloadMode;
+	}
+	
+	/**
+	 * Gets the leak detector that tracks the classloaders of unloaded projects until they are garbage collected.
+	 * @return The leak detector.
+	 */
+	public ClassLoaderLeakDetector getLeakDetector() {
+		return this.leakDetector;
+	}
+	
+	/**
+	 * Gets the service registry through which projects export services to other projects. Consumers of a service
+	 * only have to depend on the project that defines the service interface, so reloading the provider of the service
+	 * does not unload them.
+	 * @return The service registry.
+	 */
+	public ServiceRegistry getServiceRegistry() {
+		return this.serviceRegistry;
+	}
+	
+	/**
+	 * Gets the shared library classloaders that are currently in use by loaded projects.
+	 * @return The library classloaders.
+	 * @see #setSharedLibrariesEnabled(boolean)
+	 */
+	public synchronized List<LibraryClassLoader> getLibraryClassLoaders() {
+		return new ArrayList<LibraryClassLoader>(this.libraryClassLoaders.values());
+	}
+	
+	/**
+	 * Gets the shared library classloader for the given set of .jar files, creating it if no loaded project uses a
+	 * set of .jar files with the same contents yet, and increments its reference count.
+	 * Every call has to be followed by a call to {@link #releaseLibraryClassLoader(LibraryClassLoader)}.
+	 * @param jarFiles - The .jar files, in the order in which classes are looked up in them.
+	 * @return The library classloader.
+	 * @throws IOException If an I/O error occurs while hashing a .jar file.
+	 */
+	synchronized LibraryClassLoader acquireLibraryClassLoader(List<File> jarFiles) throws IOException {
+		
+		// Get the hash of the .jar files, only hashing the contents of a .jar file when its path, size or modification
+		// time changed.
+		StringBuilder hashes = new StringBuilder();
+		for(File jarFile : jarFiles) {
+			String stamp = jarFile.getAbsolutePath() + "|" + jarFile.length() + "|" + jarFile.lastModified();
+			String hash = this.libraryHashes.get(stamp);
+			if(hash == null) {
+				hash = IncrementalCompileState.hash(Files.readAllBytes(jarFile.toPath()));
+				this.libraryHashes.put(stamp, hash);
+			}
+			hashes.append(hash).append('|');
+		}
+		String hash = IncrementalCompileState.hash(hashes.toString().getBytes(StandardCharsets.UTF_8));
+		
+		// Get or create the library classloader.
+		LibraryClassLoader classLoader = this.libraryClassLoaders.get(hash);
+		if(classLoader == null) {
+			classLoader = new LibraryClassLoader((this.platformClassLoader != null
+					? this.platformClassLoader : LibraryClassLoader.class.getClassLoader()), jarFiles, hash);
+			this.libraryClassLoaders.put(hash, classLoader);
+		}
+		classLoader.setReferenceCount(classLoader.getReferenceCount() + 1);
+		return classLoader;
+	}
+	
+	/**
+	 * Decrements the reference count of the given shared library classloader, closing it when it is no longer used.
+	 * @param classLoader - The library classloader, as returned by {@link #acquireLibraryClassLoader(List)}.
+	 */
+	synchronized void releaseLibraryClassLoader(LibraryClassLoader classLoader) {
+		classLoader.setReferenceCount(classLoader.getReferenceCount() - 1);
+		if(classLoader.getReferenceCount() <= 0 && this.libraryClassLoaders.get(classLoader.getHash()) == classLoader) {
+			this.libraryClassLoaders.remove(classLoader.getHash());
+			try {
+				classLoader.close();
+			} catch (IOException e) {
+				// Ignore.
+			}
+		}
+	}
+	
+	/**
+	 * Submits the given bin directory write task to the single background thread that writes bin directories.
+	 * @param task - The task to execute.
+	 * @return The {@link Future} representing the pending completion of the task.
+	 */
+	synchronized Future<?> submitBinDirWrite(Callable<Void> task) {
+		if(this.binDirWriteExecutor == null) {
+			this.binDirWriteExecutor = Executors.newSingleThreadExecutor((Runnable runnable) -> {
+				Thread thread = new Thread(runnable, "JavaLoader bin directory writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return this.binDirWriteExecutor.submit(task);
+	}
+	
+	/**
+	 * Submits the given class preload task to the single low priority background thread that preloads classes.
+	 * @param task - The task to execute.
+	 */
+	synchronized void submitClassPreload(Runnable task) {
+		if(this.classPreloadExecutor == null) {
+			this.classPreloadExecutor = Executors.newSingleThreadExecutor((Runnable runnable) -> {
+				Thread thread = new Thread(runnable, "JavaLoader class preloader");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
+		}
+		this.classPreloadExecutor.execute(task);
+	}
+	
 	/**
 	 * Adds the given project to this project manager. If a project with an equal name already exists, nothing happens.
 	 * @param project - The project to add.
@@ -80,11 +552,19 @@ public class ProjectManager {
 	 * This means that {@link JavaProject#getProjectManager()} returned a manager that was not equal to this.
 	 */
 	protected void addProject(JavaProject project) throws IllegalStateException {
-		if(project.getProjectManager() != this) {
-			throw new IllegalStateException("The given project was initialized with a different project manager.");
-		}
-		if(!this.projects.containsKey(project.getName())) {
-			this.projects.put(project.getName(), project);
+		this.lockLifecycle();
+		try {
+			if(project.getProjectManager() != this) {
+				throw new IllegalStateException("The given project was initialized with a different project manager.");
+			}
+			if(!this.projects.containsKey(project.getName())) {
+				this.projects.put(project.getName(), project);
+				if(project.isLoaded()) {
+					this.indexLoadedProject(project);
+				}
+			}
+		} finally {
+			this.lifecycleLock.unlock();
 		}
 	}
 	
@@ -98,10 +578,45 @@ public class ProjectManager {
 	 * @return True if the project was removed, false otherwise.
 	 */
 	protected boolean removeProject(JavaProject project) throws IllegalStateException {
-		if(project.isLoaded()) {
-			throw new IllegalStateException("Cannot remove a loaded project.");
+		this.lockLifecycle();
+		try {
+			if(project.isLoaded()) {
+				throw new IllegalStateException("Cannot remove a loaded project.");
+			}
+			if(this.projects.remove(project.getName(), project)) {
+				this.unindexLoadedProject(project);
+				return true;
+			}
+			return false;
+		} finally {
+			this.lifecycleLock.unlock();
+		}
+	}
+	
+	/**
+	 * Gets the lock that is held during project lifecycle transitions, such as loading, unloading, adding and
+	 * removing projects. Only one thread can perform lifecycle transitions at the same time, while project lookups
+	 * never block.
+	 * @return The lifecycle lock.
+	 */
+	ReentrantLock getLifecycleLock() {
+		return this.lifecycleLock;
+	}
+	
+	/**
+	 * Acquires the lifecycle lock (see {@link #getLifecycleLock()}).
+	 * @return The lifecycle lock, which has to be unlocked by the caller.
+	 * @throws IllegalStateException If the current thread is a loader thread of a parallel load (see
+	 * {@link ThreadSafeOnLoad}). The thread that loads the projects holds the lifecycle lock while it waits for the
+	 * loader threads, so acquiring it from a loader thread would deadlock.
+	 */
+	ReentrantLock lockLifecycle() throws IllegalStateException {
+		if(this.loaderThreads.contains(Thread.currentThread())) {
+			throw new IllegalStateException("Projects cannot be loaded, unloaded, added or removed from a"
+					+ " thread-safe onLoad method while projects are being loaded in parallel.");
 		}
-		return this.projects.remove(project.getName(), project);
+		this.lifecycleLock.lock();
+		return this.lifecycleLock;
 	}
 	
 	/**
@@ -128,7 +643,7 @@ public class ProjectManager {
 	 */
 	public JavaLoaderProject getProjectInstance(String name) {
 		JavaProject project = this.projects.get(name);
-		return (project == null ? null : project.getInstance());
+		return (project == null || !project.isLoaded() ? null : project.getInstance());
 	}
 	
 	/**
@@ -139,7 +654,7 @@ public class ProjectManager {
 		ArrayList<JavaLoaderProject> instances = new ArrayList<JavaLoaderProject>(this.projects.size());
 		for(JavaProject project : this.projects.values()) {
 			JavaLoaderProject instance = project.getInstance();
-			if(instance != null) {
+			if(instance != null && project.isLoaded()) {
 				instances.add(instance);
 			}
 		}
@@ -178,95 +693,214 @@ public class ProjectManager {
 	 * These sets do not overlap.
 	 */
 	public LoadAllResult loadAllProjects(LoadExceptionHandler exHandler) {
-		
-		// Create a set of unloaded enabled projects.
-		Set<JavaProject> projects = new HashSet<JavaProject>();
-		for(JavaProject project : this.projects.values()) {
-			if(!project.isLoaded() && !project.isDisabled()) {
-				projects.add(project);
+		this.lockLifecycle();
+		try {
+			
+			// Create a set of unloaded enabled projects.
+			Set<JavaProject> projects = new HashSet<JavaProject>();
+			for(JavaProject project : this.projects.values()) {
+				if(!project.isLoaded() && !project.isDisabled()) {
+					projects.add(project);
+				}
 			}
-		}
-		
-		// Generate a graph, representing the projects and how they depend on eachother (dependencies as children).
-		GraphGenerationResult result = this.generateDependencyGraph(projects, false);
-		Graph<JavaProject> graph = result.graph;
-		Set<JavaProject> errorProjects = new HashSet<JavaProject>();
-		for(JavaProjectException ex : result.exceptions) {
-			if(ex.getProject() != null) {
-				errorProjects.add(ex.getProject());
+			
+			// Generate a graph, representing the projects and how they depend on eachother (dependencies as children).
+			GraphGenerationResult result = this.generateDependencyGraph(projects, false);
+			Graph<JavaProject> graph = result.graph;
+			Set<JavaProject> errorProjects = new HashSet<JavaProject>();
+			for(JavaProjectException ex : result.exceptions) {
+				if(ex.getProject() != null) {
+					errorProjects.add(ex.getProject());
+				}
+				exHandler.handleLoadException(new LoadException(ex.getProject(), ex.getMessage()));
 			}
-			exHandler.handleLoadException(new LoadException(ex.getProject(), ex.getMessage()));
-		}
-		
-		// Check for cycles (Projects that depend on themselves are included).
-		Set<Set<JavaProject>> cycles = getGraphCycles(graph);
-		for(Set<JavaProject> cycle : cycles) {
-			assert(cycle.size() != 0);
-			if(cycle.size() > 1) {
-				
-				// Add an exception to all projects in the cycle.
-				String projectsStr = Utils.glueIterable(cycle, (JavaProject project) -> project.getName(), ", ");
-				for(JavaProject project : cycle) {
+			
+			// Check for cycles (Projects that depend on themselves are included).
+			Set<Set<JavaProject>> cycles = getGraphCycles(graph);
+			for(Set<JavaProject> cycle : cycles) {
+				assert(cycle.size() != 0);
+				if(cycle.size() > 1) {
+					
+					// Add an exception to all projects in the cycle.
+					String projectsStr = Utils.glueIterable(cycle, (JavaProject project) -> project.getName(), ", ");
+					for(JavaProject project : cycle) {
+						exHandler.handleLoadException(new LoadException(project,
+								"Circular dependency detected including projects: " + projectsStr + "."));
+						errorProjects.add(project);
+					}
+					
+					// Add an exception to all ancestors of the cycle. These won't be iterated over for loading later.
+					for(JavaProject project : graph.getAncestors(cycle.iterator().next())) {
+						if(!cycle.contains(project)) {
+							exHandler.handleLoadException(new LoadException(project,
+									"Project depends directly or indirectly on (but is not part of)"
+									+ " a circular dependency including projects: " + projectsStr + "."));
+							errorProjects.add(project);
+						}
+					}
+					
+				} else if(cycle.size() == 1) {
+					
+					// Add an exception about the project depending on itself.
+					JavaProject project = cycle.iterator().next();
 					exHandler.handleLoadException(new LoadException(project,
-							"Circular dependency detected including projects: " + projectsStr + "."));
+							"Project depends on itself (circular dependency): " + project.getName() + "."));
 					errorProjects.add(project);
+					
 				}
+			}
+			
+			// Iterate over the graph, loading all projects. Projects are loaded concurrently if allowed.
+			Set<JavaProject> loadedProjects = new HashSet<JavaProject>();
+			if(this.loadParallelism > 1) {
+				this.loadAllConcurrently(graph, loadedProjects, errorProjects, exHandler);
+				return new LoadAllResult(loadedProjects, errorProjects);
+			}
+			for(ChildBeforeParentGraphIterator<JavaProject> it = graph.childBeforeParentIterator(); it.hasNext(); ) {
+				JavaProject project = it.next();
 				
-				// Add an exception to all ancestors of the cycle. These won't be iterated over for loading later.
-				for(JavaProject project : graph.getAncestors(cycle.iterator().next())) {
-					if(!cycle.contains(project)) {
-						exHandler.handleLoadException(new LoadException(project,
-								"Project depends directly or indirectly on (but is not part of)"
-								+ " a circular dependency including projects: " + projectsStr + "."));
+				// Attempt to load the project if it is not an error project.
+				boolean isErrorProject = errorProjects.contains(project);
+				if(!isErrorProject) {
+					try {
+						project.load();
+						loadedProjects.add(project);
+					} catch (LoadException e) {
+						exHandler.handleLoadException(e);
+						isErrorProject = true;
 						errorProjects.add(project);
 					}
 				}
 				
-			} else if(cycle.size() == 1) {
-				
-				// Add an exception about the project depending on itself.
-				JavaProject project = cycle.iterator().next();
-				exHandler.handleLoadException(new LoadException(project,
-						"Project depends on itself (circular dependency): " + project.getName() + "."));
-				errorProjects.add(project);
-				
+				// Remove the project and all projects that depend on it if the project could not be loaded.
+				if(isErrorProject) {
+					List<JavaProject> removedProjects = it.removeAncestors();
+					assert(removedProjects != null && removedProjects.get(0) == project);
+					
+					// The project should already have an exception for its failure, add one for its dependents.
+					for(int i = 1; i < removedProjects.size(); i++) {
+						exHandler.handleLoadException(new LoadException(project, "Indirect or direct"
+								+ " dependency project could not be loaded: " + removedProjects.get(i).getName()));
+						errorProjects.add(removedProjects.get(i));
+					}
+				}
 			}
+			
+			// Return the projects that have been loaded.
+			return new LoadAllResult(loadedProjects, errorProjects);
+		} finally {
+			this.lifecycleLock.unlock();
 		}
-		
-		// Iterate over the graph, loading all projects.
-		Set<JavaProject> loadedProjects = new HashSet<JavaProject>();
-		for(ChildBeforeParentGraphIterator<JavaProject> it = graph.childBeforeParentIterator(); it.hasNext(); ) {
-			JavaProject project = it.next();
+	}
+	
+	/**
+	 * Loads all projects in the given dependency graph concurrently, using at most {@link #getLoadParallelism()}
+	 * threads. A project is loaded as soon as all its dependencies have been loaded. Defining the classloader and
+	 * finding the main class happen on a loader thread, after which the main class is instantiated on the calling
+	 * thread. The onLoad method of the project is then called on a loader thread if the main class is annotated with
+	 * {@link ThreadSafeOnLoad}, or on the calling thread otherwise. Lifecycle transitions from the loader threads are
+	 * rejected (see {@link #lockLifecycle()}). Exceptions are passed to the exception handler on the calling thread.
+	 * @param graph - The dependency graph (dependencies as children).
+	 * @param loadedProjects - The set to add successfully loaded projects to.
+	 * @param errorProjects - The projects that should not be loaded. Projects that fail to load and projects that
+	 * depend on them are added to this set.
+	 * @param exHandler - The load exception handler.
+	 */
+	private void loadAllConcurrently(Graph<JavaProject> graph, Set<JavaProject> loadedProjects,
+			Set<JavaProject> errorProjects, LoadExceptionHandler exHandler) {
+		ExecutorService executor = Executors.newFixedThreadPool(this.loadParallelism, (Runnable runnable) -> {
 			
-			// Attempt to load the project if it is not an error project.
-			boolean isErrorProject = errorProjects.contains(project);
-			if(!isErrorProject) {
+			// Register loader threads, so that lifecycle transitions from thread-safe onLoad methods can be rejected.
+			Thread thread = new Thread(() -> {
+				this.loaderThreads.add(Thread.currentThread());
 				try {
-					project.load();
-					loadedProjects.add(project);
-				} catch (LoadException e) {
-					exHandler.handleLoadException(e);
-					isErrorProject = true;
-					errorProjects.add(project);
+					runnable.run();
+				} finally {
+					this.loaderThreads.remove(Thread.currentThread());
 				}
-			}
+			}, "JavaLoader loader");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
 			
-			// Remove the project and all projects that depend on it if the project could not be loaded.
-			if(isErrorProject) {
-				List<JavaProject> removedProjects = it.removeAncestors();
-				assert(removedProjects != null && removedProjects.get(0) == project);
+			// The task results are true when the project has been started (onLoad has been called).
+			new ConcurrentChildBeforeParentGraphScheduler<JavaProject, Boolean>(graph, executor,
+					new NodeHandler<JavaProject, Boolean>() {
 				
-				// The project should already have an exception for its failure, add one for its dependents.
-				for(int i = 1; i < removedProjects.size(); i++) {
-					exHandler.handleLoadException(new LoadException(project, "Indirect or direct"
-							+ " dependency project could not be loaded: " + removedProjects.get(i).getName()));
-					errorProjects.add(removedProjects.get(i));
+				@Override
+				public Callable<Boolean> createTask(JavaProject project) {
+					
+					// Fail error projects without loading them.
+					if(errorProjects.contains(project)) {
+						return null;
+					}
+					
+					// Define the classloader and find the main class of the project.
+					return () -> {
+						project.prepareLoad();
+						return false;
+					};
 				}
-			}
+				
+				@Override
+				public boolean handleResult(JavaProject project, Boolean isStarted, Throwable thrown) {
+					try {
+						
+						// Rethrow exceptions thrown by the task.
+						if(thrown instanceof LoadException) {
+							throw (LoadException) thrown;
+						} else if(thrown != null) {
+							throw new LoadException(project, "An unexpected Exception occurred while loading"
+									+ " the project. This is likely a bug.", thrown);
+						}
+						
+						// Initialize prepared projects, and start them here unless their onLoad is thread-safe.
+						if(!isStarted) {
+							boolean isThreadSafeOnLoad = project.isThreadSafeOnLoad();
+							project.initLoad();
+							if(isThreadSafeOnLoad) {
+								return true; // The project is started in a follow-up task.
+							}
+							project.startLoad();
+						}
+						loadedProjects.add(project);
+						return true;
+					} catch (LoadException e) {
+						exHandler.handleLoadException(e);
+						errorProjects.add(project);
+						return false;
+					}
+				}
+				
+				@Override
+				public Callable<Boolean> createFollowUpTask(JavaProject project, Boolean isStarted) {
+					
+					// Start initialized projects that have a thread-safe onLoad method.
+					if(isStarted || project.isLoaded()) {
+						return null;
+					}
+					return () -> {
+						project.startLoad();
+						return true;
+					};
+				}
+				
+				@Override
+				public void handleAncestorsRemoved(List<JavaProject> removedProjects) {
+					
+					// The project should already have an exception for its failure, add one for its dependents.
+					JavaProject project = removedProjects.get(0);
+					for(int i = 1; i < removedProjects.size(); i++) {
+						exHandler.handleLoadException(new LoadException(project, "Indirect or direct"
+								+ " dependency project could not be loaded: " + removedProjects.get(i).getName()));
+						errorProjects.add(removedProjects.get(i));
+					}
+				}
+			}).run();
+		} finally {
+			executor.shutdown();
 		}
-		
-		// Return the projects that have been loaded.
-		return new LoadAllResult(loadedProjects, errorProjects);
 	}
 	
 	/**
@@ -289,44 +923,47 @@ public class ProjectManager {
 	 * @return The unloaded projects.
 	 */
 	public Set<JavaProject> unloadAllProjects(UnloadExceptionHandler exHandler) {
-		
-		// Create a set of loaded projects.
-		Set<JavaProject> projects = new HashSet<JavaProject>();
-		for(JavaProject project : this.projects.values()) {
-			if(project.isLoaded()) {
-				projects.add(project);
+		this.lockLifecycle();
+		try {
+			
+			// Create a set of loaded projects.
+			Set<JavaProject> projects = new HashSet<JavaProject>();
+			for(JavaProject project : this.projects.values()) {
+				if(project.isLoaded()) {
+					projects.add(project);
+				}
 			}
-		}
-		
-		// Generate a graph, representing the projects and how they depend on eachother (dependencies as children).
-		GraphGenerationResult result = this.generateDependencyGraph(projects, false);
-		Graph<JavaProject> graph = result.graph;
-		for(JavaProjectException ex : result.exceptions) {
-			exHandler.handleUnloadException(new UnloadException(ex.getProject(), ex.getMessage()));
-		}
-		
-		// Check for cycles (Projects that depend on themselves are included). It should be impossible to load projects
-		// with circular dependencies. Since the graph only contains loaded projects, there cannot be cycles.
-		assert(getGraphCycles(graph).size() == 0);
-		
-		// Iterate over the graph, unloading all projects.
-		Set<JavaProject> unloadedProjects = new HashSet<JavaProject>();
-		for(ParentBeforeChildGraphIterator<JavaProject> it = graph.iterator(); it.hasNext(); ) {
-			JavaProject project = it.next();
 			
-			// Attempt to unload the project. Use IGNORE_DEPENDENTS since we know that the dependents have been handled.
-			try {
-				project.unload(UnloadMethod.IGNORE_DEPENDENTS, exHandler);
-				unloadedProjects.add(project);
-			} catch (UnloadException e) {
-				// Never happens due to using the IGNORE_DEPENDENTS method.
-				assert(false);
-				exHandler.handleUnloadException(e);
+			// Generate a graph, representing the projects and how they depend on eachother (dependencies as children).
+			Graph<JavaProject> graph = this.generateLoadedDependencyGraph(projects);
+			
+			// Check for cycles (Projects that depend on themselves are included). It should be impossible to load
+			// projects with circular dependencies. Since the graph only contains loaded projects, there cannot be
+			// cycles.
+			assert(getGraphCycles(graph).size() == 0);
+			
+			// Iterate over the graph, unloading all projects.
+			Set<JavaProject> unloadedProjects = new HashSet<JavaProject>();
+			for(ParentBeforeChildGraphIterator<JavaProject> it = graph.iterator(); it.hasNext(); ) {
+				JavaProject project = it.next();
+				
+				// Attempt to unload the project. Use IGNORE_DEPENDENTS since we know that the dependents have been
+				// handled.
+				try {
+					project.unload(UnloadMethod.IGNORE_DEPENDENTS, exHandler);
+					unloadedProjects.add(project);
+				} catch (UnloadException e) {
+					// Never happens due to using the IGNORE_DEPENDENTS method.
+					assert(false);
+					exHandler.handleUnloadException(e);
+				}
 			}
+			
+			// Return the projects that have been unloaded.
+			return unloadedProjects;
+		} finally {
+			this.lifecycleLock.unlock();
 		}
-		
-		// Return the projects that have been unloaded.
-		return unloadedProjects;
 	}
 	
 	/**
@@ -442,7 +1079,8 @@ public class ProjectManager {
 	/**
 	 * Compiles, unloads (if loaded) and loads the given project. Compilation happens in a temporary directory, so
 	 * if a CompileException occurs, the temporary directory is simply removed and the project will stay loaded if
-	 * it was loaded.
+	 * it was loaded. This is equal to calling {@link #prepareRecompile(JavaProject, CompilerFeedbackHandler)}
+	 * followed by {@link #applyRecompile(PreparedRecompile, UnloadExceptionHandler)}.
 	 * @param project - The project to compile, unload and load.
 	 * @param compilerFeedbackHandler - The compiler feedback handler which will receive all java compiler feedback.
 	 * @param unloadExHandler - If this project was loaded and an unload caused exceptions, they are passed to this
@@ -453,67 +1091,318 @@ public class ProjectManager {
 	 * If this is thrown, the new binaries have been applied and the project has been unloaded, but not reloaded due
 	 * to the reason given in this exception.
 	 * @throws DepOrderViolationException When the given project is loaded and at least one of its dependents is loaded.
+	 * This is not thrown when ABI-aware recompilation is enabled. The loaded dependents are then recompiled if the
+	 * ABI of the project has changed, and reloaded. A CompileException or LoadException for a dependent is thrown as
+	 * if it were thrown for the project itself.
 	 * @throws IllegalArgumentException When {@link project#getProjectManager()} != this or when project is not known
 	 * in this project manager.
+	 * @see #setAbiAwareRecompilationEnabled(boolean)
+	 */
+	public void recompile(JavaProject project, CompilerFeedbackHandler compilerFeedbackHandler,
+			UnloadExceptionHandler unloadExHandler) throws
+			CompileException, LoadException, DepOrderViolationException, IllegalArgumentException {
+		PreparedRecompile preparedRecompile = this.prepareRecompile(project, compilerFeedbackHandler);
+		this.applyRecompile(preparedRecompile, unloadExHandler);
+	}
+	
+	/**
+	 * Compiles the given project in a temporary directory, without unloading or loading any projects. This is the
+	 * slow phase of {@link #recompile(JavaProject, CompilerFeedbackHandler, UnloadExceptionHandler)} and can run on
+	 * a different thread than the thread that loads and unloads projects. The compiled projects are not changed until
+	 * the result is passed to {@link #applyRecompile(PreparedRecompile, UnloadExceptionHandler)}, which validates the
+	 * loaded dependents again. No other compile operations on the involved projects should take place until the
+	 * result has been applied or passed to {@link #discardRecompile(PreparedRecompile)}.
+	 * @param project - The project to compile.
+	 * @param compilerFeedbackHandler - The compiler feedback handler which will receive all java compiler feedback.
+	 * @return The prepared recompile.
+	 * @throws CompileException If an exception occurred during compilation. If this is thrown, all new binaries have
+	 * been removed again.
+	 * @throws DepOrderViolationException When the given project is loaded, at least one of its dependents is loaded
+	 * and ABI-aware recompilation is disabled.
+	 * @throws IllegalArgumentException When {@link project#getProjectManager()} != this or when project is not known
+	 * in this project manager.
+	 */
+	public PreparedRecompile prepareRecompile(JavaProject project, CompilerFeedbackHandler compilerFeedbackHandler)
+			throws CompileException, DepOrderViolationException, IllegalArgumentException {
+		
+		// Validate that the project is part of this project manager.
+		if(project.getProjectManager() != this) {
+			throw new IllegalArgumentException("The given project has a different project manager.");
+		} else if(!this.projects.containsValue(project)) {
+			throw new IllegalArgumentException("The given project has not been added to this project manager.");
+		}
+		
+		// Prevent a recompile if this and at least one of the dependents of this project are loaded.
+		List<JavaProject> dependents = Collections.emptyList();
+		if(project.isLoaded()) {
+			if(this.abiAwareRecompilationEnabled) {
+				dependents = this.getOrderedLoadedDependents(project);
+			} else {
+				this.validateLoadedDependents(project, dependents);
+			}
+		}
+		PreparedRecompile preparedRecompile = new PreparedRecompile(project, dependents);
+		
+		// Remember the ABI of the project, so that dependents are only recompiled when it changes.
+		String oldAbiFingerprint = null;
+		if(!dependents.isEmpty()) {
+			try {
+				oldAbiFingerprint = project.getAbiFingerprint();
+			} catch (IOException e) {
+				oldAbiFingerprint = null;
+			}
+		}
+		
+		// Compile the project and, if its ABI has changed, its loaded dependents in the "bin_new" directory.
+		// Dependents of which the inputs and the ABI of their dependencies are unchanged reuse their previous output.
+		// The projects themselves are not changed until the recompile is applied.
+		try {
+			CompileOutput output = preparedRecompile.compile(project, compilerFeedbackHandler);
+			if(!dependents.isEmpty()) {
+				boolean abiChanged;
+				try {
+					abiChanged = (oldAbiFingerprint == null || !oldAbiFingerprint.equals(output.getAbiFingerprint()));
+				} catch (IOException e) {
+					abiChanged = true;
+				}
+				if(abiChanged) {
+					for(JavaProject dependent : dependents) {
+						preparedRecompile.compile(dependent, compilerFeedbackHandler);
+					}
+				}
+			}
+		} catch (CompileException e) {
+			
+			// Remove the newly created bin directories.
+			this.discardRecompile(preparedRecompile);
+			
+			// Rethrow, compilation failed.
+			throw e;
+		}
+		return preparedRecompile;
+	}
+	
+	/**
+	 * Validates that all loaded projects that depend on the given loaded project are in the given list of dependents.
+	 * @param project - The loaded project.
+	 * @param dependents - The dependents that are allowed to be loaded.
+	 * @throws DepOrderViolationException If a loaded project depends on the project or on one of the given dependents,
+	 * but is not one of the given dependents.
+	 */
+	private void validateLoadedDependents(JavaProject project,
+			List<JavaProject> dependents) throws DepOrderViolationException {
+		Set<JavaProject> loadedDependents = this.getLoadedDependents(project);
+		for(JavaProject dependent : dependents) {
+			loadedDependents.addAll(this.getLoadedDependents(dependent));
+		}
+		loadedDependents.removeAll(dependents);
+		loadedDependents.remove(project);
+		if(!loadedDependents.isEmpty()) {
+			
+			// Throw an exception about the dependents being enabled and therefore being unable to recompile.
+			List<JavaProject> loadedDependentsList = new ArrayList<JavaProject>(loadedDependents);
+			loadedDependentsList.sort((JavaProject p1, JavaProject p2) -> p1.getName().compareTo(p2.getName()));
+			throw new DepOrderViolationException(project,
+					"Project cannot be recompiled while there are projects enabled that depend on it."
+					+ " Depending project" + (loadedDependentsList.size() == 1 ? "" : "s") + ": "
+					+ Utils.glueIterable(loadedDependentsList, (JavaProject p) -> p.getName(), ", ") + ".");
+		}
+	}
+	
+	/**
+	 * Unloads the project of the given prepared recompile and its dependents (if loaded), replaces their binaries
+	 * with the newly compiled binaries and loads them. This is the fast phase of
+	 * {@link #recompile(JavaProject, CompilerFeedbackHandler, UnloadExceptionHandler)} and has to run on the thread
+	 * that loads and unloads projects.
+	 * @param preparedRecompile - The prepared recompile, as returned by
+	 * {@link #prepareRecompile(JavaProject, CompilerFeedbackHandler)}.
+	 * @param unloadExHandler - If the projects were loaded and an unload caused exceptions, they are passed to this
+	 * handler.
+	 * @throws CompileException If the new binaries could not be applied.
+	 * @throws LoadException If an exception occurred during the loading of the new compiled binaries.
+	 * If this is thrown, the new binaries have been applied and the project has been unloaded, but not reloaded due
+	 * to the reason given in this exception.
+	 * @throws DepOrderViolationException When the project is loaded and a project that depends on it has been loaded
+	 * that was not loaded when the recompile was prepared. If this is thrown, the recompile has been discarded.
+	 */
+	public void applyRecompile(PreparedRecompile preparedRecompile, UnloadExceptionHandler unloadExHandler)
+			throws CompileException, LoadException, DepOrderViolationException {
+		this.lockLifecycle();
+		try {
+			JavaProject project = preparedRecompile.project;
+			
+			// Validate that the loaded dependents have not changed since the recompile was prepared.
+			if(project.isLoaded()) {
+				try {
+					this.validateLoadedDependents(project, preparedRecompile.dependents);
+				} catch (DepOrderViolationException e) {
+					this.discardRecompile(preparedRecompile);
+					throw e;
+				}
+			}
+			
+			// Redefine the loaded classes in place if hot swapping is enabled and only method bodies have changed.
+			if(this.hotSwapEnabled && this.hotSwap(preparedRecompile)) {
+				return;
+			}
+			
+			// Load the new generation next to the loaded generation and swap them if swap reloading is enabled.
+			if(this.swapReloadEnabled && this.swapReload(preparedRecompile, unloadExHandler)) {
+				return;
+			}
+			
+			// Get the dependents that are still loaded. These are unloaded with the project and loaded again.
+			List<JavaProject> loadedDependents = new ArrayList<JavaProject>();
+			for(JavaProject dependent : preparedRecompile.dependents) {
+				if(dependent.isLoaded()) {
+					loadedDependents.add(dependent);
+				}
+			}
+			
+			// Unload the project if it was loaded. The IGNORE_DEPENDENTS unload method is used when we already
+			// checked that none of the dependents are enabled.
+			if(project.isLoaded()) {
+				try {
+					project.unload((loadedDependents.isEmpty()
+							? UnloadMethod.IGNORE_DEPENDENTS : UnloadMethod.UNLOAD_DEPENDENTS), unloadExHandler);
+				} catch (UnloadException e) {
+					// This exception should never be thrown due to using the IGNORE_DEPENDENTS or UNLOAD_DEPENDENTS
+					// unload method.
+					this.discardRecompile(preparedRecompile);
+					throw new Error(e);
+				}
+			}
+			
+			// Replace the current "bin" directories with "bin_new", remove "bin_new" and apply the compile outputs.
+			Map<JavaProject, CompileOutput> outputs =
+					new HashMap<JavaProject, CompileOutput>(preparedRecompile.compileOutputs);
+			for(JavaProject compiledProject : preparedRecompile.compileOutputs.keySet()) {
+				CompileOutput output = outputs.remove(compiledProject);
+				try {
+					replaceBinDir(compiledProject, output.getBinDir());
+				} catch (CompileException e) {
+					for(CompileOutput remainingOutput : outputs.values()) {
+						Utils.removeFile(remainingOutput.getBinDir());
+					}
+					throw e;
+				}
+				compiledProject.applyCompileOutput(output);
+			}
+			
+			// Load the project and its dependents.
+			project.load();
+			for(JavaProject dependent : loadedDependents) {
+				dependent.load();
+			}
+		} finally {
+			this.lifecycleLock.unlock();
+		}
+	}
+	
+	/**
+	 * Redefines the loaded classes of the project of the given prepared recompile with the newly compiled classes and
+	 * replaces its binaries, without unloading the project. This is only done when the project is loaded, none of its
+	 * dependents have been recompiled, its dependencies are unchanged and all changed classes have the same class
+	 * structure.
+	 * @param preparedRecompile - The prepared recompile.
+	 * @return True if the project has been hot swapped, false if it has to be reloaded instead.
+	 * @throws CompileException If the classes have been redefined, but the new binaries could not be applied.
 	 */
-	public void recompile(JavaProject project, CompilerFeedbackHandler compilerFeedbackHandler,
-			UnloadExceptionHandler unloadExHandler) throws
-			CompileException, LoadException, DepOrderViolationException, IllegalArgumentException {
-		
-		// Validate that the project is part of this project manager.
-		if(project.getProjectManager() != this) {
-			throw new IllegalArgumentException("The given project has a different project manager.");
-		} else if(!this.projects.containsValue(project)) {
-			throw new IllegalArgumentException("The given project has not been added to this project manager.");
+	private boolean hotSwap(PreparedRecompile preparedRecompile) throws CompileException {
+		JavaProject project = preparedRecompile.project;
+		Instrumentation instrumentation = HotSwapAgent.getInstrumentation();
+		CompileOutput output = preparedRecompile.compileOutputs.get(project);
+		if(instrumentation == null || !instrumentation.isRedefineClassesSupported() || !project.isLoaded()
+				|| preparedRecompile.compileOutputs.size() != 1
+				|| !Objects.equals(output.getDependencies(), project.getDependencies())) {
+			return false;
 		}
 		
-		// Prevent a recompile if this and at least one of the dependents of this project are loaded.
-		if(project.isLoaded()) {
-			Set<JavaProject> loadedDependents = this.getLoadedDependents(project);
-			if(!loadedDependents.isEmpty()) {
-				List<JavaProject> loadedDependentsList = new ArrayList<JavaProject>(loadedDependents.size());
-				loadedDependentsList.addAll(loadedDependents);
-				// Throw an exception about the dependents being enabled and therefore being unable to recompile.
-				
-				loadedDependentsList.sort((JavaProject p1, JavaProject p2) -> p1.getName().compareTo(p2.getName()));
-				throw new DepOrderViolationException(project,
-						"Project cannot be recompiled while there are projects enabled that depend on it."
-						+ " Depending project" + (loadedDependentsList.size() == 1 ? "" : "s") + ": "
-						+ Utils.glueIterable(loadedDependentsList, (JavaProject p) -> p.getName(), ", ") + ".");
-			}
+		// Get the class definitions and redefine the classes.
+		ClassDefinition[] classDefinitions =
+				project.getHotSwapClassDefinitions(output.getBinDir(), output.getClassStore());
+		if(classDefinitions == null) {
+			return false; // The class structure has changed.
 		}
-		
-		// Compile the project in the "bin_new" directory.
-		project.setBinDirName("bin_new");
 		try {
-			project.compile(compilerFeedbackHandler);
-		} catch (CompileException e) {
-			
-			// Remove the newly created bin directory and set it back to the old one.
-			Utils.removeFile(project.getBinDir());
-			project.setBinDirName("bin");
-			
-			// Rethrow, compilation failed.
-			throw e;
+			instrumentation.redefineClasses(classDefinitions);
+		} catch (ClassNotFoundException | UnmodifiableClassException | UnsupportedOperationException | LinkageError e) {
+			return false; // The JVM refused the new classes. The classes have not been changed.
 		}
 		
-		// Set the project bin directory back to the old one.
-		File newBinDir = project.getBinDir();
-		project.setBinDirName("bin");
+		// Apply the compile output, replace the "bin" directory and let the classloader define classes from the new
+		// binaries.
+		project.applyCompileOutput(output);
+		replaceBinDir(project, output.getBinDir());
+		project.applyReplacedBinDir();
+		preparedRecompile.hotSwapped = true;
+		return true;
+	}
+	
+	/**
+	 * Loads the new generation of the project of the given prepared recompile next to its loaded generation and swaps
+	 * the generations. This is only done when the project is loaded and none of its dependents are loaded.
+	 * @param preparedRecompile - The prepared recompile.
+	 * @param unloadExHandler - The exception handler for exceptions that occur while unloading a generation.
+	 * @return True if the project has been swapped, false if it has to be reloaded instead.
+	 * @throws CompileException If the project has been swapped, but the new binaries could not be applied.
+	 * @throws LoadException If the new generation could not be loaded. The new binaries have been discarded if the
+	 * previous generation is still loaded, and applied if the project has been unloaded.
+	 */
+	private boolean swapReload(PreparedRecompile preparedRecompile,
+			UnloadExceptionHandler unloadExHandler) throws CompileException, LoadException {
+		JavaProject project = preparedRecompile.project;
+		if(!project.isLoaded() || !preparedRecompile.dependents.isEmpty()
+				|| preparedRecompile.compileOutputs.size() != 1) {
+			return false;
+		}
 		
-		// Unload the project if it was loaded. The IGNORE_DEPENDENTS unload method is used because we already
-		// checked that none of the dependents are enabled.
-		if(project.isLoaded()) {
-			try {
-				project.unload(UnloadMethod.IGNORE_DEPENDENTS, unloadExHandler);
-			} catch (UnloadException e) {
-				// This exception should never be thrown due to using the IGNORE_DEPENDENTS unload method.
-				Utils.removeFile(newBinDir);
-				throw new Error(e);
+		// Apply the compile output, remembering the compile state of the loaded generation for a rollback.
+		CompileOutput output = preparedRecompile.compileOutputs.get(project);
+		File newBinDir = output.getBinDir();
+		project.awaitBinDirWrite();
+		List<Dependency> oldDependencies = project.getDependencies();
+		MemoryClassStore oldClassStore = project.getClassStore();
+		project.applyCompileOutput(output);
+		
+		// Swap the generations, loading the new generation from the new bin directory.
+		try {
+			project.swap(newBinDir, oldDependencies, unloadExHandler);
+		} catch (LoadException e) {
+			if(project.isLoaded()) {
+				project.restoreCompileState(oldDependencies, oldClassStore);
+				this.discardRecompile(preparedRecompile);
+			} else {
+				replaceBinDir(project, newBinDir);
 			}
+			throw e;
 		}
 		
-		// Replace the current "bin" directory with "bin_new" and remove "bin_new".
+		// Replace the "bin" directory and let the classloader define classes from the new binaries.
+		replaceBinDir(project, newBinDir);
+		project.applyReplacedBinDir();
+		preparedRecompile.swapped = true;
+		return true;
+	}
+	
+	/**
+	 * Discards the given prepared recompile, removing the newly compiled binaries.
+	 * @param preparedRecompile - The prepared recompile, as returned by
+	 * {@link #prepareRecompile(JavaProject, CompilerFeedbackHandler)}.
+	 */
+	public void discardRecompile(PreparedRecompile preparedRecompile) {
+		for(CompileOutput output : preparedRecompile.compileOutputs.values()) {
+			Utils.removeFile(output.getBinDir());
+		}
+	}
+	
+	/**
+	 * Replaces the "bin" directory of the given unloaded project with the given new bin directory.
+	 * @param project - The project.
+	 * @param newBinDir - The new bin directory ("bin_new").
+	 * @throws CompileException If the "bin" directory could not be removed or replaced.
+	 */
+	private static void replaceBinDir(JavaProject project, File newBinDir) throws CompileException {
 		if(project.getBinDir().exists() && !Utils.removeFile(project.getBinDir())) {
 			throw new CompileException(project,
 					"Failed to rename \"bin_new\" to \"bin\" because the \"bin\""
@@ -527,26 +1416,184 @@ public class ProjectManager {
 					+ " This can be fixed manually or by attempting another recompile."
 					+ " The project has already been disabled and the \"bin\" directory has been removed.");
 		}
+	}
+	
+	/**
+	 * Gets the loaded direct and indirect dependents of the given project, ordered such that dependencies come
+	 * before their dependents.
+	 * @param project - The project.
+	 * @return The ordered loaded dependents.
+	 */
+	private List<JavaProject> getOrderedLoadedDependents(JavaProject project) {
+		Set<JavaProject> affectedProjects = new HashSet<JavaProject>();
+		Stack<JavaProject> stack = new Stack<JavaProject>();
+		stack.push(project);
+		while(!stack.isEmpty()) {
+			JavaProject affectedProject = stack.pop();
+			if(affectedProjects.add(affectedProject)) {
+				stack.addAll(this.getLoadedDependents(affectedProject));
+			}
+		}
+		Graph<JavaProject> graph = this.generateLoadedDependencyGraph(affectedProjects);
+		List<JavaProject> dependents = new ArrayList<JavaProject>();
+		for(ChildBeforeParentGraphIterator<JavaProject> it = graph.childBeforeParentIterator(); it.hasNext(); ) {
+			JavaProject dependent = it.next();
+			if(dependent != project) {
+				dependents.add(dependent);
+			}
+		}
+		return dependents;
+	}
+	
+	/**
+	 * Represents a recompile of which the compile phase has been completed.
+	 * @author P.J.S. Kools
+	 * @see ProjectManager#prepareRecompile(JavaProject, CompilerFeedbackHandler)
+	 */
+	public static final class PreparedRecompile {
+		private final JavaProject project;
+		private final List<JavaProject> dependents;
+		private final Map<JavaProject, CompileOutput> compileOutputs = new LinkedHashMap<JavaProject, CompileOutput>();
+		private boolean hotSwapped = false;
+		private boolean swapped = false;
+		
+		private PreparedRecompile(JavaProject project, List<JavaProject> dependents) {
+			this.project = project;
+			this.dependents = dependents;
+		}
 		
-		// Load the project.
-		project.load();
+		private CompileOutput compile(JavaProject compiledProject,
+				CompilerFeedbackHandler compilerFeedbackHandler) throws CompileException {
+			File newBinDir = new File(compiledProject.getProjectDir().getAbsoluteFile(), "bin_new");
+			CompileOutput output;
+			try {
+				output = compiledProject.compile(newBinDir, this.compileOutputs, compilerFeedbackHandler);
+			} catch (CompileException e) {
+				Utils.removeFile(newBinDir);
+				throw e;
+			}
+			this.compileOutputs.put(compiledProject, output);
+			return output;
+		}
+		
+		/**
+		 * Gets the recompiled project.
+		 * @return The project.
+		 */
+		public JavaProject getProject() {
+			return this.project;
+		}
+		
+		/**
+		 * Gets the loaded dependents of the project that will be reloaded when this recompile is applied.
+		 * @return The dependents, ordered such that dependencies come before their dependents.
+		 */
+		public List<JavaProject> getDependents() {
+			return Collections.unmodifiableList(this.dependents);
+		}
+		
+		/**
+		 * Gets whether this recompile has been applied by redefining the loaded classes of the project in place.
+		 * @return True if the project has been hot swapped, false otherwise.
+		 * @see ProjectManager#setHotSwapEnabled(boolean)
+		 */
+		public boolean isHotSwapped() {
+			return this.hotSwapped;
+		}
+		
+		/**
+		 * Gets whether this recompile has been applied by loading the new generation of the project next to the loaded
+		 * generation and swapping them.
+		 * @return True if the project has been swapped, false otherwise.
+		 * @see ProjectManager#setSwapReloadEnabled(boolean)
+		 */
+		public boolean isSwapped() {
+			return this.swapped;
+		}
+	}
+	
+	/**
+	 * Adds the project dependencies of the given loaded project to the dependency index, which is used to find the
+	 * loaded dependents of a project and to order loaded projects without reading all project dependencies.
+	 * Projects are indexed by name, so dependencies on projects that are added later are resolved when used.
+	 * @param project - The loaded project.
+	 */
+	synchronized void indexLoadedProject(JavaProject project) {
+		this.unindexLoadedProject(project);
+		Set<String> dependencyNames = new HashSet<String>();
+		List<Dependency> dependencies = project.getDependencies();
+		if(dependencies != null) {
+			for(Dependency dep : dependencies) {
+				if(dep instanceof ProjectDependency) {
+					String dependencyName = ((ProjectDependency) dep).getProjectName();
+					dependencyNames.add(dependencyName);
+					this.loadedDependentIndex.computeIfAbsent(
+							dependencyName, (String name) -> new HashSet<String>()).add(project.getName());
+				}
+			}
+		}
+		this.loadedDependencyIndex.put(project.getName(), dependencyNames);
+	}
+	
+	/**
+	 * Removes the given project from the dependency index.
+	 * @param project - The project.
+	 * @see #indexLoadedProject(JavaProject)
+	 */
+	synchronized void unindexLoadedProject(JavaProject project) {
+		Set<String> dependencyNames = this.loadedDependencyIndex.remove(project.getName());
+		if(dependencyNames != null) {
+			for(String dependencyName : dependencyNames) {
+				Set<String> dependentNames = this.loadedDependentIndex.get(dependencyName);
+				if(dependentNames != null && dependentNames.remove(project.getName()) && dependentNames.isEmpty()) {
+					this.loadedDependentIndex.remove(dependencyName);
+				}
+			}
+		}
 	}
 	
-	private Set<JavaProject> getLoadedDependents(JavaProject project) {
+	/**
+	 * Gets the loaded projects that directly depend on the given project.
+	 * @param project - The project.
+	 * @return The loaded dependents of the project.
+	 */
+	synchronized Set<JavaProject> getLoadedDependents(JavaProject project) {
 		Set<JavaProject> dependingProjects = new HashSet<JavaProject>();
-		for(JavaProject p : this.getProjects()) {
-			if(p.isLoaded() && p != project) {
-				for(Dependency dep : p.getDependencies()) {
-					if(dep instanceof ProjectDependency
-							&& ((ProjectDependency) dep).getProject() == project) {
-						dependingProjects.add(p);
-					}
+		Set<String> dependentNames = this.loadedDependentIndex.get(project.getName());
+		if(dependentNames != null && this.projects.get(project.getName()) == project) {
+			for(String dependentName : dependentNames) {
+				JavaProject p = this.projects.get(dependentName);
+				if(p != null && p.isLoaded() && p != project) {
+					dependingProjects.add(p);
 				}
 			}
 		}
 		return dependingProjects;
 	}
 	
+	/**
+	 * Generates a dependency graph from the given loaded projects using the dependency index. The graph will only
+	 * contain the given projects, any other projects that are referred to through dependencies are ignored.
+	 * @param projects - The loaded projects to generate the graph for.
+	 * @return The graph, with dependencies as children.
+	 * @see #indexLoadedProject(JavaProject)
+	 */
+	private synchronized Graph<JavaProject> generateLoadedDependencyGraph(Collection<JavaProject> projects) {
+		Graph<JavaProject> graph = new Graph<JavaProject>(projects);
+		for(JavaProject project : projects) {
+			Set<String> dependencyNames = this.loadedDependencyIndex.get(project.getName());
+			if(dependencyNames != null) {
+				for(String dependencyName : dependencyNames) {
+					JavaProject dependency = this.projects.get(dependencyName);
+					if(dependency != null && projects.contains(dependency)) {
+						graph.addDirectedEdge(project, dependency);
+					}
+				}
+			}
+		}
+		return graph;
+	}
+	
 	/**
 	 * Recompiles, unloads and loads all projects that are not disabled. Exceptions and compiler feedback is passed to
 	 * the given feedbackHandler. If compilation fails for a project, that project will be reloaded using its old
@@ -563,6 +1610,25 @@ public class ProjectManager {
 	 */
 	public RecompileAllResult recompileAllProjects(RecompileFeedbackHandler feedbackHandler,
 			ProjectStateListener projectStateListener) throws IllegalStateException {
+		PreparedRecompileAll preparedRecompileAll = this.prepareRecompileAllProjects(feedbackHandler);
+		return this.applyRecompileAllProjects(preparedRecompileAll, feedbackHandler, projectStateListener);
+	}
+	
+	/**
+	 * Compiles all projects that are not disabled in temporary directories, without unloading or loading any
+	 * projects. This is the slow phase of {@link #recompileAllProjects(RecompileFeedbackHandler, ProjectStateListener)}
+	 * and can run on a different thread than the thread that loads and unloads projects. The projects are not changed
+	 * until the result is passed to
+	 * {@link #applyRecompileAllProjects(PreparedRecompileAll, RecompileFeedbackHandler, ProjectStateListener)}.
+	 * No other compile operations on the projects should take place until the result has been applied or passed to
+	 * {@link #discardRecompileAllProjects(PreparedRecompileAll)}.
+	 * @param feedbackHandler - The project feedback handler which will receive all thrown exceptions and feedback that
+	 * occur during the compilation.
+	 * @return The prepared recompile.
+	 * @throws IllegalStateException If one or more projects has its binary directory set to something other than "bin".
+	 */
+	public PreparedRecompileAll prepareRecompileAllProjects(
+			RecompileFeedbackHandler feedbackHandler) throws IllegalStateException {
 		
 		// Create a set of enabled projects.
 		Set<JavaProject> projects = new HashSet<JavaProject>();
@@ -572,9 +1638,6 @@ public class ProjectManager {
 			}
 		}
 		
-		// Add new projects from the file system.
-		Set<JavaProject> addedProjects = this.addProjectsFromProjectDirectory(projectStateListener);
-		
 		// Validate that all binary directories are set to "bin" as we use this assumption below.
 		for(JavaProject project : projects) {
 			if(!project.getBinDir().getName().equals("bin")) {
@@ -584,10 +1647,13 @@ public class ProjectManager {
 			}
 		}
 		
+		// Create the prepared recompile.
+		PreparedRecompileAll preparedRecompileAll = new PreparedRecompileAll(projects);
+		
 		// Generate a graph, representing the projects and how they depend on eachother (dependencies as children).
 		GraphGenerationResult result = this.generateDependencyGraph(projects, true);
 		Graph<JavaProject> graph = result.graph;
-		Set<JavaProject> errorProjects = new HashSet<JavaProject>();
+		Set<JavaProject> errorProjects = preparedRecompileAll.errorProjects;
 		for(JavaProjectException ex : result.exceptions) {
 			if(ex.getProject() != null) {
 				errorProjects.add(ex.getProject());
@@ -630,100 +1696,276 @@ public class ProjectManager {
 			}
 		}
 		
-		// Iterate over the graph, compiling all projects.
-		Set<JavaProject> compiledProjects = new HashSet<JavaProject>();
-		for(ChildBeforeParentGraphIterator<JavaProject> it = graph.childBeforeParentIterator(); it.hasNext(); ) {
-			JavaProject project = it.next();
+		// Iterate over the graph, compiling all projects in their "bin_new" directory. Projects are compiled
+		// concurrently if allowed. The projects themselves are not changed until the recompile is applied.
+		Set<JavaProject> compiledProjects = preparedRecompileAll.compiledProjects;
+		Map<JavaProject, CompileOutput> compileOutputs = preparedRecompileAll.compileOutputs;
+		if(this.compileParallelism > 1) {
+			this.compileAllConcurrently(graph, compileOutputs, compiledProjects, errorProjects, feedbackHandler);
+		} else {
+			for(ChildBeforeParentGraphIterator<JavaProject> it = graph.childBeforeParentIterator(); it.hasNext(); ) {
+				JavaProject project = it.next();
+				
+				// Attempt to compile the project if it is not an error project.
+				boolean isErrorProject = errorProjects.contains(project);
+				if(!isErrorProject) {
+					File newBinDir = new File(project.getProjectDir().getAbsoluteFile(), "bin_new");
+					try {
+						compileOutputs.put(project, project.compile(newBinDir, compileOutputs, feedbackHandler));
+						compiledProjects.add(project);
+					} catch (CompileException e) {
+						
+						// Remove the newly created binary directory.
+						Utils.removeFile(newBinDir);
+						
+						feedbackHandler.handleCompileException(e);
+						isErrorProject = true;
+						errorProjects.add(project);
+					}
+				}
+				
+				// Remove the project and all projects that depend on it if the project could not be compiled.
+				if(isErrorProject) {
+					List<JavaProject> removedProjects = it.removeAncestors();
+					assert(removedProjects != null && removedProjects.get(0) == project);
+					
+					// The project should already have an exception for its failure, add one for its dependents.
+					for(int i = 1; i < removedProjects.size(); i++) {
+						feedbackHandler.handleCompileException(new CompileException(project,
+								"Indirect or direct dependency project was not successfully compiled: "
+								+ removedProjects.get(i).getName()));
+						errorProjects.add(removedProjects.get(i));
+					}
+				}
+			}
+		}
+		
+		return preparedRecompileAll;
+	}
+	
+	/**
+	 * Unloads all projects, replaces the binaries of the projects that compiled successfully in the given prepared
+	 * recompile and loads all projects. This is the fast phase of
+	 * {@link #recompileAllProjects(RecompileFeedbackHandler, ProjectStateListener)} and has to run on the thread that
+	 * loads and unloads projects. This method will add new projects from the file system and remove any projects that
+	 * no longer exist in the file system.
+	 * @param preparedRecompileAll - The prepared recompile, as returned by
+	 * {@link #prepareRecompileAllProjects(RecompileFeedbackHandler)}.
+	 * @param feedbackHandler - The project feedback handler which will receive all thrown exceptions and feedback that
+	 * occur during the unload and load.
+	 * @param projectStateListener - The listener that will be set in newly added projects from the file system.
+	 * @return A RecompileAllResult, as described in
+	 * {@link #recompileAllProjects(RecompileFeedbackHandler, ProjectStateListener)}.
+	 */
+	public RecompileAllResult applyRecompileAllProjects(PreparedRecompileAll preparedRecompileAll,
+			RecompileFeedbackHandler feedbackHandler, ProjectStateListener projectStateListener) {
+		this.lockLifecycle();
+		try {
+			Set<JavaProject> projects = preparedRecompileAll.projects;
+			Set<JavaProject> compiledProjects = preparedRecompileAll.compiledProjects;
+			Set<JavaProject> errorProjects = preparedRecompileAll.errorProjects;
 			
-			// Attempt to compile the project if it is not an error project.
-			boolean isErrorProject = errorProjects.contains(project);
-			if(!isErrorProject) {
-				project.setBinDirName("bin_new");
-				try {
-					project.compile(feedbackHandler);
-					compiledProjects.add(project);
-				} catch (CompileException e) {
+			// Add new projects from the file system.
+			Set<JavaProject> addedProjects = this.addProjectsFromProjectDirectory(projectStateListener);
+			
+			// Unload all projects.
+			Set<JavaProject> unloadedProjects = this.unloadAllProjects(feedbackHandler);
+			
+			// Remove deleted projects.
+			Set<JavaProject> removedProjects = this.removeUnloadedProjectsIfDeleted();
+			
+			// Replace all binary directories with the new ones for non-error projects and apply their compile outputs.
+			for(JavaProject project : projects) {
+				if(!errorProjects.contains(project)) {
 					
-					// Remove the newly created binary directory and set the project back to the default bin directory.
-					Utils.removeFile(project.getBinDir());
-					project.setBinDirName("bin");
+					// Validate that a project is either in ErrorProjects or has been compiled.
+					// Fail the hard way if this is not the case, so that we can be sure to never mess up file removal.
+					CompileOutput output = preparedRecompileAll.compileOutputs.get(project);
+					if(output == null) {
+						throw new Error("A non-error project did not have a compile output."
+								+ " This should be impossible.");
+					}
 					
-					feedbackHandler.handleCompileException(e);
-					isErrorProject = true;
-					errorProjects.add(project);
+					// Replace the current binary directory with the new one and remove the new one.
+					File newBinDir = output.getBinDir();
+					if(project.getBinDir().exists() && !Utils.removeFile(project.getBinDir())) {
+						feedbackHandler.handleCompileException(new CompileException(project,
+								"Failed to replace the old binary directory with the new binary directory because the"
+								+ " old binary directory could not be removed for project \"" + project.getName()
+								+ "\"."
+								+ " This can be fixed manually or by attempting another recompile. The project has"
+								+ " already been disabled and some files of the current binary directory might be"
+								+ " removed."));
+					}
+					if(!newBinDir.renameTo(project.getBinDir())) {
+						feedbackHandler.handleCompileException(new CompileException(project,
+								"Failed to rename the new binary directory to the default binary directory for"
+								+ " project \"" + project.getName() + "\". This can be fixed manually or by attempting"
+								+ " another recompile. The project has already been disabled and the current binary"
+								+ " directory has been removed."));
+					} else {
+						project.applyCompileOutput(output);
+					}
 				}
 			}
 			
-			// Remove the project and all projects that depend on it if the project could not be compiled.
-			if(isErrorProject) {
-				List<JavaProject> removedProjects = it.removeAncestors();
-				assert(removedProjects != null && removedProjects.get(0) == project);
-				
-				// The project should already have an exception for its failure, add one for its dependents.
-				for(int i = 1; i < removedProjects.size(); i++) {
-					feedbackHandler.handleCompileException(new CompileException(project,
-							"Indirect or direct dependency project was not successfully compiled: "
-							+ removedProjects.get(i).getName()));
-					errorProjects.add(removedProjects.get(i));
+			// Validate that all binary directories are still set to "bin" here.
+			// Note that we can only know this due to the validation check in prepareRecompileAllProjects().
+			for(JavaProject project : projects) {
+				if(!project.getBinDir().getName().equals("bin")) {
+					throw new Error("All projects are known to have their binary directory name set to"
+							+ " \"bin\" at this point. Yet, project \"" + project.getName() + "\" has a binary"
+							+ " directory named: \"" + project.getBinDir().getName() + "\".");
 				}
 			}
+			
+			// Load all projects. Projects that have caused errors might fail, but might also work using their old
+			// binaries.
+			LoadAllResult loadAllResult = this.loadAllProjects(feedbackHandler);
+			Set<JavaProject> loadedProjects = loadAllResult.loadedProjects;
+			errorProjects.addAll(loadAllResult.errorProjects);
+			
+			// Return the result.
+			return new RecompileAllResult(addedProjects, removedProjects,
+					compiledProjects, unloadedProjects, loadedProjects, errorProjects);
+		} finally {
+			this.lifecycleLock.unlock();
 		}
-		
-		// Unload all projects.
-		Set<JavaProject> unloadedProjects = this.unloadAllProjects(feedbackHandler);
-		
-		// Remove deleted projects.
-		Set<JavaProject> removedProjects = this.removeUnloadedProjectsIfDeleted();
-		
-		// Replace all binary directories with the new ones for non-error projects.
-		for(JavaProject project : projects) {
-			if(!errorProjects.contains(project)) {
+	}
+	
+	/**
+	 * Compiles all projects in the given dependency graph concurrently, using at most
+	 * {@link #getCompileParallelism()} threads. A project is compiled as soon as all its dependencies have been
+	 * compiled. Compiler feedback is buffered per project and passed to the feedback handler on the calling thread
+	 * when the compile of that project has finished, so feedback of different projects is never interleaved.
+	 * @param graph - The dependency graph (dependencies as children).
+	 * @param compileOutputs - The map to put the compile outputs of successfully compiled projects in.
+	 * @param compiledProjects - The set to add successfully compiled projects to.
+	 * @param errorProjects - The projects that should not be compiled. Projects that fail to compile and projects
+	 * that depend on them are added to this set.
+	 * @param feedbackHandler - The feedback handler.
+	 */
+	private void compileAllConcurrently(Graph<JavaProject> graph,
+			Map<JavaProject, CompileOutput> compileOutputs, Set<JavaProject> compiledProjects,
+			Set<JavaProject> errorProjects, RecompileFeedbackHandler feedbackHandler) {
+		ExecutorService executor = Executors.newFixedThreadPool(this.compileParallelism, (Runnable runnable) -> {
+			Thread thread = new Thread(runnable, "JavaLoader compiler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			new ConcurrentChildBeforeParentGraphScheduler<JavaProject, CompileResult>(graph, executor,
+					new NodeHandler<JavaProject, CompileResult>() {
 				
-				// Validate that a project is either in ErrorProjects or has its binary directory renamed.
-				// Fail the hard way if this is not the case, so that we can be sure to never mess up file removal.
-				if(!project.getBinDir().getName().equals("bin_new")) {
-					throw new Error("A non-error project did not have its binary directory renamed."
-							+ " This should be impossible.");
+				@Override
+				public Callable<CompileResult> createTask(JavaProject project) {
+					
+					// Fail error projects without compiling them.
+					if(errorProjects.contains(project)) {
+						return null;
+					}
+					
+					// Compile the project in the "bin_new" directory, buffering the compiler feedback.
+					File newBinDir = new File(project.getProjectDir().getAbsoluteFile(), "bin_new");
+					return () -> {
+						CompileResult result = new CompileResult();
+						try {
+							result.output = project.compile(newBinDir,
+									compileOutputs, (String feedback) -> result.feedback.add(feedback));
+						} catch (CompileException e) {
+							result.exception = e;
+						}
+						return result;
+					};
 				}
 				
-				// Replace the current binary directory with the new one and remove the new one.
-				File newBinDir = project.getBinDir();
-				project.setBinDirName("bin");
-				if(project.getBinDir().exists() && !Utils.removeFile(project.getBinDir())) {
-					feedbackHandler.handleCompileException(new CompileException(project,
-							"Failed to replace the old binary directory with the new binary directory because the old"
-							+ " binary directory could not be removed for project \"" + project.getName() + "\"."
-							+ " This can be fixed manually or by attempting another recompile. The project has already"
-							+ " been disabled and some files of the current binary directory might be removed."));
+				@Override
+				public boolean handleResult(JavaProject project, CompileResult result, Throwable thrown) {
+					
+					// Pass the buffered compiler feedback to the feedback handler.
+					if(result != null) {
+						for(String feedback : result.feedback) {
+							feedbackHandler.compilerFeedback(feedback);
+						}
+					}
+					
+					// Handle the result.
+					if(result != null && result.exception == null) {
+						compileOutputs.put(project, result.output);
+						compiledProjects.add(project);
+						return true;
+					}
+					
+					// Remove the newly created binary directory.
+					Utils.removeFile(new File(project.getProjectDir().getAbsoluteFile(), "bin_new"));
+					feedbackHandler.handleCompileException(
+							result != null ? result.exception : new CompileException(project, thrown));
+					errorProjects.add(project);
+					return false;
 				}
-				if(!newBinDir.renameTo(project.getBinDir())) {
-					feedbackHandler.handleCompileException(new CompileException(project,
-							"Failed to rename the new binary directory to the default binary directory for project \""
-							+ project.getName() + "\". This can be fixed manually or by attempting another recompile."
-							+ " The project has already been disabled and the current binary directory has been"
-							+ " removed."));
+				
+				@Override
+				public void handleAncestorsRemoved(List<JavaProject> removedProjects) {
+					
+					// The project should already have an exception for its failure, add one for its dependents.
+					JavaProject project = removedProjects.get(0);
+					for(int i = 1; i < removedProjects.size(); i++) {
+						feedbackHandler.handleCompileException(new CompileException(project,
+								"Indirect or direct dependency project was not successfully compiled: "
+								+ removedProjects.get(i).getName()));
+						errorProjects.add(removedProjects.get(i));
+					}
 				}
-			}
+			}).run();
+		} finally {
+			executor.shutdown();
 		}
+	}
+	
+	/**
+	 * Represents the result of a concurrent project compile.
+	 * @author P.J.S. Kools
+	 */
+	private static class CompileResult {
+		private final List<String> feedback;
+		private CompileOutput output;
+		private CompileException exception;
 		
-		// Validate that all binary directories are set back to "bin" here.
-		// Note that we can only know this due to the earlier validation check in this method.
-		for(JavaProject project : projects) {
-			if(!project.getBinDir().getName().equals("bin")) {
-				throw new Error("All projects are known to have their binary directory name set to"
-						+ " \"bin\" at this point. Yet, project \"" + project.getName() + "\" has a binary directory"
-						+ " named: \"" + project.getBinDir().getName() + "\".");
-			}
+		public CompileResult() {
+			this.feedback = new ArrayList<String>();
+			this.output = null;
+			this.exception = null;
 		}
+	}
+	
+	/**
+	 * Discards the given prepared recompile, removing the newly compiled binaries.
+	 * @param preparedRecompileAll - The prepared recompile, as returned by
+	 * {@link #prepareRecompileAllProjects(RecompileFeedbackHandler)}.
+	 */
+	public void discardRecompileAllProjects(PreparedRecompileAll preparedRecompileAll) {
+		for(CompileOutput output : preparedRecompileAll.compileOutputs.values()) {
+			Utils.removeFile(output.getBinDir());
+		}
+	}
+	
+	/**
+	 * Represents a recompile of all projects of which the compile phase has been completed.
+	 * @author P.J.S. Kools
+	 * @see ProjectManager#prepareRecompileAllProjects(RecompileFeedbackHandler)
+	 */
+	public static final class PreparedRecompileAll {
+		private final Set<JavaProject> projects;
+		private final Set<JavaProject> compiledProjects;
+		private final Set<JavaProject> errorProjects;
+		private final Map<JavaProject, CompileOutput> compileOutputs;
 		
-		// Load all projects. Projects that have caused errors might fail, but might also work using their old binaries.
-		LoadAllResult loadAllResult = this.loadAllProjects(feedbackHandler);
-		Set<JavaProject> loadedProjects = loadAllResult.loadedProjects;
-		errorProjects.addAll(loadAllResult.errorProjects);
-		
-		// Return the result.
-		return new RecompileAllResult(addedProjects, removedProjects,
-				compiledProjects, unloadedProjects, loadedProjects, errorProjects);
+		private PreparedRecompileAll(Set<JavaProject> projects) {
+			this.projects = projects;
+			this.compiledProjects = new HashSet<JavaProject>();
+			this.errorProjects = new HashSet<JavaProject>();
+			this.compileOutputs = new ConcurrentHashMap<JavaProject, CompileOutput>();
+		}
 	}
 	
 	/**
@@ -752,27 +1994,34 @@ public class ProjectManager {
 	/**
 	 * Reads through the projects directory (as defined in the constructor and accessible through
 	 * {@link #getProjectsDir()}) and adds a new project from every directory within this projects directory that
-	 * does not end with ".disabled". All new projects will be added to this project manager.
+	 * does not end with ".disabled", except for the build cache directory. All new projects will be added to this
+	 * project manager.
 	 * @param projectStateLister - A listener to add to all newly created projects. This may be null.
 	 * @return The added projects.
 	 */
 	public Set<JavaProject> addProjectsFromProjectDirectory(ProjectStateListener projectStateListener) {
-		Set<JavaProject> newProjects = new HashSet<JavaProject>();
-		if(this.projectsDir != null) {
-			File[] projectDirs = this.projectsDir.listFiles();
-			if(projectDirs != null) {
-				for(File projectDir : projectDirs) {
-					if(projectDir.isDirectory() && !projectDir.getName().toLowerCase().endsWith(".disabled")
-							&& !this.projects.containsKey(projectDir.getName())) {
-						JavaProject project = new JavaProject(
-								projectDir.getName(), projectDir, this, this.dependencyParser, projectStateListener);
-						this.projects.put(project.getName(), project);
-						newProjects.add(project);
+		this.lockLifecycle();
+		try {
+			Set<JavaProject> newProjects = new HashSet<JavaProject>();
+			if(this.projectsDir != null) {
+				File[] projectDirs = this.projectsDir.listFiles();
+				if(projectDirs != null) {
+					for(File projectDir : projectDirs) {
+						if(projectDir.isDirectory() && !projectDir.getName().toLowerCase().endsWith(".disabled")
+								&& !projectDir.getName().equals(BuildCache.CACHE_DIR_NAME)
+								&& !this.projects.containsKey(projectDir.getName())) {
+							JavaProject project = new JavaProject(projectDir.getName(),
+									projectDir, this, this.dependencyParser, projectStateListener);
+							this.projects.put(project.getName(), project);
+							newProjects.add(project);
+						}
 					}
 				}
 			}
+			return newProjects;
+		} finally {
+			this.lifecycleLock.unlock();
 		}
-		return newProjects;
 	}
 	
 	/**
@@ -784,32 +2033,38 @@ public class ProjectManager {
 	 * or if a project with an equal name was already added to the project manager.
 	 */
 	public JavaProject addProjectFromProjectDirectory(String projectName, ProjectStateListener projectStateListener) {
-		
-		// Return null if the project was already added or if no projects directory is set.
-		if(this.projects.containsKey(projectName) || this.projectsDir == null) {
-			return null;
-		}
-		
-		// Get the project directory.
-		File projectDir = new File(this.projectsDir.getAbsoluteFile(), projectName);
-		
-		// Validate that the projectName did not contain file path modifying characters.
-		if(!projectDir.getAbsoluteFile().getParent().equals(this.projectsDir.getAbsolutePath())
-				|| !projectDir.getName().equals(projectName)) {
+		this.lockLifecycle();
+		try {
+			
+			// Return null if the project was already added or if no projects directory is set.
+			if(this.projects.containsKey(projectName) || this.projectsDir == null) {
+				return null;
+			}
+			
+			// Get the project directory.
+			File projectDir = new File(this.projectsDir.getAbsoluteFile(), projectName);
+			
+			// Validate that the projectName did not contain file path modifying characters.
+			if(!projectDir.getAbsoluteFile().getParent().equals(this.projectsDir.getAbsolutePath())
+					|| !projectDir.getName().equals(projectName)) {
+				return null;
+			}
+			
+			// Create the project if it was found.
+			if(projectDir.getName().equals(projectName) && projectDir.isDirectory()
+					&& !projectDir.getName().toLowerCase().endsWith(".disabled")
+					&& !projectDir.getName().equals(BuildCache.CACHE_DIR_NAME)) {
+				JavaProject project = new JavaProject(
+						projectDir.getName(), projectDir, this, this.dependencyParser, projectStateListener);
+				this.projects.put(project.getName(), project);
+				return project;
+			}
+			
+			// Project not found.
 			return null;
+		} finally {
+			this.lifecycleLock.unlock();
 		}
-		
-		// Create the project if it was found.
-		if(projectDir.getName().equals(projectName) && projectDir.isDirectory()
-				&& !projectDir.getName().toLowerCase().endsWith(".disabled")) {
-			JavaProject project = new JavaProject(
-					projectDir.getName(), projectDir, this, this.dependencyParser, projectStateListener);
-			this.projects.put(project.getName(), project);
-			return project;
-		}
-		
-		// Project not found.
-		return null;
 	}
 	
 	/**
@@ -818,15 +2073,20 @@ public class ProjectManager {
 	 * @return The removed projects.
 	 */
 	public Set<JavaProject> removeUnloadedProjectsIfDeleted() {
-		Set<JavaProject> removedProjects = new HashSet<JavaProject>();
-		for(Iterator<JavaProject> it = this.projects.values().iterator(); it.hasNext(); ) {
-			JavaProject project = it.next();
-			if(!project.isLoaded() && !project.getProjectDir().exists()) {
-				it.remove();
-				removedProjects.add(project);
+		this.lockLifecycle();
+		try {
+			Set<JavaProject> removedProjects = new HashSet<JavaProject>();
+			for(Iterator<JavaProject> it = this.projects.values().iterator(); it.hasNext(); ) {
+				JavaProject project = it.next();
+				if(!project.isLoaded() && !project.getProjectDir().exists()) {
+					it.remove();
+					removedProjects.add(project);
+				}
 			}
+			return removedProjects;
+		} finally {
+			this.lifecycleLock.unlock();
 		}
-		return removedProjects;
 	}
 	
 	/**
@@ -836,12 +2096,17 @@ public class ProjectManager {
 	 * @return The removed project or null if the project was not removed.
 	 */
 	public JavaProject removeUnloadedProjectIfDeleted(String projectName) {
-		JavaProject project = this.projects.get(projectName);
-		if(project != null && !project.isLoaded() && !project.getProjectDir().exists()) {
-			this.projects.remove(projectName);
-			return project;
+		this.lockLifecycle();
+		try {
+			JavaProject project = this.projects.get(projectName);
+			if(project != null && !project.isLoaded() && !project.getProjectDir().exists()) {
+				this.projects.remove(projectName);
+				return project;
+			}
+			return null;
+		} finally {
+			this.lifecycleLock.unlock();
 		}
-		return null;
 	}
 	
 	/**
@@ -856,35 +2121,40 @@ public class ProjectManager {
 	 * was not removed.
 	 */
 	public List<JavaProject> unloadAndRemoveProjectIfDeleted(String projectName, UnloadExceptionHandler exHandler) {
-		
-		// Get the project.
-		JavaProject project = this.projects.get(projectName);
-		
-		// Check if the project exists in the project manager and has been removed.
-		if(project != null && !project.getProjectDir().exists()) {
+		this.lockLifecycle();
+		try {
 			
-			// Attempt to unload the project if it is loaded.
-			List<JavaProject> unloadedProjects;
-			if(project.isLoaded()) {
-				try {
-					unloadedProjects = project.unload(UnloadMethod.UNLOAD_DEPENDENTS, exHandler);
-				} catch (UnloadException e) {
-					// This exception should never be thrown due to using the UNLOAD_DEPENDENTS unload method.
-					throw new Error(e);
+			// Get the project.
+			JavaProject project = this.projects.get(projectName);
+			
+			// Check if the project exists in the project manager and has been removed.
+			if(project != null && !project.getProjectDir().exists()) {
+				
+				// Attempt to unload the project if it is loaded.
+				List<JavaProject> unloadedProjects;
+				if(project.isLoaded()) {
+					try {
+						unloadedProjects = project.unload(UnloadMethod.UNLOAD_DEPENDENTS, exHandler);
+					} catch (UnloadException e) {
+						// This exception should never be thrown due to using the UNLOAD_DEPENDENTS unload method.
+						throw new Error(e);
+					}
+				} else {
+					unloadedProjects = Collections.emptyList();
 				}
-			} else {
-				unloadedProjects = Collections.emptyList();
+				
+				// Remove the project from the project manager.
+				this.projects.remove(projectName);
+				
+				// Return the unloaded projects.
+				return unloadedProjects;
 			}
 			
-			// Remove the project from the project manager.
-			this.projects.remove(projectName);
-			
-			// Return the unloaded projects.
-			return unloadedProjects;
+			// The project either does not exist or exists and has a project directory.
+			return null;
+		} finally {
+			this.lifecycleLock.unlock();
 		}
-		
-		// The project either does not exist or exists and has a project directory.
-		return null;
 	}
 	
 	/**
@@ -892,8 +2162,44 @@ public class ProjectManager {
 	 * @param exHandler - An exception handler for unload exceptions that occur during unloading.
 	 */
 	public void clear(UnloadExceptionHandler exHandler) {
-		this.unloadAllProjects(exHandler);
-		this.projects.clear();
+		this.lockLifecycle();
+		try {
+			this.unloadAllProjects(exHandler);
+			
+			// Finish pending bin directory writes, so that the written classes are available on the next startup.
+			for(JavaProject project : this.projects.values()) {
+				project.awaitBinDirWrite();
+			}
+			synchronized(this) {
+				if(this.binDirWriteExecutor != null) {
+					this.binDirWriteExecutor.shutdown();
+					this.binDirWriteExecutor = null;
+				}
+				if(this.classPreloadExecutor != null) {
+					this.classPreloadExecutor.shutdownNow();
+					this.classPreloadExecutor = null;
+				}
+			}
+			
+			// Release the cached archives of the compiler service and stop the compile workers.
+			this.compilerService.close();
+			this.compilerService = new CompilerService();
+			synchronized(this) {
+				if(this.forkedCompilerService != null) {
+					this.forkedCompilerService.close();
+					this.forkedCompilerService = null;
+				}
+			}
+			
+			this.projects.clear();
+			synchronized(this) {
+				this.loadedDependencyIndex.clear();
+				this.loadedDependentIndex.clear();
+			}
+			this.serviceRegistry.clear();
+		} finally {
+			this.lifecycleLock.unlock();
+		}
 	}
 	
 	/**
@@ -903,4 +2209,29 @@ public class ProjectManager {
 	public static interface RecompileFeedbackHandler extends ProjectExceptionHandler, CompilerFeedbackHandler {
 	}
 	
+	/**
+	 * The classes to load and link in the background after a project has been loaded.
+	 * @author P.J.S. Kools
+	 * @see ProjectManager#setClassPreloadMode(ClassPreloadMode)
+	 */
+	public static enum ClassPreloadMode {
+		
+		/**
+		 * No classes are preloaded.
+		 */
+		DISABLED,
+		
+		/**
+		 * All classes of the project are preloaded.
+		 */
+		ALL_CLASSES,
+		
+		/**
+		 * The classes of the project that were loaded by the previous load of the project are preloaded. Nothing is
+		 * preloaded on the first load of a project.
+		 */
+		USED_CLASSES;
+		
+	}
+	
 }
@@ -0,0 +1,209 @@
+package io.github.pieter12345.javaloader.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * ServiceRegistry class.
+ * Allows projects to export implementations of service interfaces to other projects without those projects having
+ * to depend on the providing project. Service interfaces have to be defined outside of the providing project, such as
+ * in an API project that both the provider and its consumers depend on. Consumers obtain a proxy for a service
+ * interface, which delegates to the implementation that is currently registered. Implementations are unregistered
+ * when their provider unloads and registered again by the next generation of the provider, so the proxies held by
+ * consumers survive reloading the provider.
+ * @author P.J.S. Kools
+ */
+public class ServiceRegistry {
+	
+	// Variables & Constants.
+	private final Map<Class<?>, ServiceBinding> bindings = new HashMap<Class<?>, ServiceBinding>();
+	
+	/**
+	 * Creates a new empty ServiceRegistry.
+	 */
+	public ServiceRegistry() {
+	}
+	
+	/**
+	 * Registers the given implementation of the given service interface for the given provider. Proxies that have
+	 * been obtained for the service interface will delegate to the implementation until it is unregistered.
+	 * Implementations are unregistered automatically when their provider unloads.
+	 * @param provider - The project that provides the implementation.
+	 * @param serviceInterface - The service interface.
+	 * @param implementation - The implementation.
+	 * @throws IllegalArgumentException If the given service interface is not an interface, if the implementation does
+	 * not implement it or if the service interface is defined by the provider.
+	 * @throws IllegalStateException If a different project has already registered an implementation of the service.
+	 */
+	public synchronized <T> void registerService(JavaProject provider, Class<T> serviceInterface, T implementation)
+			throws IllegalArgumentException, IllegalStateException {
+		validateServiceInterface(serviceInterface);
+		if(!serviceInterface.isInstance(implementation)) {
+			throw new IllegalArgumentException("The implementation does not implement service interface "
+					+ serviceInterface.getName() + ".");
+		}
+		if(serviceInterface.getClassLoader() != null
+				&& serviceInterface.getClassLoader() == provider.getClassLoader()) {
+			throw new IllegalArgumentException("Service interface " + serviceInterface.getName() + " is defined by"
+					+ " project " + provider.getName() + ", so it would not survive reloading that project."
+					+ " Define it in a project that both the provider and its consumers depend on instead.");
+		}
+		ServiceBinding binding = this.bindings.get(serviceInterface);
+		if(binding == null) {
+			binding = new ServiceBinding(serviceInterface);
+			this.bindings.put(serviceInterface, binding);
+		} else if(binding.provider != null && binding.provider != provider) {
+			throw new IllegalStateException("Service " + serviceInterface.getName()
+					+ " is already provided by project " + binding.provider.getName() + ".");
+		}
+		binding.provider = provider;
+		binding.implementation = implementation;
+	}
+	
+	/**
+	 * Unregisters the implementation of the given service interface if it was registered by the given provider.
+	 * @param provider - The project that provides the implementation.
+	 * @param serviceInterface - The service interface.
+	 * @return {@code true} if the implementation was unregistered, {@code false} otherwise.
+	 */
+	public synchronized boolean unregisterService(JavaProject provider, Class<?> serviceInterface) {
+		ServiceBinding binding = this.bindings.get(serviceInterface);
+		if(binding == null || binding.provider != provider) {
+			return false;
+		}
+		binding.unbind();
+		if(binding.proxy == null) {
+			this.bindings.remove(serviceInterface);
+		}
+		return true;
+	}
+	
+	/**
+	 * Unregisters all implementations that have been registered by the given project, and removes all services of
+	 * which the service interface is defined by the given project. This is called when the project unloads.
+	 * @param project - The project.
+	 */
+	synchronized void unregisterServices(JavaProject project) {
+		ClassLoader classLoader = project.getClassLoader();
+		for(Iterator<ServiceBinding> it = this.bindings.values().iterator(); it.hasNext();) {
+			ServiceBinding binding = it.next();
+			if(binding.provider == project) {
+				binding.unbind();
+			}
+			if(binding.provider == null && (binding.proxy == null
+					|| (classLoader != null && binding.serviceInterface.getClassLoader() == classLoader))) {
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Gets a proxy for the given service interface. The proxy delegates to the implementation that is registered at
+	 * the moment that a method is invoked on it, so it can be kept while the provider reloads. Invoking a method
+	 * while no implementation is registered results in an {@link IllegalStateException}.
+	 * @param serviceInterface - The service interface.
+	 * @return The proxy.
+	 * @throws IllegalArgumentException If the given service interface is not an interface.
+	 */
+	public synchronized <T> T getService(Class<T> serviceInterface) throws IllegalArgumentException {
+		validateServiceInterface(serviceInterface);
+		ServiceBinding binding = this.bindings.get(serviceInterface);
+		if(binding == null) {
+			binding = new ServiceBinding(serviceInterface);
+			this.bindings.put(serviceInterface, binding);
+		}
+		if(binding.proxy == null) {
+			binding.proxy = Proxy.newProxyInstance(
+					serviceInterface.getClassLoader(), new Class<?>[] {serviceInterface}, binding);
+		}
+		return serviceInterface.cast(binding.proxy);
+	}
+	
+	/**
+	 * Gets whether an implementation of the given service interface is registered.
+	 * @param serviceInterface - The service interface.
+	 * @return {@code true} if an implementation is registered, {@code false} otherwise.
+	 */
+	public synchronized boolean isServiceAvailable(Class<?> serviceInterface) {
+		ServiceBinding binding = this.bindings.get(serviceInterface);
+		return binding != null && binding.implementation != null;
+	}
+	
+	/**
+	 * Gets the project that provides the registered implementation of the given service interface.
+	 * @param serviceInterface - The service interface.
+	 * @return The providing project, or {@code null} if no implementation is registered.
+	 */
+	public synchronized JavaProject getServiceProvider(Class<?> serviceInterface) {
+		ServiceBinding binding = this.bindings.get(serviceInterface);
+		return (binding == null ? null : binding.provider);
+	}
+	
+	/**
+	 * Removes all services, making invocations on existing proxies fail.
+	 */
+	public synchronized void clear() {
+		for(ServiceBinding binding : this.bindings.values()) {
+			binding.unbind();
+		}
+		this.bindings.clear();
+	}
+	
+	private static void validateServiceInterface(Class<?> serviceInterface) throws IllegalArgumentException {
+		if(!serviceInterface.isInterface()) {
+			throw new IllegalArgumentException(serviceInterface.getName() + " is not an interface.");
+		}
+	}
+	
+	/**
+	 * Represents a service interface with its proxy and currently registered implementation.
+	 * @author P.J.S. Kools
+	 */
+	private static final class ServiceBinding implements InvocationHandler {
+		private final Class<?> serviceInterface;
+		private Object proxy = null;
+		private JavaProject provider = null;
+		private volatile Object implementation = null;
+		
+		private ServiceBinding(Class<?> serviceInterface) {
+			this.serviceInterface = serviceInterface;
+		}
+		
+		private void unbind() {
+			this.provider = null;
+			this.implementation = null;
+		}
+		
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			
+			// Handle Object methods on the proxy itself, so that it has a stable identity.
+			if(method.getDeclaringClass() == Object.class) {
+				switch(method.getName()) {
+					case "equals":
+						return proxy == args[0];
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					default:
+						return "ServiceProxy[" + this.serviceInterface.getName() + "]";
+				}
+			}
+			
+			// Delegate to the registered implementation.
+			Object implementation = this.implementation;
+			if(implementation == null) {
+				throw new IllegalStateException("Service " + this.serviceInterface.getName() + " is not available.");
+			}
+			try {
+				return method.invoke(implementation, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
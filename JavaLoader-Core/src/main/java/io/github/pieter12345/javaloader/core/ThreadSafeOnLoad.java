@@ -0,0 +1,24 @@
+package io.github.pieter12345.javaloader.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * ThreadSafeOnLoad annotation.
+ * Marks the main class of a JavaLoader project (the class that extends {@link JavaLoaderProject}) as having a
+ * thread-safe {@link JavaLoaderProject#onLoad()} method. When projects are loaded in parallel (see
+ * {@link ProjectManager#setLoadParallelism(int)}), the onLoad method of annotated projects is called on a loader
+ * thread, concurrently with projects that it does not depend on. The onLoad method of other projects is always
+ * called on the thread that loads the projects.
+ * Annotated onLoad methods cannot load, unload, add or remove projects, since the thread that loads the projects
+ * holds the lifecycle lock while it waits for them. Attempting to do so results in an {@link IllegalStateException}.
+ * @author P.J.S. Kools
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ThreadSafeOnLoad {
+}
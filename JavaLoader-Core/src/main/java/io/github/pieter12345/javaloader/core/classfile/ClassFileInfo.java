@@ -0,0 +1,455 @@
+package io.github.pieter12345.javaloader.core.classfile;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Represents the parsed header and member information of a .class file. This class only reads the class file
+ * structure and never defines or loads the class, which makes it safe to use on classes that cannot be linked.
+ * @author P.J.S. Kools
+ */
+public final class ClassFileInfo {
+	
+	// Constant pool tags.
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_FLOAT = 4;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACEMETHODREF = 11;
+	private static final int CONSTANT_NAMEANDTYPE = 12;
+	private static final int CONSTANT_METHODHANDLE = 15;
+	private static final int CONSTANT_METHODTYPE = 16;
+	private static final int CONSTANT_DYNAMIC = 17;
+	private static final int CONSTANT_INVOKEDYNAMIC = 18;
+	private static final int CONSTANT_MODULE = 19;
+	private static final int CONSTANT_PACKAGE = 20;
+	
+	private final int accessFlags;
+	private final String name;
+	private final String superName;
+	private final List<String> interfaceNames;
+	private final List<MemberInfo> fields;
+	private final List<MemberInfo> methods;
+	private final Set<String> referencedClassNames;
+	private final String signature;
+	
+	private ClassFileInfo(int accessFlags, String name, String superName, List<String> interfaceNames,
+			List<MemberInfo> fields, List<MemberInfo> methods, Set<String> referencedClassNames, String signature) {
+		this.accessFlags = accessFlags;
+		this.name = name;
+		this.superName = superName;
+		this.interfaceNames = Collections.unmodifiableList(interfaceNames);
+		this.fields = Collections.unmodifiableList(fields);
+		this.methods = Collections.unmodifiableList(methods);
+		this.referencedClassNames = Collections.unmodifiableSet(referencedClassNames);
+		this.signature = signature;
+	}
+	
+	/**
+	 * Parses the given .class file.
+	 * @param classFile - The .class file to parse.
+	 * @return The parsed {@link ClassFileInfo}.
+	 * @throws IOException If an I/O error occurs while reading the file or if the file is not a valid class file.
+	 */
+	public static ClassFileInfo parse(File classFile) throws IOException {
+		return parse(Files.readAllBytes(classFile.toPath()));
+	}
+	
+	/**
+	 * Parses the given .class file bytes.
+	 * @param bytes - The .class file bytes.
+	 * @return The parsed {@link ClassFileInfo}.
+	 * @throws IOException If the bytes do not represent a valid class file.
+	 */
+	public static ClassFileInfo parse(byte[] bytes) throws IOException {
+		return read(new DataInputStream(new ByteArrayInputStream(bytes)), false);
+	}
+	
+	/**
+	 * Parses the header of the given .class file, reading only up to and including the interfaces. The returned
+	 * {@link ClassFileInfo} contains the access flags, name, super name and interface names. It has no fields,
+	 * methods, referenced class names or signature.
+	 * @param classFile - The .class file to parse.
+	 * @return The parsed {@link ClassFileInfo}.
+	 * @throws IOException If an I/O error occurs while reading the file or if the file is not a valid class file.
+	 */
+	public static ClassFileInfo parseHeader(File classFile) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(classFile)))) {
+			return read(in, true);
+		}
+	}
+	
+	/**
+	 * Parses the header of the given .class file bytes, as described in {@link #parseHeader(File)}.
+	 * @param bytes - The .class file bytes.
+	 * @return The parsed {@link ClassFileInfo}.
+	 * @throws IOException If the bytes do not represent a valid class file.
+	 */
+	public static ClassFileInfo parseHeader(byte[] bytes) throws IOException {
+		return read(new DataInputStream(new ByteArrayInputStream(bytes)), true);
+	}
+	
+	/**
+	 * Parses the header of the given .class file bytes, as described in {@link #parseHeader(File)}. The position of
+	 * the given buffer is not changed.
+	 * @param buffer - The heap buffer containing the .class file bytes between its position and limit.
+	 * @return The parsed {@link ClassFileInfo}.
+	 * @throws IOException If the bytes do not represent a valid class file.
+	 */
+	public static ClassFileInfo parseHeader(ByteBuffer buffer) throws IOException {
+		return read(new DataInputStream(new ByteArrayInputStream(buffer.array(),
+				buffer.arrayOffset() + buffer.position(), buffer.remaining())), true);
+	}
+	
+	private static ClassFileInfo read(DataInputStream in, boolean headerOnly) throws IOException {
+		
+		// Validate the magic number and skip the version.
+		if(in.readInt() != 0xCAFEBABE) {
+			throw new IOException("Not a class file (invalid magic number).");
+		}
+		in.readUnsignedShort(); // Minor version.
+		in.readUnsignedShort(); // Major version.
+		
+		// Read the constant pool.
+		int constantPoolCount = in.readUnsignedShort();
+		int[] tags = new int[constantPoolCount];
+		String[] utf8s = new String[constantPoolCount];
+		Object[] values = new Object[constantPoolCount]; // Values of numeric constants.
+		int[] refs = new int[constantPoolCount]; // Name index for Class entries, descriptor or UTF8 index for others.
+		for(int i = 1; i < constantPoolCount; i++) {
+			int tag = in.readUnsignedByte();
+			tags[i] = tag;
+			switch(tag) {
+				case CONSTANT_UTF8:
+					utf8s[i] = in.readUTF();
+					break;
+				case CONSTANT_INTEGER:
+					values[i] = in.readInt();
+					break;
+				case CONSTANT_FLOAT:
+					values[i] = in.readFloat();
+					break;
+				case CONSTANT_LONG:
+					values[i] = in.readLong();
+					i++; // 8-byte constants take up two constant pool entries.
+					break;
+				case CONSTANT_DOUBLE:
+					values[i] = in.readDouble();
+					i++; // 8-byte constants take up two constant pool entries.
+					break;
+				case CONSTANT_CLASS:
+				case CONSTANT_METHODTYPE:
+				case CONSTANT_STRING:
+					refs[i] = in.readUnsignedShort();
+					break;
+				case CONSTANT_MODULE:
+				case CONSTANT_PACKAGE:
+					in.readUnsignedShort();
+					break;
+				case CONSTANT_NAMEANDTYPE:
+					in.readUnsignedShort(); // Name index.
+					refs[i] = in.readUnsignedShort(); // Descriptor index.
+					break;
+				case CONSTANT_FIELDREF:
+				case CONSTANT_METHODREF:
+				case CONSTANT_INTERFACEMETHODREF:
+				case CONSTANT_DYNAMIC:
+				case CONSTANT_INVOKEDYNAMIC:
+					in.readInt();
+					break;
+				case CONSTANT_METHODHANDLE:
+					in.readUnsignedByte();
+					in.readUnsignedShort();
+					break;
+				default:
+					throw new IOException("Invalid constant pool tag: " + tag);
+			}
+		}
+		
+		// Collect the referenced class names from the constant pool.
+		Set<String> referencedClassNames = new HashSet<String>();
+		for(int i = 1; i < constantPoolCount && !headerOnly; i++) {
+			if(tags[i] == CONSTANT_CLASS) {
+				addInternalTypeName(utf8s[refs[i]], referencedClassNames);
+			} else if(tags[i] == CONSTANT_NAMEANDTYPE || tags[i] == CONSTANT_METHODTYPE) {
+				addDescriptorTypeNames(utf8s[refs[i]], referencedClassNames);
+			}
+		}
+		
+		// Read the class header.
+		int accessFlags = in.readUnsignedShort();
+		String name = toBinaryName(utf8s[refs[in.readUnsignedShort()]]);
+		int superIndex = in.readUnsignedShort();
+		String superName = (superIndex == 0 ? null : toBinaryName(utf8s[refs[superIndex]]));
+		int interfaceCount = in.readUnsignedShort();
+		List<String> interfaceNames = new ArrayList<String>(interfaceCount);
+		for(int i = 0; i < interfaceCount; i++) {
+			interfaceNames.add(toBinaryName(utf8s[refs[in.readUnsignedShort()]]));
+		}
+		if(headerOnly) {
+			return new ClassFileInfo(accessFlags, name, superName, interfaceNames, Collections.emptyList(),
+					Collections.emptyList(), Collections.emptySet(), null);
+		}
+		
+		// Read the fields and methods.
+		List<MemberInfo> fields = readMembers(in, utf8s, values, refs, referencedClassNames);
+		List<MemberInfo> methods = readMembers(in, utf8s, values, refs, referencedClassNames);
+		
+		// Read the class signature from the class attributes.
+		String signature = null;
+		int attributeCount = in.readUnsignedShort();
+		for(int i = 0; i < attributeCount; i++) {
+			String attributeName = utf8s[in.readUnsignedShort()];
+			int length = in.readInt();
+			if(attributeName.equals("Signature")) {
+				signature = utf8s[in.readUnsignedShort()];
+			} else {
+				in.readFully(new byte[length]);
+			}
+		}
+		
+		// A class does not reference itself.
+		referencedClassNames.remove(name);
+		
+		// Return the result.
+		return new ClassFileInfo(accessFlags, name, superName,
+				interfaceNames, fields, methods, referencedClassNames, signature);
+	}
+	
+	private static List<MemberInfo> readMembers(DataInputStream in, String[] utf8s,
+			Object[] values, int[] refs, Set<String> referencedClassNames) throws IOException {
+		int count = in.readUnsignedShort();
+		List<MemberInfo> members = new ArrayList<MemberInfo>(count);
+		for(int i = 0; i < count; i++) {
+			int accessFlags = in.readUnsignedShort();
+			String name = utf8s[in.readUnsignedShort()];
+			String descriptor = utf8s[in.readUnsignedShort()];
+			addDescriptorTypeNames(descriptor, referencedClassNames);
+			
+			// Read the signature and constant value attributes and skip the others.
+			String signature = null;
+			Object constantValue = null;
+			int attributeCount = in.readUnsignedShort();
+			for(int j = 0; j < attributeCount; j++) {
+				String attributeName = utf8s[in.readUnsignedShort()];
+				int length = in.readInt();
+				if(attributeName.equals("Signature")) {
+					signature = utf8s[in.readUnsignedShort()];
+				} else if(attributeName.equals("ConstantValue")) {
+					int valueIndex = in.readUnsignedShort();
+					constantValue = (values[valueIndex] != null ? values[valueIndex] : utf8s[refs[valueIndex]]);
+				} else {
+					in.readFully(new byte[length]);
+				}
+			}
+			members.add(new MemberInfo(accessFlags, name, descriptor, signature, constantValue));
+		}
+		return members;
+	}
+	
+	/**
+	 * Adds the class name of the given internal name or array descriptor to the given set.
+	 * @param internalName - The internal name (Example: "my/pack/MyClass" or "[Lmy/pack/MyClass;").
+	 * @param names - The set to add the binary class name to.
+	 */
+	private static void addInternalTypeName(String internalName, Set<String> names) {
+		if(internalName.startsWith("[")) {
+			addDescriptorTypeNames(internalName, names);
+		} else {
+			names.add(toBinaryName(internalName));
+		}
+	}
+	
+	/**
+	 * Adds the class names of all object types in the given field or method descriptor to the given set.
+	 * @param descriptor - The descriptor (Example: "(ILjava/lang/String;)[Lmy/pack/MyClass;").
+	 * @param names - The set to add the binary class names to.
+	 */
+	private static void addDescriptorTypeNames(String descriptor, Set<String> names) {
+		int ind = descriptor.indexOf('L');
+		while(ind != -1) {
+			int end = descriptor.indexOf(';', ind);
+			if(end == -1) {
+				return;
+			}
+			names.add(toBinaryName(descriptor.substring(ind + 1, end)));
+			ind = descriptor.indexOf('L', end);
+		}
+	}
+	
+	private static String toBinaryName(String internalName) {
+		return internalName.replace('/', '.');
+	}
+	
+	/**
+	 * Gets the access flags of the class.
+	 * @return The access flags as defined by the class file format.
+	 */
+	public int getAccessFlags() {
+		return this.accessFlags;
+	}
+	
+	/**
+	 * Gets the binary name of the class.
+	 * @return The binary name (Example: "my.pack.MyClass$Inner").
+	 */
+	public String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * Gets the binary name of the super class.
+	 * @return The binary name of the super class or {@code null} if this class is {@link Object}.
+	 */
+	public String getSuperName() {
+		return this.superName;
+	}
+	
+	/**
+	 * Gets the binary names of the directly implemented interfaces.
+	 * @return The interface names in declaration order.
+	 */
+	public List<String> getInterfaceNames() {
+		return this.interfaceNames;
+	}
+	
+	/**
+	 * Gets the fields declared in the class.
+	 * @return The fields in declaration order.
+	 */
+	public List<MemberInfo> getFields() {
+		return this.fields;
+	}
+	
+	/**
+	 * Gets the methods (including constructors and static initializers) declared in the class.
+	 * @return The methods in declaration order.
+	 */
+	public List<MemberInfo> getMethods() {
+		return this.methods;
+	}
+	
+	/**
+	 * Gets the binary names of all classes that are referenced from the class file, excluding the class itself.
+	 * These are collected from class constants and field, method and type descriptors. References to compile time
+	 * constants that were inlined by the compiler are not included.
+	 * @return The referenced class names.
+	 */
+	public Set<String> getReferencedClassNames() {
+		return this.referencedClassNames;
+	}
+	
+	/**
+	 * Gets the generic signature of the class.
+	 * @return The signature or {@code null} if the class does not have a generic signature.
+	 */
+	public String getSignature() {
+		return this.signature;
+	}
+	
+	/**
+	 * Checks whether this class file and the given class file declare the same class structure. Two class files
+	 * have the same structure when they only differ in method bodies (and attributes that do not affect the class
+	 * structure), which is the case in which a loaded class can be redefined in place.
+	 * Both class files have to be fully parsed.
+	 * @param other - The other class file.
+	 * @return True if the class name, access flags, super class, interfaces, fields (including constant values) and
+	 * method signatures are equal, false otherwise.
+	 */
+	public boolean hasSameStructure(ClassFileInfo other) {
+		if(this.accessFlags != other.accessFlags || !this.name.equals(other.name)
+				|| !Objects.equals(this.superName, other.superName) || !this.interfaceNames.equals(other.interfaceNames)
+				|| this.fields.size() != other.fields.size() || this.methods.size() != other.methods.size()) {
+			return false;
+		}
+		
+		// Compare the fields in declaration order, since the field layout depends on it.
+		for(int i = 0; i < this.fields.size(); i++) {
+			MemberInfo field = this.fields.get(i);
+			MemberInfo otherField = other.fields.get(i);
+			if(field.accessFlags != otherField.accessFlags || !field.name.equals(otherField.name)
+					|| !field.descriptor.equals(otherField.descriptor)
+					|| !Objects.equals(field.constantValue, otherField.constantValue)) {
+				return false;
+			}
+		}
+		
+		// Compare the methods regardless of their declaration order.
+		Set<String> methodKeys = new HashSet<String>();
+		for(MemberInfo method : this.methods) {
+			methodKeys.add(method.accessFlags + " " + method.name + method.descriptor);
+		}
+		for(MemberInfo method : other.methods) {
+			if(!methodKeys.contains(method.accessFlags + " " + method.name + method.descriptor)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Represents a field or method in a class file.
+	 * @author P.J.S. Kools
+	 */
+	public static class MemberInfo {
+		private final int accessFlags;
+		private final String name;
+		private final String descriptor;
+		private final String signature;
+		private final Object constantValue;
+		
+		public MemberInfo(int accessFlags, String name, String descriptor, String signature, Object constantValue) {
+			this.accessFlags = accessFlags;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.signature = signature;
+			this.constantValue = constantValue;
+		}
+		
+		public int getAccessFlags() {
+			return this.accessFlags;
+		}
+		
+		public String getName() {
+			return this.name;
+		}
+		
+		public String getDescriptor() {
+			return this.descriptor;
+		}
+		
+		/**
+		 * Gets the generic signature of the member.
+		 * @return The signature or {@code null} if the member does not have a generic signature.
+		 */
+		public String getSignature() {
+			return this.signature;
+		}
+		
+		/**
+		 * Gets the compile time constant value of the field.
+		 * @return The {@link Integer}, {@link Long}, {@link Float}, {@link Double} or {@link String} value, or
+		 * {@code null} if the member is not a constant field.
+		 */
+		public Object getConstantValue() {
+			return this.constantValue;
+		}
+	}
+}
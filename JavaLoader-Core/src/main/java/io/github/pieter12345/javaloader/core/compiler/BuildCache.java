@@ -0,0 +1,277 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * BuildCache class.
+ * A content-addressed cache of project compile outputs. Every entry is a directory named after the hash of all
+ * compile inputs (see {@link KeyBuilder}), containing the bin directory contents that these inputs produced.
+ * Entries are evicted in least recently used order when the maximum number of entries is exceeded.
+ * @author P.J.S. Kools
+ */
+public class BuildCache {
+	
+	/**
+	 * The name of the build cache directory within the projects directory.
+	 */
+	public static final String CACHE_DIR_NAME = ".buildcache";
+	
+	private static final String TEMP_PREFIX = "tmp-";
+	
+	// Variables & Constants.
+	private final File cacheDir;
+	private int maxEntries = 100;
+	private final Map<String, String> fileHashes = new HashMap<String, String>();
+	
+	/**
+	 * Creates a new BuildCache in the given directory. The directory is created when the first entry is stored.
+	 * @param cacheDir - The cache directory.
+	 */
+	public BuildCache(File cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+	
+	/**
+	 * Gets the cache directory.
+	 * @return The cache directory.
+	 */
+	public File getCacheDir() {
+		return this.cacheDir;
+	}
+	
+	/**
+	 * Sets the maximum number of entries in this cache. The least recently used entries are removed when a new entry
+	 * is stored while the cache is full.
+	 * @param maxEntries - The maximum number of entries.
+	 * @throws IllegalArgumentException If maxEntries is smaller than 1.
+	 */
+	public synchronized void setMaxEntries(int maxEntries) throws IllegalArgumentException {
+		if(maxEntries < 1) {
+			throw new IllegalArgumentException("Max entries must be at least 1, but was " + maxEntries + ".");
+		}
+		this.maxEntries = maxEntries;
+	}
+	
+	/**
+	 * Creates a new {@link KeyBuilder} to compute the key of a compile.
+	 * @return The new key builder.
+	 */
+	public KeyBuilder newKeyBuilder() {
+		return new KeyBuilder();
+	}
+	
+	/**
+	 * Restores the cache entry with the given key into the given bin directory, replacing its contents.
+	 * @param key - The cache key.
+	 * @param binDir - The bin directory.
+	 * @return True if the entry was restored, false if no entry exists for the given key.
+	 * @throws IOException If an I/O error occurs while restoring the entry. The bin directory might be partially
+	 * restored when this is thrown.
+	 */
+	public synchronized boolean restore(String key, File binDir) throws IOException {
+		File entryDir = new File(this.cacheDir, key);
+		File[] entryFiles = entryDir.listFiles();
+		if(entryFiles == null) {
+			return false;
+		}
+		
+		// Mark the entry as recently used before copying it, so that it is not the first entry to be evicted.
+		entryDir.setLastModified(System.currentTimeMillis());
+		
+		// Replace the bin directory contents with the entry.
+		if(binDir.exists() && !Utils.removeFile(binDir)) {
+			throw new IOException("Unable to remove bin directory at: " + binDir.getAbsolutePath());
+		}
+		if(!binDir.mkdir()) {
+			throw new IOException("Unable to create bin directory at: " + binDir.getAbsolutePath());
+		}
+		for(File file : entryFiles) {
+			Utils.copyFile(file, binDir);
+		}
+		return true;
+	}
+	
+	/**
+	 * Stores the given files and the classes in the given class store under the given key. Nothing happens if an
+	 * entry with the given key already exists.
+	 * @param key - The cache key.
+	 * @param files - The files and directories to copy into the entry. This is typically the contents of the bin
+	 * directory.
+	 * @param classStore - The in-memory compiled classes to write into the entry, or {@code null} if all classes are
+	 * in the given files.
+	 * @throws IOException If an I/O error occurs while storing the entry.
+	 */
+	public synchronized void store(String key, List<File> files, MemoryClassStore classStore) throws IOException {
+		File entryDir = new File(this.cacheDir, key);
+		if(entryDir.exists()) {
+			return;
+		}
+		
+		// Write the entry to a temporary directory and move it into place, so that a partial entry is never used.
+		File tempDir = new File(this.cacheDir, TEMP_PREFIX + key);
+		if(tempDir.exists() && !Utils.removeFile(tempDir)) {
+			throw new IOException("Unable to remove temporary directory at: " + tempDir.getAbsolutePath());
+		}
+		if(!tempDir.mkdirs()) {
+			throw new IOException("Unable to create temporary directory at: " + tempDir.getAbsolutePath());
+		}
+		try {
+			for(File file : files) {
+				Utils.copyFile(file, tempDir);
+			}
+			if(classStore != null) {
+				classStore.writeTo(tempDir);
+			}
+			if(!tempDir.renameTo(entryDir)) {
+				throw new IOException("Unable to move build cache entry to: " + entryDir.getAbsolutePath());
+			}
+		} finally {
+			if(tempDir.exists()) {
+				Utils.removeFile(tempDir);
+			}
+		}
+		
+		// Evict the least recently used entries.
+		this.evict();
+	}
+	
+	private void evict() {
+		File[] entryDirs = this.cacheDir.listFiles(
+				(File file) -> file.isDirectory() && !file.getName().startsWith(TEMP_PREFIX));
+		if(entryDirs == null || entryDirs.length <= this.maxEntries) {
+			return;
+		}
+		Arrays.sort(entryDirs, (File f1, File f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+		for(int i = 0; i < entryDirs.length - this.maxEntries; i++) {
+			Utils.removeFile(entryDirs[i]);
+		}
+	}
+	
+	/**
+	 * Gets the content hash of the given file. Hashes are cached by path, size and last modified time, so that large
+	 * files on the classpath are only read once.
+	 * @param file - The file.
+	 * @return The content hash.
+	 * @throws IOException If an I/O error occurs while reading the file.
+	 */
+	private String hashFile(File file) throws IOException {
+		String stamp = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+		synchronized(this.fileHashes) {
+			String hash = this.fileHashes.get(stamp);
+			if(hash != null) {
+				return hash;
+			}
+		}
+		String hash = Utils.toHexString(Utils.newSha256Digest().digest(Files.readAllBytes(file.toPath())));
+		synchronized(this.fileHashes) {
+			this.fileHashes.put(stamp, hash);
+		}
+		return hash;
+	}
+	
+	/**
+	 * Computes a build cache key from compile inputs. Every input is added with a label, so that inputs of
+	 * different kinds cannot produce the same key.
+	 * @author P.J.S. Kools
+	 */
+	public final class KeyBuilder {
+		
+		private final MessageDigest digest = Utils.newSha256Digest();
+		
+		private KeyBuilder() {
+			this.add("format", "JavaLoader build cache v1");
+		}
+		
+		/**
+		 * Adds the given labeled value to the key.
+		 * @param label - The label.
+		 * @param value - The value.
+		 * @return This key builder.
+		 */
+		public KeyBuilder add(String label, String value) {
+			this.digest.update((label + "=" + value.length() + ":" + value + "\n").getBytes(StandardCharsets.UTF_8));
+			return this;
+		}
+		
+		/**
+		 * Adds the content of the given file or the .class files in the given directory to the key.
+		 * Non-existing files are added as such.
+		 * @param label - The label.
+		 * @param file - The file or directory.
+		 * @return This key builder.
+		 * @throws IOException If an I/O error occurs while reading the file.
+		 */
+		public KeyBuilder addFile(String label, File file) throws IOException {
+			if(file.isDirectory()) {
+				return this.addClasses(label, file, null);
+			}
+			return this.add(label, file.isFile() ? BuildCache.this.hashFile(file) : "missing");
+		}
+		
+		/**
+		 * Adds the content of the given source files to the key.
+		 * @param sourceFiles - The source files, keyed by their path relative to the source directory.
+		 * @return This key builder.
+		 * @throws IOException If an I/O error occurs while reading a source file.
+		 */
+		public KeyBuilder addSources(Map<String, File> sourceFiles) throws IOException {
+			for(Map.Entry<String, File> sourceFile : new TreeMap<String, File>(sourceFiles).entrySet()) {
+				this.add("source", sourceFile.getKey());
+				this.add("sourceHash", IncrementalCompileState.hash(
+						Files.readAllBytes(sourceFile.getValue().toPath())));
+			}
+			return this;
+		}
+		
+		/**
+		 * Adds the classes in the given bin directory and class store to the key. Classes in the class store take
+		 * precedence over classes in the bin directory. The result does not depend on whether the classes have been
+		 * written to the bin directory or not.
+		 * @param label - The label.
+		 * @param binDir - The bin directory.
+		 * @param classStore - The class store, or {@code null}.
+		 * @return This key builder.
+		 * @throws IOException If an I/O error occurs while reading a class file.
+		 */
+		public KeyBuilder addClasses(String label, File binDir, MemoryClassStore classStore) throws IOException {
+			Map<String, File> classFiles = new TreeMap<String, File>();
+			IncrementalCompileState.listFiles(binDir, "", ".class", classFiles);
+			Map<String, String> classHashes = new TreeMap<String, String>();
+			for(Map.Entry<String, File> classFile : classFiles.entrySet()) {
+				String className = classFile.getKey().substring(0, classFile.getKey().length() - ".class".length());
+				classHashes.put(className.replace('/', '.'), IncrementalCompileState.hash(
+						Files.readAllBytes(classFile.getValue().toPath())));
+			}
+			if(classStore != null) {
+				for(String className : classStore.getClassNames()) {
+					classHashes.put(className, IncrementalCompileState.hash(classStore.getClassBytes(className)));
+				}
+			}
+			List<String> entries = new ArrayList<String>();
+			for(Map.Entry<String, String> classHash : classHashes.entrySet()) {
+				entries.add(classHash.getKey() + "=" + classHash.getValue());
+			}
+			return this.add(label, String.join(",", entries));
+		}
+		
+		/**
+		 * Builds the key.
+		 * @return The key as a hexadecimal string.
+		 */
+		public String build() {
+			return Utils.toHexString(this.digest.digest());
+		}
+	}
+}
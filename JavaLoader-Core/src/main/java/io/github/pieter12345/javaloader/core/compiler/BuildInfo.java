@@ -0,0 +1,197 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.github.pieter12345.javaloader.core.classfile.ClassFileInfo;
+import io.github.pieter12345.javaloader.core.classfile.ClassFileInfo.MemberInfo;
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * BuildInfo class.
+ * Describes the inputs and the ABI (application binary interface) of a compiled project. The inputs hash covers
+ * everything a compile depends on except for the classes of dependency projects, which are covered by the ABI
+ * fingerprints of those projects instead. A compiled project is up to date when its inputs hash is unchanged and
+ * the ABI fingerprints of its dependency projects are unchanged, even if those dependency projects were recompiled.
+ * @author P.J.S. Kools
+ */
+public class BuildInfo {
+	
+	/**
+	 * The name of the file in the bin directory in which the build info is stored.
+	 */
+	public static final String FILE_NAME = ".build-info";
+	
+	private static final String HEADER = "# JavaLoader build info v1";
+	
+	// Variables & Constants.
+	private final String inputsHash;
+	private final String abiFingerprint;
+	private final Map<String, String> dependencyAbiFingerprints = new TreeMap<String, String>();
+	
+	/**
+	 * Creates a new BuildInfo without dependency ABI fingerprints.
+	 * @param inputsHash - The hash of the compile inputs.
+	 * @param abiFingerprint - The ABI fingerprint of the compiled project.
+	 */
+	public BuildInfo(String inputsHash, String abiFingerprint) {
+		this.inputsHash = inputsHash;
+		this.abiFingerprint = abiFingerprint;
+	}
+	
+	/**
+	 * Reads the build info from the build info file in the given bin directory.
+	 * @param binDir - The bin directory.
+	 * @return The read build info, or {@code null} if the build info file does not exist or could not be parsed.
+	 */
+	public static BuildInfo read(File binDir) {
+		File infoFile = new File(binDir, FILE_NAME);
+		if(!infoFile.isFile()) {
+			return null;
+		}
+		try(BufferedReader reader = Files.newBufferedReader(infoFile.toPath(), StandardCharsets.UTF_8)) {
+			if(!HEADER.equals(reader.readLine())) {
+				return null;
+			}
+			String inputsHash = null;
+			String abiFingerprint = null;
+			Map<String, String> dependencyAbiFingerprints = new TreeMap<String, String>();
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] parts = line.split(" ");
+				if(parts.length == 2 && parts[0].equals("inputs")) {
+					inputsHash = parts[1];
+				} else if(parts.length == 2 && parts[0].equals("abi")) {
+					abiFingerprint = parts[1];
+				} else if(parts.length == 3 && parts[0].equals("dependency")) {
+					dependencyAbiFingerprints.put(parts[1], parts[2]);
+				} else {
+					return null;
+				}
+			}
+			if(inputsHash == null || abiFingerprint == null) {
+				return null;
+			}
+			BuildInfo info = new BuildInfo(inputsHash, abiFingerprint);
+			info.dependencyAbiFingerprints.putAll(dependencyAbiFingerprints);
+			return info;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Writes this build info to the build info file in the given bin directory.
+	 * @param binDir - The bin directory.
+	 * @throws IOException If an I/O error occurs while writing the build info file.
+	 */
+	public void write(File binDir) throws IOException {
+		File infoFile = new File(binDir, FILE_NAME);
+		try(Writer writer = Files.newBufferedWriter(infoFile.toPath(), StandardCharsets.UTF_8)) {
+			writer.write(HEADER + "\n");
+			writer.write("inputs " + this.inputsHash + "\n");
+			writer.write("abi " + this.abiFingerprint + "\n");
+			for(Map.Entry<String, String> entry : this.dependencyAbiFingerprints.entrySet()) {
+				writer.write("dependency " + entry.getKey() + " " + entry.getValue() + "\n");
+			}
+		}
+	}
+	
+	/**
+	 * Gets the hash of the compile inputs.
+	 * @return The inputs hash.
+	 */
+	public String getInputsHash() {
+		return this.inputsHash;
+	}
+	
+	/**
+	 * Gets the ABI fingerprint of the compiled project.
+	 * @return The ABI fingerprint.
+	 */
+	public String getAbiFingerprint() {
+		return this.abiFingerprint;
+	}
+	
+	/**
+	 * Gets the ABI fingerprints of the dependency projects that the project was compiled against.
+	 * @return The modifiable map of ABI fingerprints, mapped by dependency project name.
+	 */
+	public Map<String, String> getDependencyAbiFingerprints() {
+		return this.dependencyAbiFingerprints;
+	}
+	
+	/**
+	 * Computes the ABI fingerprint of the classes in the given bin directory and class store. The fingerprint covers
+	 * the names, modifiers, super types and generic signatures of all public classes and the signatures and constant
+	 * values of their public and protected fields and methods. Private and package-private members and method
+	 * bodies do not affect the fingerprint, since classes in other projects cannot depend on them.
+	 * @param binDir - The bin directory.
+	 * @param classStore - The in-memory compiled classes, or {@code null}. These take precedence over classes with
+	 * the same name in the bin directory.
+	 * @return The ABI fingerprint.
+	 * @throws IOException If an I/O error occurs while reading a class file or if a class file is invalid.
+	 */
+	public static String computeAbiFingerprint(File binDir, MemoryClassStore classStore) throws IOException {
+		
+		// Parse all classes.
+		Map<String, File> classFiles = new TreeMap<String, File>();
+		IncrementalCompileState.listFiles(binDir, "", ".class", classFiles);
+		Map<String, ClassFileInfo> classInfos = new TreeMap<String, ClassFileInfo>();
+		for(File classFile : classFiles.values()) {
+			ClassFileInfo classInfo = ClassFileInfo.parse(classFile);
+			classInfos.put(classInfo.getName(), classInfo);
+		}
+		if(classStore != null) {
+			for(String className : classStore.getClassNames()) {
+				classInfos.put(className, ClassFileInfo.parse(classStore.getClassBytes(className)));
+			}
+		}
+		
+		// Hash the ABI of all public classes.
+		MessageDigest digest = Utils.newSha256Digest();
+		for(ClassFileInfo classInfo : classInfos.values()) {
+			if(!Modifier.isPublic(classInfo.getAccessFlags())) {
+				continue;
+			}
+			List<String> lines = new ArrayList<String>();
+			lines.add("class " + classInfo.getName() + " " + classInfo.getAccessFlags() + " " + classInfo.getSuperName()
+					+ " " + String.join(",", classInfo.getInterfaceNames()) + " " + classInfo.getSignature());
+			for(MemberInfo field : classInfo.getFields()) {
+				if(isAbiMember(field)) {
+					lines.add("field " + field.getName() + " " + field.getDescriptor() + " " + field.getAccessFlags()
+							+ " " + field.getSignature() + " " + field.getConstantValue());
+				}
+			}
+			for(MemberInfo method : classInfo.getMethods()) {
+				if(isAbiMember(method)) {
+					
+					// The synchronized modifier does not affect callers.
+					lines.add("method " + method.getName() + " " + method.getDescriptor()
+							+ " " + (method.getAccessFlags() & ~Modifier.SYNCHRONIZED) + " " + method.getSignature());
+				}
+			}
+			
+			// Sort the members, since their declaration order does not affect the ABI.
+			lines.subList(1, lines.size()).sort(null);
+			for(String line : lines) {
+				digest.update((line + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		return Utils.toHexString(digest.digest());
+	}
+	
+	private static boolean isAbiMember(MemberInfo member) {
+		return (member.getAccessFlags() & (Modifier.PUBLIC | Modifier.PROTECTED)) != 0;
+	}
+}
@@ -0,0 +1,162 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * ClassPack class.
+ * Represents a packed copy of the contents of a bin directory, stored as a single file within that bin directory.
+ * The file consists of a central index, containing the path, offset and length of every entry, followed by the entry
+ * data. Reading a pack reads the whole file at once, after which entries are accessed without further I/O.
+ * @author P.J.S. Kools
+ */
+public final class ClassPack {
+	
+	/**
+	 * The name of the file in the bin directory in which the pack is stored.
+	 */
+	public static final String FILE_NAME = ".classes.pack";
+	
+	private static final int MAGIC = 0x4A4C504B; // "JLPK".
+	private static final int VERSION = 1;
+	
+	// Variables & Constants.
+	private final byte[] data;
+	private final Map<String, int[]> index; // Path -> {offset, length}.
+	
+	private ClassPack(byte[] data, Map<String, int[]> index) {
+		this.data = data;
+		this.index = index;
+	}
+	
+	/**
+	 * Packs all files in the given bin directory into the pack file in that bin directory, replacing the existing
+	 * pack file if it exists.
+	 * @param binDir - The bin directory.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public static void write(File binDir) throws IOException {
+		
+		// Get the files to pack.
+		Map<String, File> files = new TreeMap<String, File>();
+		IncrementalCompileState.listFiles(binDir, "", "", files);
+		files.remove(FILE_NAME);
+		files.remove(FILE_NAME + ".tmp");
+		
+		// Read the files.
+		Map<String, byte[]> entries = new TreeMap<String, byte[]>();
+		for(Map.Entry<String, File> file : files.entrySet()) {
+			entries.put(file.getKey(), Files.readAllBytes(file.getValue().toPath()));
+		}
+		
+		// Write the index and the data to a temporary file and move it in place.
+		File tmpFile = new File(binDir, FILE_NAME + ".tmp");
+		try(DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(entries.size());
+			int offset = 0;
+			for(Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				byte[] pathBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				out.writeShort(pathBytes.length);
+				out.write(pathBytes);
+				out.writeInt(offset);
+				out.writeInt(entry.getValue().length);
+				offset += entry.getValue().length;
+			}
+			for(byte[] bytes : entries.values()) {
+				out.write(bytes);
+			}
+		}
+		Files.move(tmpFile.toPath(), new File(binDir, FILE_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Removes the pack file from the given bin directory if it exists.
+	 * @param binDir - The bin directory.
+	 * @throws IOException If the pack file exists and could not be removed.
+	 */
+	public static void delete(File binDir) throws IOException {
+		Files.deleteIfExists(new File(binDir, FILE_NAME).toPath());
+	}
+	
+	/**
+	 * Reads the pack file in the given bin directory.
+	 * @param binDir - The bin directory.
+	 * @return The read pack, or {@code null} if the bin directory does not contain a (valid) pack file.
+	 */
+	public static ClassPack read(File binDir) {
+		File packFile = new File(binDir, FILE_NAME);
+		if(!packFile.isFile()) {
+			return null;
+		}
+		try(FileChannel channel = FileChannel.open(packFile.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE) {
+				return null;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while(buffer.hasRemaining() && channel.read(buffer) != -1) {
+				// Keep reading until the buffer is full or the end of the file is reached.
+			}
+			buffer.flip();
+			
+			// Read the index.
+			if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+			int entryCount = buffer.getInt();
+			Map<String, int[]> index = new HashMap<String, int[]>(entryCount * 2);
+			for(int i = 0; i < entryCount; i++) {
+				byte[] pathBytes = new byte[buffer.getShort() & 0xFFFF];
+				buffer.get(pathBytes);
+				index.put(new String(pathBytes, StandardCharsets.UTF_8), new int[] {buffer.getInt(), buffer.getInt()});
+			}
+			
+			// Convert the entry offsets to offsets in the file and validate them.
+			int dataStart = buffer.position();
+			for(int[] entry : index.values()) {
+				entry[0] += dataStart;
+				if(entry[0] < dataStart || entry[1] < 0 || entry[0] + entry[1] > buffer.limit()) {
+					return null;
+				}
+			}
+			return new ClassPack(buffer.array(), index);
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Gets the paths of all entries in this pack.
+	 * @return The '/'-separated paths relative to the bin directory (Example: "my/package/MyClass.class").
+	 */
+	public Set<String> getPaths() {
+		return Collections.unmodifiableSet(this.index.keySet());
+	}
+	
+	/**
+	 * Gets the entry with the given path.
+	 * @param path - The '/'-separated path relative to the bin directory.
+	 * @return A heap {@link ByteBuffer} positioned at the start of the entry with its limit set to the end of the
+	 * entry, or {@code null} if no such entry exists. The buffer shares its content with this pack.
+	 */
+	public ByteBuffer getEntry(String path) {
+		int[] entry = this.index.get(path);
+		return (entry == null ? null : ByteBuffer.wrap(this.data, entry[0], entry[1]));
+	}
+}
@@ -0,0 +1,255 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileManager;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * CompileWorker class.
+ * The main class of a forked compile worker JVM, as started by {@link ForkedCompilerService}. The worker reads
+ * compile requests from its standard input and writes the responses to its standard output, until its standard input
+ * is closed. It keeps a {@link CompilerService} with warm file managers between requests.
+ * <br><br>
+ * A request consists of the compiler options, the classpath, the output directory, the source files, whether the
+ * classes should be compiled in memory and the in-memory classpath classes. A response consists of any number of
+ * feedback frames, followed by output frames and a result frame.
+ * @author P.J.S. Kools
+ */
+public final class CompileWorker {
+	
+	/**
+	 * Frame containing compiler feedback text.
+	 */
+	static final byte FRAME_FEEDBACK = 'F';
+	
+	/**
+	 * Frame containing a source file path and the names of the classes that were generated from it.
+	 */
+	static final byte FRAME_OUTPUT = 'O';
+	
+	/**
+	 * Frame containing the name and bytes of a class that has been compiled in memory.
+	 */
+	static final byte FRAME_CLASS = 'C';
+	
+	/**
+	 * Frame containing the compile result and an error message, which is empty if no error occurred.
+	 */
+	static final byte FRAME_RESULT = 'R';
+	
+	private CompileWorker() {
+	}
+	
+	/**
+	 * Runs the compile worker. Standard output is reserved for responses, so anything else that is printed to it is
+	 * redirected to standard error.
+	 * @param args - Unused.
+	 * @throws IOException If an I/O error occurs while communicating with the parent process.
+	 */
+	public static void main(String[] args) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+		System.setOut(new PrintStream(System.err, true));
+		CompilerService compilerService = new CompilerService();
+		try {
+			while(true) {
+				List<String> options;
+				try {
+					options = readStrings(in);
+				} catch (EOFException e) {
+					return; // The parent process closed the connection.
+				}
+				List<File> classPath = toFiles(readStrings(in));
+				File outputDir = new File(in.readUTF());
+				List<File> sourceFiles = toFiles(readStrings(in));
+				boolean inMemory = in.readBoolean();
+				List<MemoryClassStore> classPathStores = new ArrayList<MemoryClassStore>();
+				for(int storeCount = in.readInt(); storeCount > 0; storeCount--) {
+					classPathStores.add(readClassStore(in));
+				}
+				compile(compilerService, options, classPath, outputDir, sourceFiles, inMemory, classPathStores, out);
+				out.flush();
+			}
+		} finally {
+			compilerService.close();
+		}
+	}
+	
+	private static void compile(CompilerService compilerService, List<String> options, List<File> classPath,
+			File outputDir, List<File> sourceFiles, boolean inMemory, List<MemoryClassStore> classPathStores,
+			DataOutputStream out) throws IOException {
+		
+		// Stream compiler feedback to the parent process.
+		Writer feedbackWriter = new Writer() {
+			@Override
+			public void write(char[] chars, int offset, int length) throws IOException {
+				out.writeByte(FRAME_FEEDBACK);
+				writeBytes(out, new String(chars, offset, length).getBytes(StandardCharsets.UTF_8));
+			}
+			
+			@Override
+			public void flush() throws IOException {
+				out.flush();
+			}
+			
+			@Override
+			public void close() throws IOException {
+			}
+		};
+		
+		// Compile the sources.
+		boolean success = false;
+		String error = "";
+		MemoryClassStore outputStore = new MemoryClassStore();
+		OutputRecordingFileManager<StandardJavaFileManager> recordingFileManager = null;
+		try {
+			JavaCompiler compiler = compilerService.getCompiler();
+			StandardJavaFileManager fileManager = compilerService.borrowFileManager(classPath);
+			try {
+				fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+				fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(outputDir));
+				JavaFileManager taskFileManager;
+				if(inMemory) {
+					taskFileManager = new MemoryClassFileManager<StandardJavaFileManager>(
+							fileManager, outputStore, classPathStores);
+				} else {
+					recordingFileManager = new OutputRecordingFileManager<StandardJavaFileManager>(fileManager);
+					taskFileManager = recordingFileManager;
+				}
+				CompilationTask compileTask = compiler.getTask(feedbackWriter, taskFileManager,
+						null, options, null, fileManager.getJavaFileObjects(sourceFiles.toArray(new File[0])));
+				compileTask.setProcessors(Collections.emptySet());
+				success = compileTask.call();
+			} finally {
+				compilerService.returnFileManager(fileManager);
+			}
+		} catch (Exception e) {
+			success = false;
+			error = Utils.getStacktrace(e);
+		}
+		
+		// Write the outputs and the result.
+		if(recordingFileManager != null) {
+			for(File sourceFile : sourceFiles) {
+				out.writeByte(FRAME_OUTPUT);
+				out.writeUTF(sourceFile.getAbsolutePath());
+				writeStrings(out, new ArrayList<String>(recordingFileManager.getOutputClassNames(sourceFile)));
+			}
+		}
+		for(String className : outputStore.getClassNames()) {
+			out.writeByte(FRAME_CLASS);
+			out.writeUTF(className);
+			writeBytes(out, outputStore.getClassBytes(className));
+		}
+		out.writeByte(FRAME_RESULT);
+		out.writeBoolean(success);
+		writeBytes(out, error.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static List<File> toFiles(List<String> paths) {
+		List<File> files = new ArrayList<File>(paths.size());
+		for(String path : paths) {
+			files.add(new File(path));
+		}
+		return files;
+	}
+	
+	/**
+	 * Writes the given strings, preceded by their amount.
+	 * @param out - The stream to write to.
+	 * @param strings - The strings.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+		out.writeInt(strings.size());
+		for(String str : strings) {
+			out.writeUTF(str);
+		}
+	}
+	
+	/**
+	 * Reads strings as written by {@link #writeStrings(DataOutputStream, List)}.
+	 * @param in - The stream to read from.
+	 * @return The strings.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	static List<String> readStrings(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<String> strings = new ArrayList<String>(count);
+		for(int i = 0; i < count; i++) {
+			strings.add(in.readUTF());
+		}
+		return strings;
+	}
+	
+	/**
+	 * Writes the given bytes, preceded by their amount.
+	 * @param out - The stream to write to.
+	 * @param bytes - The bytes.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	/**
+	 * Reads bytes as written by {@link #writeBytes(DataOutputStream, byte[])}.
+	 * @param in - The stream to read from.
+	 * @return The bytes.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+	
+	/**
+	 * Writes the classes in the given class store.
+	 * @param out - The stream to write to.
+	 * @param classStore - The class store.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	static void writeClassStore(DataOutputStream out, MemoryClassStore classStore) throws IOException {
+		List<String> classNames = new ArrayList<String>(classStore.getClassNames());
+		out.writeInt(classNames.size());
+		for(String className : classNames) {
+			out.writeUTF(className);
+			writeBytes(out, classStore.getClassBytes(className));
+		}
+	}
+	
+	/**
+	 * Reads a class store as written by {@link #writeClassStore(DataOutputStream, MemoryClassStore)}.
+	 * @param in - The stream to read from.
+	 * @return The class store.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	static MemoryClassStore readClassStore(DataInputStream in) throws IOException {
+		MemoryClassStore classStore = new MemoryClassStore();
+		for(int count = in.readInt(); count > 0; count--) {
+			String className = in.readUTF();
+			classStore.putClass(className, readBytes(in));
+		}
+		return classStore;
+	}
+}
@@ -0,0 +1,178 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import io.github.pieter12345.javaloader.core.JavaLoaderProject;
+
+/**
+ * CompilerService class.
+ * Provides a long-lived system Java compiler with a pool of warm file managers. A file manager caches the indexes of
+ * the jar and zip files that it has read, so reusing it between compiles prevents javac from re-reading large
+ * platform jars on every compile. File managers are not thread-safe, so each compile borrows its own file manager.
+ * @author P.J.S. Kools
+ */
+public class CompilerService {
+	
+	// Variables & Constants.
+	private JavaCompiler compiler = null;
+	private List<File> platformClassPath = null;
+	private final Deque<StandardJavaFileManager> idleFileManagers = new ArrayDeque<StandardJavaFileManager>();
+	private final Map<StandardJavaFileManager, Map<File, String>> archiveStamps =
+			new IdentityHashMap<StandardJavaFileManager, Map<File, String>>();
+	private boolean closed = false;
+	
+	/**
+	 * Creates a new CompilerService. The system Java compiler is obtained on first use.
+	 */
+	public CompilerService() {
+	}
+	
+	/**
+	 * Gets the system Java compiler.
+	 * @return The system Java compiler, or {@code null} if no compiler is available (when not running on a JDK).
+	 */
+	public synchronized JavaCompiler getCompiler() {
+		if(this.compiler == null) {
+			this.compiler = ToolProvider.getSystemJavaCompiler();
+		}
+		return this.compiler;
+	}
+	
+	/**
+	 * Gets the platform classpath that all projects are compiled against. This consists of the "java.class.path"
+	 * entries followed by the .jar file of this plugin. The result is computed once and cached.
+	 * @return The platform classpath, or {@code null} if the .jar file of this plugin could not be determined.
+	 */
+	public synchronized List<File> getPlatformClassPath() {
+		if(this.platformClassPath == null) {
+			
+			// Get the name of the .jar file of this plugin
+			// (Using the JavaLoaderProject class because that one is required for all projects).
+			java.security.CodeSource codeSource = JavaLoaderProject.class.getProtectionDomain().getCodeSource();
+			if(codeSource == null || codeSource.getLocation().getFile().isEmpty()) {
+				return null;
+			}
+			File pluginJarFile;
+			try {
+				pluginJarFile = new File(codeSource.getLocation().toURI()).getAbsoluteFile();
+			} catch (URISyntaxException e) {
+				return null;
+			}
+			
+			// Create the platform classpath.
+			List<File> classPath = new ArrayList<File>();
+			for(String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+				if(!path.isEmpty()) {
+					classPath.add(new File(path));
+				}
+			}
+			classPath.add(pluginJarFile);
+			this.platformClassPath = Collections.unmodifiableList(classPath);
+		}
+		return this.platformClassPath;
+	}
+	
+	/**
+	 * Borrows a file manager from the pool, or creates a new one if no idle file manager is available. File managers
+	 * that have read an archive on the given classpath that has changed since are closed and replaced, since they
+	 * would otherwise serve stale contents from their cache. The file manager has to be returned using
+	 * {@link #returnFileManager(StandardJavaFileManager)} and should not be closed by the caller.
+	 * @param classPath - The classpath that the file manager is going to be used with.
+	 * @return The file manager.
+	 * @throws IllegalStateException If no compiler is available or if this service has been closed.
+	 */
+	public StandardJavaFileManager borrowFileManager(List<File> classPath) throws IllegalStateException {
+		JavaCompiler compiler = this.getCompiler();
+		if(compiler == null) {
+			throw new IllegalStateException("No java compiler available.");
+		}
+		
+		// Get the current stamps of the archives on the classpath.
+		Map<File, String> stamps = new HashMap<File, String>();
+		for(File file : classPath) {
+			if(file.isFile()) {
+				stamps.put(file.getAbsoluteFile(), file.length() + ":" + file.lastModified());
+			}
+		}
+		
+		// Take an idle file manager that has not cached a changed archive.
+		synchronized(this) {
+			if(this.closed) {
+				throw new IllegalStateException("The compiler service has been closed.");
+			}
+			StandardJavaFileManager fileManager;
+			while((fileManager = this.idleFileManagers.pollFirst()) != null) {
+				Map<File, String> knownStamps = this.archiveStamps.get(fileManager);
+				boolean isStale = false;
+				for(Map.Entry<File, String> stamp : stamps.entrySet()) {
+					String knownStamp = knownStamps.get(stamp.getKey());
+					if(knownStamp != null && !knownStamp.equals(stamp.getValue())) {
+						isStale = true;
+						break;
+					}
+				}
+				if(!isStale) {
+					knownStamps.putAll(stamps);
+					return fileManager;
+				}
+				this.archiveStamps.remove(fileManager);
+				closeQuietly(fileManager);
+			}
+			
+			// Create a new file manager.
+			fileManager = compiler.getStandardFileManager(null, Locale.US, StandardCharsets.UTF_8);
+			this.archiveStamps.put(fileManager, stamps);
+			return fileManager;
+		}
+	}
+	
+	/**
+	 * Returns a file manager that was borrowed using {@link #borrowFileManager(List)} to the pool.
+	 * @param fileManager - The file manager.
+	 */
+	public synchronized void returnFileManager(StandardJavaFileManager fileManager) {
+		if(this.closed) {
+			this.archiveStamps.remove(fileManager);
+			closeQuietly(fileManager);
+		} else {
+			this.idleFileManagers.addFirst(fileManager);
+		}
+	}
+	
+	/**
+	 * Closes all idle file managers, releasing their cached archives. File managers that are returned after this
+	 * call are closed as well.
+	 */
+	public synchronized void close() {
+		this.closed = true;
+		for(StandardJavaFileManager fileManager : this.idleFileManagers) {
+			closeQuietly(fileManager);
+		}
+		this.idleFileManagers.clear();
+		this.archiveStamps.clear();
+	}
+	
+	private static void closeQuietly(StandardJavaFileManager fileManager) {
+		try {
+			fileManager.close();
+		} catch (IOException e) {
+			// Ignore.
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ForkedCompilerService class.
+ * Compiles projects in a pool of forked worker JVMs (see {@link CompileWorker}), so that the memory used by the Java
+ * compiler is never allocated on the heap of the server. Workers are started on demand, are kept alive between
+ * compiles to keep their file managers warm and communicate through their standard input and output streams.
+ * Compiler feedback is streamed back while the compile is running.
+ * @author P.J.S. Kools
+ */
+public class ForkedCompilerService {
+	
+	// Variables & Constants.
+	private final int maxWorkers;
+	private final List<String> jvmArguments;
+	private final Deque<Worker> idleWorkers = new ArrayDeque<Worker>();
+	private int workerCount = 0;
+	private boolean closed = false;
+	
+	/**
+	 * Creates a new ForkedCompilerService. Workers are started when they are first needed.
+	 * @param maxWorkers - The maximum number of worker JVMs.
+	 * @param jvmArguments - The arguments to pass to the worker JVMs (Example: "-Xmx512M").
+	 * @throws IllegalArgumentException If maxWorkers is smaller than 1.
+	 */
+	public ForkedCompilerService(int maxWorkers, List<String> jvmArguments) throws IllegalArgumentException {
+		if(maxWorkers < 1) {
+			throw new IllegalArgumentException("Max workers must be at least 1, but was " + maxWorkers + ".");
+		}
+		this.maxWorkers = maxWorkers;
+		this.jvmArguments = new ArrayList<String>(jvmArguments);
+	}
+	
+	/**
+	 * Gets the maximum number of worker JVMs.
+	 * @return The maximum number of worker JVMs.
+	 */
+	public int getMaxWorkers() {
+		return this.maxWorkers;
+	}
+	
+	/**
+	 * Gets the arguments that are passed to the worker JVMs.
+	 * @return The JVM arguments.
+	 */
+	public List<String> getJvmArguments() {
+		return Collections.unmodifiableList(this.jvmArguments);
+	}
+	
+	/**
+	 * Compiles the given source files in a worker JVM. Blocks until a worker is available and the compile has
+	 * finished.
+	 * @param options - The compiler options.
+	 * @param classPath - The classpath.
+	 * @param outputDir - The output directory. Class files are written here unless an output store is given.
+	 * @param sourceFiles - The source files to compile.
+	 * @param feedbackWriter - The writer to write compiler feedback to, or {@code null} to write it to
+	 * {@link System#err}.
+	 * @param outputStore - The store to put the compiled classes in, or {@code null} to write them to the output
+	 * directory.
+	 * @param classPathStores - In-memory compiled classes that are on the classpath.
+	 * @param outputClassNames - The map to put the generated class names per source file in when no output store is
+	 * given, or {@code null}.
+	 * @return True if the compile succeeded, false otherwise.
+	 * @throws IOException If the communication with the worker failed or if the worker failed to run the compiler.
+	 * @throws InterruptedException If the current thread was interrupted while waiting for a worker.
+	 */
+	public boolean compile(List<String> options, List<File> classPath, File outputDir, List<File> sourceFiles,
+			Writer feedbackWriter, MemoryClassStore outputStore, List<MemoryClassStore> classPathStores,
+			Map<File, Set<String>> outputClassNames) throws IOException, InterruptedException {
+		Worker worker = this.borrowWorker();
+		boolean reusable = false;
+		try {
+			
+			// Send the request.
+			DataOutputStream out = worker.out;
+			CompileWorker.writeStrings(out, options);
+			CompileWorker.writeStrings(out, toPaths(classPath));
+			out.writeUTF(outputDir.getAbsolutePath());
+			CompileWorker.writeStrings(out, toPaths(sourceFiles));
+			out.writeBoolean(outputStore != null);
+			out.writeInt(classPathStores.size());
+			for(MemoryClassStore classStore : classPathStores) {
+				CompileWorker.writeClassStore(out, classStore);
+			}
+			out.flush();
+			
+			// Read the response.
+			DataInputStream in = worker.in;
+			while(true) {
+				byte frameType = in.readByte();
+				if(frameType == CompileWorker.FRAME_FEEDBACK) {
+					String feedback = new String(CompileWorker.readBytes(in), StandardCharsets.UTF_8);
+					if(feedbackWriter != null) {
+						feedbackWriter.write(feedback);
+						feedbackWriter.flush();
+					} else {
+						System.err.print(feedback);
+					}
+				} else if(frameType == CompileWorker.FRAME_OUTPUT) {
+					File sourceFile = new File(in.readUTF());
+					List<String> classNames = CompileWorker.readStrings(in);
+					if(outputClassNames != null) {
+						outputClassNames.put(sourceFile, new HashSet<String>(classNames));
+					}
+				} else if(frameType == CompileWorker.FRAME_CLASS) {
+					String className = in.readUTF();
+					byte[] classBytes = CompileWorker.readBytes(in);
+					if(outputStore != null) {
+						outputStore.putClass(className, classBytes);
+					}
+				} else if(frameType == CompileWorker.FRAME_RESULT) {
+					boolean result = in.readBoolean();
+					String error = new String(CompileWorker.readBytes(in), StandardCharsets.UTF_8);
+					reusable = true;
+					if(!error.isEmpty()) {
+						throw new IOException("The compile worker failed to compile: " + error);
+					}
+					return result;
+				} else {
+					throw new IOException("Received an invalid frame type from the compile worker: " + frameType);
+				}
+			}
+		} finally {
+			
+			// Workers that failed to communicate are in an unknown state, so they are stopped.
+			this.returnWorker(worker, reusable);
+		}
+	}
+	
+	private static List<String> toPaths(List<File> files) {
+		List<String> paths = new ArrayList<String>(files.size());
+		for(File file : files) {
+			paths.add(file.getAbsolutePath());
+		}
+		return paths;
+	}
+	
+	private synchronized Worker borrowWorker() throws IOException, InterruptedException {
+		while(true) {
+			if(this.closed) {
+				throw new IOException("The forked compiler service has been closed.");
+			}
+			
+			// Take an idle worker that is still running.
+			Worker worker;
+			while((worker = this.idleWorkers.pollFirst()) != null) {
+				if(worker.process.isAlive()) {
+					return worker;
+				}
+				this.workerCount--;
+			}
+			
+			// Start a new worker if the maximum has not been reached, or wait for a worker to be returned.
+			if(this.workerCount < this.maxWorkers) {
+				worker = this.startWorker();
+				this.workerCount++;
+				return worker;
+			}
+			this.wait();
+		}
+	}
+	
+	private synchronized void returnWorker(Worker worker, boolean reusable) {
+		if(reusable && !this.closed) {
+			this.idleWorkers.addFirst(worker);
+		} else {
+			worker.process.destroy();
+			this.workerCount--;
+		}
+		this.notifyAll();
+	}
+	
+	private Worker startWorker() throws IOException {
+		
+		// Get the location of the worker class.
+		CodeSource codeSource = CompileWorker.class.getProtectionDomain().getCodeSource();
+		if(codeSource == null) {
+			throw new IOException("Unable to start a compile worker because the CodeSource returned null.");
+		}
+		File workerClassPath;
+		try {
+			workerClassPath = new File(codeSource.getLocation().toURI()).getAbsoluteFile();
+		} catch (URISyntaxException e) {
+			throw new IOException("Unable to start a compile worker because the CodeSource is invalid.", e);
+		}
+		
+		// Start the worker process.
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+		command.addAll(this.jvmArguments);
+		command.add("-cp");
+		command.add(workerClassPath.getAbsolutePath());
+		command.add(CompileWorker.class.getName());
+		Process process = new ProcessBuilder(command).redirectError(Redirect.INHERIT).start();
+		return new Worker(process);
+	}
+	
+	/**
+	 * Gets the processes of the workers that are currently idle, most recently used first.
+	 * @return The worker processes.
+	 */
+	synchronized List<Process> getIdleWorkerProcesses() {
+		List<Process> processes = new ArrayList<Process>(this.idleWorkers.size());
+		for(Worker worker : this.idleWorkers) {
+			processes.add(worker.process);
+		}
+		return processes;
+	}
+	
+	/**
+	 * Stops all workers. Workers that are currently compiling are stopped when their compile has finished.
+	 */
+	public synchronized void close() {
+		this.closed = true;
+		for(Worker worker : this.idleWorkers) {
+			worker.process.destroy();
+			this.workerCount--;
+		}
+		this.idleWorkers.clear();
+		this.notifyAll();
+	}
+	
+	/**
+	 * Represents a running worker JVM.
+	 * @author P.J.S. Kools
+	 */
+	private static final class Worker {
+		private final Process process;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		
+		private Worker(Process process) {
+			this.process = process;
+			this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+		}
+	}
+}
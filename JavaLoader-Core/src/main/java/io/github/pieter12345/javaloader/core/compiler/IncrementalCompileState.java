@@ -0,0 +1,367 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * IncrementalCompileState class.
+ * Represents the fingerprint store of a compiled project. It stores the hash of every compiled source file, the
+ * classes that were generated from it and the project classes that those classes reference. This information is
+ * used to determine which source files have to be recompiled after a change.
+ * @author P.J.S. Kools
+ */
+public class IncrementalCompileState {
+	
+	/**
+	 * The name of the file in the bin directory in which the state is stored.
+	 */
+	public static final String STATE_FILE_NAME = ".incremental-state";
+	
+	private static final String HEADER = "# JavaLoader incremental compile state v1";
+	
+	// Variables & Constants.
+	private String classpathFingerprint;
+	private final Map<String, SourceEntry> sources = new TreeMap<String, SourceEntry>();
+	
+	/**
+	 * Creates a new empty IncrementalCompileState with the given classpath fingerprint.
+	 * @param classpathFingerprint - The fingerprint of the classpath that the sources are compiled against.
+	 */
+	public IncrementalCompileState(String classpathFingerprint) {
+		this.classpathFingerprint = classpathFingerprint;
+	}
+	
+	/**
+	 * Reads the state from the state file in the given bin directory.
+	 * @param binDir - The bin directory.
+	 * @return The read state, or {@code null} if the state file does not exist or could not be parsed.
+	 */
+	public static IncrementalCompileState read(File binDir) {
+		File stateFile = new File(binDir, STATE_FILE_NAME);
+		if(!stateFile.isFile()) {
+			return null;
+		}
+		try(BufferedReader reader = Files.newBufferedReader(stateFile.toPath(), StandardCharsets.UTF_8)) {
+			if(!HEADER.equals(reader.readLine())) {
+				return null;
+			}
+			IncrementalCompileState state = null;
+			SourceEntry entry = null;
+			String line;
+			while((line = reader.readLine()) != null) {
+				int ind = line.indexOf(' ');
+				if(ind == -1) {
+					return null;
+				}
+				String key = line.substring(0, ind);
+				String value = line.substring(ind + 1);
+				if(key.equals("classpath") && state == null) {
+					state = new IncrementalCompileState(value);
+				} else if(key.equals("source") && state != null) {
+					int tabInd = value.indexOf('\t');
+					if(tabInd == -1) {
+						return null;
+					}
+					entry = new SourceEntry(value.substring(tabInd + 1));
+					state.sources.put(value.substring(0, tabInd), entry);
+				} else if(key.equals("class") && entry != null) {
+					entry.classNames.add(value);
+				} else if(key.equals("ref") && entry != null) {
+					entry.referencedClassNames.add(value);
+				} else if(key.equals("super") && entry != null) {
+					entry.superClassNames.add(value);
+				} else {
+					return null;
+				}
+			}
+			return state;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Writes this state to the state file in the given bin directory.
+	 * @param binDir - The bin directory.
+	 * @throws IOException If an I/O error occurs while writing the state file.
+	 */
+	public void write(File binDir) throws IOException {
+		File stateFile = new File(binDir, STATE_FILE_NAME);
+		try(Writer writer = Files.newBufferedWriter(stateFile.toPath(), StandardCharsets.UTF_8)) {
+			writer.write(HEADER + "\n");
+			writer.write("classpath " + this.classpathFingerprint + "\n");
+			for(Map.Entry<String, SourceEntry> mapEntry : this.sources.entrySet()) {
+				SourceEntry entry = mapEntry.getValue();
+				writer.write("source " + mapEntry.getKey() + "\t" + entry.hash + "\n");
+				for(String className : new TreeSet<String>(entry.classNames)) {
+					writer.write("class " + className + "\n");
+				}
+				for(String className : new TreeSet<String>(entry.referencedClassNames)) {
+					writer.write("ref " + className + "\n");
+				}
+				for(String className : new TreeSet<String>(entry.superClassNames)) {
+					writer.write("super " + className + "\n");
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the fingerprint of the classpath that the sources in this state were compiled against.
+	 * @return The classpath fingerprint.
+	 */
+	public String getClasspathFingerprint() {
+		return this.classpathFingerprint;
+	}
+	
+	/**
+	 * Gets the source entries in this state, mapped by source path relative to the source directory.
+	 * @return The modifiable source entries map.
+	 */
+	public Map<String, SourceEntry> getSources() {
+		return this.sources;
+	}
+	
+	/**
+	 * Determines which sources have to be recompiled given the current sources. A source has to be recompiled when
+	 * it is new, when its content has changed or when it depends on a class generated from a changed, added or
+	 * removed source. Classes that extend or implement such a dependent class are recompiled as well.
+	 * @param sourceHashes - The hashes of the current sources, mapped by source path relative to the source
+	 * directory.
+	 * @param sourceTexts - The contents of the current sources, mapped by source path relative to the source
+	 * directory. These are used to detect references that do not end up in class files, such as inlined constants.
+	 * @return The paths of the sources that have to be recompiled.
+	 */
+	public Set<String> getRecompileSet(Map<String, String> sourceHashes, Map<String, String> sourceTexts) {
+		
+		// Get the changed, added and removed sources.
+		Set<String> changedSources = new HashSet<String>();
+		for(Map.Entry<String, String> sourceHash : sourceHashes.entrySet()) {
+			SourceEntry entry = this.sources.get(sourceHash.getKey());
+			if(entry == null || !entry.hash.equals(sourceHash.getValue())) {
+				changedSources.add(sourceHash.getKey());
+			}
+		}
+		for(String sourcePath : this.sources.keySet()) {
+			if(!sourceHashes.containsKey(sourcePath)) {
+				changedSources.add(sourcePath);
+			}
+		}
+		
+		// Get the classes and simple names that were (or will be) generated by the changed sources.
+		Set<String> affectedClassNames = new HashSet<String>();
+		Set<String> affectedSimpleNames = new HashSet<String>();
+		for(String sourcePath : changedSources) {
+			SourceEntry entry = this.sources.get(sourcePath);
+			if(entry != null) {
+				affectedClassNames.addAll(entry.classNames);
+				for(String className : entry.classNames) {
+					String simpleName = getSimpleName(className);
+					if(simpleName != null) {
+						affectedSimpleNames.add(simpleName);
+					}
+				}
+			}
+			String fileName = sourcePath.substring(sourcePath.lastIndexOf('/') + 1);
+			affectedSimpleNames.add(fileName.substring(0, fileName.length() - ".java".length()));
+		}
+		
+		// Add the existing sources that depend on the affected classes.
+		Set<String> recompileSet = new HashSet<String>();
+		for(String sourcePath : sourceHashes.keySet()) {
+			if(changedSources.contains(sourcePath)) {
+				recompileSet.add(sourcePath);
+				continue;
+			}
+			SourceEntry entry = this.sources.get(sourcePath);
+			if(containsAny(entry.referencedClassNames, affectedClassNames)
+					|| containsAnyWord(sourceTexts.get(sourcePath), affectedSimpleNames)) {
+				recompileSet.add(sourcePath);
+			}
+		}
+		
+		// Add the sources that extend or implement classes from recompiled sources, since their inherited
+		// signatures might have changed as well.
+		Stack<String> stack = new Stack<String>();
+		stack.addAll(recompileSet);
+		while(!stack.isEmpty()) {
+			SourceEntry superEntry = this.sources.get(stack.pop());
+			if(superEntry == null) {
+				continue;
+			}
+			for(Map.Entry<String, SourceEntry> mapEntry : this.sources.entrySet()) {
+				if(!recompileSet.contains(mapEntry.getKey()) && sourceHashes.containsKey(mapEntry.getKey())
+						&& containsAny(mapEntry.getValue().superClassNames, superEntry.classNames)) {
+					recompileSet.add(mapEntry.getKey());
+					stack.push(mapEntry.getKey());
+				}
+			}
+		}
+		
+		// Return the result.
+		return recompileSet;
+	}
+	
+	/**
+	 * Computes the fingerprint of the given classpath. The fingerprint changes when the platform classpath, the Java
+	 * version or the content of a dependency changes. Directory dependencies (bin directories of other projects) are
+	 * fingerprinted by the content of their .class files only, since their location changes when a dependency project
+	 * is recompiled into a new bin directory. Other dependencies are fingerprinted by their name, size and last
+	 * modified time.
+	 * @param platformClassPath - The platform classpath used for compilation.
+	 * @param dependencyFiles - The dependency files and directories on the classpath, in classpath order.
+	 * @return The classpath fingerprint.
+	 * @throws IOException If an I/O error occurs while reading a dependency.
+	 */
+	public static String computeClasspathFingerprint(
+			List<File> platformClassPath, List<File> dependencyFiles) throws IOException {
+		MessageDigest digest = Utils.newSha256Digest();
+		digest.update((System.getProperty("java.version") + "\n").getBytes(StandardCharsets.UTF_8));
+		for(File file : platformClassPath) {
+			digest.update(("platform " + file.getAbsolutePath() + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		for(File dependencyFile : dependencyFiles) {
+			if(dependencyFile.isDirectory()) {
+				digest.update("directory\n".getBytes(StandardCharsets.UTF_8));
+				Map<String, File> classFiles = new TreeMap<String, File>();
+				listFiles(dependencyFile, "", ".class", classFiles);
+				for(Map.Entry<String, File> classFile : classFiles.entrySet()) {
+					digest.update((classFile.getKey() + "\n").getBytes(StandardCharsets.UTF_8));
+					digest.update(Files.readAllBytes(classFile.getValue().toPath()));
+				}
+			} else {
+				digest.update(("file " + dependencyFile.getName() + " " + dependencyFile.length()
+						+ " " + dependencyFile.lastModified() + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		return Utils.toHexString(digest.digest());
+	}
+	
+	/**
+	 * Computes the hash of the given source file contents.
+	 * @param bytes - The source file contents.
+	 * @return The hash.
+	 */
+	public static String hash(byte[] bytes) {
+		return Utils.toHexString(Utils.newSha256Digest().digest(bytes));
+	}
+	
+	/**
+	 * Lists all files with the given extension in the given directory and its subdirectories.
+	 * @param dir - The directory.
+	 * @param relativePath - The path of the directory relative to the root directory, ending with a '/' or being
+	 * empty for the root directory.
+	 * @param extension - The file extension, including the dot (Example: ".java").
+	 * @param files - The map to put the found files into, keyed by path relative to the root directory using '/' as
+	 * separator.
+	 */
+	public static void listFiles(File dir, String relativePath, String extension, Map<String, File> files) {
+		File[] localFiles = dir.listFiles();
+		if(localFiles != null) {
+			for(File localFile : localFiles) {
+				if(localFile.isDirectory()) {
+					listFiles(localFile, relativePath + localFile.getName() + "/", extension, files);
+				} else if(localFile.getName().endsWith(extension)) {
+					files.put(relativePath + localFile.getName(), localFile);
+				}
+			}
+		}
+	}
+	
+	private static String getSimpleName(String className) {
+		String simpleName = className.substring(Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1);
+		
+		// Anonymous and local classes cannot be referenced by name from other sources.
+		return (simpleName.isEmpty() || Character.isDigit(simpleName.charAt(0)) ? null : simpleName);
+	}
+	
+	private static boolean containsAny(Collection<String> collection, Collection<String> values) {
+		for(String value : values) {
+			if(collection.contains(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean containsAnyWord(String text, Collection<String> words) {
+		if(text == null) {
+			return true;
+		}
+		for(String word : words) {
+			int ind = text.indexOf(word);
+			while(ind != -1) {
+				int end = ind + word.length();
+				if((ind == 0 || !Character.isJavaIdentifierPart(text.charAt(ind - 1)))
+						&& (end == text.length() || !Character.isJavaIdentifierPart(text.charAt(end)))) {
+					return true;
+				}
+				ind = text.indexOf(word, end);
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Represents the stored state of a single source file.
+	 * @author P.J.S. Kools
+	 */
+	public static class SourceEntry {
+		private final String hash;
+		private final Set<String> classNames = new HashSet<String>();
+		private final Set<String> referencedClassNames = new HashSet<String>();
+		private final Set<String> superClassNames = new HashSet<String>();
+		
+		/**
+		 * Creates a new SourceEntry for a source file with the given hash.
+		 * @param hash - The source file hash, or an empty string to mark the source as not (successfully) compiled.
+		 */
+		public SourceEntry(String hash) {
+			this.hash = hash;
+		}
+		
+		public String getHash() {
+			return this.hash;
+		}
+		
+		/**
+		 * Gets the binary names of the classes generated from this source.
+		 * @return The modifiable set of class names.
+		 */
+		public Set<String> getClassNames() {
+			return this.classNames;
+		}
+		
+		/**
+		 * Gets the binary names of the project classes referenced by the classes generated from this source.
+		 * @return The modifiable set of class names.
+		 */
+		public Set<String> getReferencedClassNames() {
+			return this.referencedClassNames;
+		}
+		
+		/**
+		 * Gets the binary names of the project classes that are extended or implemented by the classes generated from
+		 * this source.
+		 * @return The modifiable set of class names.
+		 */
+		public Set<String> getSuperClassNames() {
+			return this.superClassNames;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * MemoryClassFileManager class.
+ * A {@link JavaFileManager} that stores generated class files in a {@link MemoryClassStore} instead of writing them
+ * to disk. Classes in the given dependency stores are added to the class path, so that projects can be compiled
+ * against dependency projects of which the classes have not been written to disk yet.
+ * @param <M> The type of the file manager to forward to.
+ * @author P.J.S. Kools
+ */
+public class MemoryClassFileManager<M extends JavaFileManager> extends ForwardingJavaFileManager<M> {
+	
+	// Variables & Constants.
+	private final MemoryClassStore outputStore;
+	private final List<MemoryClassStore> classPathStores;
+	
+	/**
+	 * Creates a new MemoryClassFileManager.
+	 * @param fileManager - The file manager to forward to.
+	 * @param outputStore - The store to put generated classes in.
+	 * @param classPathStores - The stores of which the classes are available on the class path, or {@code null}.
+	 */
+	public MemoryClassFileManager(M fileManager, MemoryClassStore outputStore, List<MemoryClassStore> classPathStores) {
+		super(fileManager);
+		this.outputStore = outputStore;
+		this.classPathStores = (classPathStores == null
+				? new ArrayList<MemoryClassStore>() : new ArrayList<MemoryClassStore>(classPathStores));
+	}
+	
+	@Override
+	public JavaFileObject getJavaFileForOutput(Location location,
+			String className, Kind kind, FileObject sibling) throws IOException {
+		if(location == StandardLocation.CLASS_OUTPUT && kind == Kind.CLASS) {
+			return new MemoryClassFile(className, null, this.outputStore);
+		}
+		return super.getJavaFileForOutput(location, className, kind, sibling);
+	}
+	
+	@Override
+	public Iterable<JavaFileObject> list(Location location,
+			String packageName, Set<Kind> kinds, boolean recurse) throws IOException {
+		Iterable<JavaFileObject> files = super.list(location, packageName, kinds, recurse);
+		if(location != StandardLocation.CLASS_PATH || !kinds.contains(Kind.CLASS) || this.classPathStores.isEmpty()) {
+			return files;
+		}
+		
+		// Add the classes in the given package from the class path stores.
+		List<JavaFileObject> result = new ArrayList<JavaFileObject>();
+		String prefix = (packageName.isEmpty() ? "" : packageName + ".");
+		for(MemoryClassStore store : this.classPathStores) {
+			for(String className : store.getClassNames()) {
+				if(className.startsWith(prefix)
+						&& (recurse || className.indexOf('.', prefix.length()) == -1)) {
+					result.add(new MemoryClassFile(className, store.getClassBytes(className), null));
+				}
+			}
+		}
+		for(JavaFileObject file : files) {
+			result.add(file);
+		}
+		return result;
+	}
+	
+	@Override
+	public String inferBinaryName(Location location, JavaFileObject file) {
+		if(file instanceof MemoryClassFile) {
+			return ((MemoryClassFile) file).className;
+		}
+		return super.inferBinaryName(location, file);
+	}
+	
+	@Override
+	public boolean isSameFile(FileObject a, FileObject b) {
+		if(a instanceof MemoryClassFile || b instanceof MemoryClassFile) {
+			return a.equals(b);
+		}
+		return super.isSameFile(a, b);
+	}
+	
+	/**
+	 * Represents a class file in memory. Class files with an output store are output files that put their bytes in
+	 * that store when written.
+	 * @author P.J.S. Kools
+	 */
+	private static final class MemoryClassFile extends SimpleJavaFileObject {
+		
+		private final String className;
+		private final byte[] bytes;
+		private final MemoryClassStore outputStore;
+		
+		private MemoryClassFile(String className, byte[] bytes, MemoryClassStore outputStore) {
+			super(URI.create("memory:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+			this.className = className;
+			this.bytes = bytes;
+			this.outputStore = outputStore;
+		}
+		
+		@Override
+		public InputStream openInputStream() throws IOException {
+			if(this.bytes == null) {
+				throw new IOException("Class file has not been written: " + this.className);
+			}
+			return new ByteArrayInputStream(this.bytes);
+		}
+		
+		@Override
+		public OutputStream openOutputStream() throws IOException {
+			if(this.outputStore == null) {
+				throw new IOException("Class file is read-only: " + this.className);
+			}
+			final MemoryClassStore outputStore = this.outputStore;
+			final String className = this.className;
+			return new ByteArrayOutputStream() {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					outputStore.putClass(className, this.toByteArray());
+				}
+			};
+		}
+	}
+}
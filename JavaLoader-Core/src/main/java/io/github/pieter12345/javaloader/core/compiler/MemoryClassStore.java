@@ -0,0 +1,70 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MemoryClassStore class.
+ * Stores the bytes of compiled classes in memory, keyed by binary class name.
+ * @author P.J.S. Kools
+ */
+public class MemoryClassStore {
+	
+	// Variables & Constants.
+	private final Map<String, byte[]> classes;
+	
+	/**
+	 * Creates a new empty MemoryClassStore.
+	 */
+	public MemoryClassStore() {
+		this.classes = new ConcurrentHashMap<String, byte[]>();
+	}
+	
+	/**
+	 * Puts the given class bytes in the store, replacing existing bytes for the same class.
+	 * @param className - The binary name of the class (Example: "my.pack.MyClass$Inner").
+	 * @param bytes - The class file bytes.
+	 */
+	public void putClass(String className, byte[] bytes) {
+		this.classes.put(className, bytes);
+	}
+	
+	/**
+	 * Gets the bytes of the class with the given name.
+	 * @param className - The binary name of the class.
+	 * @return The class file bytes, or {@code null} if the class is not in this store.
+	 */
+	public byte[] getClassBytes(String className) {
+		return this.classes.get(className);
+	}
+	
+	/**
+	 * Gets the binary names of all classes in this store.
+	 * @return An unmodifiable view of the class names.
+	 */
+	public Set<String> getClassNames() {
+		return Collections.unmodifiableSet(this.classes.keySet());
+	}
+	
+	/**
+	 * Writes all classes in this store to the given bin directory as .class files in their package directories.
+	 * Existing class files are overwritten.
+	 * @param binDir - The bin directory.
+	 * @throws IOException If an I/O error occurs while writing.
+	 */
+	public void writeTo(File binDir) throws IOException {
+		for(Map.Entry<String, byte[]> entry : this.classes.entrySet()) {
+			File classFile = new File(binDir, entry.getKey().replace('.', '/') + ".class");
+			File parentDir = classFile.getParentFile();
+			if(!parentDir.isDirectory() && !parentDir.mkdirs()) {
+				throw new IOException("Unable to create directory: " + parentDir.getAbsolutePath());
+			}
+			Files.write(classFile.toPath(), entry.getValue());
+		}
+	}
+}
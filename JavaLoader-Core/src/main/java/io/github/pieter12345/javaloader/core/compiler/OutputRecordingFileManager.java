@@ -0,0 +1,63 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+
+/**
+ * OutputRecordingFileManager class.
+ * A {@link JavaFileManager} that forwards all calls to the given file manager, while recording which classes are
+ * generated from which source files.
+ * @param <M> The type of the file manager to forward to.
+ * @author P.J.S. Kools
+ */
+public class OutputRecordingFileManager<M extends JavaFileManager> extends ForwardingJavaFileManager<M> {
+	
+	private final Map<File, Set<String>> outputClassNames = new HashMap<File, Set<String>>();
+	
+	/**
+	 * Creates a new OutputRecordingFileManager, forwarding all calls to the given file manager.
+	 * @param fileManager - The file manager to forward to.
+	 */
+	public OutputRecordingFileManager(M fileManager) {
+		super(fileManager);
+	}
+	
+	@Override
+	public JavaFileObject getJavaFileForOutput(Location location,
+			String className, Kind kind, FileObject sibling) throws IOException {
+		if(kind == Kind.CLASS && sibling != null && "file".equals(sibling.toUri().getScheme())) {
+			File sourceFile = new File(sibling.toUri()).getAbsoluteFile();
+			synchronized(this.outputClassNames) {
+				Set<String> classNames = this.outputClassNames.get(sourceFile);
+				if(classNames == null) {
+					classNames = new HashSet<String>();
+					this.outputClassNames.put(sourceFile, classNames);
+				}
+				classNames.add(className);
+			}
+		}
+		return super.getJavaFileForOutput(location, className, kind, sibling);
+	}
+	
+	/**
+	 * Gets the binary names of the classes that have been generated from the given source file.
+	 * @param sourceFile - The source file.
+	 * @return The generated class names. This set is empty if no classes were generated from the source file.
+	 */
+	public Set<String> getOutputClassNames(File sourceFile) {
+		synchronized(this.outputClassNames) {
+			Set<String> classNames = this.outputClassNames.get(sourceFile.getAbsoluteFile());
+			return (classNames == null ? new HashSet<String>() : new HashSet<String>(classNames));
+		}
+	}
+}
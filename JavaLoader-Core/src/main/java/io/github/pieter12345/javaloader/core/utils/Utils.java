@@ -13,6 +13,8 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Iterator;
 
 /**
@@ -130,6 +132,34 @@ public abstract class Utils {
 		}
 	}
 	
+	/**
+	 * Creates a new SHA-256 {@link MessageDigest}. This can be convenient as alternative to catching a never-thrown
+	 * Exception, since every Java platform is required to support SHA-256.
+	 * @return The new SHA-256 message digest.
+	 */
+	public static MessageDigest newSha256Digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("Never happens.");
+		}
+	}
+	
+	/**
+	 * Converts the given bytes to a lowercase hexadecimal string.
+	 * @param bytes - The bytes to convert.
+	 * @return The hexadecimal string, containing two characters per byte.
+	 */
+	public static String toHexString(byte[] bytes) {
+		final char[] hexChars = "0123456789abcdef".toCharArray();
+		char[] chars = new char[bytes.length * 2];
+		for(int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = hexChars[(bytes[i] >> 4) & 0x0F];
+			chars[2 * i + 1] = hexChars[bytes[i] & 0x0F];
+		}
+		return new String(chars);
+	}
+	
 	/**
 	 * Glues elements in an iterable together into a string with the given glue.
 	 * @param iterable - The iterable containing the elements to generate a string with.
@@ -15,6 +15,7 @@ import javax.tools.JavaCompiler;
 import javax.tools.ToolProvider;
 
 import io.github.pieter12345.javaloader.core.CommandExecutor;
+import io.github.pieter12345.javaloader.core.HotSwapAgent;
 import io.github.pieter12345.javaloader.core.JavaLoaderProject;
 import io.github.pieter12345.javaloader.core.JavaProject;
 import io.github.pieter12345.javaloader.core.ProjectManager;
@@ -45,6 +46,9 @@ public class JavaLoaderStandalone {
 	
 	private static final int COMPILER_FEEDBACK_LIMIT = 5; // The max amount of warnings/errors to print per recompile.
 	
+	// The system property that enables hot swapping of method body changes when set to "true".
+	private static final String HOT_SWAP_PROPERTY = "javaloader.hotswap";
+	
 	private ProjectManager projectManager;
 	private final File projectsDir;
 	private ProjectStateListener projectStateListener;
@@ -130,6 +134,11 @@ public class JavaLoaderStandalone {
 		// Create the project manager.
 		this.projectManager = new ProjectManager(this.projectsDir, new ProjectDependencyParser());
 		
+		// Enable hot swapping of method body changes if requested and the hot swap agent can be attached to this JVM.
+		if(Boolean.getBoolean(HOT_SWAP_PROPERTY) && HotSwapAgent.attach()) {
+			this.projectManager.setHotSwapEnabled(true);
+		}
+		
 		// Initialize project state listener.
 		this.projectStateListener = new ProjectStateListener() {
 			
@@ -0,0 +1,188 @@
+package io.github.pieter12345.graph;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.pieter12345.graph.ConcurrentChildBeforeParentGraphScheduler.NodeHandler;
+
+/**
+ * Tests the {@link ConcurrentChildBeforeParentGraphScheduler} class.
+ * @author P.J.S. Kools
+ */
+class ConcurrentChildBeforeParentGraphSchedulerTest {
+	
+	private ExecutorService executor;
+	private List<Integer> executed;
+	private List<Integer> completed;
+	private List<List<Integer>> removed;
+	
+	@BeforeEach
+	void init() {
+		this.executor = Executors.newFixedThreadPool(4);
+		this.executed = Collections.synchronizedList(new ArrayList<Integer>());
+		this.completed = new ArrayList<Integer>();
+		this.removed = new ArrayList<List<Integer>>();
+	}
+	
+	@AfterEach
+	void tearDown() {
+		this.executor.shutdownNow();
+	}
+	
+	/**
+	 * Runs the scheduler on the given graph, failing the tasks of the given nodes.
+	 * @param graph - The graph.
+	 * @param failingNodes - The nodes of which the tasks should throw an exception.
+	 */
+	private void run(Graph<Integer> graph, Integer... failingNodes) {
+		List<Integer> failing = new ArrayList<Integer>();
+		Collections.addAll(failing, failingNodes);
+		new ConcurrentChildBeforeParentGraphScheduler<Integer, Integer>(graph, this.executor,
+				new NodeHandler<Integer, Integer>() {
+			@Override
+			public Callable<Integer> createTask(Integer node) {
+				return () -> {
+					ConcurrentChildBeforeParentGraphSchedulerTest.this.executed.add(node);
+					if(failing.contains(node)) {
+						throw new RuntimeException("Failing node: " + node);
+					}
+					return node;
+				};
+			}
+			
+			@Override
+			public boolean handleResult(Integer node, Integer result, Throwable thrown) {
+				ConcurrentChildBeforeParentGraphSchedulerTest.this.completed.add(node);
+				return thrown == null;
+			}
+			
+			@Override
+			public void handleAncestorsRemoved(List<Integer> removed) {
+				ConcurrentChildBeforeParentGraphSchedulerTest.this.removed.add(removed);
+			}
+		}).run();
+	}
+	
+	/**
+	 * Tests that every node is executed once and that children complete before their parents, using graph:
+	 * 1 -> 2 -> 4, 1 -> 3 -> 4, 5.
+	 */
+	@Test
+	void testChildBeforeParentOrder() {
+		
+		// Create the graph.
+		Graph<Integer> graph = new Graph<Integer>(Arrays.asList(1, 2, 3, 4, 5));
+		graph.addDirectedEdge(1, 2);
+		graph.addDirectedEdge(1, 3);
+		graph.addDirectedEdge(2, 4);
+		graph.addDirectedEdge(3, 4);
+		
+		// Run the scheduler.
+		this.run(graph);
+		
+		// Assert that all nodes were executed once and that children completed before their parents.
+		assertThat(this.executed).containsExactlyInAnyOrder(1, 2, 3, 4, 5);
+		assertThat(this.completed).containsExactlyInAnyOrder(1, 2, 3, 4, 5);
+		assertThat(this.completed.indexOf(4)).isLessThan(this.completed.indexOf(2));
+		assertThat(this.completed.indexOf(4)).isLessThan(this.completed.indexOf(3));
+		assertThat(this.completed.indexOf(2)).isLessThan(this.completed.indexOf(1));
+		assertThat(this.completed.indexOf(3)).isLessThan(this.completed.indexOf(1));
+		assertThat(this.removed).isEmpty();
+	}
+	
+	/**
+	 * Tests that the ancestors of a failing node are removed and not executed, using graph:
+	 * 1 -> 2 -> 3, 4 -> 3, 5.
+	 */
+	@Test
+	void testFailingNodeRemovesAncestors() {
+		
+		// Create the graph.
+		Graph<Integer> graph = new Graph<Integer>(Arrays.asList(1, 2, 3, 4, 5));
+		graph.addDirectedEdge(1, 2);
+		graph.addDirectedEdge(2, 3);
+		graph.addDirectedEdge(4, 3);
+		
+		// Run the scheduler, failing node 2.
+		this.run(graph, 2);
+		
+		// Assert that node 1 was not executed and was removed together with node 2.
+		assertThat(this.executed).containsExactlyInAnyOrder(2, 3, 4, 5);
+		assertThat(this.removed).containsExactly(Arrays.asList(2, 1));
+	}
+	
+	/**
+	 * Tests that nodes in a cycle and their ancestors are skipped, using graph:
+	 * 1 -> 2 -> 3 -> 2, 4.
+	 */
+	@Test
+	void testCycleIsSkipped() {
+		
+		// Create the graph.
+		Graph<Integer> graph = new Graph<Integer>(Arrays.asList(1, 2, 3, 4));
+		graph.addDirectedEdge(1, 2);
+		graph.addDirectedEdge(2, 3);
+		graph.addDirectedEdge(3, 2);
+		
+		// Run the scheduler.
+		this.run(graph);
+		
+		// Assert that only node 4 was executed.
+		assertThat(this.executed).containsExactly(4);
+	}
+	
+	/**
+	 * Tests that a node with a follow-up task only completes after its follow-up task, using graph:
+	 * 1 -> 2, 3.
+	 */
+	@Test
+	void testFollowUpTask() {
+		
+		// Create the graph.
+		Graph<Integer> graph = new Graph<Integer>(Arrays.asList(1, 2, 3));
+		graph.addDirectedEdge(1, 2);
+		
+		// Run the scheduler, giving node 2 a follow-up task that returns a negative result.
+		List<Integer> results = new ArrayList<Integer>();
+		new ConcurrentChildBeforeParentGraphScheduler<Integer, Integer>(graph, this.executor,
+				new NodeHandler<Integer, Integer>() {
+			@Override
+			public Callable<Integer> createTask(Integer node) {
+				return () -> node;
+			}
+			
+			@Override
+			public boolean handleResult(Integer node, Integer result, Throwable thrown) {
+				results.add(result);
+				return thrown == null;
+			}
+			
+			@Override
+			public Callable<Integer> createFollowUpTask(Integer node, Integer result) {
+				return (result == 2 ? () -> -node : null);
+			}
+			
+			@Override
+			public void handleAncestorsRemoved(List<Integer> removed) {
+				ConcurrentChildBeforeParentGraphSchedulerTest.this.removed.add(removed);
+			}
+		}).run();
+		
+		// Assert that the follow-up task result of node 2 was handled before node 1.
+		assertThat(results).containsExactlyInAnyOrder(1, 2, -2, 3);
+		assertThat(results.indexOf(2)).isLessThan(results.indexOf(-2));
+		assertThat(results.indexOf(-2)).isLessThan(results.indexOf(1));
+		assertThat(this.removed).isEmpty();
+	}
+}
@@ -0,0 +1,123 @@
+package io.github.pieter12345.javaloader.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.pieter12345.javaloader.core.ClassLoaderLeakDetector.Leak;
+import io.github.pieter12345.javaloader.core.ClassLoaderLeakDetector.Report;
+
+/**
+ * Tests the {@link ClassLoaderLeakDetector} class.
+ * @author P.J.S. Kools
+ */
+class ClassLoaderLeakDetectorTest {
+	
+	/**
+	 * Tests that a classloader that is kept reachable by a thread is reported as a leak, including the thread.
+	 * @throws Exception
+	 */
+	@Test
+	void testReachableClassLoaderIsReported() throws Exception {
+		ClassLoaderLeakDetector leakDetector = new ClassLoaderLeakDetector(0);
+		URLClassLoader classLoader = new URLClassLoader(new URL[0], null);
+		Thread thread = new Thread(() -> {
+			try {
+				Thread.sleep(10000);
+			} catch (InterruptedException e) {
+				// Ignore.
+			}
+		}, "leaking-thread");
+		thread.setContextClassLoader(classLoader);
+		thread.start();
+		try {
+			leakDetector.track("project", 2, classLoader);
+			Report report = leakDetector.getReport();
+			assertThat(report.trackedClassLoaders).isEqualTo(1);
+			assertThat(report.leaks).hasSize(1);
+			Leak leak = report.leaks.get(0);
+			assertThat(leak.projectName).isEqualTo("project");
+			assertThat(leak.generation).isEqualTo(2);
+			assertThat(leak.culprits).hasSize(1);
+			assertThat(leak.culprits.get(0)).contains("leaking-thread");
+		} finally {
+			thread.interrupt();
+			thread.join();
+			classLoader.close();
+		}
+	}
+	
+	/**
+	 * Tests that a classloader is not reported as a leak before it survived the threshold amount of garbage
+	 * collection cycles.
+	 * @throws IOException
+	 */
+	@Test
+	void testThreshold() throws IOException {
+		ClassLoaderLeakDetector leakDetector = new ClassLoaderLeakDetector(Integer.MAX_VALUE);
+		URLClassLoader classLoader = new URLClassLoader(new URL[0], null);
+		leakDetector.track("project", 1, classLoader);
+		assertThat(leakDetector.getReport().leaks).isEmpty();
+		assertThat(leakDetector.getReport().trackedClassLoaders).isEqualTo(1);
+		leakDetector.clear();
+		assertThat(leakDetector.getReport().trackedClassLoaders).isEqualTo(0);
+		classLoader.close();
+	}
+	
+	/**
+	 * Tests that young generation garbage collections do not count towards the threshold, while full garbage
+	 * collections do.
+	 * @throws IOException
+	 */
+	@Test
+	void testOnlyOldGenCyclesCount() throws IOException {
+		ClassLoaderLeakDetector leakDetector = new ClassLoaderLeakDetector(1);
+		URLClassLoader classLoader = new URLClassLoader(new URL[0], null);
+		leakDetector.track("project", 1, classLoader);
+		
+		// Allocate short-lived garbage until a young generation collection has happened.
+		long gcCount = getTotalGcCount();
+		for(int i = 0; i < 10000 && getTotalGcCount() == gcCount; i++) {
+			byte[] garbage = new byte[1024 * 1024];
+			garbage[i % garbage.length] = 1;
+		}
+		assertThat(leakDetector.getReport().leaks).isEmpty();
+		
+		// Perform a full garbage collection.
+		System.gc();
+		assertThat(leakDetector.getReport().leaks).hasSize(1);
+		classLoader.close();
+	}
+	
+	/**
+	 * Tests that an unreachable classloader is no longer tracked after it has been garbage collected.
+	 * @throws InterruptedException
+	 */
+	@Test
+	void testCollectedClassLoader() throws InterruptedException {
+		ClassLoaderLeakDetector leakDetector = new ClassLoaderLeakDetector(0);
+		leakDetector.track("project", 1, new URLClassLoader(new URL[0], null));
+		for(int i = 0; i < 50 && leakDetector.getReport().collectedClassLoaders == 0; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Report report = leakDetector.getReport();
+		assertThat(report.collectedClassLoaders).isEqualTo(1);
+		assertThat(report.trackedClassLoaders).isEqualTo(0);
+		assertThat(report.leaks).isEmpty();
+	}
+	
+	private static long getTotalGcCount() {
+		long count = 0;
+		for(GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(gcBean.getCollectionCount(), 0);
+		}
+		return count;
+	}
+}
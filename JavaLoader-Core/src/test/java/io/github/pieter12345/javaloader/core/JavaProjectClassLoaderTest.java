@@ -0,0 +1,326 @@
+package io.github.pieter12345.javaloader.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.pieter12345.javaloader.core.compiler.ClassPack;
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * Tests the {@link JavaProjectClassLoader} class.
+ * @author P.J.S. Kools
+ */
+class JavaProjectClassLoaderTest {
+	
+	private File binDir;
+	private JavaProjectClassLoader classLoader;
+	
+	@BeforeEach
+	void init() throws IOException {
+		this.binDir = Files.createTempDirectory("javaprojectclassloadertest").toFile();
+		new File(this.binDir, "pack").mkdirs();
+		Files.write(new File(this.binDir, "pack/resource.txt").toPath(), "test".getBytes(StandardCharsets.UTF_8));
+		this.classLoader = new JavaProjectClassLoader(null, this.binDir);
+	}
+	
+	@AfterEach
+	void cleanup() throws IOException {
+		this.classLoader.close();
+		Utils.removeFile(this.binDir);
+	}
+	
+	/**
+	 * Tests that repeated lookups of a missing class are answered by the negative lookup cache.
+	 * @throws ClassNotFoundException
+	 */
+	@Test
+	void testNegativeLookupCache() throws ClassNotFoundException {
+		for(int i = 0; i < 3; i++) {
+			assertThatThrownBy(() -> this.classLoader.loadClass("pack.Missing"))
+					.isInstanceOf(ClassNotFoundException.class);
+		}
+		assertThat(this.classLoader.getNegativeLookupCacheMisses()).isEqualTo(1);
+		assertThat(this.classLoader.getNegativeLookupCacheHits()).isEqualTo(2);
+		
+		// Assert that clearing the cache causes the next lookup to search again.
+		this.classLoader.clearNegativeLookupCache();
+		assertThatThrownBy(() -> this.classLoader.loadClass("pack.Missing"))
+				.isInstanceOf(ClassNotFoundException.class);
+		assertThat(this.classLoader.getNegativeLookupCacheMisses()).isEqualTo(2);
+		
+		// Assert that existing classes are still found.
+		assertThat(this.classLoader.loadClass("java.lang.String")).isSameAs(String.class);
+	}
+	
+	/**
+	 * Tests that a class that could not be read due to an I/O error is not cached as missing, so that it is found
+	 * once it can be read again.
+	 * @throws Exception
+	 */
+	@Test
+	void testNegativeLookupCacheSkipsIOErrors() throws Exception {
+		copyProbeClass(this.binDir);
+		File classFile = new File(this.binDir, Probe.class.getName().replace('.', '/') + ".class");
+		try(JavaProjectClassLoader classLoader = new JavaProjectClassLoader(null, this.binDir)) {
+			
+			// Remove the indexed class file, so that reading it fails.
+			Files.delete(classFile.toPath());
+			assertThatThrownBy(() -> classLoader.loadClass(Probe.class.getName()))
+					.isInstanceOf(ClassNotFoundException.class).hasCauseInstanceOf(IOException.class);
+			
+			// Restore the class file and assert that the class is found.
+			copyProbeClass(this.binDir);
+			assertThat(classLoader.loadClass(Probe.class.getName()).getClassLoader()).isSameAs(classLoader);
+			assertThat(classLoader.getNegativeLookupCacheHits()).isEqualTo(0);
+		}
+	}
+	
+	/**
+	 * Tests that resources in the bin directory are found through the bin directory index.
+	 * @throws IOException
+	 */
+	@Test
+	void testFindResource() throws IOException {
+		assertThat(this.classLoader.findResource("pack/resource.txt")).isNotNull();
+		assertThat(this.classLoader.findResource("pack/missing.txt")).isNull();
+		assertThat(this.classLoader.getResource("pack/resource.txt")).isNotNull();
+	}
+	
+	/**
+	 * Tests that project resources are read from the bin directory and .jar dependency files, with and without the
+	 * resource cache.
+	 * @throws IOException
+	 */
+	@Test
+	void testGetProjectResourceAsStream() throws IOException {
+		File jarFile = new File(this.binDir.getParentFile(), this.binDir.getName() + ".jar");
+		try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jarFile.toPath()))) {
+			out.putNextEntry(new ZipEntry("jarpack/jarresource.txt"));
+			out.write("jartest".getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		try(JavaProjectClassLoader classLoader =
+				new JavaProjectClassLoader(null, this.binDir, Arrays.asList(jarFile))) {
+			for(boolean cacheEnabled : new boolean[] {false, true, true}) {
+				classLoader.setResourceCacheEnabled(cacheEnabled);
+				assertThat(read(classLoader.getProjectResourceAsStream("pack/resource.txt"))).isEqualTo("test");
+				assertThat(read(classLoader.getProjectResourceAsStream("jarpack/jarresource.txt")))
+						.isEqualTo("jartest");
+				assertThat(classLoader.getProjectResourceAsStream("pack/missing.txt")).isNull();
+			}
+		} finally {
+			jarFile.delete();
+		}
+	}
+	
+	/**
+	 * Tests that classes from platform modules are found when the parent classloader is the bootstrap classloader.
+	 * @throws ClassNotFoundException
+	 */
+	@Test
+	void testLoadPlatformClassWithoutParent() throws ClassNotFoundException {
+		assertThat(this.classLoader.loadClass("java.sql.Connection")).isSameAs(java.sql.Connection.class);
+		assertThat(this.classLoader.loadClass("java.lang.String")).isSameAs(String.class);
+		assertThatThrownBy(() -> this.classLoader.loadClass("java.lang.Missing"))
+				.isInstanceOf(ClassNotFoundException.class);
+	}
+	
+	/**
+	 * Tests that classes in the bin directory index are defined by the classloader itself, both from class files
+	 * and from a packed bin directory.
+	 * @throws Exception
+	 */
+	@Test
+	void testLoadClassFromBinDir() throws Exception {
+		copyProbeClass(this.binDir);
+		try(JavaProjectClassLoader classLoader = new JavaProjectClassLoader(null, this.binDir)) {
+			Class<?> clazz = classLoader.loadClass(Probe.class.getName());
+			assertThat(clazz).isNotSameAs(Probe.class);
+			assertThat(clazz.getClassLoader()).isSameAs(classLoader);
+			assertThat(classLoader.loadClass(Probe.class.getName())).isSameAs(clazz);
+			assertThat(clazz.getMethod("probe").invoke(null)).isEqualTo("probe");
+			assertThat(classLoader.getDefinedProjectClassNames()).containsExactly(Probe.class.getName());
+		}
+		
+		// Define the class from a packed bin directory.
+		ClassPack.write(this.binDir);
+		Utils.removeFile(new File(this.binDir, "io"));
+		try(JavaProjectClassLoader classLoader = new JavaProjectClassLoader(null, this.binDir)) {
+			Class<?> clazz = classLoader.loadClass(Probe.class.getName());
+			assertThat(clazz.getClassLoader()).isSameAs(classLoader);
+			assertThat(clazz.getMethod("probe").invoke(null)).isEqualTo("probe");
+		}
+	}
+	
+	/**
+	 * Tests that concurrent lookups of the same class define the class once and return the same class.
+	 * @throws Exception
+	 */
+	@Test
+	void testParallelClassDefinition() throws Exception {
+		copyProbeClass(this.binDir);
+		int threadCount = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try(JavaProjectClassLoader classLoader = new JavaProjectClassLoader(null, this.binDir)) {
+			CountDownLatch latch = new CountDownLatch(1);
+			List<Callable<Class<?>>> tasks = new ArrayList<Callable<Class<?>>>();
+			for(int i = 0; i < threadCount; i++) {
+				tasks.add(() -> {
+					latch.await();
+					return classLoader.loadClass(Probe.class.getName());
+				});
+			}
+			List<Future<Class<?>>> futures = new ArrayList<Future<Class<?>>>();
+			for(Callable<Class<?>> task : tasks) {
+				futures.add(executor.submit(task));
+			}
+			latch.countDown();
+			Class<?> clazz = futures.get(0).get();
+			assertThat(clazz.getClassLoader()).isSameAs(classLoader);
+			for(Future<Class<?>> future : futures) {
+				assertThat(future.get()).isSameAs(clazz);
+			}
+			assertThat(classLoader.getDefinedProjectClassNames()).containsExactly(Probe.class.getName());
+			assertThat(classLoader.getNegativeLookupCacheMisses()).isEqualTo(0);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Tests that classes are loaded through the dependency project classloader that owns the package of the class.
+	 * @throws Exception
+	 */
+	@Test
+	void testPackageOwnerDelegation() throws Exception {
+		File dependencyBinDir = Files.createTempDirectory("javaprojectclassloadertest").toFile();
+		try {
+			copyProbeClass(dependencyBinDir);
+			try(JavaProjectClassLoader dependencyClassLoader = new JavaProjectClassLoader(null, dependencyBinDir);
+					JavaProjectClassLoader classLoader = new JavaProjectClassLoader(null, this.binDir,
+							null, Collections.singletonList(dependencyClassLoader))) {
+				Class<?> clazz = classLoader.loadClass(Probe.class.getName());
+				assertThat(clazz.getClassLoader()).isSameAs(dependencyClassLoader);
+				assertThat(dependencyClassLoader.loadClass(Probe.class.getName())).isSameAs(clazz);
+			}
+		} finally {
+			Utils.removeFile(dependencyBinDir);
+		}
+	}
+	
+	/**
+	 * Tests that dependency project classloaders that do not own the package of a class are skipped, and that
+	 * classes in packages that no dependency owns are loaded through the parent classloader.
+	 * @throws Exception
+	 */
+	@Test
+	void testPackageOwnerDelegationSkipsOtherOwners() throws Exception {
+		File otherBinDir = Files.createTempDirectory("javaprojectclassloadertest").toFile();
+		File dependencyBinDir = Files.createTempDirectory("javaprojectclassloadertest").toFile();
+		try {
+			new File(otherBinDir, "otherpack").mkdirs();
+			Files.write(new File(otherBinDir, "otherpack/Other.class").toPath(), new byte[0]);
+			copyProbeClass(dependencyBinDir);
+			ClassLoader parent = JavaProjectClassLoaderTest.class.getClassLoader();
+			try(JavaProjectClassLoader otherClassLoader = new JavaProjectClassLoader(null, otherBinDir);
+					JavaProjectClassLoader dependencyClassLoader = new JavaProjectClassLoader(null, dependencyBinDir);
+					JavaProjectClassLoader classLoader = new JavaProjectClassLoader(parent, this.binDir,
+							null, Arrays.<ClassLoader>asList(otherClassLoader, dependencyClassLoader))) {
+				
+				// Assert that the class is loaded by its package owner without asking the other dependency.
+				Class<?> clazz = classLoader.loadClass(Probe.class.getName());
+				assertThat(clazz.getClassLoader()).isSameAs(dependencyClassLoader);
+				assertThat(otherClassLoader.getNegativeLookupCacheMisses()).isEqualTo(0);
+				
+				// Assert that classes in unowned packages fall through to the parent classloader.
+				assertThat(classLoader.loadClass(Test.class.getName())).isSameAs(Test.class);
+				assertThat(otherClassLoader.getNegativeLookupCacheMisses()).isEqualTo(0);
+				assertThat(dependencyClassLoader.getNegativeLookupCacheMisses()).isEqualTo(0);
+			}
+		} finally {
+			Utils.removeFile(otherBinDir);
+			Utils.removeFile(dependencyBinDir);
+		}
+	}
+	
+	/**
+	 * Tests that resources in shared .jar libraries are found through the project classloader.
+	 * @throws IOException
+	 */
+	@Test
+	void testSharedLibraryResources() throws IOException {
+		File jarFile = new File(this.binDir.getParentFile(), this.binDir.getName() + "-lib.jar");
+		try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jarFile.toPath()))) {
+			out.putNextEntry(new ZipEntry("libpack/libresource.txt"));
+			out.write("libtest".getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+			out.putNextEntry(new ZipEntry("META-INF/services/libpack.Service"));
+			out.write("libpack.ServiceImpl".getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		try(LibraryClassLoader libraryClassLoader =
+						new LibraryClassLoader(null, Arrays.asList(jarFile), "hash");
+				JavaProjectClassLoader classLoader = new JavaProjectClassLoader(null, this.binDir,
+						null, Collections.<ClassLoader>singletonList(libraryClassLoader))) {
+			assertThat(classLoader.findResource("libpack/libresource.txt")).isNotNull();
+			assertThat(classLoader.getResource("libpack/libresource.txt")).isNotNull();
+			assertThat(Collections.list(classLoader.getResources("META-INF/services/libpack.Service"))).hasSize(1);
+			assertThat(read(classLoader.getProjectResourceAsStream("libpack/libresource.txt"))).isEqualTo("libtest");
+			assertThat(classLoader.findResource("libpack/missing.txt")).isNull();
+		} finally {
+			jarFile.delete();
+		}
+	}
+	
+	private static String read(InputStream in) throws IOException {
+		try(InputStream inStream = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int count;
+			while((count = inStream.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+	
+	private static void copyProbeClass(File binDir) throws IOException {
+		String path = Probe.class.getName().replace('.', '/') + ".class";
+		File classFile = new File(binDir, path);
+		classFile.getParentFile().mkdirs();
+		try(InputStream in = Probe.class.getClassLoader().getResourceAsStream(path)) {
+			Files.copy(in, classFile.toPath());
+		}
+	}
+	
+	/**
+	 * A class that is copied into bin directories to be defined by the tested classloaders.
+	 */
+	public static class Probe {
+		public static String probe() {
+			return "probe";
+		}
+	}
+}
@@ -1,13 +1,26 @@
 package io.github.pieter12345.javaloader.core;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import io.github.pieter12345.javaloader.core.JavaProject.UnloadMethod;
 import io.github.pieter12345.javaloader.core.dependency.ProjectDependencyParser;
+import io.github.pieter12345.javaloader.core.exceptions.UnloadException;
+import io.github.pieter12345.javaloader.core.utils.Utils;
 
 /**
  * Tests the {@link JavaProject} class.
@@ -50,4 +63,86 @@ class JavaProjectTest {
 		assertThat(this.project.getSourceDir()).isEqualTo(new File(this.projectDir.getAbsoluteFile(), "src"));
 		assertThat(this.project.getProjectManager()).isSameAs(this.manager);
 	}
+	
+	/**
+	 * Tests that the main class is found when its super class chain leaves the project through a class from a .jar
+	 * dependency, and that classes that do not extend from {@link JavaLoaderProject} are not loaded.
+	 * @throws Exception
+	 */
+	@Test
+	void testLoadMainClassWithExternalSuperClass() throws Exception {
+		File projectsDir = Files.createTempDirectory("javaprojecttest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		try {
+			
+			// Create a project with a main class that extends a class from a .jar dependency, and a class chain that
+			// leaves the project through a class that does not extend from JavaLoaderProject.
+			File projectDir = new File(projectsDir, "project");
+			writeSource(projectDir, "Main", "public class Main extends base.ProjectBase {\n"
+					+ "public String getVersion() { return \"1\"; }\n"
+					+ "}");
+			writeSource(projectDir, "Helper", "public class Helper extends java.util.ArrayList<String> { }");
+			writeSource(projectDir, "SubHelper", "public class SubHelper extends Helper { }");
+			writeBaseJar(new File(projectDir, "base.jar"));
+			Files.write(new File(projectDir, "dependencies.txt").toPath(),
+					"jar ./base.jar".getBytes(StandardCharsets.UTF_8));
+			JavaProject project = manager.addProjectFromProjectDirectory("project", this.projectStateListener);
+			project.compile((String feedback) -> {
+			});
+			
+			// Load the project and assert that only the main class has been loaded.
+			project.load();
+			assertThat(project.getInstance().getClass().getName()).isEqualTo("project.Main");
+			assertThat(project.getInstance()).isInstanceOf(JavaLoaderProject.class);
+			assertThat(((JavaProjectClassLoader) project.getClassLoader()).getDefinedProjectClassNames())
+					.containsExactly("project.Main");
+			project.unload(UnloadMethod.EXCEPTION_ON_LOADED_DEPENDENTS, (UnloadException e) -> {
+				fail("Unexpected UnloadException.", e);
+			});
+		} finally {
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Writes the source of the given class in package "project" of the given project.
+	 * @param projectDir - The project directory.
+	 * @param className - The simple name of the class.
+	 * @param body - The source of the class, excluding the package declaration.
+	 * @throws IOException
+	 */
+	private static void writeSource(File projectDir, String className, String body) throws IOException {
+		File sourceFile = new File(projectDir, "src/project/" + className + ".java");
+		sourceFile.getParentFile().mkdirs();
+		Files.write(sourceFile.toPath(), ("package project;\n" + body + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Compiles abstract class "base.ProjectBase", which extends from {@link JavaLoaderProject}, into a .jar file.
+	 * @param jarFile - The .jar file.
+	 * @throws IOException
+	 */
+	private static void writeBaseJar(File jarFile) throws IOException {
+		File dir = Files.createTempDirectory("javaprojecttest").toFile();
+		try {
+			File sourceFile = new File(dir, "ProjectBase.java");
+			Files.write(sourceFile.toPath(), ("package base;\n"
+					+ "public abstract class ProjectBase extends " + JavaLoaderProject.class.getName() + " { }\n")
+					.getBytes(StandardCharsets.UTF_8));
+			String classPath = new File(JavaLoaderProject.class.getProtectionDomain()
+					.getCodeSource().getLocation().toURI()).getAbsolutePath();
+			JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+			assertThat(compiler.run(null, null, null, "-cp", classPath,
+					"-d", dir.getAbsolutePath(), sourceFile.getAbsolutePath())).isEqualTo(0);
+			try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jarFile.toPath()))) {
+				out.putNextEntry(new ZipEntry("base/ProjectBase.class"));
+				out.write(Files.readAllBytes(new File(dir, "base/ProjectBase.class").toPath()));
+				out.closeEntry();
+			}
+		} catch (URISyntaxException e) {
+			throw new IOException(e);
+		} finally {
+			Utils.removeFile(dir);
+		}
+	}
 }
@@ -2,27 +2,52 @@ package io.github.pieter12345.javaloader.core;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Writer;
+import java.lang.instrument.ClassDefinition;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InOrder;
 
+import io.github.pieter12345.javaloader.core.JavaProject.CompilerFeedbackHandler;
 import io.github.pieter12345.javaloader.core.JavaProject.UnloadMethod;
+import io.github.pieter12345.javaloader.core.ProjectManager.ClassPreloadMode;
+import io.github.pieter12345.javaloader.core.ProjectManager.LoadAllResult;
+import io.github.pieter12345.javaloader.core.ProjectManager.PreparedRecompile;
+import io.github.pieter12345.javaloader.core.ProjectManager.PreparedRecompileAll;
+import io.github.pieter12345.javaloader.core.ProjectManager.RecompileFeedbackHandler;
+import io.github.pieter12345.javaloader.core.compiler.ForkedCompilerService;
+import io.github.pieter12345.javaloader.core.compiler.MemoryClassStore;
 import io.github.pieter12345.javaloader.core.dependency.Dependency;
 import io.github.pieter12345.javaloader.core.dependency.ProjectDependency;
 import io.github.pieter12345.javaloader.core.dependency.ProjectDependencyParser;
+import io.github.pieter12345.javaloader.core.exceptions.CompileException;
+import io.github.pieter12345.javaloader.core.exceptions.DepOrderViolationException;
 import io.github.pieter12345.javaloader.core.exceptions.JavaProjectException;
 import io.github.pieter12345.javaloader.core.exceptions.LoadException;
 import io.github.pieter12345.javaloader.core.exceptions.UnloadException;
 import io.github.pieter12345.javaloader.core.exceptions.handlers.UnloadExceptionHandler;
+import io.github.pieter12345.javaloader.core.utils.Utils;
 
 /**
  * Tests the {@link ProjectManager} class.
@@ -30,6 +55,21 @@ import io.github.pieter12345.javaloader.core.exceptions.handlers.UnloadException
  */
 class ProjectManagerTest {
 	
+	private static final CompilerFeedbackHandler IGNORING_FEEDBACK_HANDLER = (String feedback) -> {
+	};
+	private static final UnloadExceptionHandler FAILING_UNLOAD_EXCEPTION_HANDLER = (UnloadException e) -> {
+		fail("Unexpected UnloadException.", e);
+	};
+	private static final ProjectStateListener INITIALIZING_STATE_LISTENER = new ProjectStateListener() {
+		@Override
+		public void onLoad(JavaProject project) {
+			project.getInstance().initialize(project);
+		}
+		@Override
+		public void onUnload(JavaProject project) {
+		}
+	};
+	
 	private ProjectManager manager;
 	private File projectsDirMock;
 	private ProjectDependencyParser dependencyParserMock;
@@ -227,6 +267,32 @@ class ProjectManagerTest {
 		verify(projectC, times(1)).unload(any(UnloadMethod.class), any(UnloadExceptionHandler.class));
 	}
 	
+	/**
+	 * Tests that the loaded dependents of a project are found through the dependency index, which is updated when
+	 * projects are added, unloaded and removed. Uses dependencies (A -> B === A depends on B): B -> A, C -> A.
+	 */
+	@Test
+	void testGetLoadedDependents() {
+		
+		// Create the projects, adding the dependents before the project they depend on.
+		JavaProject projectB = generateAndAddMockProject("projectB", true, this.manager, "projectA");
+		JavaProject projectC = generateAndAddMockProject("projectC", true, this.manager, "projectA");
+		JavaProject projectA = generateAndAddMockProject("projectA", true, this.manager);
+		
+		// Assert that the dependents are found.
+		assertThat(this.manager.getLoadedDependents(projectA)).containsExactlyInAnyOrder(projectB, projectC);
+		assertThat(this.manager.getLoadedDependents(projectB)).isEmpty();
+		
+		// Unindex projectB as happens when it is unloaded, and assert that it is no longer a dependent.
+		this.manager.unindexLoadedProject(projectB);
+		assertThat(this.manager.getLoadedDependents(projectA)).containsExactly(projectC);
+		
+		// Remove projectC and assert that projectA no longer has dependents.
+		when(projectC.isLoaded()).thenReturn(false);
+		assertThat(this.manager.removeProject(projectC)).isTrue();
+		assertThat(this.manager.getLoadedDependents(projectA)).isEmpty();
+	}
+	
 	/**
 	 * Tests that addProject(JavaProject) adds the project with one and two projects, using the
 	 * getProjects() and getProjectNames() methods to validate the add.
@@ -273,6 +339,55 @@ class ProjectManagerTest {
 		assertThat(this.manager.hasProject("projectA")).isTrue();
 	}
 	
+	/**
+	 * Tests that getProjectInstance(String) only returns the instance of loaded projects.
+	 */
+	@Test
+	void testGetProjectInstance() {
+		
+		// Create the projects, where projectB has an instance but is not (fully) loaded.
+		JavaProject projectA = generateAndAddMockProject("projectA", true, this.manager);
+		JavaProject projectB = generateAndAddMockProject("projectB", false, this.manager);
+		JavaLoaderProject instanceA = mock(JavaLoaderProject.class);
+		when(projectA.getInstance()).thenReturn(instanceA);
+		when(projectB.getInstance()).thenReturn(mock(JavaLoaderProject.class));
+		
+		// Assert that only the instance of the loaded project is returned.
+		assertThat(this.manager.getProjectInstance("projectA")).isSameAs(instanceA);
+		assertThat(this.manager.getProjectInstance("projectB")).isNull();
+		assertThat(this.manager.getProjectInstance("projectC")).isNull();
+		assertThat(this.manager.getProjectInstances()).containsExactly(instanceA);
+	}
+	
+	/**
+	 * Tests that project lookups from a different thread do not block while a lifecycle transition is in progress.
+	 * @throws Exception
+	 */
+	@Test
+	void testLookupDuringLoadAll() throws Exception {
+		
+		// Create the project, performing a lookup from a different thread while it is being loaded.
+		JavaProject projectA = generateAndAddMockProject("projectA", false, this.manager);
+		List<Boolean> lookupResults = new ArrayList<Boolean>();
+		doAnswer((invocation) -> {
+			assertThat(this.manager.getLifecycleLock().isHeldByCurrentThread()).isTrue();
+			Thread thread = new Thread(() -> {
+				lookupResults.add(this.manager.hasProject("projectA"));
+				lookupResults.add(this.manager.getProjectInstance("projectA") == null);
+			});
+			thread.start();
+			thread.join(10000);
+			return null;
+		}).when(projectA).load();
+		
+		// Load all projects and assert that the lookups have completed during the load.
+		this.manager.loadAllProjects((LoadException ex) -> {
+			fail("Unexpected LoadException in mock project (should never run).", ex);
+		});
+		assertThat(lookupResults).containsExactly(true, true);
+		assertThat(this.manager.getLifecycleLock().isLocked()).isFalse();
+	}
+	
 	/**
 	 * Tests that a second call to addProject(JavaProject) with the same project does not add the project again.
 	 */
@@ -384,6 +499,562 @@ class ProjectManagerTest {
 		assertThat(this.manager.getProjectsDir()).isEqualTo(this.projectsDirMock);
 	}
 	
+	/**
+	 * Tests that projects that include the same set of .jar libraries share one library classloader, that libraries
+	 * in the set can reference each other, and that the classloader is closed when it is released by its last user.
+	 * @throws Exception
+	 */
+	@Test
+	void testSharedLibraryClassLoader() throws Exception {
+		File libDir = Files.createTempDirectory("projectmanagertest").toFile();
+		try {
+			File userJar = writeClassJar(new File(libDir, "user.jar"), LibraryUser.class);
+			File dependencyJar = writeClassJar(new File(libDir, "dependency.jar"), LibraryDependency.class);
+			List<File> jarFiles = Arrays.asList(userJar, dependencyJar);
+			
+			// Acquire the library classloader twice and assert that it is shared.
+			LibraryClassLoader classLoader = this.manager.acquireLibraryClassLoader(jarFiles);
+			assertThat(this.manager.acquireLibraryClassLoader(jarFiles)).isSameAs(classLoader);
+			assertThat(classLoader.getReferenceCount()).isEqualTo(2);
+			assertThat(this.manager.getLibraryClassLoaders()).containsExactly(classLoader);
+			
+			// Assert that a different set of libraries uses a different classloader.
+			LibraryClassLoader otherClassLoader = this.manager.acquireLibraryClassLoader(Arrays.asList(userJar));
+			assertThat(otherClassLoader).isNotSameAs(classLoader);
+			this.manager.releaseLibraryClassLoader(otherClassLoader);
+			assertThat(this.manager.getLibraryClassLoaders()).containsExactly(classLoader);
+			
+			// Assert that a library class resolves its dependency from the other library in the set.
+			Class<?> userClass = classLoader.loadClass(LibraryUser.class.getName());
+			assertThat(userClass.getClassLoader()).isSameAs(classLoader);
+			assertThat(userClass.getMethod("getDependencyClassLoader").invoke(null)).isSameAs(classLoader);
+			
+			// Release the classloader and assert that it is closed when it is no longer used.
+			this.manager.releaseLibraryClassLoader(classLoader);
+			assertThat(this.manager.getLibraryClassLoaders()).containsExactly(classLoader);
+			this.manager.releaseLibraryClassLoader(classLoader);
+			assertThat(this.manager.getLibraryClassLoaders()).isEmpty();
+			assertThat(classLoader.findResource(LibraryUser.class.getName().replace('.', '/') + ".class")).isNull();
+			assertThat(this.manager.acquireLibraryClassLoader(jarFiles)).isNotSameAs(classLoader);
+		} finally {
+			for(LibraryClassLoader classLoader : this.manager.getLibraryClassLoaders()) {
+				this.manager.releaseLibraryClassLoader(classLoader);
+			}
+			Utils.removeFile(libDir);
+		}
+	}
+	
+	/**
+	 * Tests that a prepared recompile leaves the loaded project untouched until it is applied, and that discarding
+	 * it removes the new binaries.
+	 * @throws Exception
+	 */
+	@Test
+	void testPrepareApplyDiscardRecompile() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		try {
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"1\"; }");
+			JavaProject project = manager.addProjectFromProjectDirectory("project", INITIALIZING_STATE_LISTENER);
+			manager.recompile(project, IGNORING_FEEDBACK_HANDLER, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			assertThat(project.getVersion()).isEqualTo("1");
+			File newBinDir = new File(project.getProjectDir(), "bin_new");
+			
+			// Prepare a recompile and discard it.
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"2\"; }");
+			PreparedRecompile preparedRecompile = manager.prepareRecompile(project, IGNORING_FEEDBACK_HANDLER);
+			assertThat(newBinDir).isDirectory();
+			assertThat(project.getBinDir().getName()).isEqualTo("bin");
+			assertThat(project.getVersion()).isEqualTo("1");
+			manager.discardRecompile(preparedRecompile);
+			assertThat(newBinDir).doesNotExist();
+			assertThat(project.isLoaded()).isTrue();
+			assertThat(project.getVersion()).isEqualTo("1");
+			
+			// Prepare a recompile and apply it.
+			preparedRecompile = manager.prepareRecompile(project, IGNORING_FEEDBACK_HANDLER);
+			manager.applyRecompile(preparedRecompile, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			assertThat(newBinDir).doesNotExist();
+			assertThat(project.isLoaded()).isTrue();
+			assertThat(project.getVersion()).isEqualTo("2");
+		} finally {
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that applying a prepared recompile fails and discards the recompile when a dependent of the project has
+	 * been loaded since the recompile was prepared.
+	 * @throws Exception
+	 */
+	@Test
+	void testApplyRecompileValidatesLoadedDependents() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		manager.setInMemoryCompilationEnabled(true);
+		try {
+			writeMainClass(projectsDir, "dep", "public String getVersion() { return \"1\"; }");
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"1\"; }");
+			Files.write(new File(projectsDir, "project/dependencies.txt").toPath(),
+					"project dep".getBytes(StandardCharsets.UTF_8));
+			JavaProject dep = manager.addProjectFromProjectDirectory("dep", INITIALIZING_STATE_LISTENER);
+			JavaProject project = manager.addProjectFromProjectDirectory("project", INITIALIZING_STATE_LISTENER);
+			manager.recompile(dep, IGNORING_FEEDBACK_HANDLER, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			MemoryClassStore classStore = dep.getClassStore();
+			
+			// Prepare a recompile of the dependency while its dependent is not loaded.
+			writeMainClass(projectsDir, "dep", "public String getVersion() { return \"2\"; }");
+			PreparedRecompile preparedRecompile = manager.prepareRecompile(dep, IGNORING_FEEDBACK_HANDLER);
+			assertThat(dep.getClassStore()).isSameAs(classStore);
+			
+			// Load the dependent and assert that the recompile cannot be applied.
+			manager.recompile(project, IGNORING_FEEDBACK_HANDLER, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			assertThat(project.isLoaded()).isTrue();
+			DepOrderViolationException e = assertThrows(DepOrderViolationException.class,
+					() -> manager.applyRecompile(preparedRecompile, FAILING_UNLOAD_EXCEPTION_HANDLER));
+			assertThat(e.getMessage()).contains("Depending project: project.");
+			assertThat(new File(dep.getProjectDir(), "bin_new")).doesNotExist();
+			assertThat(dep.isLoaded()).isTrue();
+			assertThat(dep.getVersion()).isEqualTo("1");
+			assertThat(project.isLoaded()).isTrue();
+		} finally {
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that a prepared recompile that only changes method bodies results in class definitions for the loaded
+	 * classes, and that a prepared recompile that changes the class structure results in no class definitions.
+	 * @throws Exception
+	 */
+	@Test
+	void testGetHotSwapClassDefinitions() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		try {
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"1\"; }");
+			JavaProject project = manager.addProjectFromProjectDirectory("project", INITIALIZING_STATE_LISTENER);
+			manager.recompile(project, IGNORING_FEEDBACK_HANDLER, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			File newBinDir = new File(project.getProjectDir(), "bin_new");
+			
+			// Change a method body.
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"2\"; }");
+			PreparedRecompile preparedRecompile = manager.prepareRecompile(project, IGNORING_FEEDBACK_HANDLER);
+			ClassDefinition[] classDefinitions = project.getHotSwapClassDefinitions(newBinDir, null);
+			assertThat(classDefinitions).hasSize(1);
+			assertThat(classDefinitions[0].getDefinitionClass()).isSameAs(project.getInstance().getClass());
+			manager.discardRecompile(preparedRecompile);
+			
+			// Add a method.
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"1\"; }\n"
+					+ "public void added() { }");
+			preparedRecompile = manager.prepareRecompile(project, IGNORING_FEEDBACK_HANDLER);
+			assertThat(project.getHotSwapClassDefinitions(newBinDir, null)).isNull();
+			manager.discardRecompile(preparedRecompile);
+			
+			// Add a class.
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"1\"; }\n"
+					+ "public static class Added { }");
+			preparedRecompile = manager.prepareRecompile(project, IGNORING_FEEDBACK_HANDLER);
+			assertThat(project.getHotSwapClassDefinitions(newBinDir, null)).isNull();
+			manager.discardRecompile(preparedRecompile);
+			assertThat(project.getVersion()).isEqualTo("1");
+		} finally {
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that a thread-safe onLoad method that attempts a lifecycle transition while projects are loaded in
+	 * parallel fails to load instead of deadlocking.
+	 * @throws Exception
+	 */
+	@Test
+	void testLifecycleTransitionFromThreadSafeOnLoad() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		try {
+			File sourceFile = new File(projectsDir, "project/src/project/Main.java");
+			sourceFile.getParentFile().mkdirs();
+			Files.write(sourceFile.toPath(), ("package project;\n"
+					+ "@io.github.pieter12345.javaloader.core.ThreadSafeOnLoad\n"
+					+ "public class Main extends io.github.pieter12345.javaloader.core.JavaLoaderProject {\n"
+					+ "public String getVersion() { return \"1\"; }\n"
+					+ "public void onLoad() { this.getProjectManager().unloadAllProjects(null); }\n"
+					+ "}\n").getBytes(StandardCharsets.UTF_8));
+			JavaProject project = manager.addProjectFromProjectDirectory("project", INITIALIZING_STATE_LISTENER);
+			project.compile(IGNORING_FEEDBACK_HANDLER);
+			manager.setLoadParallelism(2);
+			List<LoadException> loadExceptions = new ArrayList<LoadException>();
+			LoadAllResult result = assertTimeoutPreemptively(Duration.ofSeconds(30),
+					() -> manager.loadAllProjects((LoadException e) -> loadExceptions.add(e)));
+			assertThat(result.errorProjects).containsExactly(project);
+			assertThat(loadExceptions).hasSize(1);
+			assertThat(loadExceptions.get(0).getMessage()).contains(IllegalStateException.class.getName());
+			assertThat(project.isLoaded()).isFalse();
+		} finally {
+			
+			// The project is not loaded, and clearing the manager would block if the lifecycle lock were still held.
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that projects that are compiled in memory define their classes from the class store, that dependent
+	 * projects compile against the in-memory classes of their dependencies, and that the bin directory matches the
+	 * class store once it has been written.
+	 * @throws Exception
+	 */
+	@Test
+	void testInMemoryCompilation() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		manager.setInMemoryCompilationEnabled(true);
+		try {
+			writeClass(projectsDir, "dep", "Api", "public static String value() { return \"dep\"; }");
+			writeMainClass(projectsDir, "dep", "public String getVersion() { return \"1\"; }");
+			writeMainClass(projectsDir, "project", "public String getVersion() { return dep.Api.value(); }");
+			Files.write(new File(projectsDir, "project/dependencies.txt").toPath(),
+					"project dep".getBytes(StandardCharsets.UTF_8));
+			JavaProject dep = manager.addProjectFromProjectDirectory("dep", INITIALIZING_STATE_LISTENER);
+			JavaProject project = manager.addProjectFromProjectDirectory("project", INITIALIZING_STATE_LISTENER);
+			
+			// Compile both projects and assert that the dependent project compiled against the in-memory classes.
+			dep.compile(IGNORING_FEEDBACK_HANDLER);
+			project.compile(IGNORING_FEEDBACK_HANDLER);
+			MemoryClassStore depClassStore = dep.getClassStore();
+			MemoryClassStore classStore = project.getClassStore();
+			assertThat(depClassStore.getClassNames()).containsExactlyInAnyOrder("dep.Main", "dep.Api");
+			assertThat(classStore.getClassNames()).containsExactly("project.Main");
+			assertThat(new File(dep.getBinDir(), "dep")).doesNotExist();
+			assertThat(new File(project.getBinDir(), "project")).doesNotExist();
+			
+			// Load the projects and assert that their classes are defined from the class stores.
+			dep.load();
+			project.load();
+			assertThat(project.getVersion()).isEqualTo("dep");
+			Class<?> apiClass = dep.getClassLoader().loadClass("dep.Api");
+			assertThat(apiClass.getClassLoader()).isSameAs(dep.getClassLoader());
+			assertThat(project.getClassLoader().loadClass("dep.Api")).isSameAs(apiClass);
+			
+			// Wait for the class stores to be written and assert that the bin directories match them.
+			assertThat(dep.awaitBinDirWrite()).isTrue();
+			assertThat(project.awaitBinDirWrite()).isTrue();
+			assertThat(dep.getClassStore()).isNull();
+			assertThat(project.getClassStore()).isNull();
+			assertBinDirMatches(dep.getBinDir(), depClassStore);
+			assertBinDirMatches(project.getBinDir(), classStore);
+		} finally {
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that projects can be compiled in memory by a forked compile worker, and that clearing the project manager
+	 * stops the workers while keeping the forked compilation settings.
+	 * @throws Exception
+	 */
+	@Test
+	void testForkedCompilation() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		manager.setInMemoryCompilationEnabled(true);
+		manager.setForkedCompilation(1, Arrays.asList("-Xmx256M"));
+		try {
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"1\"; }");
+			JavaProject project = manager.addProjectFromProjectDirectory("project", INITIALIZING_STATE_LISTENER);
+			manager.recompile(project, IGNORING_FEEDBACK_HANDLER, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			assertThat(project.getVersion()).isEqualTo("1");
+			assertThat(project.getClassStore().getClassNames()).containsExactly("project.Main");
+			
+			// Clear the project manager and assert that the next compile uses a new forked compiler service.
+			ForkedCompilerService forkedCompilerService = manager.getForkedCompilerService();
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			ForkedCompilerService newForkedCompilerService = manager.getForkedCompilerService();
+			assertThat(newForkedCompilerService).isNotSameAs(forkedCompilerService);
+			assertThat(newForkedCompilerService.getMaxWorkers()).isEqualTo(1);
+			assertThat(newForkedCompilerService.getJvmArguments()).containsExactly("-Xmx256M");
+			
+			// Assert that disabling forked compilation removes the forked compiler service.
+			manager.setForkedCompilation(0, Collections.<String>emptyList());
+			assertThat(manager.getForkedCompilerService()).isNull();
+		} finally {
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that discarding a prepared recompile of all projects restores the compile state of the projects, so that
+	 * projects compiled in memory load their previous classes again.
+	 * @throws Exception
+	 */
+	@Test
+	void testDiscardRecompileAllProjects() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		manager.setInMemoryCompilationEnabled(true);
+		try {
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"1\"; }");
+			JavaProject project = manager.addProjectFromProjectDirectory("project", INITIALIZING_STATE_LISTENER);
+			manager.recompile(project, IGNORING_FEEDBACK_HANDLER, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			MemoryClassStore classStore = project.getClassStore();
+			
+			// Prepare a recompile of all projects and discard it.
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"2\"; }");
+			PreparedRecompileAll preparedRecompileAll =
+					manager.prepareRecompileAllProjects(new FailingRecompileFeedbackHandler());
+			assertThat(project.getClassStore()).isSameAs(classStore);
+			manager.discardRecompileAllProjects(preparedRecompileAll);
+			assertThat(new File(project.getProjectDir(), "bin_new")).doesNotExist();
+			assertThat(project.getBinDir().getName()).isEqualTo("bin");
+			assertThat(project.getClassStore()).isSameAs(classStore);
+			
+			// Assert that the project loads its previous classes.
+			project.unload(UnloadMethod.EXCEPTION_ON_LOADED_DEPENDENTS, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			project.load();
+			assertThat(project.getVersion()).isEqualTo("1");
+		} finally {
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that the {@link ClassPreloadMode#USED_CLASSES} mode preloads the classes that were loaded by the previous
+	 * load of a project, skipping classes that have been removed since.
+	 * @throws Exception
+	 */
+	@Test
+	void testPreloadUsedClasses() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		manager.setClassPreloadMode(ClassPreloadMode.USED_CLASSES);
+		try {
+			writeClass(projectsDir, "project", "Used", "");
+			writeClass(projectsDir, "project", "Unused", "");
+			writeClass(projectsDir, "project", "Removed", "");
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"1\"; }\n"
+					+ "public void onLoad() { new Used(); new Removed(); }");
+			JavaProject project = manager.addProjectFromProjectDirectory("project", INITIALIZING_STATE_LISTENER);
+			manager.recompile(project, IGNORING_FEEDBACK_HANDLER, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			awaitClassPreload(manager);
+			assertThat(((JavaProjectClassLoader) project.getClassLoader()).getDefinedProjectClassNames())
+					.containsExactlyInAnyOrder("project.Main", "project.Used", "project.Removed");
+			
+			// Remove a used class and stop using the other classes, so that only preloading defines them.
+			new File(projectsDir, "project/src/project/Removed.java").delete();
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"2\"; }");
+			manager.recompile(project, IGNORING_FEEDBACK_HANDLER, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			awaitClassPreload(manager);
+			assertThat(project.getVersion()).isEqualTo("2");
+			assertThat(((JavaProjectClassLoader) project.getClassLoader()).getDefinedProjectClassNames())
+					.containsExactlyInAnyOrder("project.Main", "project.Used");
+		} finally {
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that class preloading stops when the classloader of the project has been closed.
+	 * @throws Exception
+	 */
+	@Test
+	void testPreloadStopsOnClose() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		manager.setClassPreloadMode(ClassPreloadMode.ALL_CLASSES);
+		CountDownLatch preloadBlocker = new CountDownLatch(1);
+		try {
+			writeClass(projectsDir, "project", "Unused", "");
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"1\"; }");
+			JavaProject project = manager.addProjectFromProjectDirectory("project", INITIALIZING_STATE_LISTENER);
+			project.compile(IGNORING_FEEDBACK_HANDLER);
+			
+			// Block the preload thread, then load and unload the project before it can preload the classes.
+			manager.submitClassPreload(() -> {
+				try {
+					preloadBlocker.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			project.load();
+			JavaProjectClassLoader classLoader = (JavaProjectClassLoader) project.getClassLoader();
+			project.unload(UnloadMethod.EXCEPTION_ON_LOADED_DEPENDENTS, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			assertThat(classLoader.isClosed()).isTrue();
+			preloadBlocker.countDown();
+			awaitClassPreload(manager);
+			assertThat(classLoader.getDefinedProjectClassNames()).containsExactly("project.Main");
+		} finally {
+			preloadBlocker.countDown();
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that a swap reload loads the new generation of a project next to the previous generation.
+	 * @throws Exception
+	 */
+	@Test
+	void testSwapReload() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		try {
+			JavaProject project = loadSwapProjects(manager, projectsDir, false);
+			ClassLoader oldClassLoader = project.getClassLoader();
+			int oldGeneration = project.getGeneration();
+			
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"2\"; }");
+			PreparedRecompile preparedRecompile = manager.prepareRecompile(project, IGNORING_FEEDBACK_HANDLER);
+			manager.applyRecompile(preparedRecompile, FAILING_UNLOAD_EXCEPTION_HANDLER);
+			assertThat(preparedRecompile.isSwapped()).isTrue();
+			assertThat(project.isLoaded()).isTrue();
+			assertThat(project.getVersion()).isEqualTo("2");
+			assertThat(project.getClassLoader()).isNotSameAs(oldClassLoader);
+			assertThat(project.getGeneration()).isEqualTo(oldGeneration + 1);
+			assertThat(new File(project.getProjectDir(), "bin_new")).doesNotExist();
+			assertThat(manager.getLoadedDependents(manager.getProject("dep"))).containsExactly(project);
+		} finally {
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that the previous generation stays loaded and the new binaries are discarded when the
+	 * {@link JavaLoaderProject#onPreActivate(JavaProject)} method of the new generation throws an exception.
+	 * @throws Exception
+	 */
+	@Test
+	void testSwapReloadPreActivateFailure() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		try {
+			JavaProject project = loadSwapProjects(manager, projectsDir, false);
+			ClassLoader oldClassLoader = project.getClassLoader();
+			int oldGeneration = project.getGeneration();
+			JavaLoaderProject oldInstance = project.getInstance();
+			
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"2\"; }\n"
+					+ "public void onPreActivate(io.github.pieter12345.javaloader.core.JavaProject project) {\n"
+					+ "	throw new RuntimeException(\"Rejected.\");\n"
+					+ "}");
+			PreparedRecompile preparedRecompile = manager.prepareRecompile(project, IGNORING_FEEDBACK_HANDLER);
+			assertThrows(LoadException.class,
+					() -> manager.applyRecompile(preparedRecompile, FAILING_UNLOAD_EXCEPTION_HANDLER));
+			assertThat(project.isLoaded()).isTrue();
+			assertThat(project.getVersion()).isEqualTo("1");
+			assertThat(project.getInstance()).isSameAs(oldInstance);
+			assertThat(project.getClassLoader()).isSameAs(oldClassLoader);
+			assertThat(project.getGeneration()).isEqualTo(oldGeneration);
+			assertThat(project.getBinDir().getName()).isEqualTo("bin");
+			assertThat(new File(project.getProjectDir(), "bin_new")).doesNotExist();
+			assertThat(manager.getLoadedDependents(manager.getProject("dep"))).containsExactly(project);
+		} finally {
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that a new instance of the previous generation is loaded again when the {@link JavaLoaderProject#onLoad()}
+	 * method of the new generation throws an exception during a swap reload.
+	 * @throws Exception
+	 */
+	@Test
+	void testSwapReloadLoadFailure() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		try {
+			JavaProject project = loadSwapProjects(manager, projectsDir, false);
+			ClassLoader oldClassLoader = project.getClassLoader();
+			int oldGeneration = project.getGeneration();
+			JavaLoaderProject oldInstance = project.getInstance();
+			
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"2\"; }\n"
+					+ "public void onLoad() { throw new RuntimeException(\"Failed.\"); }");
+			PreparedRecompile preparedRecompile = manager.prepareRecompile(project, IGNORING_FEEDBACK_HANDLER);
+			assertThrows(LoadException.class,
+					() -> manager.applyRecompile(preparedRecompile, FAILING_UNLOAD_EXCEPTION_HANDLER));
+			assertThat(project.isLoaded()).isTrue();
+			assertThat(project.getVersion()).isEqualTo("1");
+			assertThat(project.getInstance()).isNotSameAs(oldInstance);
+			assertThat(project.getInstance().getClass()).isSameAs(oldInstance.getClass());
+			assertThat(project.getClassLoader()).isSameAs(oldClassLoader);
+			assertThat(project.getGeneration()).isEqualTo(oldGeneration);
+			assertThat(new File(project.getProjectDir(), "bin_new")).doesNotExist();
+			assertThat(manager.getLoadedDependents(manager.getProject("dep"))).containsExactly(project);
+		} finally {
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Tests that the project ends up unloaded and is removed from the loaded dependency index when both the new
+	 * generation and the previous generation fail to load during a swap reload.
+	 * @throws Exception
+	 */
+	@Test
+	void testSwapReloadRollbackFailure() throws Exception {
+		File projectsDir = Files.createTempDirectory("projectmanagertest").toFile();
+		ProjectManager manager = new ProjectManager(projectsDir, new ProjectDependencyParser());
+		try {
+			JavaProject project = loadSwapProjects(manager, projectsDir, true);
+			
+			writeMainClass(projectsDir, "project", "public String getVersion() { return \"2\"; }\n"
+					+ "public void onLoad() { throw new RuntimeException(\"Failed.\"); }");
+			PreparedRecompile preparedRecompile = manager.prepareRecompile(project, IGNORING_FEEDBACK_HANDLER);
+			assertThrows(LoadException.class,
+					() -> manager.applyRecompile(preparedRecompile, FAILING_UNLOAD_EXCEPTION_HANDLER));
+			assertThat(project.isLoaded()).isFalse();
+			assertThat(project.getInstance()).isNull();
+			assertThat(project.getClassLoader()).isNull();
+			assertThat(new File(project.getProjectDir(), "bin_new")).doesNotExist();
+			assertThat(manager.getLoadedDependents(manager.getProject("dep"))).isEmpty();
+		} finally {
+			manager.clear(FAILING_UNLOAD_EXCEPTION_HANDLER);
+			Utils.removeFile(projectsDir);
+		}
+	}
+	
+	/**
+	 * Creates and loads project "dep" and project "project" that depends on it, with swap reloading enabled.
+	 * @param manager - The project manager.
+	 * @param projectsDir - The projects directory of the project manager.
+	 * @param failOnReload - Whether the onLoad method of "project" should throw when it is called more than once.
+	 * @return Project "project".
+	 * @throws Exception
+	 */
+	private static JavaProject loadSwapProjects(
+			ProjectManager manager, File projectsDir, boolean failOnReload) throws Exception {
+		manager.setSwapReloadEnabled(true);
+		writeMainClass(projectsDir, "dep", "public String getVersion() { return \"1\"; }");
+		writeMainClass(projectsDir, "project", "private static int loadCount = 0;\n"
+				+ "public String getVersion() { return \"1\"; }\n"
+				+ "public void onLoad() {\n"
+				+ "	if(++loadCount > 1 && " + failOnReload + ") {\n"
+				+ "		throw new RuntimeException(\"Failed.\");\n"
+				+ "	}\n"
+				+ "}");
+		Files.write(new File(projectsDir, "project/dependencies.txt").toPath(),
+				"project dep".getBytes(StandardCharsets.UTF_8));
+		JavaProject dep = manager.addProjectFromProjectDirectory("dep", INITIALIZING_STATE_LISTENER);
+		JavaProject project = manager.addProjectFromProjectDirectory("project", INITIALIZING_STATE_LISTENER);
+		manager.recompile(dep, IGNORING_FEEDBACK_HANDLER, FAILING_UNLOAD_EXCEPTION_HANDLER);
+		manager.recompile(project, IGNORING_FEEDBACK_HANDLER, FAILING_UNLOAD_EXCEPTION_HANDLER);
+		assertThat(project.isLoaded()).isTrue();
+		assertThat(manager.getLoadedDependents(dep)).containsExactly(project);
+		return project;
+	}
+	
 	
 	
 	/**
@@ -449,4 +1120,119 @@ class ProjectManagerTest {
 		
 	}
 	
+	private static File writeClassJar(File jarFile, Class<?> clazz) throws IOException {
+		String path = clazz.getName().replace('.', '/') + ".class";
+		try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jarFile.toPath()));
+				InputStream in = clazz.getClassLoader().getResourceAsStream(path)) {
+			out.putNextEntry(new ZipEntry(path));
+			byte[] buffer = new byte[1024];
+			int count;
+			while((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+			out.closeEntry();
+		}
+		return jarFile;
+	}
+	
+	/**
+	 * A library class that references a class from another library.
+	 */
+	public static class LibraryUser {
+		public static ClassLoader getDependencyClassLoader() {
+			return new LibraryDependency().getClass().getClassLoader();
+		}
+	}
+	
+	/**
+	 * A library class that is referenced by another library.
+	 */
+	public static class LibraryDependency {
+	}
+	
+	/**
+	 * Writes the source of the main class "Main" of the given project, in a package named after the project.
+	 * @param projectsDir - The projects directory.
+	 * @param projectName - The name of the project.
+	 * @param body - The body of the main class.
+	 * @throws IOException
+	 */
+	private static void writeMainClass(File projectsDir, String projectName, String body) throws IOException {
+		File sourceFile = new File(projectsDir, projectName + "/src/" + projectName + "/Main.java");
+		sourceFile.getParentFile().mkdirs();
+		Files.write(sourceFile.toPath(), ("package " + projectName + ";\n"
+				+ "public class Main extends io.github.pieter12345.javaloader.core.JavaLoaderProject {\n"
+				+ body + "\n}\n").getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Writes the source of the given class of the given project, in a package named after the project.
+	 * @param projectsDir - The projects directory.
+	 * @param projectName - The name of the project.
+	 * @param className - The simple name of the class.
+	 * @param body - The body of the class.
+	 * @throws IOException
+	 */
+	private static void writeClass(File projectsDir, String projectName,
+			String className, String body) throws IOException {
+		File sourceFile = new File(projectsDir, projectName + "/src/" + projectName + "/" + className + ".java");
+		sourceFile.getParentFile().mkdirs();
+		Files.write(sourceFile.toPath(), ("package " + projectName + ";\n"
+				+ "public class " + className + " {\n" + body + "\n}\n").getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Asserts that the given bin directory contains exactly the class files of the classes in the given class store.
+	 * @param binDir - The bin directory.
+	 * @param classStore - The class store.
+	 * @throws IOException
+	 */
+	private static void assertBinDirMatches(File binDir, MemoryClassStore classStore) throws IOException {
+		List<String> classFilePaths = new ArrayList<String>();
+		for(String className : classStore.getClassNames()) {
+			String classFilePath = className.replace('.', '/') + ".class";
+			classFilePaths.add(classFilePath);
+			assertThat(Files.readAllBytes(new File(binDir, classFilePath).toPath()))
+					.isEqualTo(classStore.getClassBytes(className));
+		}
+		List<String> binDirPaths = new ArrayList<String>();
+		try(Stream<Path> paths = Files.walk(binDir.toPath())) {
+			paths.filter((Path path) -> path.toString().endsWith(".class")).forEach(
+					(Path path) -> binDirPaths.add(binDir.toPath().relativize(path).toString().replace('\\', '/')));
+		}
+		assertThat(binDirPaths).containsExactlyInAnyOrderElementsOf(classFilePaths);
+	}
+	
+	/**
+	 * Waits until the class preload tasks that have been submitted to the given project manager have completed.
+	 * @param manager - The project manager.
+	 * @throws InterruptedException
+	 */
+	private static void awaitClassPreload(ProjectManager manager) throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		manager.submitClassPreload(latch::countDown);
+		assertThat(latch.await(30, TimeUnit.SECONDS)).isTrue();
+	}
+	
+	/**
+	 * A {@link RecompileFeedbackHandler} that fails the test on exceptions.
+	 */
+	private static class FailingRecompileFeedbackHandler implements RecompileFeedbackHandler {
+		@Override
+		public void handleUnloadException(UnloadException e) {
+			fail("Unexpected UnloadException.", e);
+		}
+		@Override
+		public void handleLoadException(LoadException e) {
+			fail("Unexpected LoadException.", e);
+		}
+		@Override
+		public void handleCompileException(CompileException e) {
+			fail("Unexpected CompileException.", e);
+		}
+		@Override
+		public void compilerFeedback(String feedback) {
+		}
+	}
+	
 }
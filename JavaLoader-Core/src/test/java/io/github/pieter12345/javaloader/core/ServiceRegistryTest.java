@@ -0,0 +1,93 @@
+package io.github.pieter12345.javaloader.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link ServiceRegistry} class.
+ * @author P.J.S. Kools
+ */
+class ServiceRegistryTest {
+	
+	private ServiceRegistry registry;
+	private JavaProject provider;
+	
+	@BeforeEach
+	void init() {
+		this.registry = new ServiceRegistry();
+		this.provider = mock(JavaProject.class);
+		when(this.provider.getName()).thenReturn("provider");
+	}
+	
+	/**
+	 * Tests that a service proxy delegates to the registered implementation, and that the same proxy delegates to a
+	 * new implementation after the provider has been unloaded and loaded again.
+	 */
+	@Test
+	void testProxyIsRebound() {
+		Greeter proxy = this.registry.getService(Greeter.class);
+		this.registry.registerService(this.provider, Greeter.class, (String name) -> "Hello " + name);
+		assertThat(proxy.greet("a")).isEqualTo("Hello a");
+		
+		this.registry.unregisterServices(this.provider);
+		assertThat(this.registry.isServiceAvailable(Greeter.class)).isFalse();
+		assertThrows(IllegalStateException.class, () -> proxy.greet("a"));
+		
+		this.registry.registerService(this.provider, Greeter.class, (String name) -> "Hi " + name);
+		assertThat(this.registry.getService(Greeter.class)).isSameAs(proxy);
+		assertThat(proxy.greet("a")).isEqualTo("Hi a");
+		assertThat(this.registry.getServiceProvider(Greeter.class)).isSameAs(this.provider);
+	}
+	
+	/**
+	 * Tests that exceptions thrown by the implementation are thrown by the proxy unwrapped.
+	 */
+	@Test
+	void testProxyThrowsImplementationException() {
+		this.registry.registerService(this.provider, Greeter.class, (String name) -> {
+			throw new UnsupportedOperationException(name);
+		});
+		Greeter proxy = this.registry.getService(Greeter.class);
+		assertThrows(UnsupportedOperationException.class, () -> proxy.greet("a"));
+	}
+	
+	/**
+	 * Tests that a service cannot be registered by a second provider while it is provided, and that it can be
+	 * registered by that provider after the first provider unregistered it.
+	 */
+	@Test
+	void testSingleProvider() {
+		JavaProject otherProvider = mock(JavaProject.class);
+		this.registry.registerService(this.provider, Greeter.class, (String name) -> "a");
+		assertThrows(IllegalStateException.class,
+				() -> this.registry.registerService(otherProvider, Greeter.class, (String name) -> "b"));
+		assertThat(this.registry.unregisterService(otherProvider, Greeter.class)).isFalse();
+		assertThat(this.registry.unregisterService(this.provider, Greeter.class)).isTrue();
+		this.registry.registerService(otherProvider, Greeter.class, (String name) -> "b");
+		assertThat(this.registry.getService(Greeter.class).greet("")).isEqualTo("b");
+	}
+	
+	/**
+	 * Tests that services can only be registered and obtained for interfaces that are not defined by the provider.
+	 */
+	@Test
+	void testInvalidServiceInterface() {
+		assertThrows(IllegalArgumentException.class, () -> this.registry.getService(Object.class));
+		assertThrows(IllegalArgumentException.class,
+				() -> this.registry.registerService(this.provider, Object.class, new Object()));
+		doReturn(Greeter.class.getClassLoader()).when(this.provider).getClassLoader();
+		assertThrows(IllegalArgumentException.class,
+				() -> this.registry.registerService(this.provider, Greeter.class, (String name) -> name));
+	}
+	
+	/**
+	 * A service interface.
+	 */
+	static interface Greeter {
+		String greet(String name);
+	}
+}
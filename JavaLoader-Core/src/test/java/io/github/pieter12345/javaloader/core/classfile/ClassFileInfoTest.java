@@ -0,0 +1,114 @@
+package io.github.pieter12345.javaloader.core.classfile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * Tests the {@link ClassFileInfo} class.
+ * @author P.J.S. Kools
+ */
+class ClassFileInfoTest {
+	
+	private static final String SOURCE = "package pack; public class A {"
+			+ " public static final int CONSTANT = 1;"
+			+ " private int first;"
+			+ " private long second;"
+			+ " public int get() { return 1; }"
+			+ " private void helper() { } }";
+	
+	private File tempDir;
+	private ClassFileInfo info;
+	
+	@BeforeEach
+	void init() throws IOException {
+		this.tempDir = Files.createTempDirectory("classfileinfotest").toFile();
+		this.info = this.compile(SOURCE);
+	}
+	
+	@AfterEach
+	void cleanup() {
+		Utils.removeFile(this.tempDir);
+	}
+	
+	/**
+	 * Compiles the given source of class "pack.A" and parses the resulting class file.
+	 * @param source - The source.
+	 * @return The parsed class file.
+	 * @throws IOException
+	 */
+	private ClassFileInfo compile(String source) throws IOException {
+		File dir = Files.createTempDirectory(this.tempDir.toPath(), "bin").toFile();
+		File sourceFile = new File(dir, "A.java");
+		Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assertThat(compiler.run(null, null, null, "-d", dir.getAbsolutePath(), sourceFile.getAbsolutePath()))
+				.isEqualTo(0);
+		return ClassFileInfo.parse(new File(dir, "pack" + File.separator + "A.class"));
+	}
+	
+	/**
+	 * Tests that parsing a class file reads its name, super class and members.
+	 * @throws IOException
+	 */
+	@Test
+	void testParse() throws IOException {
+		assertThat(this.info.getName()).isEqualTo("pack.A");
+		assertThat(this.info.getSuperName()).isEqualTo("java.lang.Object");
+		assertThat(this.info.getFields()).hasSize(3);
+		assertThat(this.info.getMethods()).hasSize(3);
+	}
+	
+	/**
+	 * Tests that changes in method bodies and method declaration order do not change the class structure.
+	 * @throws IOException
+	 */
+	@Test
+	void testSameStructure() throws IOException {
+		assertThat(this.info.hasSameStructure(this.compile(SOURCE))).isTrue();
+		assertThat(this.info.hasSameStructure(this.compile(SOURCE.replace("return 1;", "return 2;")))).isTrue();
+		assertThat(this.info.hasSameStructure(this.compile(SOURCE.replace("private void helper() { }", "")
+				.replace("public int get()", "private void helper() { } public int get()")))).isTrue();
+	}
+	
+	/**
+	 * Tests that changes in field declaration order, field types and constant values change the class structure.
+	 * @throws IOException
+	 */
+	@Test
+	void testFieldChangesStructure() throws IOException {
+		assertThat(this.info.hasSameStructure(this.compile(SOURCE.replace("private int first; private long second;",
+				"private long second; private int first;")))).isFalse();
+		assertThat(this.info.hasSameStructure(this.compile(SOURCE.replace("int first", "short first")))).isFalse();
+		assertThat(this.info.hasSameStructure(this.compile(SOURCE.replace("CONSTANT = 1", "CONSTANT = 2")))).isFalse();
+		assertThat(this.info.hasSameStructure(this.compile(SOURCE.replace("private long second;", "")))).isFalse();
+	}
+	
+	/**
+	 * Tests that adding, removing or changing the signature of methods changes the class structure.
+	 * @throws IOException
+	 */
+	@Test
+	void testMethodChangesStructure() throws IOException {
+		assertThat(this.info.hasSameStructure(this.compile(SOURCE.replace("private void helper() { }",
+				"private void helper() { } private void other() { }")))).isFalse();
+		assertThat(this.info.hasSameStructure(this.compile(SOURCE.replace("private void helper() { }", ""))))
+				.isFalse();
+		assertThat(this.info.hasSameStructure(this.compile(SOURCE.replace("private void helper()",
+				"private void helper(int i)")))).isFalse();
+		assertThat(this.info.hasSameStructure(this.compile(SOURCE.replace("private void helper()",
+				"public void helper()")))).isFalse();
+	}
+}
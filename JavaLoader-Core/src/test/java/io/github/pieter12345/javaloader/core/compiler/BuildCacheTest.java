@@ -0,0 +1,135 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * Tests the {@link BuildCache} class.
+ * @author P.J.S. Kools
+ */
+class BuildCacheTest {
+	
+	private File tempDir;
+	private BuildCache cache;
+	private File binDir;
+	
+	@BeforeEach
+	void init() throws IOException {
+		this.tempDir = Files.createTempDirectory("buildcachetest").toFile();
+		this.cache = new BuildCache(new File(this.tempDir, BuildCache.CACHE_DIR_NAME));
+		this.binDir = new File(this.tempDir, "bin");
+		new File(this.binDir, "pack").mkdirs();
+		Files.write(new File(this.binDir, "pack/A.class").toPath(), new byte[] {1, 2, 3});
+	}
+	
+	@AfterEach
+	void cleanup() {
+		Utils.removeFile(this.tempDir);
+	}
+	
+	/**
+	 * Tests that a stored entry is restored into a bin directory, replacing its contents.
+	 * @throws IOException
+	 */
+	@Test
+	void testStoreAndRestore() throws IOException {
+		
+		// Store the bin directory and replace its contents.
+		this.cache.store("key", Arrays.asList(this.binDir.listFiles()), null);
+		Files.write(new File(this.binDir, "Other.class").toPath(), new byte[] {4});
+		
+		// Restore the entry.
+		assertThat(this.cache.restore("key", this.binDir)).isTrue();
+		
+		// Assert that the bin directory contains the stored files only.
+		assertThat(Files.readAllBytes(new File(this.binDir, "pack/A.class").toPath())).containsExactly(1, 2, 3);
+		assertThat(new File(this.binDir, "Other.class")).doesNotExist();
+		assertThat(this.cache.restore("otherKey", this.binDir)).isFalse();
+	}
+	
+	/**
+	 * Tests that classes from a class store are stored and that the class store does not affect the key.
+	 * @throws IOException
+	 */
+	@Test
+	void testStoreClassStore() throws IOException {
+		
+		// Store an entry from a class store.
+		MemoryClassStore classStore = new MemoryClassStore();
+		classStore.putClass("pack.A", new byte[] {1, 2, 3});
+		this.cache.store("key", Collections.emptyList(), classStore);
+		
+		// Assert that the key of the class store equals the key of the bin directory with the same classes.
+		File emptyDir = new File(this.tempDir, "empty");
+		String storeKey = this.cache.newKeyBuilder().addClasses("classes", emptyDir, classStore).build();
+		String dirKey = this.cache.newKeyBuilder().addClasses("classes", this.binDir, null).build();
+		assertThat(storeKey).isEqualTo(dirKey);
+		
+		// Restore the entry into an empty directory.
+		File otherBinDir = new File(this.tempDir, "otherBin");
+		assertThat(this.cache.restore("key", otherBinDir)).isTrue();
+		assertThat(Files.readAllBytes(new File(otherBinDir, "pack/A.class").toPath())).containsExactly(1, 2, 3);
+	}
+	
+	/**
+	 * Tests that keys depend on the added values and labels.
+	 */
+	@Test
+	void testKey() {
+		assertThat(this.cache.newKeyBuilder().add("a", "1").build())
+				.isEqualTo(this.cache.newKeyBuilder().add("a", "1").build())
+				.isNotEqualTo(this.cache.newKeyBuilder().add("a", "2").build())
+				.isNotEqualTo(this.cache.newKeyBuilder().add("b", "1").build());
+	}
+	
+	/**
+	 * Tests that the least recently used entries are evicted.
+	 * @throws IOException
+	 */
+	@Test
+	void testEviction() throws IOException {
+		this.cache.setMaxEntries(2);
+		File file = new File(this.tempDir, "file.txt");
+		Files.write(file.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+		this.cache.store("key1", Collections.singletonList(file), null);
+		this.cache.store("key2", Collections.singletonList(file), null);
+		new File(this.cache.getCacheDir(), "key1").setLastModified(System.currentTimeMillis() - 10000);
+		new File(this.cache.getCacheDir(), "key2").setLastModified(System.currentTimeMillis() - 5000);
+		this.cache.store("key3", Collections.singletonList(file), null);
+		assertThat(new File(this.cache.getCacheDir(), "key1")).doesNotExist();
+		assertThat(new File(this.cache.getCacheDir(), "key2")).exists();
+		assertThat(new File(this.cache.getCacheDir(), "key3")).exists();
+	}
+	
+	/**
+	 * Tests that restoring an entry marks it as recently used, so that it is not evicted first.
+	 * @throws IOException
+	 */
+	@Test
+	void testRestoreMarksEntryUsed() throws IOException {
+		this.cache.setMaxEntries(2);
+		File file = new File(this.tempDir, "file.txt");
+		Files.write(file.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+		this.cache.store("key1", Collections.singletonList(file), null);
+		this.cache.store("key2", Collections.singletonList(file), null);
+		new File(this.cache.getCacheDir(), "key1").setLastModified(System.currentTimeMillis() - 10000);
+		new File(this.cache.getCacheDir(), "key2").setLastModified(System.currentTimeMillis() - 5000);
+		assertThat(this.cache.restore("key1", this.binDir)).isTrue();
+		this.cache.store("key3", Collections.singletonList(file), null);
+		assertThat(new File(this.cache.getCacheDir(), "key1")).exists();
+		assertThat(new File(this.cache.getCacheDir(), "key2")).doesNotExist();
+		assertThat(new File(this.binDir, "file.txt")).exists();
+	}
+}
@@ -0,0 +1,103 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * Tests the {@link BuildInfo} class.
+ * @author P.J.S. Kools
+ */
+class BuildInfoTest {
+	
+	private static final String SOURCE = "package pack; public class A {"
+			+ " public static final int CONSTANT = 1;"
+			+ " private int field;"
+			+ " public int get() { return 1; }"
+			+ " private void helper() { } }";
+	
+	private File tempDir;
+	
+	@BeforeEach
+	void init() throws IOException {
+		this.tempDir = Files.createTempDirectory("buildinfotest").toFile();
+	}
+	
+	@AfterEach
+	void cleanup() {
+		Utils.removeFile(this.tempDir);
+	}
+	
+	/**
+	 * Compiles the given source of class "pack.A" and returns the ABI fingerprint of the result.
+	 * @param source - The source.
+	 * @return The ABI fingerprint.
+	 * @throws IOException
+	 */
+	private String compileAbiFingerprint(String source) throws IOException {
+		File dir = Files.createTempDirectory(this.tempDir.toPath(), "bin").toFile();
+		File sourceFile = new File(dir, "A.java");
+		Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assertThat(compiler.run(null, null, null, "-d", dir.getAbsolutePath(), sourceFile.getAbsolutePath()))
+				.isEqualTo(0);
+		sourceFile.delete();
+		return BuildInfo.computeAbiFingerprint(dir, null);
+	}
+	
+	/**
+	 * Tests that method bodies and private members do not affect the ABI fingerprint.
+	 * @throws IOException
+	 */
+	@Test
+	void testAbiFingerprintIgnoresImplementation() throws IOException {
+		String fingerprint = this.compileAbiFingerprint(SOURCE);
+		assertThat(this.compileAbiFingerprint(SOURCE.replace("return 1;", "return 2;"))).isEqualTo(fingerprint);
+		assertThat(this.compileAbiFingerprint(SOURCE.replace("private int field;", "private long other;")))
+				.isEqualTo(fingerprint);
+		assertThat(this.compileAbiFingerprint(SOURCE.replace("private void helper() { }", "")))
+				.isEqualTo(fingerprint);
+	}
+	
+	/**
+	 * Tests that public signatures and constants affect the ABI fingerprint.
+	 * @throws IOException
+	 */
+	@Test
+	void testAbiFingerprintDetectsApiChanges() throws IOException {
+		String fingerprint = this.compileAbiFingerprint(SOURCE);
+		assertThat(this.compileAbiFingerprint(SOURCE.replace("CONSTANT = 1", "CONSTANT = 2")))
+				.isNotEqualTo(fingerprint);
+		assertThat(this.compileAbiFingerprint(SOURCE.replace("public int get()", "public long get()")))
+				.isNotEqualTo(fingerprint);
+		assertThat(this.compileAbiFingerprint(SOURCE.replace("private void helper()", "protected void helper()")))
+				.isNotEqualTo(fingerprint);
+	}
+	
+	/**
+	 * Tests that the build info can be written and read.
+	 * @throws IOException
+	 */
+	@Test
+	void testWriteAndRead() throws IOException {
+		BuildInfo info = new BuildInfo("inputs", "abi");
+		info.getDependencyAbiFingerprints().put("dep", "depAbi");
+		info.write(this.tempDir);
+		BuildInfo readInfo = BuildInfo.read(this.tempDir);
+		assertThat(readInfo.getInputsHash()).isEqualTo("inputs");
+		assertThat(readInfo.getAbiFingerprint()).isEqualTo("abi");
+		assertThat(readInfo.getDependencyAbiFingerprints()).containsOnlyKeys("dep").containsEntry("dep", "depAbi");
+	}
+}
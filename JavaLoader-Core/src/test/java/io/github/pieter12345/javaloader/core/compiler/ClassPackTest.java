@@ -0,0 +1,73 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * Tests the {@link ClassPack} class.
+ * @author P.J.S. Kools
+ */
+class ClassPackTest {
+	
+	private File binDir;
+	
+	@BeforeEach
+	void init() throws IOException {
+		this.binDir = Files.createTempDirectory("classpacktest").toFile();
+		new File(this.binDir, "pack").mkdirs();
+		Files.write(new File(this.binDir, "pack/A.class").toPath(), new byte[] {1, 2, 3});
+		Files.write(new File(this.binDir, "B.class").toPath(), new byte[] {4, 5});
+		Files.write(new File(this.binDir, "dependencies.txt").toPath(), new byte[0]);
+	}
+	
+	@AfterEach
+	void cleanup() {
+		Utils.removeFile(this.binDir);
+	}
+	
+	/**
+	 * Tests that a written pack contains all files in the bin directory.
+	 * @throws IOException
+	 */
+	@Test
+	void testWriteAndRead() throws IOException {
+		ClassPack.write(this.binDir);
+		ClassPack.write(this.binDir); // Overwrite, the existing pack should not be packed itself.
+		ClassPack pack = ClassPack.read(this.binDir);
+		assertThat(pack).isNotNull();
+		assertThat(pack.getPaths()).containsExactlyInAnyOrder("pack/A.class", "B.class", "dependencies.txt");
+		assertThat(toArray(pack.getEntry("pack/A.class"))).containsExactly(1, 2, 3);
+		assertThat(toArray(pack.getEntry("B.class"))).containsExactly(4, 5);
+		assertThat(pack.getEntry("dependencies.txt").remaining()).isEqualTo(0);
+		assertThat(pack.getEntry("C.class")).isNull();
+	}
+	
+	/**
+	 * Tests that a missing or invalid pack is not read, and that a pack can be deleted.
+	 * @throws IOException
+	 */
+	@Test
+	void testReadInvalidAndDelete() throws IOException {
+		assertThat(ClassPack.read(this.binDir)).isNull();
+		Files.write(new File(this.binDir, ClassPack.FILE_NAME).toPath(), new byte[] {1, 2, 3, 4, 5});
+		assertThat(ClassPack.read(this.binDir)).isNull();
+		ClassPack.delete(this.binDir);
+		assertThat(new File(this.binDir, ClassPack.FILE_NAME)).doesNotExist();
+	}
+	
+	private static byte[] toArray(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,127 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * Tests the {@link CompilerService} class.
+ * @author P.J.S. Kools
+ */
+class CompilerServiceTest {
+	
+	private File tempDir;
+	private CompilerService compilerService;
+	
+	@BeforeEach
+	void init() throws IOException {
+		this.tempDir = Files.createTempDirectory("compilerservicetest").toFile();
+		this.compilerService = new CompilerService();
+	}
+	
+	@AfterEach
+	void cleanup() {
+		this.compilerService.close();
+		Utils.removeFile(this.tempDir);
+	}
+	
+	/**
+	 * Tests that a compile against a dependency .jar file that has changed since the previous compile sees the new
+	 * classes of the .jar file, rather than the classes cached by the pooled file manager.
+	 * @throws IOException
+	 */
+	@Test
+	void testCompileAgainstChangedJar() throws IOException {
+		File jarFile = new File(this.tempDir, "api.jar");
+		List<File> classPath = Collections.singletonList(jarFile);
+		
+		// Compile against the first version of the .jar file.
+		this.writeApiJar(jarFile, "public static int first() { return 1; }");
+		StandardJavaFileManager fileManager = this.compilerService.borrowFileManager(classPath);
+		try {
+			assertThat(this.compile(fileManager, classPath, "api.Api.first()")).isTrue();
+		} finally {
+			this.compilerService.returnFileManager(fileManager);
+		}
+		
+		// Replace the .jar file with a version that has a different API and compile against it.
+		this.writeApiJar(jarFile, "public static int second() { return 2; }");
+		jarFile.setLastModified(jarFile.lastModified() + 2000);
+		StandardJavaFileManager newFileManager = this.compilerService.borrowFileManager(classPath);
+		try {
+			assertThat(newFileManager).isNotSameAs(fileManager);
+			assertThat(this.compile(newFileManager, classPath, "api.Api.second()")).isTrue();
+			assertThat(this.compile(newFileManager, classPath, "api.Api.first()")).isFalse();
+		} finally {
+			this.compilerService.returnFileManager(newFileManager);
+		}
+		
+		// Assert that an unchanged .jar file does not cause the file manager to be replaced.
+		assertThat(this.compilerService.borrowFileManager(classPath)).isSameAs(newFileManager);
+		this.compilerService.returnFileManager(newFileManager);
+	}
+	
+	/**
+	 * Writes a .jar file containing class "api.Api" with the given body.
+	 * @param jarFile - The .jar file.
+	 * @param body - The body of the class.
+	 * @throws IOException
+	 */
+	private void writeApiJar(File jarFile, String body) throws IOException {
+		File dir = Files.createTempDirectory(this.tempDir.toPath(), "api").toFile();
+		File sourceFile = new File(dir, "Api.java");
+		Files.write(sourceFile.toPath(),
+				("package api; public class Api { " + body + " }").getBytes(StandardCharsets.UTF_8));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assertThat(compiler.run(null, null, null, "-d", dir.getAbsolutePath(), sourceFile.getAbsolutePath()))
+				.isEqualTo(0);
+		try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jarFile.toPath()))) {
+			out.putNextEntry(new ZipEntry("api/Api.class"));
+			out.write(Files.readAllBytes(new File(dir, "api/Api.class").toPath()));
+			out.closeEntry();
+		}
+		Utils.removeFile(dir);
+	}
+	
+	/**
+	 * Compiles class "user.User" calling the given expression using the given file manager and classpath.
+	 * @param fileManager - The file manager.
+	 * @param classPath - The classpath.
+	 * @param expression - The expression to call.
+	 * @return True if the compile was successful, false otherwise.
+	 * @throws IOException
+	 */
+	private boolean compile(StandardJavaFileManager fileManager,
+			List<File> classPath, String expression) throws IOException {
+		File dir = Files.createTempDirectory(this.tempDir.toPath(), "user").toFile();
+		File sourceFile = new File(dir, "User.java");
+		Files.write(sourceFile.toPath(), ("package user; public class User {"
+				+ " public int use() { return " + expression + "; } }").getBytes(StandardCharsets.UTF_8));
+		fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+		fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(dir));
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		return this.compilerService.getCompiler().getTask(null, fileManager, diagnostics,
+				null, null, fileManager.getJavaFileObjects(sourceFile)).call();
+	}
+}
@@ -0,0 +1,205 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * Tests the {@link ForkedCompilerService} and {@link CompileWorker} classes.
+ * @author P.J.S. Kools
+ */
+class ForkedCompilerServiceTest {
+	
+	private File tempDir;
+	private ForkedCompilerService compilerService;
+	
+	@BeforeEach
+	void init() throws IOException {
+		this.tempDir = Files.createTempDirectory("forkedcompilerservicetest").toFile();
+		this.compilerService = new ForkedCompilerService(1, Collections.<String>emptyList());
+	}
+	
+	@AfterEach
+	void cleanup() {
+		this.compilerService.close();
+		Utils.removeFile(this.tempDir);
+	}
+	
+	/**
+	 * Tests that sources are compiled to the output directory by a worker, that compiler feedback is streamed back
+	 * and that the generated class names are reported per source file.
+	 * @throws Exception
+	 */
+	@Test
+	void testCompileToOutputDir() throws Exception {
+		File sourceFile = this.writeSource("pack/A.java", "package pack;\n"
+				+ "public class A { java.util.List list; class Inner { } }");
+		File outputDir = new File(this.tempDir, "bin");
+		outputDir.mkdirs();
+		StringWriter feedbackWriter = new StringWriter();
+		Map<File, Set<String>> outputClassNames = new HashMap<File, Set<String>>();
+		assertThat(this.compilerService.compile(Arrays.asList("-Xlint:rawtypes"), Collections.<File>emptyList(),
+				outputDir, Arrays.asList(sourceFile), feedbackWriter, null,
+				Collections.<MemoryClassStore>emptyList(), outputClassNames)).isTrue();
+		assertThat(feedbackWriter.toString()).contains("warning");
+		assertThat(new File(outputDir, "pack/A.class")).isFile();
+		assertThat(new File(outputDir, "pack/A$Inner.class")).isFile();
+		assertThat(outputClassNames).containsOnlyKeys(sourceFile.getAbsoluteFile());
+		assertThat(outputClassNames.get(sourceFile.getAbsoluteFile()))
+				.containsExactlyInAnyOrder("pack.A", "pack.A$Inner");
+		
+		// Assert that compile errors are reported as feedback and as an unsuccessful compile.
+		File invalidSourceFile = this.writeSource("pack/B.java", "package pack; public class B { int x = \"\"; }");
+		feedbackWriter = new StringWriter();
+		assertThat(this.compilerService.compile(Collections.<String>emptyList(), Collections.<File>emptyList(),
+				outputDir, Arrays.asList(invalidSourceFile), feedbackWriter, null,
+				Collections.<MemoryClassStore>emptyList(), null)).isFalse();
+		assertThat(feedbackWriter.toString()).contains("error");
+	}
+	
+	/**
+	 * Tests that classes compiled in memory by a worker are sent back to the server, and that classes in memory can
+	 * be compiled against.
+	 * @throws Exception
+	 */
+	@Test
+	void testCompileInMemory() throws Exception {
+		File outputDir = new File(this.tempDir, "bin");
+		outputDir.mkdirs();
+		
+		// Compile a class in memory.
+		File apiSourceFile = this.writeSource("api/Api.java",
+				"package api; public class Api { public static int value() { return 1; } }");
+		MemoryClassStore apiClassStore = new MemoryClassStore();
+		assertThat(this.compilerService.compile(Collections.<String>emptyList(), Collections.<File>emptyList(),
+				outputDir, Arrays.asList(apiSourceFile), null, apiClassStore,
+				Collections.<MemoryClassStore>emptyList(), null)).isTrue();
+		assertThat(apiClassStore.getClassNames()).containsExactly("api.Api");
+		assertThat(outputDir.list()).isEmpty();
+		
+		// Compile a class against the in-memory class.
+		File userSourceFile = this.writeSource("user/User.java",
+				"package user; public class User { int value = api.Api.value(); }");
+		MemoryClassStore userClassStore = new MemoryClassStore();
+		assertThat(this.compilerService.compile(Collections.<String>emptyList(), Collections.<File>emptyList(),
+				outputDir, Arrays.asList(userSourceFile), null, userClassStore,
+				Arrays.asList(apiClassStore), null)).isTrue();
+		assertThat(userClassStore.getClassNames()).containsExactly("user.User");
+	}
+	
+	/**
+	 * Tests that a worker is reused between compiles, and that a worker that dies during a compile is replaced.
+	 * @throws Exception
+	 */
+	@Test
+	void testWorkerReuseAndRecovery() throws Exception {
+		File sourceFile = this.writeSource("pack/A.java", "package pack; public class A { }");
+		File outputDir = new File(this.tempDir, "bin");
+		outputDir.mkdirs();
+		List<String> options = Collections.<String>emptyList();
+		List<MemoryClassStore> noStores = Collections.<MemoryClassStore>emptyList();
+		
+		// Compile twice and assert that the same worker has been used.
+		assertThat(this.compilerService.compile(options, Collections.<File>emptyList(),
+				outputDir, Arrays.asList(sourceFile), null, null, noStores, null)).isTrue();
+		List<Process> processes = this.compilerService.getIdleWorkerProcesses();
+		assertThat(processes).hasSize(1);
+		Process process = processes.get(0);
+		assertThat(this.compilerService.compile(options, Collections.<File>emptyList(),
+				outputDir, Arrays.asList(sourceFile), null, null, noStores, null)).isTrue();
+		assertThat(this.compilerService.getIdleWorkerProcesses()).containsExactly(process);
+		
+		// Let the worker exit during a compile through a compiler plugin.
+		File pluginJar = this.writeExitPluginJar();
+		assertThatThrownBy(() -> this.compilerService.compile(Arrays.asList("-Xplugin:Exit"),
+				Arrays.asList(pluginJar), outputDir, Arrays.asList(sourceFile), null, null, noStores, null))
+				.isInstanceOf(IOException.class);
+		assertThat(this.compilerService.getIdleWorkerProcesses()).isEmpty();
+		
+		// Assert that a new worker is started for the next compile.
+		assertThat(this.compilerService.compile(options, Collections.<File>emptyList(),
+				outputDir, Arrays.asList(sourceFile), null, null, noStores, null)).isTrue();
+		processes = this.compilerService.getIdleWorkerProcesses();
+		assertThat(processes).hasSize(1);
+		assertThat(processes.get(0)).isNotSameAs(process);
+		assertThat(process.isAlive()).isFalse();
+	}
+	
+	/**
+	 * Tests that compiling fails after the service has been closed.
+	 */
+	@Test
+	void testCompileAfterClose() {
+		this.compilerService.close();
+		assertThatThrownBy(() -> this.compilerService.compile(Collections.<String>emptyList(),
+				Collections.<File>emptyList(), this.tempDir, Collections.<File>emptyList(), null, null,
+				Collections.<MemoryClassStore>emptyList(), null)).isInstanceOf(IOException.class);
+	}
+	
+	/**
+	 * Writes the given source to the given path in the source directory.
+	 * @param path - The path of the source file, relative to the source directory.
+	 * @param source - The source.
+	 * @return The source file.
+	 * @throws IOException
+	 */
+	private File writeSource(String path, String source) throws IOException {
+		File sourceFile = new File(this.tempDir, "src/" + path);
+		sourceFile.getParentFile().mkdirs();
+		Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+		return sourceFile;
+	}
+	
+	/**
+	 * Writes a .jar file containing compiler plugin "Exit", which terminates the JVM that runs the compiler.
+	 * @return The .jar file.
+	 * @throws IOException
+	 */
+	private File writeExitPluginJar() throws IOException {
+		File dir = new File(this.tempDir, "plugin");
+		File sourceFile = new File(dir, "ExitPlugin.java");
+		dir.mkdirs();
+		Files.write(sourceFile.toPath(), ("package plugin;\n"
+				+ "public class ExitPlugin implements com.sun.source.util.Plugin {\n"
+				+ "public String getName() { return \"Exit\"; }\n"
+				+ "public void init(com.sun.source.util.JavacTask task, String... args) {\n"
+				+ "	Runtime.getRuntime().halt(1);\n"
+				+ "}\n"
+				+ "}\n").getBytes(StandardCharsets.UTF_8));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assertThat(compiler.run(null, null, null, "-d", dir.getAbsolutePath(), sourceFile.getAbsolutePath()))
+				.isEqualTo(0);
+		File jarFile = new File(this.tempDir, "plugin.jar");
+		try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jarFile.toPath()))) {
+			out.putNextEntry(new ZipEntry("plugin/ExitPlugin.class"));
+			out.write(Files.readAllBytes(new File(dir, "plugin/ExitPlugin.class").toPath()));
+			out.closeEntry();
+			out.putNextEntry(new ZipEntry("META-INF/services/com.sun.source.util.Plugin"));
+			out.write("plugin.ExitPlugin".getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		return jarFile;
+	}
+}
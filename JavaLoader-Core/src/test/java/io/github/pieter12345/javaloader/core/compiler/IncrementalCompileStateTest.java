@@ -0,0 +1,140 @@
+package io.github.pieter12345.javaloader.core.compiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.pieter12345.javaloader.core.compiler.IncrementalCompileState.SourceEntry;
+import io.github.pieter12345.javaloader.core.utils.Utils;
+
+/**
+ * Tests the {@link IncrementalCompileState} class.
+ * @author P.J.S. Kools
+ */
+class IncrementalCompileStateTest {
+	
+	private IncrementalCompileState state;
+	private Map<String, String> sourceHashes;
+	private Map<String, String> sourceTexts;
+	
+	/**
+	 * Creates a state with sources A, B (referencing A), C (extending B) and D (unrelated).
+	 */
+	@BeforeEach
+	void init() {
+		this.state = new IncrementalCompileState("fingerprint");
+		this.sourceHashes = new HashMap<String, String>();
+		this.sourceTexts = new HashMap<String, String>();
+		this.addSource("pack/A.java", "pack.A", null, null, "class A { }");
+		this.addSource("pack/B.java", "pack.B", "pack.A", null, "class B { Object o = new A(); }");
+		this.addSource("pack/C.java", "pack.C", null, "pack.B", "class C extends B { }");
+		this.addSource("pack/D.java", "pack.D", null, null, "class D { }");
+	}
+	
+	private void addSource(String path, String className, String ref, String superClassName, String text) {
+		SourceEntry entry = new SourceEntry(IncrementalCompileState.hash(text.getBytes()));
+		entry.getClassNames().add(className);
+		if(ref != null) {
+			entry.getReferencedClassNames().add(ref);
+		}
+		if(superClassName != null) {
+			entry.getReferencedClassNames().add(superClassName);
+			entry.getSuperClassNames().add(superClassName);
+		}
+		this.state.getSources().put(path, entry);
+		this.sourceHashes.put(path, entry.getHash());
+		this.sourceTexts.put(path, text);
+	}
+	
+	/**
+	 * Tests that nothing has to be recompiled when no source has changed.
+	 */
+	@Test
+	void testNoChanges() {
+		assertThat(this.state.getRecompileSet(this.sourceHashes, this.sourceTexts)).isEmpty();
+	}
+	
+	/**
+	 * Tests that a changed source is recompiled together with the sources that reference it and the sources that
+	 * extend those.
+	 */
+	@Test
+	void testChangedSourceWithDependents() {
+		
+		// Change source A.
+		this.sourceHashes.put("pack/A.java", IncrementalCompileState.hash("class A { int i; }".getBytes()));
+		
+		// Assert that A, B (references A) and C (extends B) are recompiled.
+		assertThat(this.state.getRecompileSet(this.sourceHashes, this.sourceTexts))
+				.containsExactlyInAnyOrder("pack/A.java", "pack/B.java", "pack/C.java");
+	}
+	
+	/**
+	 * Tests that sources that mention the name of a changed class are recompiled, even if their classes do not
+	 * reference it (for example because a constant was inlined).
+	 */
+	@Test
+	void testChangedSourceWithTextualDependent() {
+		
+		// Make D mention A and change A.
+		this.sourceTexts.put("pack/D.java", "class D { int i = A.CONSTANT; }");
+		this.sourceHashes.put("pack/A.java", "changed");
+		
+		// Assert that D is recompiled.
+		assertThat(this.state.getRecompileSet(this.sourceHashes, this.sourceTexts)).contains("pack/D.java");
+	}
+	
+	/**
+	 * Tests that removing a source causes its dependents to be recompiled, and that added sources are compiled.
+	 */
+	@Test
+	void testRemovedAndAddedSources() {
+		
+		// Remove D and B and add E.
+		this.sourceHashes.remove("pack/D.java");
+		this.sourceHashes.remove("pack/B.java");
+		this.sourceHashes.put("pack/E.java", "new");
+		this.sourceTexts.put("pack/E.java", "class E { }");
+		
+		// Assert that C (extends B) and E are recompiled.
+		assertThat(this.state.getRecompileSet(this.sourceHashes, this.sourceTexts))
+				.containsExactlyInAnyOrder("pack/C.java", "pack/E.java");
+	}
+	
+	/**
+	 * Tests that the classpath fingerprint depends on the content of dependency directories, but not on their
+	 * location.
+	 * @throws IOException
+	 */
+	@Test
+	void testClasspathFingerprintIgnoresDependencyLocation() throws IOException {
+		File tempDir = Files.createTempDirectory("incrementalcompilestatetest").toFile();
+		try {
+			File binDir = new File(tempDir, "bin");
+			File newBinDir = new File(tempDir, "bin_new");
+			binDir.mkdir();
+			newBinDir.mkdir();
+			Files.write(new File(binDir, "A.class").toPath(), new byte[] {1});
+			Files.write(new File(newBinDir, "A.class").toPath(), new byte[] {1});
+			List<File> platformClassPath = Collections.singletonList(new File(tempDir, "platform.jar"));
+			String fingerprint = IncrementalCompileState.computeClasspathFingerprint(
+					platformClassPath, Collections.singletonList(binDir));
+			assertThat(IncrementalCompileState.computeClasspathFingerprint(
+					platformClassPath, Collections.singletonList(newBinDir))).isEqualTo(fingerprint);
+			Files.write(new File(newBinDir, "A.class").toPath(), new byte[] {2});
+			assertThat(IncrementalCompileState.computeClasspathFingerprint(
+					platformClassPath, Collections.singletonList(newBinDir))).isNotEqualTo(fingerprint);
+		} finally {
+			Utils.removeFile(tempDir);
+		}
+	}
+}
@@ -22,6 +22,7 @@ import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.proxy.ProxyServer;
 
 import io.github.pieter12345.javaloader.core.CommandExecutor;
+import io.github.pieter12345.javaloader.core.HotSwapAgent;
 import io.github.pieter12345.javaloader.core.JavaLoaderProject;
 import io.github.pieter12345.javaloader.core.JavaProject;
 import io.github.pieter12345.javaloader.core.ProjectManager;
@@ -110,6 +111,11 @@ public class JavaLoaderVelocityPlugin {
 		// Create the project manager.
 		this.projectManager = new ProjectManager(this.projectsDir, new VelocityProjectDependencyParser(this.proxy));
 		
+		// Enable hot swapping of method body changes if the proxy has been started with JavaLoader as java agent.
+		if(HotSwapAgent.isRedefineClassesSupported()) {
+			this.projectManager.setHotSwapEnabled(true);
+		}
+		
 		// Initialize project state listener.
 		this.projectStateListener = new ProjectStateListener() {
 			
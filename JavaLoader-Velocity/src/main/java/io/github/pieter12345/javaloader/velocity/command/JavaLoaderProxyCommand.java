@@ -79,7 +79,7 @@ public class JavaLoaderProxyCommand implements SimpleCommand {
 		// TAB-complete "/javaloaderproxy <arg>".
 		if(args.length <= 1) {
 			List<String> ret = new ArrayList<String>();
-			for(String comp : new String[] {"help", "list", "load", "unload", "recompile"}) {
+			for(String comp : new String[] {"help", "list", "load", "unload", "recompile", "leaks"}) {
 				if(comp.startsWith(search)) {
 					ret.add(comp);
 				}